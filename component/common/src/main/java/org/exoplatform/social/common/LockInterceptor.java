@@ -16,20 +16,51 @@
  */
 package org.exoplatform.social.common;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.gatein.pc.api.invocation.InvocationException;
 
+/**
+ * Serializes the invocations sharing the same lock id. The locks are kept in a concurrent map and removed when
+ * their last waiter leaves, so that invocations with different ids never contend with each other.
+ */
 public abstract class LockInterceptor<T extends Invocation> {
 
   /** . */
-  private Map<Object, InternalLock> map     = new HashMap<Object, InternalLock>();
+  private final ConcurrentMap<Object, InternalLock> map = new ConcurrentHashMap<Object, InternalLock>();
+
+  /** The max time to wait for a lock in milliseconds, 0 to wait without limit. */
+  private volatile long maxWait = 0;
+
+  /** . */
+  private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+  /** . */
+  private final AtomicLong waitCount = new AtomicLong();
+
+  /** . */
+  private final AtomicLong waitTime = new AtomicLong();
 
   /** . */
-  private Lock                      mapLock = new ReentrantLock();
+  private final AtomicLong timeoutCount = new AtomicLong();
+
+  /**
+   * Thrown when a lock can not be obtained in the max wait time.
+   */
+  public static class LockTimeoutException extends Exception {
+
+    private static final long serialVersionUID = -1389437925826584736L;
+
+    public LockTimeoutException(Object lockId, long maxWait) {
+      super("Could not obtain the lock " + lockId + " in " + maxWait + " ms");
+    }
+  }
 
   public static class InternalLock {
 
@@ -39,8 +70,8 @@ public abstract class LockInterceptor<T extends Invocation> {
     /** . */
     private final Lock   lock    = new ReentrantLock();
 
-    /** . */
-    private int          waiters = 0;
+    /** Once 0, the lock is being removed and can not be acquired anymore. */
+    private final AtomicInteger waiters = new AtomicInteger(1);
 
     public InternalLock(Object id) {
       this.id = id;
@@ -54,33 +85,49 @@ public abstract class LockInterceptor<T extends Invocation> {
         lock.unlock();
       }
     }
+
+    Object invoke(Invocation invocation, long maxWait) throws Exception, InvocationException {
+      if (!lock.tryLock(maxWait, TimeUnit.MILLISECONDS)) {
+        throw new LockTimeoutException(id, maxWait);
+      }
+      try {
+        return invocation.invokeNext();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    public int getWaiters() {
+      return waiters.get();
+    }
   }
 
   protected InternalLock acquire(Object lockId) {
-    mapLock.lock();
-    try {
-      InternalLock lock;
-      if (map.containsKey(lockId)) {
-        lock = (InternalLock) map.get(lockId);
-      } else {
+    while (true) {
+      InternalLock lock = map.get(lockId);
+      if (lock == null) {
         lock = new InternalLock(lockId);
-        map.put(lockId, lock);
+        if (map.putIfAbsent(lockId, lock) == null) {
+          return lock;
+        }
+      } else {
+        int waiters = lock.waiters.get();
+        if (waiters > 0) {
+          if (lock.waiters.compareAndSet(waiters, waiters + 1)) {
+            updateMaxQueueDepth(waiters + 1);
+            return lock;
+          }
+        } else {
+          // the last waiter is leaving, help to remove the lock and retry
+          map.remove(lockId, lock);
+        }
       }
-      lock.waiters++;
-      return lock;
-    } finally {
-      mapLock.unlock();
     }
   }
 
   protected void release(InternalLock internalLock) {
-    mapLock.lock();
-    try {
-      if (--internalLock.waiters == 0) {
-        map.remove(internalLock.id);
-      }
-    } finally {
-      mapLock.unlock();
+    if (internalLock.waiters.decrementAndGet() == 0) {
+      map.remove(internalLock.id, internalLock);
     }
   }
 
@@ -92,8 +139,13 @@ public abstract class LockInterceptor<T extends Invocation> {
     //
     if (lockId != null) {
       InternalLock internalLock = acquire(lockId);
+      Invocation timed = new WaitTimeInvocation(invocation, System.nanoTime());
+      long wait = maxWait;
       try {
-        return internalLock.invoke(invocation);
+        return wait > 0 ? internalLock.invoke(timed, wait) : internalLock.invoke(timed);
+      } catch (LockTimeoutException e) {
+        timeoutCount.incrementAndGet();
+        throw e;
       } finally {
         release(internalLock);
       }
@@ -101,4 +153,88 @@ public abstract class LockInterceptor<T extends Invocation> {
       return invocation.invokeNext();
     }
   }
+
+  /**
+   * Sets the max time to wait for a lock, after which a {@link LockTimeoutException} is thrown.
+   *
+   * @param maxWait the max wait in milliseconds, 0 to wait without limit
+   */
+  public void setMaxWait(long maxWait) {
+    this.maxWait = maxWait;
+  }
+
+  public long getMaxWait() {
+    return maxWait;
+  }
+
+  /**
+   * Gets the number of lock ids currently in use.
+   *
+   * @return the number of locks
+   */
+  public int getLockCount() {
+    return map.size();
+  }
+
+  /**
+   * Gets the highest number of invocations seen waiting on the same lock id.
+   *
+   * @return the max queue depth
+   */
+  public int getMaxQueueDepth() {
+    return maxQueueDepth.get();
+  }
+
+  /**
+   * Gets the average time spent waiting for a lock.
+   *
+   * @return the average wait time in milliseconds
+   */
+  public double getAverageWaitTime() {
+    long count = waitCount.get();
+    return count == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(waitTime.get()) / count / 1000;
+  }
+
+  /**
+   * Gets the number of invocations rejected because the lock could not be obtained in the max wait time.
+   *
+   * @return the number of timeouts
+   */
+  public long getTimeoutCount() {
+    return timeoutCount.get();
+  }
+
+  public void resetStatistics() {
+    maxQueueDepth.set(0);
+    waitCount.set(0);
+    waitTime.set(0);
+    timeoutCount.set(0);
+  }
+
+  private void updateMaxQueueDepth(int depth) {
+    int max;
+    while (depth > (max = maxQueueDepth.get())) {
+      if (maxQueueDepth.compareAndSet(max, depth)) {
+        return;
+      }
+    }
+  }
+
+  private class WaitTimeInvocation implements Invocation {
+
+    private final Invocation invocation;
+
+    private final long start;
+
+    WaitTimeInvocation(Invocation invocation, long start) {
+      this.invocation = invocation;
+      this.start = start;
+    }
+
+    public Object invokeNext() throws InvocationException {
+      waitTime.addAndGet(System.nanoTime() - start);
+      waitCount.incrementAndGet();
+      return invocation.invokeNext();
+    }
+  }
 }
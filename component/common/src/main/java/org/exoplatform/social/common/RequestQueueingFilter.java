@@ -23,26 +23,72 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.exoplatform.commons.utils.PropertyManager;
+import org.exoplatform.container.PortalContainer;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.social.common.LockInterceptor.LockTimeoutException;
 import org.exoplatform.web.filter.Filter;
 import org.gatein.pc.api.invocation.InvocationException;
 
 public class RequestQueueingFilter  implements Filter {
 
+  /** The property giving the max time in milliseconds a request waits for the previous ones of its session. */
+  public static final String MAX_WAIT_PROPERTY = "exo.social.request.queueing.maxWait";
+
+  private static final Log LOG = ExoLogger.getLogger(RequestQueueingFilter.class);
+
   private SessionLockInterceptor interceptor = new SessionLockInterceptor();
 
+  private volatile boolean registered;
 
+  public RequestQueueingFilter() {
+    String maxWait = PropertyManager.getProperty(MAX_WAIT_PROPERTY);
+    if (maxWait != null) {
+      try {
+        interceptor.setMaxWait(Long.parseLong(maxWait.trim()));
+      } catch (NumberFormatException e) {
+        LOG.warn("Invalid value for " + MAX_WAIT_PROPERTY + ": " + maxWait);
+      }
+    }
+  }
 
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException,
   ServletException {
+    if (!registered) {
+      register();
+    }
     try {
       interceptor.invoke(new ServletFilterInvocation(chain, request, response));
+    } catch (LockTimeoutException e) {
+      LOG.debug(e.getMessage());
+      ((HttpServletResponse) response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
     } catch (Throwable t) {
       throw new ServletException(t.getCause());
     }
   }
 
+  /**
+   * Exposes the lock metrics through the {@link RequestQueueingStatistics} component, when it is configured.
+   */
+  private void register() {
+    registered = true;
+    try {
+      RequestQueueingStatistics statistics = (RequestQueueingStatistics) PortalContainer.getInstance()
+          .getComponentInstanceOfType(RequestQueueingStatistics.class);
+      if (statistics != null) {
+        statistics.setInterceptor(interceptor);
+      }
+    } catch (Exception e) {
+      LOG.debug("Could not register the request queueing statistics", e);
+    }
+  }
 
+  public SessionLockInterceptor getInterceptor() {
+    return interceptor;
+  }
 
   public class SessionLockInterceptor extends LockInterceptor<ServletFilterInvocation> {
 
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.common;
+
+import org.exoplatform.management.annotations.Managed;
+import org.exoplatform.management.annotations.ManagedDescription;
+import org.exoplatform.management.annotations.ManagedName;
+import org.exoplatform.management.jmx.annotations.NameTemplate;
+import org.exoplatform.management.jmx.annotations.Property;
+
+/**
+ * Exposes the lock metrics of the {@link RequestQueueingFilter}, which is not a container component itself.
+ * The filter registers its interceptor on its first request, until then every metric is 0.
+ *
+ * @since 4.1
+ */
+@Managed
+@ManagedDescription("Social request queueing")
+@NameTemplate({
+  @Property(key = "service", value = "social"),
+  @Property(key = "view", value = "requestqueueing")
+})
+public class RequestQueueingStatistics {
+
+  private volatile LockInterceptor<?> interceptor;
+
+  /**
+   * Sets the interceptor whose metrics are exposed.
+   *
+   * @param interceptor the interceptor
+   */
+  public void setInterceptor(LockInterceptor<?> interceptor) {
+    this.interceptor = interceptor;
+  }
+
+  @Managed
+  @ManagedDescription("The number of sessions with a running or waiting request")
+  public int getLockCount() {
+    LockInterceptor<?> current = interceptor;
+    return current != null ? current.getLockCount() : 0;
+  }
+
+  @Managed
+  @ManagedDescription("The highest number of requests seen waiting for the same session")
+  public int getMaxQueueDepth() {
+    LockInterceptor<?> current = interceptor;
+    return current != null ? current.getMaxQueueDepth() : 0;
+  }
+
+  @Managed
+  @ManagedDescription("The average time in milliseconds a request waited for the previous ones of its session")
+  public double getAverageWaitTime() {
+    LockInterceptor<?> current = interceptor;
+    return current != null ? current.getAverageWaitTime() : 0;
+  }
+
+  @Managed
+  @ManagedDescription("The number of requests rejected because they waited longer than the max wait")
+  public long getTimeoutCount() {
+    LockInterceptor<?> current = interceptor;
+    return current != null ? current.getTimeoutCount() : 0;
+  }
+
+  @Managed
+  @ManagedDescription("The max time in milliseconds a request waits for the previous ones of its session, 0 without limit")
+  public long getMaxWait() {
+    LockInterceptor<?> current = interceptor;
+    return current != null ? current.getMaxWait() : 0;
+  }
+
+  @Managed
+  @ManagedDescription("Sets the max time in milliseconds a request waits for the previous ones of its session")
+  public void setMaxWait(@ManagedDescription("The max wait in milliseconds, 0 without limit") @ManagedName("maxWait") long maxWait) {
+    LockInterceptor<?> current = interceptor;
+    if (current != null) {
+      current.setMaxWait(maxWait);
+    }
+  }
+
+  @Managed
+  @ManagedDescription("Resets the lock metrics")
+  public void resetStatistics() {
+    LockInterceptor<?> current = interceptor;
+    if (current != null) {
+      current.resetStatistics();
+    }
+  }
+
+}
@@ -120,26 +120,35 @@ public abstract class AbstractLifeCycle<T extends LifeCycleListener<E>, E extend
   }
 
   protected void addTasks(final E event) {
+    String type = getEventType(event);
     for (final T listener : listeners) {
+      // a failure is logged and counted by the completion service
       completionService.addTask(new Callable<E>() {
         public E call() throws Exception {
           try {
             begin();
             dispatchEvent(listener, event);
           }
-          catch(Exception e) {
-            LOG.debug(e.getMessage(), e);
-          }
           finally {
             end();
           }
 
           return event;
         }
-      });
+      }, type);
     }
   }
 
+  /**
+   * Gets the type under which the tasks of an event are counted by the completion service.
+   *
+   * @param event the event
+   * @return the event type
+   */
+  protected String getEventType(E event) {
+    return event.getClass().getSimpleName();
+  }
+
   protected void begin() {
     manager.beginRequest();
     lifeCycle.getChromattic().openSession();
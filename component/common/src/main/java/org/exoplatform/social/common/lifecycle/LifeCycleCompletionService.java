@@ -17,45 +17,108 @@
 
 package org.exoplatform.social.common.lifecycle;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.exoplatform.container.xml.InitParams;
 import org.exoplatform.container.xml.ValueParam;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.picocontainer.Startable;
 
 /**
  * Process the callable request out of the http request.
  *
+ * The tasks are queued in a bounded queue. When the queue is full, the configured rejection policy applies:
+ * <ul>
+ *   <li>block: the submitter waits for a free slot (default)</li>
+ *   <li>caller-runs: the submitter runs the task itself</li>
+ *   <li>discard: the task is dropped and logged</li>
+ * </ul>
+ * The completed tasks are not kept, failures are logged and counted by event type.
+ *
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class LifeCycleCompletionService {
+public class LifeCycleCompletionService implements Startable {
+
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(LifeCycleCompletionService.class);
 
   private final String THREAD_NUMBER_KEY = "thread-number";
 
   private final String ASYNC_EXECUTION_KEY = "async-execution";
 
-  private Executor executor;
+  private final String QUEUE_SIZE_KEY = "queue-size";
+
+  private final String REJECTION_POLICY_KEY = "rejection-policy";
+
+  private final String SHUTDOWN_TIMEOUT_KEY = "shutdown-timeout";
+
+  public static final String POLICY_BLOCK = "block";
+
+  public static final String POLICY_CALLER_RUNS = "caller-runs";
+
+  public static final String POLICY_DISCARD = "discard";
 
-  private ExecutorCompletionService ecs;
+  /** The type of the tasks added without event type */
+  public static final String DEFAULT_TYPE = "default";
+
+  private Executor executor;
 
   private final int DEFAULT_THREAD_NUMBER = 1;
 
   private final boolean DEFAULT_ASYNC_EXECUTION = true;
 
+  private final int DEFAULT_QUEUE_SIZE = 10000;
+
+  private final String DEFAULT_REJECTION_POLICY = POLICY_BLOCK;
+
+  /** in seconds */
+  private final long DEFAULT_SHUTDOWN_TIMEOUT = 30;
+
+  /** in milliseconds */
+  private final long WAIT_COMPLETION_TIMEOUT = 10000;
+
   private int configThreadNumber;
 
   private boolean configAsyncExecution;
 
+  private int configQueueSize;
+
+  private String configRejectionPolicy;
+
+  private long configShutdownTimeout;
+
+  /** submitted and not yet completed tasks */
+  private final AtomicInteger pending = new AtomicInteger();
+
+  private final ConcurrentMap<String, LifeCycleTaskStatistics> statistics =
+      new ConcurrentHashMap<String, LifeCycleTaskStatistics>();
+
   public LifeCycleCompletionService(InitParams params) {
 
     //
     ValueParam threadNumber = params.getValueParam(THREAD_NUMBER_KEY);
     ValueParam asyncExecution = params.getValueParam(ASYNC_EXECUTION_KEY);
+    ValueParam queueSize = params.getValueParam(QUEUE_SIZE_KEY);
+    ValueParam rejectionPolicy = params.getValueParam(REJECTION_POLICY_KEY);
+    ValueParam shutdownTimeout = params.getValueParam(SHUTDOWN_TIMEOUT_KEY);
 
     //
     try {
@@ -73,28 +136,92 @@ public class LifeCycleCompletionService {
       this.configAsyncExecution = DEFAULT_ASYNC_EXECUTION;
     }
 
+    //
+    try {
+      this.configQueueSize = Integer.valueOf(queueSize.getValue());
+    }
+    catch (Exception e) {
+      this.configQueueSize = DEFAULT_QUEUE_SIZE;
+    }
+
+    //
+    try {
+      this.configRejectionPolicy = rejectionPolicy.getValue().trim();
+    }
+    catch (Exception e) {
+      this.configRejectionPolicy = DEFAULT_REJECTION_POLICY;
+    }
+
+    //
+    try {
+      this.configShutdownTimeout = Long.valueOf(shutdownTimeout.getValue());
+    }
+    catch (Exception e) {
+      this.configShutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
+    }
 
     //
     if (configAsyncExecution) {
-      this.executor = Executors.newFixedThreadPool(this.configThreadNumber);
+      this.executor = new ThreadPoolExecutor(configThreadNumber,
+                                             configThreadNumber,
+                                             0L,
+                                             TimeUnit.MILLISECONDS,
+                                             new LinkedBlockingQueue<Runnable>(configQueueSize),
+                                             new LifeCycleThreadFactory(),
+                                             createRejectionHandler(configRejectionPolicy));
     }
     else {
       this.executor = new DirectExecutor();
     }
 
-    //
-    this.ecs = new ExecutorCompletionService(executor);
-
   }
 
   public void addTask(Callable callable) {
-    ecs.submit(callable);
+    addTask(callable, DEFAULT_TYPE);
+  }
+
+  /**
+   * Adds a task whose latency and failures are counted under an event type.
+   *
+   * @param callable the task
+   * @param type the event type
+   */
+  public void addTask(Callable callable, String type) {
+    if (type == null) {
+      type = DEFAULT_TYPE;
+    }
+    LifeCycleTask task = new LifeCycleTask(callable, type);
+    pending.incrementAndGet();
+    try {
+      executor.execute(task);
+    }
+    catch (RejectedExecutionException e) {
+      LOG.warn("Lifecycle task of type " + type + " rejected: " + e.getMessage());
+      getStatistics(type).rejected();
+      completed();
+    }
+    catch (RuntimeException e) {
+      if (!task.isDone()) {
+        completed();
+      }
+      throw e;
+    }
   }
 
+  /**
+   * Waits until the submitted tasks are completed, or at most 10 seconds.
+   */
   public void waitCompletionFinished() {
+    long deadline = System.currentTimeMillis() + WAIT_COMPLETION_TIMEOUT;
     try {
-      if (executor instanceof ExecutorService) {
-        ((ExecutorService) executor).awaitTermination(1, TimeUnit.SECONDS);
+      synchronized (pending) {
+        while (pending.get() > 0) {
+          long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0) {
+            return;
+          }
+          pending.wait(remaining);
+        }
       }
     }
     catch (InterruptedException e) {
@@ -106,6 +233,205 @@ public class LifeCycleCompletionService {
     return this.configAsyncExecution;
   }
 
+  /**
+   * Gets the number of tasks waiting for a thread.
+   *
+   * @return the queue depth
+   */
+  public int getQueueSize() {
+    return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+  }
+
+  /**
+   * Gets the number of submitted tasks which are not completed yet, running ones included.
+   *
+   * @return the number of pending tasks
+   */
+  public int getPendingCount() {
+    return pending.get();
+  }
+
+  /**
+   * Gets the statistics of the tasks by event type.
+   *
+   * @return the statistics
+   */
+  public Map<String, LifeCycleTaskStatistics> getStatistics() {
+    return Collections.unmodifiableMap(statistics);
+  }
+
+  public void start() {
+  }
+
+  /**
+   * Lets the queued tasks finish during the shutdown timeout, then interrupts them.
+   */
+  public void stop() {
+    if (executor instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+      pool.shutdown();
+      try {
+        if (!pool.awaitTermination(configShutdownTimeout, TimeUnit.SECONDS)) {
+          int dropped = cancel(pool.shutdownNow());
+          LOG.warn("Lifecycle tasks still running after " + configShutdownTimeout + "s, " + dropped + " queued tasks dropped");
+        }
+      }
+      catch (InterruptedException e) {
+        cancel(pool.shutdownNow());
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Cancels the tasks dropped from the queue, so that they are no more counted as pending.
+   */
+  private int cancel(List<Runnable> dropped) {
+    for (Runnable runnable : dropped) {
+      if (runnable instanceof Future) {
+        ((Future<?>) runnable).cancel(false);
+      }
+    }
+    return dropped.size();
+  }
+
+  private LifeCycleTaskStatistics getStatistics(String type) {
+    LifeCycleTaskStatistics typeStatistics = statistics.get(type);
+    if (typeStatistics == null) {
+      typeStatistics = new LifeCycleTaskStatistics();
+      LifeCycleTaskStatistics previous = statistics.putIfAbsent(type, typeStatistics);
+      if (previous != null) {
+        typeStatistics = previous;
+      }
+    }
+    return typeStatistics;
+  }
+
+  private void completed() {
+    if (pending.decrementAndGet() == 0) {
+      synchronized (pending) {
+        pending.notifyAll();
+      }
+    }
+  }
+
+  private RejectedExecutionHandler createRejectionHandler(String policy) {
+    if (POLICY_CALLER_RUNS.equals(policy)) {
+      return new CallerRunsPolicy();
+    }
+    else if (POLICY_DISCARD.equals(policy)) {
+      return new ThreadPoolExecutor.AbortPolicy();
+    }
+    else {
+      if (!POLICY_BLOCK.equals(policy)) {
+        LOG.warn("Unknown rejection policy " + policy + ", using " + POLICY_BLOCK);
+      }
+      return new BlockPolicy();
+    }
+  }
+
+  private class LifeCycleTask extends FutureTask<Object> {
+
+    private final String type;
+
+    private final long submitted = System.nanoTime();
+
+    LifeCycleTask(Callable callable, String type) {
+      super(callable);
+      this.type = type;
+    }
+
+    @Override
+    protected void done() {
+      boolean failed = false;
+      try {
+        get();
+      }
+      catch (ExecutionException e) {
+        failed = true;
+        LOG.warn("Lifecycle task of type " + type + " failed", e.getCause());
+      }
+      catch (Exception e) {
+        failed = true;
+      }
+      getStatistics(type).completed(System.nanoTime() - submitted, failed);
+      completed();
+    }
+  }
+
+  /**
+   * Tells whether the current thread is a worker of the executor, a listener adding a task from a worker must not
+   * wait for the queue that this worker drains.
+   */
+  private static boolean isWorker(ThreadPoolExecutor executor) {
+    ThreadFactory factory = executor.getThreadFactory();
+    return factory instanceof LifeCycleThreadFactory && ((LifeCycleThreadFactory) factory).isWorker(Thread.currentThread());
+  }
+
+  /**
+   * Runs the task in the submitter thread, or rejects it when the executor is shut down so that it is not counted
+   * as pending forever.
+   */
+  private static class CallerRunsPolicy implements RejectedExecutionHandler {
+
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("Executor is shut down");
+      }
+      runnable.run();
+    }
+  }
+
+  /**
+   * Waits for a free slot in the queue, unless the executor is shut down. A task added by a worker is run at once
+   * in that worker instead.
+   */
+  private static class BlockPolicy implements RejectedExecutionHandler {
+
+    /** in milliseconds, how often a waiting submitter checks whether the executor is shut down */
+    private static final long SHUTDOWN_CHECK_INTERVAL = 100;
+
+    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+      if (!executor.isShutdown() && isWorker(executor)) {
+        runnable.run();
+        return;
+      }
+      try {
+        while (!executor.isShutdown()) {
+          if (executor.getQueue().offer(runnable, SHUTDOWN_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+            // the workers of a shut down executor may have stopped before the task was queued
+            if (executor.isShutdown() && executor.remove(runnable)) {
+              break;
+            }
+            return;
+          }
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException(e);
+      }
+      throw new RejectedExecutionException("Executor is shut down");
+    }
+  }
+
+  private static class LifeCycleThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger number = new AtomicInteger();
+
+    private final ThreadGroup group = new ThreadGroup("social-lifecycle");
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(group, runnable, "social-lifecycle-" + number.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+
+    boolean isWorker(Thread thread) {
+      return thread.getThreadGroup() == group;
+    }
+  }
+
   private class DirectExecutor implements Executor {
 
     public void execute(final Runnable runnable) {
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.common.lifecycle;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the tasks run by the {@link LifeCycleCompletionService} for one type of event.
+ *
+ * @since 4.1
+ */
+public class LifeCycleTaskStatistics {
+
+  private final AtomicLong completed = new AtomicLong();
+
+  private final AtomicLong failures = new AtomicLong();
+
+  private final AtomicLong rejected = new AtomicLong();
+
+  private final AtomicLong totalLatency = new AtomicLong();
+
+  private final AtomicLong maxLatency = new AtomicLong();
+
+  void completed(long latencyNanos, boolean failed) {
+    completed.incrementAndGet();
+    if (failed) {
+      failures.incrementAndGet();
+    }
+    totalLatency.addAndGet(latencyNanos);
+    long max;
+    while (latencyNanos > (max = maxLatency.get())) {
+      if (maxLatency.compareAndSet(max, latencyNanos)) {
+        break;
+      }
+    }
+  }
+
+  void rejected() {
+    rejected.incrementAndGet();
+  }
+
+  /**
+   * Gets the number of completed tasks, failed ones included.
+   *
+   * @return the number of completed tasks
+   */
+  public long getCompletedCount() {
+    return completed.get();
+  }
+
+  public long getFailureCount() {
+    return failures.get();
+  }
+
+  /**
+   * Gets the number of tasks dropped because the queue was full.
+   *
+   * @return the number of rejected tasks
+   */
+  public long getRejectedCount() {
+    return rejected.get();
+  }
+
+  /**
+   * Gets the average time between the submission and the end of a task, queueing included.
+   *
+   * @return the average latency in milliseconds
+   */
+  public long getAverageLatency() {
+    long count = completed.get();
+    return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalLatency.get() / count);
+  }
+
+  public long getMaxLatency() {
+    return TimeUnit.NANOSECONDS.toMillis(maxLatency.get());
+  }
+
+  @Override
+  public String toString() {
+    return "completed=" + getCompletedCount() + ", failures=" + getFailureCount() + ", rejected=" + getRejectedCount()
+        + ", averageLatency=" + getAverageLatency() + "ms, maxLatency=" + getMaxLatency() + "ms";
+  }
+
+}
@@ -19,6 +19,7 @@ package org.exoplatform.social.common.router;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,10 +46,16 @@ public class ExoRouter implements Startable {
    */
   public static List<Route> routes = new CopyOnWriteArrayList<Route>();
 
+  /**
+   * The routes compiled for matching, built again when the routes change.
+   */
+  private static volatile RouteTrie trie;
+
   private ExoRouterConfig routerConfig;
   
   public static void reset() {
     routes.clear();
+    invalidate();
   }
   
   public ExoRouter() {}
@@ -88,6 +95,7 @@ public class ExoRouter implements Startable {
   public static void appendRoute(String path, String action, String params) {
     int position = routes.size();
     routes.add(position, getRoute(path, action, params));
+    invalidate();
   }
 
   public static Route getRoute(String path, String action, String params) {
@@ -114,6 +122,7 @@ public class ExoRouter implements Startable {
    */
   public static void prependRoute(String path, String action, String params) {
     routes.add(0, getRoute(path, action, params));
+    invalidate();
   }
 
   /**
@@ -121,18 +130,51 @@ public class ExoRouter implements Startable {
    */
   public static void prependRoute(String path, String action) {
     routes.add(0, getRoute(path, action));
+    invalidate();
+  }
+
+  /**
+   * Finds the first route matching a path.
+   * 
+   * @param path the path
+   * @return the route and the arguments extracted from the path, or null if no route matches
+   * @since 4.1
+   */
+  public static RouteMatch match(String path) {
+    RouteTrie current = trie;
+    if (current == null) {
+      current = compile();
+    }
+    return current.match(path);
   }
 
+  /**
+   * Finds the first route matching a path.
+   * 
+   * @param path the path
+   * @return the route, or null if no route matches
+   * @deprecated The arguments are written to the route shared by all the requests, use {@link #match(String)}
+   *             instead.
+   */
+  @Deprecated
   public static Route route(String path) {
-    for (Route route : routes) {
-      Map<String, String> args = route.matches(path);
-      if (args != null) {
-        route.localArgs = args;
-        return route;
-      }
+    RouteMatch match = match(path);
+    if (match == null) {
+      return null;
     }
+    match.getRoute().localArgs = new HashMap<String, String>(match.getArgs());
+    return match.getRoute();
+  }
 
-    return null;
+  private static synchronized RouteTrie compile() {
+    if (trie == null) {
+      trie = new RouteTrie(routes);
+    }
+    return trie;
+  }
+
+  private static synchronized void invalidate() {
+    trie = null;
   }
 
   /**
@@ -249,6 +291,44 @@ public class ExoRouter implements Startable {
 
   }
   
+  /**
+   * The route matching a path, with the arguments extracted from the path.
+   *
+   * @since 4.1
+   */
+  public static final class RouteMatch {
+
+    private final Route route;
+
+    private final Map<String, String> args;
+
+    RouteMatch(Route route, Map<String, String> args) {
+      this.route = route;
+      this.args = Collections.unmodifiableMap(args);
+    }
+
+    public Route getRoute() {
+      return route;
+    }
+
+    public String getAction() {
+      return route.action;
+    }
+
+    public Map<String, String> getArgs() {
+      return args;
+    }
+
+    /**
+     * @param name the argument name
+     * @return the value of the argument in the path, or null if the route has no such argument
+     */
+    public String get(String name) {
+      return args.get(name);
+    }
+
+  }
+
   /**
    * Route class which contains path, action & argument list.
    * 
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.common.router;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.exoplatform.social.common.router.ExoRouter.Route;
+import org.exoplatform.social.common.router.ExoRouter.RouteMatch;
+
+/**
+ * The routes compiled into a tree of path segments. A route made of plain segments and of <code>{name}</code>
+ * segments is matched by walking the tree, the other routes, with custom constraints or regex characters, are matched
+ * with their pattern. When several routes match a path, the first one in the route list wins, as when all the routes
+ * were matched with their pattern.
+ *
+ * @since 4.1
+ */
+final class RouteTrie {
+
+  /** A segment matched as is. */
+  private static final Pattern LITERAL = Pattern.compile("[a-zA-Z0-9_\\-]*");
+
+  /** A segment matching any non empty value. */
+  private static final Pattern VARIABLE = Pattern.compile("\\{([a-zA-Z_][a-zA-Z_0-9]*)\\}");
+
+  private final Node root = new Node();
+
+  private final List<Route> routes;
+
+  /** The argument names of each route by segment position, null for the routes matched with their pattern. */
+  private final List<String[]> names;
+
+  /** The indexes of the routes matched with their pattern, in the route order. */
+  private final List<Integer> patternRoutes = new ArrayList<Integer>();
+
+  RouteTrie(List<Route> routes) {
+    this.routes = new ArrayList<Route>(routes);
+    this.names = new ArrayList<String[]>(this.routes.size());
+    for (int i = 0; i < this.routes.size(); ++i) {
+      String[] routeNames = add(this.routes.get(i).path, i);
+      if (routeNames == null) {
+        patternRoutes.add(i);
+      }
+      names.add(routeNames);
+    }
+  }
+
+  /**
+   * Finds the first route matching a path.
+   *
+   * @param path the path
+   * @return the match, or null if no route matches
+   */
+  RouteMatch match(String path) {
+    String[] segments = path.split("/", -1);
+    int best = find(root, segments, 0);
+
+    //
+    for (int index : patternRoutes) {
+      if (index > best) {
+        break;
+      }
+      Route route = routes.get(index);
+      Map<String, String> args = route.matches(path);
+      if (args != null) {
+        return new RouteMatch(route, args);
+      }
+    }
+    if (best == Integer.MAX_VALUE) {
+      return null;
+    }
+
+    //
+    String[] routeNames = names.get(best);
+    Map<String, String> args = new HashMap<String, String>();
+    for (int i = 0; i < routeNames.length; ++i) {
+      if (routeNames[i] != null) {
+        args.put(routeNames[i], segments[i]);
+      }
+    }
+    return new RouteMatch(routes.get(best), args);
+  }
+
+  private String[] add(String path, int index) {
+    String[] segments = path.split("/", -1);
+    String[] routeNames = new String[segments.length];
+    for (int i = 0; i < segments.length; ++i) {
+      Matcher matcher = VARIABLE.matcher(segments[i]);
+      if (matcher.matches()) {
+        routeNames[i] = matcher.group(1);
+      }
+      else if (!LITERAL.matcher(segments[i]).matches()) {
+        return null;
+      }
+    }
+
+    //
+    Node node = root;
+    for (int i = 0; i < segments.length; ++i) {
+      node = routeNames[i] != null ? node.variable() : node.literal(segments[i]);
+    }
+    if (node.route == Integer.MAX_VALUE) {
+      node.route = index;
+    }
+    return routeNames;
+  }
+
+  /**
+   * Gets the lowest index of the routes matching the segments from a position.
+   */
+  private int find(Node node, String[] segments, int position) {
+    if (position == segments.length) {
+      return node.route;
+    }
+    int best = Integer.MAX_VALUE;
+    String segment = segments[position];
+    if (node.literals != null) {
+      Node child = node.literals.get(segment);
+      if (child != null) {
+        best = find(child, segments, position + 1);
+      }
+    }
+    if (node.variable != null && segment.length() > 0) {
+      best = Math.min(best, find(node.variable, segments, position + 1));
+    }
+    return best;
+  }
+
+  private static class Node {
+
+    private Map<String, Node> literals;
+
+    private Node variable;
+
+    private int route = Integer.MAX_VALUE;
+
+    private Node literal(String segment) {
+      if (literals == null) {
+        literals = new HashMap<String, Node>();
+      }
+      Node child = literals.get(segment);
+      if (child == null) {
+        child = new Node();
+        literals.put(segment, child);
+      }
+      return child;
+    }
+
+    private Node variable() {
+      if (variable == null) {
+        variable = new Node();
+      }
+      return variable;
+    }
+
+  }
+
+}
@@ -21,11 +21,138 @@ import java.util.List;
 
 
 /**
- * XML scanner/tokenizer
+ * XML scanner/tokenizer. Scans the input in a single pass; each token is an index range over the input, so that the
+ * text between the tags can be copied without building intermediate strings.
+ *
+ * <pre>
+ * Tokenizer tokenizer = new Tokenizer(html);
+ * while (tokenizer.next()) {
+ *   if (tokenizer.getType() == Tokenizer.TokenType.TEXT) {
+ *     tokenizer.appendTo(builder);
+ *   }
+ *   ...
+ * }
+ * </pre>
  *
  * @author Ly Minh Phuong - http://phuonglm.net
  */
 public class Tokenizer {
+
+  /**
+   * The types of token.
+   *
+   * @since 4.1
+   */
+  public enum TokenType {
+    /** The text between two tags */
+    TEXT,
+    /** A start, end or self-closed tag, or a '&lt;' with no matching '&gt;' */
+    TAG,
+    /** A &lt;!-- ... --&gt; comment */
+    COMMENT
+  }
+
+  private static final String COMMENT_START = "<!--";
+
+  private static final String COMMENT_END = "-->";
+
+  private final String input;
+
+  private int pos;
+
+  private int start;
+
+  private int end;
+
+  private TokenType type;
+
+  /**
+   * Creates a tokenizer on the given input, positioned before the first token.
+   *
+   * @param input the XML string
+   * @since 4.1
+   */
+  public Tokenizer(String input) {
+    this.input = input;
+  }
+
+  /**
+   * Moves to the next token.
+   *
+   * @return false when the end of the input is reached
+   * @since 4.1
+   */
+  public boolean next() {
+    int len = input.length();
+    if (pos >= len) {
+      return false;
+    }
+
+    //
+    start = pos;
+    if (input.startsWith(COMMENT_START, pos)) {
+      // a comment is starting, search the end of <!--......-->
+      type = TokenType.COMMENT;
+      end = moveToMarkerEnd(pos, COMMENT_END, input);
+    } else if (input.charAt(pos) == '<') {
+      // a new "<" token is starting, search the end of <......>
+      type = TokenType.TAG;
+      end = moveToMarkerEnd(pos, ">", input);
+    } else {
+      // the text goes up to the next "<"
+      type = TokenType.TEXT;
+      int i = input.indexOf('<', pos);
+      end = i > -1 ? i : len;
+    }
+    pos = end;
+    return true;
+  }
+
+  /**
+   * @return the type of the current token
+   * @since 4.1
+   */
+  public TokenType getType() {
+    return type;
+  }
+
+  /**
+   * @return the index of the first char of the current token in the input
+   * @since 4.1
+   */
+  public int getStart() {
+    return start;
+  }
+
+  /**
+   * @return the index after the last char of the current token in the input
+   * @since 4.1
+   */
+  public int getEnd() {
+    return end;
+  }
+
+  /**
+   * Gets the current token as a string.
+   *
+   * @return the current token
+   * @since 4.1
+   */
+  public String getToken() {
+    return input.substring(start, end);
+  }
+
+  /**
+   * Appends the current token to a builder, without creating a string for it.
+   *
+   * @param builder the builder
+   * @return the builder
+   * @since 4.1
+   */
+  public StringBuilder appendTo(StringBuilder builder) {
+    return builder.append(input, start, end);
+  }
+
   /**
    * Splits tag of XML String to an arrayList
    *
@@ -34,53 +161,9 @@ public class Tokenizer {
    */
   public static List<String> tokenize(String html) {
     ArrayList<String> tokens = new ArrayList<String>();
-    int pos = 0;
-    String token = "";
-    int len = html.length();
-    while (pos < len) {
-      char c = html.charAt(pos);
-
-      String ahead = html.substring(pos, pos > len - 4 ? len : pos + 4);
-
-      // a comment is starting
-      if ("<!--".equals(ahead)) {
-        // store the current token
-        if (token.length() > 0) {
-          tokens.add(token);
-        }
-
-        // clear the token
-        token = "";
-
-        // search the end of <......>
-        int end = moveToMarkerEnd(pos, "-->", html);
-        tokens.add(html.substring(pos, end));
-        pos = end;
-
-        // a new "<" token is starting
-      } else if ('<' == c) {
-
-        // store the current token
-        if (token.length() > 0) {
-          tokens.add(token);
-        }
-
-        // clear the token
-        token = "";
-
-        // search the end of <......>
-        int end = moveToMarkerEnd(pos, ">", html);
-        tokens.add(html.substring(pos, end));
-        pos = end;
-
-      } else {
-        token = token + c;
-        pos++;
-      }
-
-    }
-    if (token.length() > 0) {
-      tokens.add(token);
+    Tokenizer tokenizer = new Tokenizer(html);
+    while (tokenizer.next()) {
+      tokens.add(tokenizer.getToken());
     }
     return tokens;
   }
@@ -16,7 +16,6 @@
  */
 package org.exoplatform.social.common.xmlprocessor.filters;
 
-import java.util.List;
 import java.util.regex.Matcher;
 
 import org.apache.commons.lang.StringEscapeUtils;
@@ -53,9 +52,21 @@ public class XMLBalancerFilterPlugin extends BaseXMLFilterPlugin {
     Node parsingNode = rootNode;
     Node currentNode = rootNode;
 
-    List<String> xmlTokens = Tokenizer.tokenize(xmlString);
+    Tokenizer tokenizer = new Tokenizer(xmlString);
+
+    while (tokenizer.next()) {
+      String token = tokenizer.getToken();
+
+      // text never holds a tag
+      if (tokenizer.getType() == Tokenizer.TokenType.TEXT) {
+        parsingNode = new Node();
+        parsingNode.setParentNode(currentNode);
+        parsingNode.setContent(StringEscapeUtils.escapeHtml(token));
+
+        currentNode.addChildNode(parsingNode);
+        continue;
+      }
 
-    for (String token : xmlTokens) {
       Matcher startMatcher = DOMParser.TAGSTARTPATTERN.matcher(token);
       Matcher endMatcher = DOMParser.TAGCLOSEPATTERN.matcher(token);
 
@@ -17,7 +17,6 @@
 package org.exoplatform.social.common.xmlprocessor.filters;
 
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.regex.Matcher;
 
 import org.apache.commons.lang.StringEscapeUtils;
@@ -74,12 +73,17 @@ public class XMLTagFilterPlugin extends BaseXMLFilterPlugin {
   }
 
   private String nodeFilter(String xmlInput) {
-    List<String> xmlTokens = Tokenizer.tokenize(xmlInput);
-
-    for (int i = 0; i < xmlTokens.size(); i++) {
-      String token = xmlTokens.get(i);
-
+    StringBuilder xmlStringBuilder = new StringBuilder(xmlInput.length());
+    Tokenizer tokenizer = new Tokenizer(xmlInput);
+
+    while (tokenizer.next()) {
+      // text never holds a tag, copy it as is
+      if (tokenizer.getType() == Tokenizer.TokenType.TEXT) {
+        tokenizer.appendTo(xmlStringBuilder);
+        continue;
+      }
 
+      String token = tokenizer.getToken();
       Matcher startMatcher = DOMParser.TAGSTARTPATTERN.matcher(token);
       Matcher endMatcher = DOMParser.TAGCLOSEPATTERN.matcher(token);
 
@@ -87,9 +91,9 @@ public class XMLTagFilterPlugin extends BaseXMLFilterPlugin {
         String tag = startMatcher.group(1).toLowerCase();
 
         if (!allowedTags.containsKey(tag)) {
-          xmlTokens.set(i, StringEscapeUtils.escapeHtml(token));
+          xmlStringBuilder.append(StringEscapeUtils.escapeHtml(token));
         } else {
-          StringBuilder tagStringBuilder = new StringBuilder("<" + tag);
+          xmlStringBuilder.append("<").append(tag);
 
           String tokenBody = startMatcher.group(2);
           Matcher attributes = DOMParser.ATTRIBUTESPATTERN.matcher(tokenBody);
@@ -100,28 +104,26 @@ public class XMLTagFilterPlugin extends BaseXMLFilterPlugin {
             String attr = attributes.group(1).toLowerCase();
             String val = attributes.group(4) == null ? attributes.group(3) : attributes.group(4);
             if (attributesWhiteList.hasKey(attr)) {
-              tagStringBuilder.append(" " + attr + "=" + "\"" + val + "\"");
+              xmlStringBuilder.append(" ").append(attr).append("=\"").append(val).append("\"");
             }
           }
           if (DOMParser.SELFTCLOSETAGPATTERN.matcher(token).find()) {
-            tagStringBuilder.append(" />");
+            xmlStringBuilder.append(" />");
           } else {
-            tagStringBuilder.append(">");
+            xmlStringBuilder.append(">");
           }
-          xmlTokens.set(i, tagStringBuilder.toString());
         }
       } else if (endMatcher.find()) {
         String tag = endMatcher.group(1).toLowerCase();
         if (!allowedTags.containsKey(tag)) {
-          xmlTokens.set(i, StringEscapeUtils.escapeHtml(token));
+          xmlStringBuilder.append(StringEscapeUtils.escapeHtml(token));
+        } else {
+          xmlStringBuilder.append(token);
         }
+      } else {
+        xmlStringBuilder.append(token);
       }
     }
-    StringBuilder xmlStringBuilder = new StringBuilder();
-
-    for (String xmlToken : xmlTokens) {
-      xmlStringBuilder.append(xmlToken);
-    }
     return xmlStringBuilder.toString();
   }
 
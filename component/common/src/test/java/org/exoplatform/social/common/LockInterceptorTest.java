@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see<http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.common;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.common.LockInterceptor.LockTimeoutException;
+import org.gatein.pc.api.invocation.InvocationException;
+
+public class LockInterceptorTest extends TestCase {
+
+  private TestLockInterceptor interceptor;
+
+  /** the first failure of a worker thread, asserted once the threads are joined */
+  private AtomicReference<Throwable> failure;
+
+  @Override
+  protected void setUp() throws Exception {
+    interceptor = new TestLockInterceptor();
+    failure = new AtomicReference<Throwable>();
+  }
+
+  public void testSameIdIsSerialized() throws Exception {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; ++i) {
+      threads[i] = new Thread() {
+        public void run() {
+          try {
+            interceptor.invoke(new TestInvocation("session", new Invocation() {
+              public Object invokeNext() throws InvocationException {
+                int current = running.incrementAndGet();
+                int max;
+                while (current > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, current)) {
+                  // retry
+                }
+                pause(10);
+                running.decrementAndGet();
+                return null;
+              }
+            }));
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNoFailure();
+
+    //
+    assertEquals(1, maxRunning.get());
+    assertEquals(0, interceptor.getLockCount());
+    assertTrue(interceptor.getMaxQueueDepth() > 1);
+  }
+
+  public void testDifferentIdsDoNotWait() throws Exception {
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(1);
+    Thread blocker = new Thread() {
+      public void run() {
+        try {
+          interceptor.invoke(new TestInvocation("session1", new Invocation() {
+            public Object invokeNext() throws InvocationException {
+              entered.countDown();
+              awaitQuietly(done);
+              return null;
+            }
+          }));
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        }
+      }
+    };
+    blocker.start();
+    assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+    //
+    interceptor.setMaxWait(100);
+    assertEquals("ok", interceptor.invoke(new TestInvocation("session2", new Invocation() {
+      public Object invokeNext() throws InvocationException {
+        return "ok";
+      }
+    })));
+    assertEquals(1, interceptor.getLockCount());
+
+    //
+    done.countDown();
+    blocker.join();
+    assertNoFailure();
+    assertEquals(0, interceptor.getLockCount());
+  }
+
+  public void testTimeout() throws Exception {
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(1);
+    Thread blocker = new Thread() {
+      public void run() {
+        try {
+          interceptor.invoke(new TestInvocation("session", new Invocation() {
+            public Object invokeNext() throws InvocationException {
+              entered.countDown();
+              awaitQuietly(done);
+              return null;
+            }
+          }));
+        } catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        }
+      }
+    };
+    blocker.start();
+    assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+    //
+    interceptor.setMaxWait(50);
+    try {
+      interceptor.invoke(new TestInvocation("session", new Invocation() {
+        public Object invokeNext() throws InvocationException {
+          return null;
+        }
+      }));
+      fail("LockTimeoutException expected");
+    } catch (LockTimeoutException e) {
+      // expected
+    }
+    assertEquals(1, interceptor.getTimeoutCount());
+
+    //
+    done.countDown();
+    blocker.join();
+    assertNoFailure();
+    assertEquals(0, interceptor.getLockCount());
+  }
+
+  public void testNoLockId() throws Exception {
+    assertEquals("ok", interceptor.invoke(new TestInvocation(null, new Invocation() {
+      public Object invokeNext() throws InvocationException {
+        return "ok";
+      }
+    })));
+    assertEquals(0, interceptor.getLockCount());
+    assertEquals(0.0, interceptor.getAverageWaitTime(), 0.0);
+  }
+
+  private void assertNoFailure() {
+    Throwable t = failure.get();
+    if (t != null) {
+      AssertionError error = new AssertionError("Worker thread failed: " + t);
+      error.initCause(t);
+      throw error;
+    }
+  }
+
+  private static void pause(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class TestInvocation implements Invocation {
+
+    private final Object lockId;
+
+    private final Invocation next;
+
+    TestInvocation(Object lockId, Invocation next) {
+      this.lockId = lockId;
+      this.next = next;
+    }
+
+    public Object invokeNext() throws InvocationException {
+      return next.invokeNext();
+    }
+  }
+
+  private static class TestLockInterceptor extends LockInterceptor<TestInvocation> {
+
+    @Override
+    protected Object getLockId(TestInvocation invocation) throws InvocationException {
+      return invocation.lockId;
+    }
+  }
+
+}
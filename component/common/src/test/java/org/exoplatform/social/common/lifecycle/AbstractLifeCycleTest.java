@@ -20,6 +20,9 @@ package org.exoplatform.social.common.lifecycle;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
@@ -158,6 +161,69 @@ public class AbstractLifeCycleTest extends TestCase {
   }
 
 
+  public void testAsyncStatistics() {
+
+    AwaitingLifeCycle lifecycle = new AwaitingLifeCycle(asyncCompletionService);
+    lifecycle.addListener(new MockListener());
+    lifecycle.addListener(new MockFailingListener());
+
+    lifecycle.event1(null, "foo");
+    lifecycle.event1(null, "bar");
+
+    asyncCompletionService.waitCompletionFinished();
+
+    assertEquals(0, asyncCompletionService.getPendingCount());
+    assertEquals(0, asyncCompletionService.getQueueSize());
+    LifeCycleTaskStatistics statistics = asyncCompletionService.getStatistics().get("MockEvent");
+    assertNotNull(statistics);
+    assertEquals(4, statistics.getCompletedCount());
+    assertEquals(2, statistics.getFailureCount());
+    assertEquals(0, statistics.getRejectedCount());
+
+  }
+
+  public void testDiscardWhenQueueIsFull() throws Exception {
+
+    InitParams params = new InitParams();
+    params.addParameter(createParam("thread-number", "1"));
+    params.addParameter(createParam("async-execution", "true"));
+    params.addParameter(createParam("queue-size", "1"));
+    params.addParameter(createParam("rejection-policy", "discard"));
+    LifeCycleCompletionService service = new LifeCycleCompletionService(params);
+
+    //
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    service.addTask(new Callable<Object>() {
+      public Object call() throws Exception {
+        started.countDown();
+        release.await(5, TimeUnit.SECONDS);
+        return null;
+      }
+    }, "blocking");
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    // the first one is queued, the second one is discarded
+    Callable<Object> noop = new Callable<Object>() {
+      public Object call() throws Exception {
+        return null;
+      }
+    };
+    service.addTask(noop, "noop");
+    service.addTask(noop, "noop");
+    assertEquals(1, service.getQueueSize());
+    assertEquals(1, service.getStatistics().get("noop").getRejectedCount());
+
+    //
+    release.countDown();
+    service.waitCompletionFinished();
+    assertEquals(0, service.getPendingCount());
+    assertEquals(1, service.getStatistics().get("noop").getCompletedCount());
+    service.stop();
+
+  }
+
+
   class MockEvent extends LifeCycleEvent<String,String> {
 
     public MockEvent(String source, String payload) {
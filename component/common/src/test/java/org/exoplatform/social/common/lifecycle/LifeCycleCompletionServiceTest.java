@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see<http://www.gnu.org/licenses/>.
+ */
+package org.exoplatform.social.common.lifecycle;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.container.xml.ValueParam;
+
+public class LifeCycleCompletionServiceTest extends TestCase {
+
+  private LifeCycleCompletionService service;
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (service != null) {
+      service.stop();
+    }
+    super.tearDown();
+  }
+
+  public void testBlockFromWorker() throws Exception {
+    service = createService(LifeCycleCompletionService.POLICY_BLOCK);
+    final CountDownLatch queued = new CountDownLatch(1);
+    final AtomicReference<String> runner = new AtomicReference<String>();
+
+    // a listener running on the only worker adds two tasks, the second one finds the queue full
+    service.addTask(new Callable<Object>() {
+      public Object call() throws Exception {
+        service.addTask(new Counter(new AtomicInteger()));
+        service.addTask(new Callable<Object>() {
+          public Object call() throws Exception {
+            runner.set(Thread.currentThread().getName());
+            return null;
+          }
+        });
+        queued.countDown();
+        return null;
+      }
+    });
+
+    assertTrue(queued.await(5, TimeUnit.SECONDS));
+    service.waitCompletionFinished();
+    assertEquals(0, service.getPendingCount());
+    assertEquals("social-lifecycle-1", runner.get());
+  }
+
+  public void testCallerRunsAfterShutdown() throws Exception {
+    service = createService(LifeCycleCompletionService.POLICY_CALLER_RUNS);
+    AtomicInteger calls = new AtomicInteger();
+    service.addTask(new Counter(calls), "test");
+    service.waitCompletionFinished();
+    assertEquals(1, calls.get());
+
+    // rejected rather than dropped, it is no more pending
+    service.stop();
+    service.addTask(new Counter(calls), "test");
+    assertEquals(1, calls.get());
+    assertEquals(0, service.getPendingCount());
+    assertEquals(1, service.getStatistics().get("test").getRejectedCount());
+  }
+
+  private LifeCycleCompletionService createService(String policy) {
+    InitParams params = new InitParams();
+    params.addParameter(valueParam("thread-number", "1"));
+    params.addParameter(valueParam("async-execution", "true"));
+    params.addParameter(valueParam("queue-size", "1"));
+    params.addParameter(valueParam("rejection-policy", policy));
+    params.addParameter(valueParam("shutdown-timeout", "1"));
+    return new LifeCycleCompletionService(params);
+  }
+
+  private ValueParam valueParam(String name, String value) {
+    ValueParam param = new ValueParam();
+    param.setName(name);
+    param.setValue(value);
+    return param;
+  }
+
+  private static class Counter implements Callable<Object> {
+
+    private final AtomicInteger calls;
+
+    Counter(AtomicInteger calls) {
+      this.calls = calls;
+    }
+
+    public Object call() throws Exception {
+      calls.incrementAndGet();
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.common.router;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.common.router.ExoRouter.Route;
+import org.exoplatform.social.common.router.ExoRouter.RouteMatch;
+
+public class RouteTrieTest extends TestCase {
+
+  /** The routes of social-extension, with the forum ones of the test configuration. */
+  private static final String[][] ROUTES = {
+    { "activity.show", "/activity/{activityID}" },
+    { "activity.stream.owner.show", "/activities/{streamOwnerId}" },
+    { "profile.owner.show", "/profile/{streamOwnerId}" },
+    { "connections.network.show", "/connections/{relationshipStatus}/{streamOwnerId}" },
+    { "space.access", "{spacePrettyName}" },
+    { "space.app.access", "{spacePrettyName}/{appName}" },
+    { "space.app.page.access", "{spacePrettyName}/{appName}/{<.*>path}" },
+    { "forum.home", "/{pageID}/ForumService" },
+    { "forum.topic.show", "/{pageID}/topic/{topicID}" },
+    { "forum.topic.reply", "/{pageID}/topic/{topicID}/reply" },
+    { "forum.topic.page", "/{pageID}/topic/{topicID}/page/{pageNo}" },
+    { "forum.show", "/{pageID}/forum/{forumID}" },
+    { "forum.page", "/{pageID}/{<[0-9]+>page}" },
+  };
+
+  private static final String[] PATHS = {
+    "/activity/4437hg2121", "/activities/mary", "/profile/mary", "/profile/", "/connections/network/mary",
+    "mary-space", "mary-space/wiki", "mary-space/wiki/mypage/my_sub_page", "", "/", "/12345/ForumService",
+    "/12345/topic/topic987654321", "/12345/topic/topic987654321/reply", "/12345/topic/topic987654321/page/3",
+    "/12345/fail/topic987654321", "/12345/forum/f1", "/12345/42", "/12345/topic", "/activity/a/b",
+    "/activity/a.b", "/activity/", "mary-space/", "mary-space/wiki/",
+  };
+
+  public void testMatchesAsPatterns() throws Exception {
+    List<Route> routes = routes();
+    RouteTrie trie = new RouteTrie(routes);
+    for (String path : PATHS) {
+      Route expected = null;
+      Map<String, String> expectedArgs = null;
+      for (Route route : routes) {
+        expectedArgs = route.matches(path);
+        if (expectedArgs != null) {
+          expected = route;
+          break;
+        }
+      }
+
+      //
+      RouteMatch match = trie.match(path);
+      if (expected == null) {
+        assertNull(path, match);
+      }
+      else {
+        assertNotNull(path, match);
+        assertSame(path, expected, match.getRoute());
+        assertEquals(path, expectedArgs, match.getArgs());
+      }
+    }
+  }
+
+  public void testFirstRouteWins() throws Exception {
+    List<Route> routes = new ArrayList<Route>();
+    routes.add(ExoRouter.getRoute("/{pageID}/{<.*>path}", "catch.all"));
+    routes.add(ExoRouter.getRoute("/activity/{activityID}", "activity.show"));
+    assertEquals("catch.all", new RouteTrie(routes).match("/activity/1").getAction());
+
+    //
+    routes.add(0, ExoRouter.getRoute("/{pageID}/{id}", "page.show"));
+    RouteMatch match = new RouteTrie(routes).match("/activity/1");
+    assertEquals("page.show", match.getAction());
+    assertEquals("activity", match.get("pageID"));
+    assertEquals("1", match.get("id"));
+  }
+
+  public void testMatchIsImmutable() throws Exception {
+    RouteMatch match = new RouteTrie(routes()).match("/profile/mary");
+    try {
+      match.getArgs().put("streamOwnerId", "john");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    assertNull(match.getRoute().localArgs);
+  }
+
+  private List<Route> routes() {
+    List<Route> routes = new ArrayList<Route>();
+    for (String[] route : ROUTES) {
+      routes.add(ExoRouter.getRoute(route[1], route[0]));
+    }
+    return routes;
+  }
+
+}
@@ -59,4 +59,47 @@ public class TokenizerTest extends TestCase {
     assertEquals("</a>", result.get(2));
   }
 
+  public void testTokenRanges() {
+    String input = "a <b>c<!-- d --></b";
+    Tokenizer tokenizer = new Tokenizer(input);
+
+    assertTrue(tokenizer.next());
+    assertEquals(Tokenizer.TokenType.TEXT, tokenizer.getType());
+    assertEquals(0, tokenizer.getStart());
+    assertEquals(2, tokenizer.getEnd());
+
+    assertTrue(tokenizer.next());
+    assertEquals(Tokenizer.TokenType.TAG, tokenizer.getType());
+    assertEquals("<b>", tokenizer.getToken());
+
+    assertTrue(tokenizer.next());
+    assertEquals(Tokenizer.TokenType.TEXT, tokenizer.getType());
+    assertEquals("c", tokenizer.appendTo(new StringBuilder()).toString());
+
+    assertTrue(tokenizer.next());
+    assertEquals(Tokenizer.TokenType.COMMENT, tokenizer.getType());
+    assertEquals("<!-- d -->", tokenizer.getToken());
+
+    // not closed
+    assertTrue(tokenizer.next());
+    assertEquals(Tokenizer.TokenType.TAG, tokenizer.getType());
+    assertEquals("</b", tokenizer.getToken());
+    assertEquals(input.length(), tokenizer.getEnd());
+
+    assertFalse(tokenizer.next());
+  }
+
+  public void testLongText() {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      input.append("text ");
+    }
+    input.append("<b>");
+
+    List<String> result = Tokenizer.tokenize(input.toString());
+    assertEquals(2, result.size());
+    assertEquals(500000, result.get(0).length());
+    assertEquals("<b>", result.get(1));
+  }
+
 }
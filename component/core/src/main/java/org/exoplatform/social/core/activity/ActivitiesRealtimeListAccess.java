@@ -130,6 +130,32 @@ public class ActivitiesRealtimeListAccess implements RealtimeListAccess<ExoSocia
     return Collections.emptyList();
   }
 
+  /**
+   * Loads the activities after a cursor, see {@link ActivityCursor}. The cursor of the next page is built from the
+   * returned activities by {@link ActivityCursor#next(ActivityCursor, List)}.
+   *
+   * @param cursor the cursor returned with the previous page, null for the first page
+   * @param limit the max number of activities
+   * @return the activities
+   * @since 4.1
+   */
+  public List<ExoSocialActivity> loadAfter(ActivityCursor cursor, int limit) {
+    if (!isCursorSupported()) {
+      throw new UnsupportedOperationException("No cursor for the activity type " + activityType);
+    }
+    return activityStorage.getActivitiesAfter(activityType, ownerIdentity, cursor, limit);
+  }
+
+  /**
+   * Tells if the activities of this list can be loaded with {@link #loadAfter(ActivityCursor, int)}.
+   *
+   * @return false for the activities of an identity as seen by a viewer
+   * @since 4.1
+   */
+  public boolean isCursorSupported() {
+    return activityType != ActivityType.VIEW_USER_ACTIVITIES;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.activity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+
+/**
+ * Position in an activity stream, ordered by last update time, after the last activity of a page. The next page
+ * holds the activities updated at or before that time, except the ones of the previous pages updated at that time.
+ * Unlike an offset, the position is resolved by a range condition in the query, so that loading a deep page costs
+ * the same as loading the first one.
+ *
+ * @since 4.1
+ */
+public final class ActivityCursor {
+
+  private static final char SEPARATOR = '.';
+
+  private static final int RADIX = 36;
+
+  private final long lastUpdated;
+
+  private final Set<String> activityIds;
+
+  /**
+   * @param lastUpdated the last update time of the last activity already loaded
+   * @param activityIds the ids of the activities already loaded which were updated at that time
+   */
+  public ActivityCursor(long lastUpdated, Collection<String> activityIds) {
+    this.lastUpdated = lastUpdated;
+    this.activityIds = Collections.unmodifiableSet(new LinkedHashSet<String>(activityIds));
+  }
+
+  public long getLastUpdated() {
+    return lastUpdated;
+  }
+
+  public Set<String> getActivityIds() {
+    return activityIds;
+  }
+
+  /**
+   * Removes the activities already loaded from a list of activities fetched at or before the cursor time.
+   *
+   * @param fetched the activities fetched, in the stream order
+   * @param limit the max number of activities to keep
+   * @return the activities of the next page
+   */
+  public List<ExoSocialActivity> filter(List<ExoSocialActivity> fetched, int limit) {
+    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>(Math.min(fetched.size(), limit));
+    for (ExoSocialActivity activity : fetched) {
+      if (activities.size() == limit) {
+        break;
+      }
+      if (!activityIds.contains(activity.getId()) || getTime(activity) != lastUpdated) {
+        activities.add(activity);
+      }
+    }
+    return activities;
+  }
+
+  /**
+   * Gets the cursor after a page of activities.
+   *
+   * @param previous the cursor the page was loaded from, null for the first page
+   * @param page the activities of the page, in the stream order
+   * @return the cursor of the next page, or null if the page is empty
+   */
+  public static ActivityCursor next(ActivityCursor previous, List<ExoSocialActivity> page) {
+    if (page == null || page.isEmpty()) {
+      return null;
+    }
+
+    //
+    long time = getTime(page.get(page.size() - 1));
+    Set<String> ids = new LinkedHashSet<String>();
+    if (previous != null && previous.lastUpdated == time) {
+      ids.addAll(previous.activityIds);
+    }
+    for (ExoSocialActivity activity : page) {
+      if (getTime(activity) == time) {
+        ids.add(activity.getId());
+      }
+    }
+    return new ActivityCursor(time, ids);
+  }
+
+  /**
+   * Encodes the cursor as an url safe string, to be given back as is by the clients.
+   *
+   * @return the encoded cursor
+   */
+  public String encode() {
+    StringBuilder value = new StringBuilder(Long.toString(lastUpdated, RADIX));
+    for (String id : activityIds) {
+      value.append(SEPARATOR).append(id);
+    }
+    return value.toString();
+  }
+
+  /**
+   * Decodes a cursor encoded by {@link #encode()}.
+   *
+   * @param value the encoded cursor
+   * @return the cursor
+   * @throws IllegalArgumentException if the value is not a valid cursor
+   */
+  public static ActivityCursor decode(String value) throws IllegalArgumentException {
+    if (value == null || value.length() == 0) {
+      throw new IllegalArgumentException("Empty activity cursor");
+    }
+
+    //
+    List<String> parts = new ArrayList<String>();
+    int start = 0;
+    int end;
+    while ((end = value.indexOf(SEPARATOR, start)) != -1) {
+      parts.add(value.substring(start, end));
+      start = end + 1;
+    }
+    parts.add(value.substring(start));
+
+    //
+    long time;
+    try {
+      time = Long.parseLong(parts.get(0), RADIX);
+    }
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid activity cursor: " + value, e);
+    }
+    List<String> ids = parts.subList(1, parts.size());
+    if (ids.isEmpty() || ids.contains("")) {
+      throw new IllegalArgumentException("Invalid activity cursor: " + value);
+    }
+    return new ActivityCursor(time, ids);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ActivityCursor)) {
+      return false;
+    }
+    ActivityCursor that = (ActivityCursor) o;
+    return lastUpdated == that.lastUpdated && activityIds.equals(that.activityIds);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (int) (lastUpdated ^ (lastUpdated >>> 32)) + activityIds.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return encode();
+  }
+
+  private static long getTime(ExoSocialActivity activity) {
+    return activity.getUpdated() != null ? activity.getUpdated().getTime() : activity.getPostedTime();
+  }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.activity;
+
+/**
+ * A lightweight notice that an activity of a stream has changed, pushed to the viewers of the stream. It only
+ * carries ids: the viewer loads the activity itself when it decides to refresh its stream.
+ *
+ * @since 4.1
+ */
+public final class ActivityNotification {
+
+  public static enum Type {
+    /** A new activity has been posted. */
+    CREATED,
+    /** The activity has been commented, liked or edited. */
+    UPDATED,
+    /** The activity has been deleted or hidden. */
+    REMOVED
+  }
+
+  private final long sequence;
+
+  private final Type type;
+
+  private final String activityId;
+
+  private final String streamOwnerId;
+
+  private final String posterId;
+
+  private final long time;
+
+  public ActivityNotification(long sequence, Type type, String activityId, String streamOwnerId, String posterId,
+                              long time) {
+    this.sequence = sequence;
+    this.type = type;
+    this.activityId = activityId;
+    this.streamOwnerId = streamOwnerId;
+    this.posterId = posterId;
+    this.time = time;
+  }
+
+  /**
+   * @return the position of the notification in the notifications of the node, used as the cursor of the viewers
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  public String getActivityId() {
+    return activityId;
+  }
+
+  public String getStreamOwnerId() {
+    return streamOwnerId;
+  }
+
+  public String getPosterId() {
+    return posterId;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ActivityNotification[sequence=%d, type=%s, activityId=%s, streamOwnerId=%s]", sequence, type,
+                         activityId, streamOwnerId);
+  }
+
+}
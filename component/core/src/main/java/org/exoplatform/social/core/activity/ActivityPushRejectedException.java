@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.activity;
+
+/**
+ * Thrown when a viewer cannot wait for notifications because too many requests are already waiting. The viewer
+ * should come back after the suggested delay instead of polling again at once.
+ *
+ * @since 4.1
+ */
+public class ActivityPushRejectedException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int retryAfter;
+
+  public ActivityPushRejectedException(int retryAfter) {
+    super("Too many requests waiting for activity notifications, retry after " + retryAfter + "s");
+    this.retryAfter = retryAfter;
+  }
+
+  /**
+   * @return the time in seconds after which the viewer should wait again
+   */
+  public int getRetryAfter() {
+    return retryAfter;
+  }
+
+}
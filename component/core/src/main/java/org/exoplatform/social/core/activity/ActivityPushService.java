@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.activity;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Pushes the changes of the activity streams to the viewers waiting for them, so that the clients do not need
+ * to poll the number of newer activities of their streams.
+ *
+ * A viewer subscribes with the stream owners of its feed (connections, spaces and itself), then waits for the
+ * notifications following a cursor. The audience of an activity is computed once when it is written, from the
+ * viewers subscribed to its stream owner and the identities involved in it.
+ *
+ * A waiting viewer holds a request thread, the number of waiting viewers must stay well below the number of
+ * request threads of the node.
+ *
+ * @since 4.1
+ */
+public interface ActivityPushService {
+
+  /**
+   * Tells whether the notifications are pushed in the current container.
+   *
+   * @return true if the viewers can subscribe
+   */
+  public boolean isEnabled();
+
+  /**
+   * Subscribes a viewer, or updates the stream owners of an existing subscription without losing its pending
+   * notifications.
+   *
+   * @param viewerId the viewer identity id
+   * @param viewerRemoteId the viewer user name
+   * @param sourceIds the identity ids of the stream owners of the feed of the viewer
+   */
+  public void subscribe(String viewerId, String viewerRemoteId, Collection<String> sourceIds);
+
+  /**
+   * Tells whether a viewer is subscribed with up to date stream owners.
+   *
+   * @param viewerId the viewer identity id
+   * @return false if the viewer must subscribe again
+   */
+  public boolean isSubscribed(String viewerId);
+
+  /**
+   * Gets the cursor of the last notification, to give to a viewer starting to wait for notifications.
+   *
+   * @return the cursor
+   */
+  public long getCursor();
+
+  /**
+   * Waits for the notifications of a viewer following a cursor.
+   *
+   * @param viewerId the viewer identity id
+   * @param cursor the sequence of the last notification received by the viewer
+   * @param timeout the max time to wait in milliseconds, bounded by the service
+   * @return the notifications, empty when none came in time, or null when some were lost and the viewer must
+   *         reload its stream and restart from the current cursor
+   * @throws InterruptedException
+   * @throws ActivityPushRejectedException if the viewer asks to wait while too many requests are already waiting
+   */
+  public List<ActivityNotification> poll(String viewerId, long cursor, long timeout)
+      throws InterruptedException, ActivityPushRejectedException;
+
+  /**
+   * Notifies the audience of an activity.
+   *
+   * @param type the kind of change
+   * @param activityId the activity id
+   * @param posterId the identity id of the poster
+   * @param streamOwnerId the identity id of the stream owner
+   * @param viewerIds the other identity ids which see the activity (poster, mentioners, commenters, likers)
+   */
+  public void publish(ActivityNotification.Type type, String activityId, String posterId, String streamOwnerId,
+                      Collection<String> viewerIds);
+
+  /**
+   * Marks the subscription of an identity as out of date, its stream owners have changed.
+   *
+   * @param identityId the identity id
+   */
+  public void invalidateSubscription(String identityId);
+
+  /**
+   * Marks the subscriptions of users as out of date, their stream owners have changed.
+   *
+   * @param remoteIds the user names
+   */
+  public void invalidateUserSubscriptions(String... remoteIds);
+
+}
@@ -0,0 +1,742 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.activity;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.container.xml.ValueParam;
+import org.exoplatform.management.annotations.Managed;
+import org.exoplatform.management.annotations.ManagedDescription;
+import org.exoplatform.management.jmx.annotations.NameTemplate;
+import org.exoplatform.management.jmx.annotations.Property;
+import org.exoplatform.services.cache.CacheListener;
+import org.exoplatform.services.cache.CacheListenerContext;
+import org.exoplatform.services.cache.CacheService;
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+
+/**
+ * In memory implementation of the {@link ActivityPushService}.
+ *
+ * Each subscribed viewer has a channel keeping its last notifications, the waiting requests are woken up when a
+ * notification is added to their channel. A notification of an update replaces the pending notification of the
+ * same activity. The number of channels and the size of each channel are bounded, a viewer whose notifications
+ * have been dropped is told to reload its stream. The channels of the viewers which stopped waiting are dropped
+ * after an idle time.
+ *
+ * The channels are per node: a viewer waits on the node which receives its requests. On a cluster, the
+ * notifications and the subscription changes of each node are relayed to the other nodes through the
+ * {@value #RELAY_CACHE_NAME}: every node puts its own under a key prefixed by its id and delivers the ones put by
+ * the others to its channels. This cache must replicate its values, an invalidation cache does not carry them.
+ *
+ * @since 4.1
+ */
+@Managed
+@ManagedDescription("Social activity push")
+@NameTemplate({
+  @Property(key = "service", value = "social"),
+  @Property(key = "view", value = "activitypush")
+})
+public class ActivityPushServiceImpl implements ActivityPushService {
+
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(ActivityPushServiceImpl.class);
+
+  /** The cache relaying the notifications between the nodes of a cluster */
+  public static final String RELAY_CACHE_NAME = "ActivityNotificationCache";
+
+  private static final String ENABLED_KEY = "enabled";
+  private static final String CHANNEL_CAPACITY_KEY = "channel-capacity";
+  private static final String MAX_VIEWERS_KEY = "max-viewers";
+  private static final String MAX_CONNECTIONS_KEY = "max-connections";
+  private static final String MAX_WAIT_KEY = "max-wait";
+  private static final String IDLE_TIME_KEY = "idle-time";
+  private static final String RETRY_AFTER_KEY = "retry-after";
+  private static final String CLUSTER_KEY = "cluster";
+
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final int DEFAULT_CHANNEL_CAPACITY = 50;
+  private static final int DEFAULT_MAX_VIEWERS = 10000;
+  private static final int DEFAULT_MAX_CONNECTIONS = 20;
+  private static final int DEFAULT_MAX_WAIT = 25;
+  private static final int DEFAULT_IDLE_TIME = 120;
+  private static final int DEFAULT_RETRY_AFTER = 15;
+  private static final boolean DEFAULT_CLUSTER = false;
+
+  private final boolean enabled;
+  private final int channelCapacity;
+  private final int maxViewers;
+  private final int maxConnections;
+
+  /** in seconds */
+  private final int retryAfter;
+
+  /** in milliseconds */
+  private final long maxWait;
+
+  /** in milliseconds */
+  private final long idleTime;
+
+  /** viewer identity id -> channel, in access order so that the idle viewers are evicted first */
+  private final Map<String, Channel> channels;
+
+  /** stream owner identity id -> viewer identity ids */
+  private final ConcurrentMap<String, Set<String>> viewersBySource;
+
+  /** user name -> viewer identity id */
+  private final ConcurrentMap<String, String> viewersByRemoteId;
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  private final AtomicInteger connections = new AtomicInteger();
+  private final AtomicInteger peakConnections = new AtomicInteger();
+  private final AtomicLong polls = new AtomicLong();
+  private final AtomicLong rejectedPolls = new AtomicLong();
+  private final AtomicLong resets = new AtomicLong();
+  private final AtomicLong published = new AtomicLong();
+  private final AtomicLong delivered = new AtomicLong();
+  private final AtomicLong relayed = new AtomicLong();
+  private final AtomicLong received = new AtomicLong();
+
+  /** the id of this node in the keys of the relay cache */
+  private final String nodeId = UUID.randomUUID().toString();
+
+  /** null when the service is not clustered */
+  private final ExoCache<String, RelayedChange> relay;
+
+  public ActivityPushServiceImpl(InitParams params) {
+    this(params, (ExoCache<String, RelayedChange>) null);
+  }
+
+  public ActivityPushServiceImpl(InitParams params, CacheService cacheService) {
+    this(params, isRelayed(params, cacheService) ? cacheService.<String, RelayedChange>getCacheInstance(RELAY_CACHE_NAME)
+                                                 : null);
+  }
+
+  /**
+   * @param relay the cache relaying the changes between the nodes, null when the service is not clustered
+   */
+  ActivityPushServiceImpl(InitParams params, ExoCache<String, RelayedChange> relay) {
+
+    //
+    this.enabled = getBoolean(params, ENABLED_KEY, DEFAULT_ENABLED);
+    this.channelCapacity = getInt(params, CHANNEL_CAPACITY_KEY, DEFAULT_CHANNEL_CAPACITY);
+    this.maxViewers = getInt(params, MAX_VIEWERS_KEY, DEFAULT_MAX_VIEWERS);
+    this.maxConnections = getInt(params, MAX_CONNECTIONS_KEY, DEFAULT_MAX_CONNECTIONS);
+    this.maxWait = getInt(params, MAX_WAIT_KEY, DEFAULT_MAX_WAIT) * 1000L;
+    this.idleTime = getInt(params, IDLE_TIME_KEY, DEFAULT_IDLE_TIME) * 1000L;
+    this.retryAfter = getInt(params, RETRY_AFTER_KEY, DEFAULT_RETRY_AFTER);
+
+    //
+    this.viewersBySource = new ConcurrentHashMap<String, Set<String>>();
+    this.viewersByRemoteId = new ConcurrentHashMap<String, String>();
+    this.channels = Collections.synchronizedMap(new LinkedHashMap<String, Channel>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Channel> eldest) {
+        if (size() > maxViewers) {
+          unregister(eldest.getValue());
+          eldest.getValue().close();
+          return true;
+        }
+        return false;
+      }
+    });
+
+    //
+    this.relay = relay;
+    if (relay != null) {
+      relay.addCacheListener(new RelayListener());
+    }
+
+    //
+    LOG.info(String.format("Activity push %s (channel capacity: %d, max viewers: %d, max connections: %d, retry after: %ds, relayed: %s)",
+                           enabled ? "enabled" : "disabled", channelCapacity, maxViewers, maxConnections, retryAfter,
+                           relay != null));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void subscribe(String viewerId, String viewerRemoteId, Collection<String> sourceIds) {
+
+    if (viewerId == null) {
+      return;
+    }
+
+    //
+    List<String> sources = new ArrayList<String>(sourceIds);
+    synchronized (channels) {
+      Channel channel = channels.get(viewerId);
+      if (channel == null) {
+        channel = new Channel(viewerId, viewerRemoteId, sequence.get(), channelCapacity);
+        channels.put(viewerId, channel);
+      }
+      else {
+        unregister(channel);
+      }
+      channel.sourceIds = sources;
+      channel.upToDate = true;
+      register(channel);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isSubscribed(String viewerId) {
+    Channel channel = viewerId != null ? channels.get(viewerId) : null;
+    return channel != null && channel.upToDate;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public long getCursor() {
+    return sequence.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<ActivityNotification> poll(String viewerId, long cursor, long timeout)
+      throws InterruptedException, ActivityPushRejectedException {
+
+    Channel channel = viewerId != null ? channels.get(viewerId) : null;
+    if (channel == null || cursor > sequence.get()) {
+      resets.incrementAndGet();
+      return null;
+    }
+
+    //
+    polls.incrementAndGet();
+    List<ActivityNotification> notifications = channel.await(cursor, 0);
+    if (notifications != null && notifications.isEmpty() && timeout > 0 && maxWait > 0) {
+      int current = connections.incrementAndGet();
+      if (current > maxConnections) {
+        // Too many waiting requests, the client must back off rather than poll again at once
+        connections.decrementAndGet();
+        rejectedPolls.incrementAndGet();
+        throw new ActivityPushRejectedException(retryAfter);
+      }
+      try {
+        updatePeak(current);
+        notifications = channel.await(cursor, Math.min(timeout, maxWait));
+      }
+      finally {
+        connections.decrementAndGet();
+      }
+    }
+    if (notifications == null) {
+      resets.incrementAndGet();
+    }
+    return notifications;
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void publish(ActivityNotification.Type type, String activityId, String posterId, String streamOwnerId,
+                      Collection<String> viewerIds) {
+
+    deliver(type, activityId, posterId, streamOwnerId, viewerIds);
+    relay(new RelayedChange(type, activityId, posterId, streamOwnerId, viewerIds, null, null));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void invalidateSubscription(String identityId) {
+
+    if (identityId == null) {
+      return;
+    }
+
+    //
+    invalidate(identityId);
+    relay(new RelayedChange(null, null, null, null, null, Collections.singletonList(identityId), null));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void invalidateUserSubscriptions(String... remoteIds) {
+
+    if (remoteIds == null) {
+      return;
+    }
+
+    //
+    List<String> names = new ArrayList<String>();
+    for (String remoteId : remoteIds) {
+      if (remoteId != null) {
+        invalidate(viewersByRemoteId.get(remoteId));
+        names.add(remoteId);
+      }
+    }
+    if (!names.isEmpty()) {
+      relay(new RelayedChange(null, null, null, null, null, null, names));
+    }
+
+  }
+
+  @Managed
+  @ManagedDescription("The number of subscribed viewers")
+  public int getNumberOfSubscriptions() {
+    return channels.size();
+  }
+
+  @Managed
+  @ManagedDescription("The number of requests waiting for notifications")
+  public int getNumberOfConnections() {
+    return connections.get();
+  }
+
+  @Managed
+  @ManagedDescription("The highest number of requests waiting for notifications at the same time")
+  public int getPeakConnections() {
+    return peakConnections.get();
+  }
+
+  @Managed
+  @ManagedDescription("The number of requests for notifications")
+  public long getPolls() {
+    return polls.get();
+  }
+
+  @Managed
+  @ManagedDescription("The number of requests answered without waiting because of the max connections")
+  public long getRejectedPolls() {
+    return rejectedPolls.get();
+  }
+
+  @Managed
+  @ManagedDescription("The number of requests told to reload their stream")
+  public long getResets() {
+    return resets.get();
+  }
+
+  @Managed
+  @ManagedDescription("The number of published notifications")
+  public long getPublished() {
+    return published.get();
+  }
+
+  @Managed
+  @ManagedDescription("The number of notifications added to the channels of the viewers")
+  public long getDelivered() {
+    return delivered.get();
+  }
+
+  @Managed
+  @ManagedDescription("The number of changes relayed to the other nodes of the cluster")
+  public long getRelayed() {
+    return relayed.get();
+  }
+
+  @Managed
+  @ManagedDescription("The number of changes received from the other nodes of the cluster")
+  public long getReceived() {
+    return received.get();
+  }
+
+  @Managed
+  @ManagedDescription("Resets the statistics")
+  public void resetStatistics() {
+    peakConnections.set(connections.get());
+    polls.set(0);
+    rejectedPolls.set(0);
+    resets.set(0);
+    published.set(0);
+    delivered.set(0);
+    received.set(0);
+  }
+
+  /**
+   * Adds a notification to the channels of the audience of an activity on this node.
+   */
+  private void deliver(ActivityNotification.Type type, String activityId, String posterId, String streamOwnerId,
+                       Collection<String> viewerIds) {
+
+    if (channels.isEmpty()) {
+      return;
+    }
+
+    //
+    Set<String> audience = audience(streamOwnerId, viewerIds);
+    if (audience.isEmpty()) {
+      return;
+    }
+
+    //
+    long now = System.currentTimeMillis();
+    ActivityNotification notification = new ActivityNotification(sequence.incrementAndGet(), type, activityId,
+                                                                  streamOwnerId, posterId, now);
+    published.incrementAndGet();
+    for (String viewerId : audience) {
+      Channel channel = channels.get(viewerId);
+      if (channel == null) {
+        continue;
+      }
+      if (channel.isIdle(now, idleTime)) {
+        drop(channel);
+      }
+      else {
+        channel.add(notification);
+        delivered.incrementAndGet();
+      }
+    }
+
+  }
+
+  private void invalidate(String identityId) {
+
+    Channel channel = identityId != null ? channels.get(identityId) : null;
+    if (channel != null) {
+      channel.upToDate = false;
+    }
+
+  }
+
+  /**
+   * Gives a change of this node to the other nodes of the cluster.
+   */
+  private void relay(RelayedChange change) {
+
+    if (relay == null) {
+      return;
+    }
+
+    //
+    try {
+      relay.put(nodeId + ":" + relayed.incrementAndGet(), change);
+    }
+    catch (Exception e) {
+      LOG.warn("Could not relay the activity notification to the other nodes", e);
+    }
+
+  }
+
+  /**
+   * Applies a change relayed by another node.
+   */
+  private void receive(String key, RelayedChange change) {
+
+    if (change == null || key == null || key.startsWith(nodeId + ":")) {
+      return;
+    }
+
+    //
+    received.incrementAndGet();
+    if (change.type != null) {
+      deliver(change.type, change.activityId, change.posterId, change.streamOwnerId, change.viewerIds);
+    }
+    if (change.identityIds != null) {
+      for (String identityId : change.identityIds) {
+        invalidate(identityId);
+      }
+    }
+    if (change.remoteIds != null) {
+      for (String remoteId : change.remoteIds) {
+        invalidate(viewersByRemoteId.get(remoteId));
+      }
+    }
+
+  }
+
+  private void updatePeak(int current) {
+    int peak = peakConnections.get();
+    while (current > peak && !peakConnections.compareAndSet(peak, current)) {
+      peak = peakConnections.get();
+    }
+  }
+
+  private void drop(Channel channel) {
+
+    synchronized (channels) {
+      if (channels.get(channel.viewerId) == channel) {
+        channels.remove(channel.viewerId);
+        unregister(channel);
+      }
+    }
+    channel.close();
+
+  }
+
+  private Set<String> audience(String streamOwnerId, Collection<String> viewerIds) {
+
+    Set<String> audience = new HashSet<String>();
+    if (streamOwnerId != null) {
+      Set<String> viewers = viewersBySource.get(streamOwnerId);
+      if (viewers != null) {
+        audience.addAll(viewers);
+      }
+    }
+    if (viewerIds != null) {
+      audience.addAll(viewerIds);
+    }
+    return audience;
+
+  }
+
+  private void register(Channel channel) {
+
+    for (String sourceId : channel.sourceIds) {
+      Set<String> viewers = viewersBySource.get(sourceId);
+      if (viewers == null) {
+        viewers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        Set<String> phantom = viewersBySource.putIfAbsent(sourceId, viewers);
+        if (phantom != null) {
+          viewers = phantom;
+        }
+      }
+      viewers.add(channel.viewerId);
+    }
+    if (channel.viewerRemoteId != null) {
+      viewersByRemoteId.put(channel.viewerRemoteId, channel.viewerId);
+    }
+
+  }
+
+  private void unregister(Channel channel) {
+
+    for (String sourceId : channel.sourceIds) {
+      Set<String> viewers = viewersBySource.get(sourceId);
+      if (viewers != null) {
+        viewers.remove(channel.viewerId);
+        if (viewers.isEmpty()) {
+          viewersBySource.remove(sourceId, viewers);
+        }
+      }
+    }
+    if (channel.viewerRemoteId != null) {
+      viewersByRemoteId.remove(channel.viewerRemoteId, channel.viewerId);
+    }
+
+  }
+
+  private static boolean isRelayed(InitParams params, CacheService cacheService) {
+    return cacheService != null && getBoolean(params, ENABLED_KEY, DEFAULT_ENABLED)
+        && getBoolean(params, CLUSTER_KEY, DEFAULT_CLUSTER);
+  }
+
+  private static boolean getBoolean(InitParams params, String key, boolean defaultValue) {
+    try {
+      ValueParam param = params.getValueParam(key);
+      return Boolean.valueOf(param.getValue());
+    }
+    catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+  private static int getInt(InitParams params, String key, int defaultValue) {
+    try {
+      ValueParam param = params.getValueParam(key);
+      return Integer.valueOf(param.getValue());
+    }
+    catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * A notification or a subscription change put in the relay cache by a node.
+   */
+  static class RelayedChange implements Serializable {
+
+    private static final long serialVersionUID = 2418537204853462195L;
+
+    /** null for a subscription change */
+    private final ActivityNotification.Type type;
+    private final String activityId;
+    private final String posterId;
+    private final String streamOwnerId;
+    private final ArrayList<String> viewerIds;
+
+    /** the identities and users whose subscriptions are out of date */
+    private final ArrayList<String> identityIds;
+    private final ArrayList<String> remoteIds;
+
+    RelayedChange(ActivityNotification.Type type, String activityId, String posterId, String streamOwnerId,
+                  Collection<String> viewerIds, Collection<String> identityIds, Collection<String> remoteIds) {
+      this.type = type;
+      this.activityId = activityId;
+      this.posterId = posterId;
+      this.streamOwnerId = streamOwnerId;
+      this.viewerIds = viewerIds != null ? new ArrayList<String>(viewerIds) : null;
+      this.identityIds = identityIds != null ? new ArrayList<String>(identityIds) : null;
+      this.remoteIds = remoteIds != null ? new ArrayList<String>(remoteIds) : null;
+    }
+
+  }
+
+  /**
+   * Delivers the changes put in the relay cache by the other nodes. The local puts are skipped by their key.
+   */
+  private class RelayListener implements CacheListener<String, RelayedChange> {
+
+    public void onPut(CacheListenerContext context, String key, RelayedChange change) throws Exception {
+      receive(key, change);
+    }
+
+    public void onExpire(CacheListenerContext context, String key, RelayedChange change) throws Exception {
+    }
+
+    public void onRemove(CacheListenerContext context, String key, RelayedChange change) throws Exception {
+    }
+
+    public void onGet(CacheListenerContext context, String key, RelayedChange change) throws Exception {
+    }
+
+    public void onClearCache(CacheListenerContext context) throws Exception {
+    }
+
+  }
+
+  /**
+   * The pending notifications of one viewer, oldest first.
+   */
+  static class Channel {
+
+    private final String viewerId;
+    private final String viewerRemoteId;
+    private final int capacity;
+
+    private final LinkedList<ActivityNotification> notifications = new LinkedList<ActivityNotification>();
+
+    /** the stream owners the viewer is registered on, only changed under the lock of the channels */
+    private List<String> sourceIds = Collections.emptyList();
+
+    /** false when the stream owners of the viewer have changed */
+    private volatile boolean upToDate;
+
+    /** the notifications up to this sequence may have been dropped */
+    private long floor;
+
+    private int waiting;
+
+    private long lastAccess;
+
+    private boolean closed;
+
+    Channel(String viewerId, String viewerRemoteId, long floor, int capacity) {
+      this.viewerId = viewerId;
+      this.viewerRemoteId = viewerRemoteId;
+      this.floor = floor;
+      this.capacity = capacity;
+      this.lastAccess = System.currentTimeMillis();
+    }
+
+    synchronized void add(ActivityNotification notification) {
+
+      if (closed) {
+        return;
+      }
+
+      // The viewer only needs the last change of an activity
+      Iterator<ActivityNotification> it = notifications.iterator();
+      while (it.hasNext()) {
+        ActivityNotification pending = it.next();
+        if (pending.getActivityId().equals(notification.getActivityId())) {
+          it.remove();
+          break;
+        }
+      }
+      notifications.add(notification);
+      while (notifications.size() > capacity) {
+        floor = notifications.removeFirst().getSequence();
+      }
+      notifyAll();
+
+    }
+
+    synchronized List<ActivityNotification> await(long cursor, long timeout) throws InterruptedException {
+
+      long deadline = System.currentTimeMillis() + timeout;
+      waiting++;
+      try {
+        while (true) {
+          if (closed || cursor < floor) {
+            return null;
+          }
+          List<ActivityNotification> after = after(cursor);
+          long remaining = deadline - System.currentTimeMillis();
+          if (!after.isEmpty() || remaining <= 0) {
+            return after;
+          }
+          wait(remaining);
+        }
+      }
+      finally {
+        waiting--;
+        lastAccess = System.currentTimeMillis();
+      }
+
+    }
+
+    synchronized boolean isIdle(long now, long idleTime) {
+      return waiting == 0 && now - lastAccess > idleTime;
+    }
+
+    synchronized void close() {
+      closed = true;
+      notifyAll();
+    }
+
+    private List<ActivityNotification> after(long cursor) {
+      List<ActivityNotification> after = new ArrayList<ActivityNotification>();
+      for (ActivityNotification notification : notifications) {
+        if (notification.getSequence() > cursor) {
+          after.add(notification);
+        }
+      }
+      return after;
+    }
+
+  }
+
+}
@@ -202,6 +202,21 @@ public abstract class ActivityEntity implements NamedEntity {
   public abstract void setCommenters(String[] commenterId);
   public static final PropertyLiteralExpression<String> commenters =
     new PropertyLiteralExpression<String>(String.class, "soc:commenters");
+
+  /**
+   * The ids of the comments which are not hidden, in the order they were posted. It is null for the activities
+   * created before it existed, until it is computed from the comments.
+   */
+  @Property(name = "soc:visibleComments")
+  public abstract String[] getVisibleComments();
+  public abstract void setVisibleComments(String[] visibleComments);
+
+  /**
+   * The number of comments which are not hidden.
+   */
+  @Property(name = "soc:visibleCommentCount")
+  public abstract Integer getVisibleCommentCount();
+  public abstract void setVisibleCommentCount(Integer visibleCommentCount);
   
   /**
    * The activity parameters.
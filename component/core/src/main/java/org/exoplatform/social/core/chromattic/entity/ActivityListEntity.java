@@ -37,7 +37,7 @@ import org.chromattic.ext.format.BaseEncodingObjectFormatter;
 @PrimaryType(name = "soc:activitylist", orderable = true)
 @FormattedBy(BaseEncodingObjectFormatter.class)
 @NamingPrefix("soc")
-public abstract class ActivityListEntity {
+public abstract class ActivityListEntity implements IndexNumber {
 
   @Path
   public abstract String getPath();
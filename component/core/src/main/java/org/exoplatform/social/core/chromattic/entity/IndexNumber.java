@@ -23,6 +23,10 @@ package org.exoplatform.social.core.chromattic.entity;
  */
 public interface IndexNumber {
 
+  public String getPath();
+
   public Integer getNumber();
 
+  public void setNumber(Integer number);
+
 }
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.chromattic.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.exoplatform.social.core.chromattic.entity.ActivityDayEntity;
+import org.exoplatform.social.core.chromattic.entity.ActivityListEntity;
+import org.exoplatform.social.core.chromattic.entity.ActivityMonthEntity;
+import org.exoplatform.social.core.chromattic.entity.ActivityYearEntity;
+import org.exoplatform.social.core.chromattic.entity.IndexNumber;
+
+/**
+ * Buffers the changes of the day, month, year and list activity numbers, keyed by node path, so that concurrent
+ * posts to the same stream do not all rewrite the same parent nodes. The pending deltas are applied in batch by
+ * the storage, and are merged with the persisted numbers on read.
+ *
+ * @since 4.1
+ */
+public class ActivityCounterBuffer {
+
+  /**
+   * The pending change of the number of a node.
+   */
+  public static class Change {
+
+    private final Class<? extends IndexNumber> type;
+
+    private final AtomicInteger delta = new AtomicInteger();
+
+    Change(Class<? extends IndexNumber> type) {
+      this.type = type;
+    }
+
+    public Class<? extends IndexNumber> getType() {
+      return type;
+    }
+
+    public int getDelta() {
+      return delta.get();
+    }
+  }
+
+  /**
+   * Writes the changes in a session.
+   */
+  public static interface Writer {
+
+    /**
+     * Applies a change to the persisted number of a node.
+     *
+     * @param path the node path
+     * @param change the change
+     * @return false if the node is not saved yet
+     */
+    public boolean write(String path, Change change);
+
+    /**
+     * Saves the session, with the written changes.
+     */
+    public void save();
+  }
+
+  private final int batchSize;
+
+  private final long flushInterval;
+
+  /** Adders share the read lock, drain takes the write lock to swap the deltas. */
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private volatile ConcurrentMap<String, Change> deltas = new ConcurrentHashMap<String, Change>();
+
+  private final AtomicInteger changes = new AtomicInteger();
+
+  private volatile long lastFlush = System.currentTimeMillis();
+
+  /**
+   * @param batchSize the number of buffered changes after which a flush is needed
+   * @param flushInterval the time in milliseconds after which a flush is needed
+   */
+  public ActivityCounterBuffer(int batchSize, long flushInterval) {
+    this.batchSize = batchSize;
+    this.flushInterval = flushInterval;
+  }
+
+  /**
+   * Buffers a change of the number of activities of a day, and of its month, year and list.
+   *
+   * @param dayEntity the day
+   * @param delta the change
+   */
+  public void add(ActivityDayEntity dayEntity, int delta) {
+
+    ActivityMonthEntity monthEntity = dayEntity.getMonth();
+    ActivityYearEntity yearEntity = monthEntity.getYear();
+
+    //
+    lock.readLock().lock();
+    try {
+      add(dayEntity.getPath(), ActivityDayEntity.class, delta);
+      add(monthEntity.getPath(), ActivityMonthEntity.class, delta);
+      add(yearEntity.getPath(), ActivityYearEntity.class, delta);
+      add(yearEntity.getList().getPath(), ActivityListEntity.class, delta);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+    changes.incrementAndGet();
+
+  }
+
+  /**
+   * Gets a number merged with its pending change.
+   *
+   * @param path the node path
+   * @param persisted the persisted number
+   * @return the up to date number
+   */
+  public int getNumber(String path, Integer persisted) {
+    Change change = deltas.get(path);
+    return (persisted != null ? persisted : 0) + (change != null ? change.getDelta() : 0);
+  }
+
+  /**
+   * Tells if enough changes are buffered, or if they are buffered for long enough, to be flushed.
+   *
+   * @return true when a flush is needed
+   */
+  public boolean isFlushNeeded() {
+    return changes.get() >= batchSize
+        || (changes.get() > 0 && System.currentTimeMillis() - lastFlush >= flushInterval);
+  }
+
+  /**
+   * Takes the pending changes. They are no longer merged on read.
+   *
+   * @return the changes by node path
+   */
+  public Map<String, Change> drain() {
+
+    ConcurrentMap<String, Change> drained;
+    lock.writeLock().lock();
+    try {
+      drained = deltas;
+      deltas = new ConcurrentHashMap<String, Change>();
+      changes.set(0);
+      lastFlush = System.currentTimeMillis();
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+
+    //
+    Map<String, Change> result = new HashMap<String, Change>();
+    for (Map.Entry<String, Change> entry : drained.entrySet()) {
+      if (entry.getValue().getDelta() != 0) {
+        result.put(entry.getKey(), entry.getValue());
+      }
+    }
+    return result;
+
+  }
+
+  /**
+   * Saves the session of a writer, with the pending changes when enough of them are buffered. The changes are
+   * taken back if the session fails to be saved, so that they are not lost with it.
+   *
+   * @param writer the writer
+   * @param force true to write all the pending changes
+   */
+  public void save(Writer writer, boolean force) {
+
+    Map<String, Change> flushed = new HashMap<String, Change>();
+    if (force || isFlushNeeded()) {
+      Map<String, Change> notFound = new HashMap<String, Change>();
+      for (Map.Entry<String, Change> entry : drain().entrySet()) {
+        if (writer.write(entry.getKey(), entry.getValue())) {
+          flushed.put(entry.getKey(), entry.getValue());
+        }
+        else {
+          // not saved yet by its writer
+          notFound.put(entry.getKey(), entry.getValue());
+        }
+      }
+      if (!notFound.isEmpty()) {
+        restore(notFound);
+      }
+    }
+
+    //
+    boolean saved = false;
+    try {
+      writer.save();
+      saved = true;
+    }
+    finally {
+      if (!saved && !flushed.isEmpty()) {
+        restore(flushed);
+      }
+    }
+
+  }
+
+  /**
+   * Puts back changes which could not be flushed.
+   *
+   * @param drained the changes by node path
+   */
+  public void restore(Map<String, Change> drained) {
+
+    lock.readLock().lock();
+    try {
+      for (Map.Entry<String, Change> entry : drained.entrySet()) {
+        add(entry.getKey(), entry.getValue().getType(), entry.getValue().getDelta());
+      }
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+    changes.addAndGet(drained.size());
+
+  }
+
+  /**
+   * Gets the number of nodes with a pending change.
+   *
+   * @return the number of nodes
+   */
+  public int getPendingSize() {
+    return deltas.size();
+  }
+
+  private void add(String path, Class<? extends IndexNumber> type, int delta) {
+    Change change = deltas.get(path);
+    if (change == null) {
+      change = new Change(type);
+      Change previous = deltas.putIfAbsent(path, change);
+      if (previous != null) {
+        change = previous;
+      }
+    }
+    change.delta.addAndGet(delta);
+  }
+
+}
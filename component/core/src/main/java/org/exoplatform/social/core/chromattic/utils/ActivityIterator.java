@@ -35,6 +35,8 @@ public class ActivityIterator implements Iterator<ActivityEntity> {
 
   private final ActivityListEntity listEntity;
 
+  private final ActivityCounterBuffer counterBuffer;
+
   //
   private Iterator<ActivityYearEntity> yearIterator;
   private Iterator<ActivityMonthEntity> monthIterator;
@@ -42,8 +44,13 @@ public class ActivityIterator implements Iterator<ActivityEntity> {
   private Iterator<ActivityEntity> entityIterator;
 
   ActivityIterator(final ActivityListEntity listEntity) {
+    this(listEntity, null);
+  }
+
+  ActivityIterator(final ActivityListEntity listEntity, final ActivityCounterBuffer counterBuffer) {
 
     this.listEntity = listEntity;
+    this.counterBuffer = counterBuffer;
     this.yearIterator = listEntity.getYears().values().iterator();
 
     if (yearIterator.hasNext()) {
@@ -145,7 +152,8 @@ public class ActivityIterator implements Iterator<ActivityEntity> {
       }
       else {
         if (got instanceof IndexNumber) {
-          nb += ((IndexNumber) got).getNumber();
+          IndexNumber index = (IndexNumber) got;
+          nb += counterBuffer != null ? counterBuffer.getNumber(index.getPath(), index.getNumber()) : index.getNumber();
         }
         else {
           ++nb;
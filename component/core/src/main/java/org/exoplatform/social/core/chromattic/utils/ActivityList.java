@@ -36,16 +36,30 @@ public class ActivityList implements Collection<ActivityEntity> {
 
   private ActivityListEntity listEntity;
 
+  private ActivityCounterBuffer counterBuffer;
+
   public ActivityList(final ActivityListEntity listEntity) {
+    this(listEntity, null);
+  }
+
+  /**
+   * @param listEntity the list
+   * @param counterBuffer the buffer of the activity numbers, null to update them directly
+   */
+  public ActivityList(final ActivityListEntity listEntity, final ActivityCounterBuffer counterBuffer) {
     this.listEntity = listEntity;
+    this.counterBuffer = counterBuffer;
   }
 
   public int size() {
+    if (counterBuffer != null) {
+      return counterBuffer.getNumber(listEntity.getPath(), listEntity.getNumber());
+    }
     return listEntity.getNumber();
   }
 
   public boolean isEmpty() {
-    return listEntity.getNumber().equals(0);
+    return size() == 0;
   }
 
   public boolean contains(final Object o) {
@@ -53,7 +67,7 @@ public class ActivityList implements Collection<ActivityEntity> {
   }
 
   public ActivityIterator iterator() {
-    return new ActivityIterator(listEntity);
+    return new ActivityIterator(listEntity, counterBuffer);
   }
 
   public Object[] toArray() {
@@ -74,7 +88,12 @@ public class ActivityList implements Collection<ActivityEntity> {
 
     ActivityDayEntity dayEntity = listEntity.getYear(year).getMonth(month).getDay(day);
     dayEntity.getActivities().add(0, activityEntity);
-    dayEntity.inc();
+    if (counterBuffer != null) {
+      counterBuffer.add(dayEntity, 1);
+    }
+    else {
+      dayEntity.inc();
+    }
 
     return true;
   }
@@ -16,7 +16,10 @@
  */
 package org.exoplatform.social.core.identity;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.model.Profile;
@@ -52,6 +55,24 @@ public abstract class IdentityProvider<T> {
     return identity;
   }
 
+  /**
+   * Gets the identities of several remote ids. Providers able to find them in a single request should override it.
+   *
+   * @param remoteIds the remote ids
+   * @return the identities by remote id, without the ones which are not found
+   * @since 4.1
+   */
+  public Map<String, Identity> getIdentitiesByRemoteIds(Collection<String> remoteIds) {
+    Map<String, Identity> identities = new LinkedHashMap<String, Identity>();
+    for (String remoteId : remoteIds) {
+      Identity identity = getIdentityByRemoteId(remoteId);
+      if (identity != null) {
+        identities.put(remoteId, identity);
+      }
+    }
+    return identities;
+  }
+
   /**
    * Name for this provider. Must be unique among the registered providers.
    *
@@ -17,7 +17,9 @@
 package org.exoplatform.social.core.identity.provider;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.exoplatform.commons.utils.ListAccess;
 import org.exoplatform.container.ExoContainer;
@@ -110,6 +112,21 @@ public class OrganizationIdentityProvider extends IdentityProvider<User> {
     return user;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * The users are looked up within a single request of the organization service.
+   */
+  @Override
+  public Map<String, Identity> getIdentitiesByRemoteIds(Collection<String> remoteIds) {
+    RequestLifeCycle.begin((ComponentRequestLifecycle)organizationService);
+    try {
+      return super.getIdentitiesByRemoteIds(remoteIds);
+    } finally {
+      RequestLifeCycle.end();
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
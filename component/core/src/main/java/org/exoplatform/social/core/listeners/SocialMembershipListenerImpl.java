@@ -16,11 +16,14 @@
  */
 package org.exoplatform.social.core.listeners;
 
+import java.util.Collection;
+
 import org.exoplatform.container.ExoContainer;
 import org.exoplatform.container.ExoContainerContext;
 import org.exoplatform.portal.config.UserACL;
 import org.exoplatform.services.organization.Membership;
 import org.exoplatform.services.organization.MembershipEventListener;
+import org.exoplatform.services.organization.OrganizationService;
 import org.exoplatform.social.core.space.SpaceUtils;
 import org.exoplatform.social.core.space.model.Space;
 import org.exoplatform.social.core.space.spi.SpaceService;
@@ -62,6 +65,9 @@ public class SocialMembershipListenerImpl extends MembershipEventListener {
       }
     } else if (m.getGroupId().startsWith(SpaceUtils.PLATFORM_USERS_GROUP)) {
       clearIdentityCaching();
+      if (SpaceUtils.PLATFORM_USERS_GROUP.equals(m.getGroupId()) && !hasOtherMembership(m)) {
+        StorageUtils.removeUserFromPlatformGroup(m.getUserName());
+      }
     }
   }
 
@@ -101,9 +107,22 @@ public class SocialMembershipListenerImpl extends MembershipEventListener {
 
     } else if (m.getGroupId().startsWith(SpaceUtils.PLATFORM_USERS_GROUP)) {
       clearIdentityCaching();
-      StorageUtils.clearUsersPlatformGroup();
+      if (SpaceUtils.PLATFORM_USERS_GROUP.equals(m.getGroupId())) {
+        StorageUtils.addUserToPlatformGroup(m.getUserName());
+      }
     }
   }
+
+  /**
+   * Checks if the user of a deleted membership still belongs to its group with another membership type.
+   */
+  private boolean hasOtherMembership(Membership m) throws Exception {
+    OrganizationService organizationService = (OrganizationService) ExoContainerContext.getCurrentContainer()
+                                                                                       .getComponentInstanceOfType(OrganizationService.class);
+    Collection<?> memberships = organizationService.getMembershipHandler()
+                                                   .findMembershipsByUserAndGroup(m.getUserName(), m.getGroupId());
+    return memberships != null && !memberships.isEmpty();
+  }
   
   private void clearIdentityCaching() {
     IdentityStorage storage = (IdentityStorage) ExoContainerContext.getCurrentContainer().getComponentInstanceOfType(IdentityStorage.class);
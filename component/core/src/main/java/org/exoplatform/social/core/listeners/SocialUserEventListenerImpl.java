@@ -55,9 +55,6 @@ public class SocialUserEventListenerImpl extends UserEventListener {
     if (isNew && identity != null) {
       throw new RuntimeException("Unable to create a previously deleted user : " + user.getUserName());
     }
-    
-    //
-    StorageUtils.clearUsersPlatformGroup();
 
     RequestLifeCycle.end();
   }
@@ -74,6 +71,7 @@ public class SocialUserEventListenerImpl extends UserEventListener {
     ExoContainer container = ExoContainerContext.getCurrentContainer();
     //
     IdentityManager idm = (IdentityManager) container.getComponentInstanceOfType(IdentityManager.class);
+    idm.clearProviderCache(OrganizationIdentityProvider.NAME, user.getUserName());
     Identity identity = idm.getOrCreateIdentity(OrganizationIdentityProvider.NAME, user.getUserName(), true);
      
     //
@@ -139,9 +137,15 @@ public class SocialUserEventListenerImpl extends UserEventListener {
     }
     
     //
-    StorageUtils.clearUsersPlatformGroup();
+    StorageUtils.removeUserFromPlatformGroup(user.getUserName());
 
     RequestLifeCycle.end();
 
   }
+
+  @Override
+  public void postDelete(User user) throws Exception {
+    IdentityManager idm = (IdentityManager) PortalContainer.getInstance().getComponentInstanceOfType(IdentityManager.class);
+    idm.clearProviderCache(OrganizationIdentityProvider.NAME, user.getUserName());
+  }
 }
@@ -77,6 +77,16 @@ public interface ActivityManager {
    */
   ExoSocialActivity getActivity(String activityId);
 
+  /**
+   * Gets the activities of the given ids, in the order of the ids. The ids which do not match an activity are skipped.
+   *
+   * @param activityIds The ids of the activities
+   * @return the activities that matched provided ids
+   * @LevelAPI Platform
+   * @since 4.1
+   */
+  List<ExoSocialActivity> getActivities(List<String> activityIds);
+
   /**
    * Gets an activity by its comment. Comments is considered as children of activities.
    *
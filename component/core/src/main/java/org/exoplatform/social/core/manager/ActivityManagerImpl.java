@@ -108,6 +108,13 @@ public class ActivityManagerImpl implements ActivityManager {
     return activityStorage.getActivity(activityId);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<ExoSocialActivity> getActivities(List<String> activityIds) {
+    return activityStorage.getActivities(activityIds);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -16,7 +16,9 @@
  */
 package org.exoplatform.social.core.manager;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.exoplatform.commons.utils.ListAccess;
 import org.exoplatform.social.core.identity.IdentityProvider;
@@ -52,6 +54,29 @@ public interface IdentityManager {
    */
   Identity getOrCreateIdentity(String providerId, String remoteId, boolean isProfileLoaded);
 
+  /**
+   * Gets or creates the Identity objects of several identifiers of an identity provider, asking the provider once for
+   * all the identities it is needed for.
+   *
+   * @param providerId The id of identity provider.
+   * @param remoteIds The identifiers that identify the identities in the specific identity provider.
+   * @param isProfileLoaded Is profile loaded or not.
+   * @return the identities by identifier, in the order of the identifiers, without the ones which do not exist.
+   * @LevelAPI Experimental
+   * @since 4.1
+   */
+  Map<String, Identity> getOrCreateIdentities(String providerId, Collection<String> remoteIds, boolean isProfileLoaded);
+
+  /**
+   * Forgets whether an identity is known by its provider, when it is created or deleted by the provider.
+   *
+   * @param providerId The id of identity provider.
+   * @param remoteId The identifier that identifies the identity in the specific identity provider.
+   * @LevelAPI Experimental
+   * @since 4.1
+   */
+  void clearProviderCache(String providerId, String remoteId);
+
   /**
    * Gets the stored identity by its id, this id is its uuid stored by JCR.
    *
@@ -16,13 +16,20 @@
  */
 package org.exoplatform.social.core.manager;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
 import org.exoplatform.commons.utils.ListAccess;
 import org.exoplatform.container.PortalContainer;
+import org.exoplatform.services.cache.CacheService;
+import org.exoplatform.services.cache.ExoCache;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.identity.IdentityProvider;
@@ -56,6 +63,9 @@ public class IdentityManagerImpl implements IdentityManager {
   
   /** The limit for list access loading. */
   private static final int                   LIMIT = 200;
+
+  /** The name of the cache telling whether the identities are known by their provider. */
+  public static final String                 PROVIDER_CACHE_NAME = "IdentityProviderCache";
   
   /** The identity providers */
   protected Map<String, IdentityProvider<?>> identityProviders = new HashMap<String, IdentityProvider<?>>();
@@ -72,6 +82,9 @@ public class IdentityManagerImpl implements IdentityManager {
   /** lifecycle for profile */
   protected ProfileLifeCycle                 profileLifeCycle  = new ProfileLifeCycle();
 
+  /** providerId:remoteId -> whether the provider knows the remote id, null when not cached */
+  protected ExoCache<String, Boolean>        providerCache;
+
   /**
    * Instantiates a new identity manager.
    *
@@ -85,6 +98,22 @@ public class IdentityManagerImpl implements IdentityManager {
     this.addIdentityProvider(defaultIdentityProvider);
   }
 
+  /**
+   * Instantiates a new identity manager caching whether the stored identities are still known by their provider.
+   *
+   * @param identityStorage
+   * @param defaultIdentityProvider the built-in default identity provider to use
+   *          when no other provider matches
+   * @param cacheService the cache service providing the {@value #PROVIDER_CACHE_NAME}
+   * @since 4.1
+   */
+  public IdentityManagerImpl(IdentityStorage identityStorage,
+                             IdentityProvider<?> defaultIdentityProvider,
+                             CacheService cacheService) {
+    this(identityStorage, defaultIdentityProvider);
+    this.providerCache = cacheService.getCacheInstance(PROVIDER_CACHE_NAME);
+  }
+
 
   /**
    * {@inheritDoc}
@@ -324,39 +353,132 @@ public class IdentityManagerImpl implements IdentityManager {
    * {@inheritDoc}
    */
   public Identity getOrCreateIdentity(String providerId, String remoteId, boolean forceLoadOrReloadProfile) {
-    Identity returnIdentity = null;
     IdentityProvider<?> identityProvider = this.getIdentityProvider(providerId);
 
-    Identity identityFoundByRemoteProvider = identityProvider.getIdentityByRemoteId(remoteId);
     Identity result = this.getIdentityStorage().findIdentity(providerId, remoteId);
     if (result == null) {
-      if (identityFoundByRemoteProvider != null) {
-        // identity is valid for provider, but no yet
-        // referenced in activityStorage
-        saveIdentity(identityFoundByRemoteProvider);
-        this.getIdentityStorage().saveProfile(identityFoundByRemoteProvider.getProfile());
-        result = identityFoundByRemoteProvider;
+      // only a new identity needs the data of the provider
+      Identity identityFoundByRemoteProvider = identityProvider.getIdentityByRemoteId(remoteId);
+      putKnownByProvider(providerId, remoteId, identityFoundByRemoteProvider != null);
+      return createIdentity(identityFoundByRemoteProvider);
+    }
+    return checkIdentity(result, isKnownByProvider(identityProvider, remoteId), forceLoadOrReloadProfile);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Map<String, Identity> getOrCreateIdentities(String providerId, Collection<String> remoteIds,
+                                                     boolean forceLoadOrReloadProfile) {
+    IdentityProvider<?> identityProvider = this.getIdentityProvider(providerId);
+
+    // the remote ids whose identity is not stored, or not known to be still provided
+    Map<String, Identity> stored = new LinkedHashMap<String, Identity>();
+    List<String> unknownRemoteIds = new ArrayList<String>();
+    for (String remoteId : new LinkedHashSet<String>(remoteIds)) {
+      Identity identity = this.getIdentityStorage().findIdentity(providerId, remoteId);
+      stored.put(remoteId, identity);
+      if (identity == null || getKnownByProvider(providerId, remoteId) == null) {
+        unknownRemoteIds.add(remoteId);
+      }
+    }
+
+    //
+    Map<String, Identity> provided = Collections.emptyMap();
+    if (!unknownRemoteIds.isEmpty()) {
+      provided = identityProvider.getIdentitiesByRemoteIds(unknownRemoteIds);
+      for (String remoteId : unknownRemoteIds) {
+        putKnownByProvider(providerId, remoteId, provided.containsKey(remoteId));
+      }
+    }
+
+    //
+    Map<String, Identity> identities = new LinkedHashMap<String, Identity>();
+    for (Map.Entry<String, Identity> entry : stored.entrySet()) {
+      String remoteId = entry.getKey();
+      Identity identity;
+      if (entry.getValue() == null) {
+        identity = createIdentity(provided.get(remoteId));
       } else {
-        // Not found in provider, so return null
-        return result;
+        identity = checkIdentity(entry.getValue(), isKnownByProvider(identityProvider, remoteId),
+                                 forceLoadOrReloadProfile);
       }
-    } else {
-      if (identityFoundByRemoteProvider == null) {
-        // in the case: identity is stored but identity is not found from
-        // remote provider, sets that identity as deleted
-        if (!result.isDeleted()) {
-          result.setDeleted(true);
-          identityStorage.updateIdentity(result);
-        }
-        return result;
+      if (identity != null) {
+        identities.put(remoteId, identity);
       }
-      if (forceLoadOrReloadProfile) {
-        Profile profile = this.getIdentityStorage().loadProfile(result.getProfile());
-        result.setProfile(profile);
+    }
+    return identities;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void clearProviderCache(String providerId, String remoteId) {
+    if (providerCache != null) {
+      providerCache.remove(getProviderCacheKey(providerId, remoteId));
+    }
+  }
+
+  /**
+   * Stores an identity found by its provider but not yet referenced in the storage.
+   *
+   * @param identityFoundByRemoteProvider the identity, null when not found by the provider
+   * @return the stored identity, or null
+   */
+  private Identity createIdentity(Identity identityFoundByRemoteProvider) {
+    if (identityFoundByRemoteProvider == null) {
+      // Not found in provider, so return null
+      return null;
+    }
+    saveIdentity(identityFoundByRemoteProvider);
+    this.getIdentityStorage().saveProfile(identityFoundByRemoteProvider.getProfile());
+    return identityFoundByRemoteProvider;
+  }
+
+  /**
+   * Sets a stored identity as deleted when it is not found by its provider anymore, or loads its profile.
+   */
+  private Identity checkIdentity(Identity result, boolean knownByProvider, boolean forceLoadOrReloadProfile) {
+    if (!knownByProvider) {
+      // in the case: identity is stored but identity is not found from
+      // remote provider, sets that identity as deleted
+      if (!result.isDeleted()) {
+        result.setDeleted(true);
+        identityStorage.updateIdentity(result);
       }
+      return result;
     }
-    returnIdentity = result;
-    return returnIdentity;
+    if (forceLoadOrReloadProfile) {
+      Profile profile = this.getIdentityStorage().loadProfile(result.getProfile());
+      result.setProfile(profile);
+    }
+    return result;
+  }
+
+  /**
+   * Checks whether a remote id is known by its provider, asking the provider only when the answer is not cached.
+   */
+  private boolean isKnownByProvider(IdentityProvider<?> identityProvider, String remoteId) {
+    Boolean known = getKnownByProvider(identityProvider.getName(), remoteId);
+    if (known == null) {
+      known = identityProvider.findByRemoteId(remoteId) != null;
+      putKnownByProvider(identityProvider.getName(), remoteId, known);
+    }
+    return known;
+  }
+
+  private Boolean getKnownByProvider(String providerId, String remoteId) {
+    return providerCache != null ? providerCache.get(getProviderCacheKey(providerId, remoteId)) : null;
+  }
+
+  private void putKnownByProvider(String providerId, String remoteId, boolean known) {
+    if (providerCache != null) {
+      providerCache.put(getProviderCacheKey(providerId, remoteId), known);
+    }
+  }
+
+  private static String getProviderCacheKey(String providerId, String remoteId) {
+    return providerId + ":" + remoteId;
   }
 
   /**
@@ -364,7 +486,7 @@ public class IdentityManagerImpl implements IdentityManager {
    */
   public boolean identityExisted(String providerId, String remoteId) {
     IdentityProvider<?> identityProvider = getIdentityProvider(providerId);
-    return identityProvider.getIdentityByRemoteId(remoteId) != null ? true : false;
+    return isKnownByProvider(identityProvider, remoteId);
   }
 
   /**
@@ -16,6 +16,7 @@
  */
 package org.exoplatform.social.core.processor;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -70,27 +71,37 @@ public class MentionsProcessor extends BaseActivityProcessorPlugin {
     
     Matcher matcher = pattern.matcher(message);
 
+    // Look up all the mentioned users at once
+    List<String> remoteIds = new ArrayList<String>();
+    while (matcher.find()) {
+      remoteIds.add(matcher.group().substring(1));
+    }
+    if (remoteIds.isEmpty()) {
+      return message;
+    }
+
+    String portalOwner = null;
+    try{
+      portalOwner = Util.getPortalRequestContext().getPortalOwner();
+    } catch (Exception e){
+      //default value for testing and social
+      portalOwner = LinkProvider.DEFAULT_PORTAL_OWNER;
+    }
+
+    ExoContainer container = ExoContainerContext.getCurrentContainer();
+    LinkProvider lp = (LinkProvider) container.getComponentInstanceOfType(LinkProvider.class);
+    IdentityManager identityManager = (IdentityManager) PortalContainer.getInstance()
+        .getComponentInstanceOfType(IdentityManager.class);
+    Map<String, Identity> identities = identityManager.getOrCreateIdentities(OrganizationIdentityProvider.NAME,
+                                                                             remoteIds, false);
+
     // Replace all occurrences of pattern in input
+    matcher.reset();
     StringBuffer buf = new StringBuffer();
     while (matcher.find()) {
       // Get the match result
       String replaceStr = matcher.group().substring(1);
-
-      String portalOwner = null;
-      try{
-        portalOwner = Util.getPortalRequestContext().getPortalOwner();
-      } catch (Exception e){
-        //default value for testing and social
-        portalOwner = LinkProvider.DEFAULT_PORTAL_OWNER;
-      }
-
-      // Convert to uppercase
-      ExoContainer container = ExoContainerContext.getCurrentContainer();
-      LinkProvider lp = (LinkProvider) container.getComponentInstanceOfType(LinkProvider.class);
-      IdentityManager identityManager = (IdentityManager) PortalContainer.getInstance()
-          .getComponentInstanceOfType(IdentityManager.class);
-      Identity identity = identityManager.getOrCreateIdentity(OrganizationIdentityProvider.NAME, replaceStr, false);
-      if (identity == null) {
+      if (!identities.containsKey(replaceStr)) {
         continue;
       }
       
@@ -51,6 +51,11 @@ public class ProfileLifeCycle extends AbstractLifeCycle<ProfileListener, Profile
     }
   }
 
+  @Override
+  protected String getEventType(ProfileLifeCycleEvent event) {
+    return event.getType().name();
+  }
+
   public void avatarUpdated(String username, Profile profile) {
     broadcast(new ProfileLifeCycleEvent(Type.AVATAR_UPDATED, username, profile));
   }
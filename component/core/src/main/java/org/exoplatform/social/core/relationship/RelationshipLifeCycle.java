@@ -49,6 +49,11 @@ public class RelationshipLifeCycle extends AbstractLifeCycle<RelationshipListene
 
   }
 
+  @Override
+  protected String getEventType(RelationshipEvent event) {
+    return event.getType().name();
+  }
+
   public void relationshipConfirmed(RelationshipManager relationshipManager, Relationship relationship) {
     broadcast(new RelationshipEvent(Type.CONFIRM, relationshipManager, relationship));
   }
@@ -86,6 +86,11 @@ public class SpaceLifecycle extends AbstractLifeCycle<SpaceLifeCycleListener, Sp
     }
   }
 
+  @Override
+  protected String getEventType(SpaceLifeCycleEvent event) {
+    return event.getType().name();
+  }
+
   public void spaceCreated(Space space, String creator) {
     broadcast(new SpaceLifeCycleEvent(space, creator, Type.SPACE_CREATED));
   }
@@ -82,7 +82,7 @@ import org.exoplatform.services.organization.User;
 import org.exoplatform.services.organization.UserHandler;
 import org.exoplatform.services.security.ConversationState;
 import org.exoplatform.social.common.router.ExoRouter;
-import org.exoplatform.social.common.router.ExoRouter.Route;
+import org.exoplatform.social.common.router.ExoRouter.RouteMatch;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.provider.SpaceIdentityProvider;
 import org.exoplatform.social.core.manager.IdentityManager;
@@ -430,11 +430,11 @@ public class SpaceUtils {
     //
     PortalRequestContext pcontext = Util.getPortalRequestContext();
     String requestPath = pcontext.getControllerContext().getParameter(RequestNavigationData.REQUEST_PATH);
-    Route route = ExoRouter.route(requestPath);
+    RouteMatch route = ExoRouter.match(requestPath);
     if (route == null) return null;
 
     //
-    String spacePrettyName = route.localArgs.get("spacePrettyName");
+    String spacePrettyName = route.get("spacePrettyName");
     SpaceService spaceService = (SpaceService) ExoContainerContext.getCurrentContainer().getComponentInstanceOfType(SpaceService.class);
     Space space = spaceService.getSpaceByPrettyName(spacePrettyName);
     
@@ -466,11 +466,11 @@ public class SpaceUtils {
     //
     PortalRequestContext pcontext = Util.getPortalRequestContext();
     String requestPath = pcontext.getControllerContext().getParameter(RequestNavigationData.REQUEST_PATH);
-    Route route = ExoRouter.route(requestPath);
+    RouteMatch route = ExoRouter.match(requestPath);
     if (route == null) return null;
 
     //
-    String spacePrettyName = route.localArgs.get("spacePrettyName");
+    String spacePrettyName = route.get("spacePrettyName");
     SpaceService spaceService = (SpaceService) ExoContainerContext.getCurrentContainer().getComponentInstanceOfType(SpaceService.class);
     return spaceService.getSpaceByPrettyName(spacePrettyName);
   }
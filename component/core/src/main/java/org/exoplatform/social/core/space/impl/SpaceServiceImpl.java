@@ -551,13 +551,8 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public void addMember(Space space, String userId) {
-    String[] members = space.getMembers();
-    space = this.removeInvited(space, userId);
-    space = this.removePending(space, userId);
-    if (!ArrayUtils.contains(members, userId)) {
-      members = (String[]) ArrayUtils.add(members, userId);
-      space.setMembers(members);
-      this.updateSpace(space);
+    if (!ArrayUtils.contains(space.getMembers(), userId)) {
+      spaceStorage.addMember(space, userId);
       SpaceUtils.addUserToGroupWithMemberMembership(userId, space.getGroupId());
       spaceLifeCycle.memberJoined(space, userId);
     }
@@ -574,11 +569,8 @@ public class SpaceServiceImpl implements SpaceService {
    * {@inheritDoc}
    */
   public void removeMember(Space space, String userId) {
-    String[] members = space.getMembers();
-    if (ArrayUtils.contains(members, userId)) {
-      members = (String[]) ArrayUtils.removeElement(members, userId);
-      space.setMembers(members);
-      this.updateSpace(space);
+    if (ArrayUtils.contains(space.getMembers(), userId)) {
+      spaceStorage.removeMember(space, userId);
       SpaceUtils.removeUserFromGroupWithMemberMembership(userId, space.getGroupId());
       spaceLifeCycle.memberLeft(space, userId);
     }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.space.model;
+
+import java.io.Serializable;
+
+/**
+ * The roles of a user in a space he can access, with the ids needed to query the space stream.
+ *
+ * @since 4.1
+ */
+public final class SpaceMembership implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The role bit of the members. */
+  public static final int MEMBER = 1;
+
+  /** The role bit of the managers. */
+  public static final int MANAGER = 2;
+
+  private final String spaceId;
+
+  private final String spaceIdentityId;
+
+  private final String spacePrettyName;
+
+  private final int roles;
+
+  public SpaceMembership(String spaceId, String spaceIdentityId, String spacePrettyName, int roles) {
+    this.spaceId = spaceId;
+    this.spaceIdentityId = spaceIdentityId;
+    this.spacePrettyName = spacePrettyName;
+    this.roles = roles;
+  }
+
+  public String getSpaceId() {
+    return spaceId;
+  }
+
+  public String getSpaceIdentityId() {
+    return spaceIdentityId;
+  }
+
+  public String getSpacePrettyName() {
+    return spacePrettyName;
+  }
+
+  public int getRoles() {
+    return roles;
+  }
+
+  public boolean isMember() {
+    return (roles & MEMBER) != 0;
+  }
+
+  public boolean isManager() {
+    return (roles & MANAGER) != 0;
+  }
+
+  /**
+   * @param roles the new role bits
+   * @return a copy of this membership with other roles
+   */
+  public SpaceMembership withRoles(int roles) {
+    return new SpaceMembership(spaceId, spaceIdentityId, spacePrettyName, roles);
+  }
+
+  /**
+   * @param spacePrettyName the new pretty name of the space
+   * @return a copy of this membership for the renamed space
+   */
+  public SpaceMembership withPrettyName(String spacePrettyName) {
+    return new SpaceMembership(spaceId, spaceIdentityId, spacePrettyName, roles);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof SpaceMembership)) {
+      return false;
+    }
+    SpaceMembership that = (SpaceMembership) o;
+    return roles == that.roles
+        && spaceId.equals(that.spaceId)
+        && spaceIdentityId.equals(that.spaceIdentityId)
+        && spacePrettyName.equals(that.spacePrettyName);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = spaceId.hashCode();
+    result = 31 * result + spaceIdentityId.hashCode();
+    result = 31 * result + spacePrettyName.hashCode();
+    return 31 * result + roles;
+  }
+
+  @Override
+  public String toString() {
+    return spacePrettyName + "[" + spaceId + ", " + spaceIdentityId + ", roles=" + roles + "]";
+  }
+
+}
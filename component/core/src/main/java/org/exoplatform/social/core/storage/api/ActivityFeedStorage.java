@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.api;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+import org.exoplatform.social.core.identity.model.Identity;
+
+/**
+ * Push based store of the activity feed timelines.
+ *
+ * A timeline holds the ids of the activities of a viewer's feed, most recently updated first. It is
+ * materialized by the first feed read (pull path) and then maintained by the activity writes, so that
+ * the next reads are served without rebuilding the feed query.
+ *
+ * @since 4.1
+ */
+public interface ActivityFeedStorage {
+
+  /**
+   * Tells whether the push path is enabled for the current container.
+   *
+   * @return true if the timelines are maintained
+   */
+  public boolean isEnabled();
+
+  /**
+   * Gets a range of the feed of the viewer.
+   *
+   * @param viewer the viewer identity
+   * @param offset the offset
+   * @param limit the limit
+   * @return the activity ids or null when the range is not materialized and must be loaded by the pull path
+   */
+  public List<String> getFeed(Identity viewer, int offset, int limit);
+
+  /**
+   * Starts the materialization of the feed of the viewer. Must be called before the pull path query
+   * so that the activities written meanwhile are not lost.
+   *
+   * @param viewer the viewer identity
+   * @param sources the stream owners of the feed (connections, spaces and the viewer itself)
+   */
+  public void prepareFeed(Identity viewer, List<Identity> sources);
+
+  /**
+   * Fills the feed of the viewer with the activities loaded by the pull path.
+   *
+   * @param viewer the viewer identity
+   * @param activities the loaded activities
+   * @param offset the offset used by the pull path
+   * @param limit the limit used by the pull path
+   */
+  public void fillFeed(Identity viewer, List<ExoSocialActivity> activities, int offset, int limit);
+
+  /**
+   * Pushes a new or updated activity on the top of the feeds of its audience.
+   *
+   * @param activityId the activity id
+   * @param postedTime the posted time of the activity
+   * @param lastUpdated the last updated time of the activity
+   * @param streamOwnerId the identity id of the stream owner
+   * @param viewerIds the other identity ids which see the activity (poster, mentioners, commenters, likers)
+   */
+  public void pushActivity(String activityId, long postedTime, long lastUpdated, String streamOwnerId,
+                           Collection<String> viewerIds);
+
+  /**
+   * Removes an activity from the feeds of its audience.
+   *
+   * @param activityId the activity id
+   * @param streamOwnerId the identity id of the stream owner
+   * @param viewerIds the other identity ids which see the activity
+   */
+  public void removeActivity(String activityId, String streamOwnerId, Collection<String> viewerIds);
+
+  /**
+   * Drops the feed of an identity, it will be materialized again by the next read.
+   *
+   * @param identityId the identity id
+   */
+  public void invalidateFeed(String identityId);
+
+  /**
+   * Drops the feeds of users, it will be materialized again by the next read.
+   *
+   * @param remoteIds the user names
+   */
+  public void invalidateUserFeeds(String... remoteIds);
+
+}
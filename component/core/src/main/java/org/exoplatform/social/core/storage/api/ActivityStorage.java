@@ -18,6 +18,8 @@
 package org.exoplatform.social.core.storage.api;
 
 import org.exoplatform.social.core.ActivityProcessor;
+import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess;
+import org.exoplatform.social.core.activity.ActivityCursor;
 import org.exoplatform.social.core.activity.filter.ActivityFilter;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
@@ -60,6 +62,16 @@ public interface ActivityStorage {
    */
   public ExoSocialActivity getActivity(String activityId) throws ActivityStorageException;
 
+  /**
+   * Load the activities of the given ids in one pass, in the order of the ids. The ids of the activities which
+   * do not exist are skipped.
+   *
+   * @param activityIds the ids of the activities
+   * @return the activities
+   * @since 4.1
+   */
+  public List<ExoSocialActivity> getActivities(List<String> activityIds) throws ActivityStorageException;
+
   /**
    * Gets all the activities by identity.
    *
@@ -171,6 +183,15 @@ public interface ActivityStorage {
       List<Identity> connectionList, TimestampType type, long offset, long limit)
       throws ActivityStorageException;
 
+  /**
+   * Gets the number of activities for a list of identities.
+   *
+   * @param connectionList the list of identities
+   * @return the number of activities returned by {@link #getActivitiesOfIdentities(List, long, long)}
+   * @since 4.1
+   */
+  public int getNumberOfActivitiesOfIdentities(List<Identity> connectionList) throws ActivityStorageException;
+
   /**
    * Count the number of activities from an ownerIdentity
    *
@@ -549,6 +570,21 @@ public interface ActivityStorage {
   public List<ExoSocialActivity> getActivitiesOfIdentities(ActivityBuilderWhere where, ActivityFilter filter,
                                                            long offset, long limit) throws ActivityStorageException;
 
+  /**
+   * Gets the activities of a stream after a cursor. The position is given to the query as a range on the last
+   * update time instead of an offset, so that loading a deep page costs the same as loading the first one.
+   *
+   * @param type the type of the stream
+   * @param owner the owner of the stream
+   * @param cursor the cursor returned with the previous page, null for the first page
+   * @param limit the max number of activities
+   * @return the activities, in the stream order
+   * @throws ActivityStorageException
+   * @since 4.1
+   */
+  public List<ExoSocialActivity> getActivitiesAfter(ActivitiesRealtimeListAccess.ActivityType type, Identity owner,
+                                                    ActivityCursor cursor, int limit) throws ActivityStorageException;
+
   /**
    * Gets the number of newer activities of spaces where the identity can
    * access.
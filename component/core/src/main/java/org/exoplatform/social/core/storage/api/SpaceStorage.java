@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.exoplatform.social.core.space.SpaceFilter;
 import org.exoplatform.social.core.space.model.Space;
+import org.exoplatform.social.core.space.model.SpaceMembership;
 import org.exoplatform.social.core.storage.SpaceStorageException;
 
 /**
@@ -49,6 +50,28 @@ public interface SpaceStorage {
    */
   public void saveSpace(Space space, boolean isNew) throws SpaceStorageException;
 
+  /**
+   * Adds a user to the members of a space, and removes him from its invited and pending users. Unlike
+   * {@link #saveSpace(Space, boolean)}, the other users of the space are neither compared nor rewritten.
+   *
+   * @param space the space, its users are refreshed from the storage
+   * @param userId the user name
+   * @throws SpaceStorageException
+   * @since 4.1
+   */
+  public void addMember(Space space, String userId) throws SpaceStorageException;
+
+  /**
+   * Removes a user from the members of a space. Unlike {@link #saveSpace(Space, boolean)}, the other users
+   * of the space are neither compared nor rewritten.
+   *
+   * @param space the space, its users are refreshed from the storage
+   * @param userId the user name
+   * @throws SpaceStorageException
+   * @since 4.1
+   */
+  public void removeMember(Space space, String userId) throws SpaceStorageException;
+
   /**
    * Renames a space.
    * 
@@ -88,6 +111,17 @@ public interface SpaceStorage {
    */
   public int getMemberSpacesCount(String userId) throws SpaceStorageException;
 
+  /**
+   * Gets the spaces a user is member or manager of, with his roles and the space identity ids. They are
+   * served from an index in memory, which is loaded from the storage on the first call for a user.
+   *
+   * @param userId the user name
+   * @return the space memberships of the user
+   * @throws SpaceStorageException
+   * @since 4.1
+   */
+  public List<SpaceMembership> getSpaceMemberships(String userId) throws SpaceStorageException;
+
   /**
    * Gets the count of the spaces which user has "member" role by filter.
    *
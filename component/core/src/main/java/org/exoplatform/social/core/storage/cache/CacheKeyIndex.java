@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reverse index from an id (identity or activity) to the cache keys whose entries depend on it, so that a write
+ * evicts only the affected entries instead of scanning the whole cache.
+ *
+ * The index is bounded: once it holds its capacity, {@link #add(Object, Collection)} unregisters the oldest keys
+ * and returns them, the caller evicts them from the cache since their entries would no longer be evicted by the
+ * writes. The keys the cache has dropped by itself stay registered until they are the oldest ones, evicting them
+ * again is harmless.
+ *
+ * @since 4.1
+ */
+public class CacheKeyIndex<K> {
+
+  private final int capacity;
+
+  private final Map<String, Set<K>> keysById = new HashMap<String, Set<K>>();
+
+  /** in registration order, the oldest key first */
+  private final Map<K, Collection<String>> idsByKey = new LinkedHashMap<K, Collection<String>>();
+
+  public CacheKeyIndex(final int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Registers a key under the ids it depends on, as the newest key.
+   *
+   * @param key the cache key
+   * @param ids the ids
+   * @return the oldest keys unregistered to make room, to evict from the cache
+   */
+  public synchronized List<K> add(final K key, final Collection<String> ids) {
+
+    remove(key);
+
+    //
+    List<K> evicted = Collections.emptyList();
+    int excess = idsByKey.size() - capacity + 1;
+    if (excess > 0) {
+      evicted = new ArrayList<K>(excess);
+      Iterator<K> oldest = idsByKey.keySet().iterator();
+      while (evicted.size() < excess && oldest.hasNext()) {
+        evicted.add(oldest.next());
+      }
+      for (K eldest : evicted) {
+        remove(eldest);
+      }
+    }
+
+    //
+    idsByKey.put(key, ids);
+    for (String id : ids) {
+      Set<K> keys = keysById.get(id);
+      if (keys == null) {
+        keys = new HashSet<K>();
+        keysById.put(id, keys);
+      }
+      keys.add(key);
+    }
+    return evicted;
+
+  }
+
+  /**
+   * Unregisters the keys which depend on an id.
+   *
+   * @param id the id
+   * @return the unregistered keys
+   */
+  public synchronized Set<K> removeById(final String id) {
+
+    Set<K> keys = keysById.remove(id);
+    if (keys == null) {
+      return Collections.emptySet();
+    }
+
+    //
+    for (K key : keys) {
+      Collection<String> ids = idsByKey.remove(key);
+      if (ids != null) {
+        for (String other : ids) {
+          if (!other.equals(id)) {
+            removeKey(other, key);
+          }
+        }
+      }
+    }
+    return keys;
+
+  }
+
+  /**
+   * Unregisters a key.
+   *
+   * @param key the key
+   */
+  public synchronized void remove(final K key) {
+
+    Collection<String> ids = idsByKey.remove(key);
+    if (ids != null) {
+      for (String id : ids) {
+        removeKey(id, key);
+      }
+    }
+
+  }
+
+  public synchronized void clear() {
+    keysById.clear();
+    idsByKey.clear();
+  }
+
+  /**
+   * Gets the number of registered keys.
+   *
+   * @return the number of keys
+   */
+  public synchronized int size() {
+    return idsByKey.size();
+  }
+
+  private void removeKey(final String id, final K key) {
+    Set<K> keys = keysById.get(id);
+    if (keys != null) {
+      keys.remove(key);
+      if (keys.isEmpty()) {
+        keysById.remove(id);
+      }
+    }
+  }
+
+}
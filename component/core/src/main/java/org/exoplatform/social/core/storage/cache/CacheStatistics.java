@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hit, miss, eviction, load, refresh and selection counters of a cache.
+ *
+ * @since 4.1
+ */
+public class CacheStatistics {
+
+  /** The upper bounds in milliseconds of the load time histogram buckets, the last bucket has no bound. */
+  public static final long[] LOAD_TIME_BUCKETS = { 1, 10, 100, 1000 };
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  private final AtomicLong loads = new AtomicLong();
+
+  private final AtomicLong loadFailures = new AtomicLong();
+
+  private final AtomicLong loadTime = new AtomicLong();
+
+  private final AtomicLong maxLoadTime = new AtomicLong();
+
+  private final AtomicLongArray loadTimeHistogram = new AtomicLongArray(LOAD_TIME_BUCKETS.length + 1);
+
+  private final AtomicLong sharedLoads = new AtomicLong();
+
+  private final AtomicLong missingHits = new AtomicLong();
+
+  private final AtomicLong loadTimeouts = new AtomicLong();
+
+  private final AtomicLong staleHits = new AtomicLong();
+
+  private final AtomicLong refreshes = new AtomicLong();
+
+  private final AtomicLong selections = new AtomicLong();
+
+  private final AtomicLong selectionTime = new AtomicLong();
+
+  public void hit() {
+    hits.incrementAndGet();
+  }
+
+  public void miss() {
+    misses.incrementAndGet();
+  }
+
+  public void evict(long count) {
+    if (count > 0) {
+      evictions.addAndGet(count);
+    }
+  }
+
+  /**
+   * Records a load of a missing value.
+   *
+   * @param nanos the load time in nanoseconds
+   * @param failed true if the load threw an exception
+   */
+  public void load(long nanos, boolean failed) {
+    loads.incrementAndGet();
+    if (failed) {
+      loadFailures.incrementAndGet();
+    }
+    loadTime.addAndGet(nanos);
+    long max = maxLoadTime.get();
+    while (nanos > max && !maxLoadTime.compareAndSet(max, nanos)) {
+      max = maxLoadTime.get();
+    }
+    long millis = nanos / 1000000;
+    int bucket = 0;
+    while (bucket < LOAD_TIME_BUCKETS.length && millis >= LOAD_TIME_BUCKETS[bucket]) {
+      ++bucket;
+    }
+    loadTimeHistogram.incrementAndGet(bucket);
+  }
+
+  /**
+   * Records a miss served by the load another thread was running for the same key.
+   */
+  public void sharedLoad() {
+    sharedLoads.incrementAndGet();
+  }
+
+  /**
+   * Records a hit on a key recently found missing.
+   */
+  public void missingHit() {
+    missingHits.incrementAndGet();
+  }
+
+  /**
+   * Records a miss which stopped waiting for the load of another thread.
+   */
+  public void loadTimeout() {
+    loadTimeouts.incrementAndGet();
+  }
+
+  /**
+   * Records a miss answered with the last value loaded after a load timeout.
+   */
+  public void staleHit() {
+    staleHits.incrementAndGet();
+  }
+
+  /**
+   * Records the load of a cached value which became old.
+   */
+  public void refresh() {
+    refreshes.incrementAndGet();
+  }
+
+  /**
+   * Records a scan of the cache by a selector, clearing the entries it selects.
+   *
+   * @param nanos the scan time in nanoseconds
+   */
+  public void select(long nanos) {
+    selections.incrementAndGet();
+    selectionTime.addAndGet(nanos);
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  public long getLoads() {
+    return loads.get();
+  }
+
+  public long getLoadFailures() {
+    return loadFailures.get();
+  }
+
+  /**
+   * @return the mean load time in milliseconds
+   */
+  public double getAverageLoadTime() {
+    long count = loads.get();
+    return count == 0 ? 0 : loadTime.get() / 1000000d / count;
+  }
+
+  /**
+   * @return the longest load time in milliseconds
+   */
+  public double getMaxLoadTime() {
+    return maxLoadTime.get() / 1000000d;
+  }
+
+  /**
+   * Gets the number of loads by load time, bucketed by {@link #LOAD_TIME_BUCKETS}.
+   *
+   * @return the counts, one more than the bounds
+   */
+  public long[] getLoadTimeHistogram() {
+    long[] histogram = new long[loadTimeHistogram.length()];
+    for (int i = 0; i < histogram.length; ++i) {
+      histogram[i] = loadTimeHistogram.get(i);
+    }
+    return histogram;
+  }
+
+  /**
+   * @return the number of misses which waited for the load of another thread instead of loading the value again
+   */
+  public long getSharedLoads() {
+    return sharedLoads.get();
+  }
+
+  /**
+   * @return the number of hits on keys recently found missing, counted in the hits
+   */
+  public long getMissingHits() {
+    return missingHits.get();
+  }
+
+  public long getLoadTimeouts() {
+    return loadTimeouts.get();
+  }
+
+  /**
+   * @return the number of load timeouts answered with the last value loaded
+   */
+  public long getStaleHits() {
+    return staleHits.get();
+  }
+
+  public long getRefreshes() {
+    return refreshes.get();
+  }
+
+  public long getSelections() {
+    return selections.get();
+  }
+
+  /**
+   * @return the total time spent by the selectors in milliseconds
+   */
+  public double getSelectionTime() {
+    return selectionTime.get() / 1000000d;
+  }
+
+  /**
+   * Gets the ratio of the lookups served by the cache.
+   *
+   * @return the hit ratio between 0 and 1, or 0 when the cache has not been used
+   */
+  public double getHitRatio() {
+    long h = hits.get();
+    long total = h + misses.get();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+  public void reset() {
+    hits.set(0);
+    misses.set(0);
+    evictions.set(0);
+    loads.set(0);
+    loadFailures.set(0);
+    loadTime.set(0);
+    maxLoadTime.set(0);
+    for (int i = 0; i < loadTimeHistogram.length(); ++i) {
+      loadTimeHistogram.set(i, 0);
+    }
+    sharedLoads.set(0);
+    missingHits.set(0);
+    loadTimeouts.set(0);
+    staleHits.set(0);
+    refreshes.set(0);
+    selections.set(0);
+    selectionTime.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("hits=%d, misses=%d, evictions=%d, loads=%d, loadFailures=%d, averageLoadTime=%.2fms, "
+        + "maxLoadTime=%.2fms, loadTimeHistogram=%s, sharedLoads=%d, missingHits=%d, loadTimeouts=%d, staleHits=%d, "
+        + "refreshes=%d, selections=%d, selectionTime=%.2fms",
+        getHits(), getMisses(), getEvictions(), getLoads(), getLoadFailures(), getAverageLoadTime(), getMaxLoadTime(),
+        Arrays.toString(getLoadTimeHistogram()), getSharedLoads(), getMissingHits(), getLoadTimeouts(), getStaleHits(),
+        getRefreshes(), getSelections(), getSelectionTime());
+  }
+
+}
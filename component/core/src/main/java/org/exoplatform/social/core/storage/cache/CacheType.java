@@ -18,6 +18,7 @@
 package org.exoplatform.social.core.storage.cache;
 
 import org.exoplatform.services.cache.CacheService;
+import org.exoplatform.services.cache.CachedObjectSelector;
 import org.exoplatform.services.cache.ExoCache;
 import org.exoplatform.social.core.storage.cache.loader.CacheLoader;
 import org.exoplatform.social.core.storage.cache.loader.ServiceContext;
@@ -49,6 +50,7 @@ public enum CacheType {
   ACTIVITY("ActivityCache"),
   ACTIVITIES_COUNT("ActivitiesCountCache"),
   ACTIVITIES("ActivitiesCache"),
+  FEED_OWNERS("FeedOwnersCache"),
 
   //
   SPACE("SpaceCache"),
@@ -63,8 +65,45 @@ public enum CacheType {
 
   private final String name;
 
+  private final CacheStatistics statistics;
+
+  private volatile FutureCacheSettings settings;
+
   private CacheType(final String name) {
     this.name = name;
+    this.statistics = new CacheStatistics();
+    this.settings = FutureCacheSettings.DEFAULT;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the counters shared by the future caches of this type.
+   *
+   * @return the statistics
+   */
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Gets the settings of the future caches of this type.
+   *
+   * @return the settings
+   */
+  public FutureCacheSettings getSettings() {
+    return settings;
+  }
+
+  /**
+   * Sets the settings of the future caches of this type created afterwards.
+   *
+   * @param settings the settings
+   */
+  public void setSettings(FutureCacheSettings settings) {
+    this.settings = settings;
   }
 
   public <K extends CacheKey, V extends Serializable> ExoCache<K, V> getFromService(CacheService service) {
@@ -74,7 +113,27 @@ public enum CacheType {
   public <K extends CacheKey, V extends Serializable> FutureExoCache<K, V, ServiceContext<V>> createFutureCache(
       ExoCache<K, V> cache) {
 
-    return new FutureExoCache<K, V, ServiceContext<V>>(new CacheLoader<K, V>(), cache);
+    return new FutureExoCache<K, V, ServiceContext<V>>(new CacheLoader<K, V>(), cache, statistics, settings);
+
+  }
+
+  /**
+   * Runs a selector on a cache of this type, counting the selection and its time.
+   *
+   * @param cache the cache
+   * @param selector the selector
+   * @throws Exception if the selection fails
+   */
+  public <K extends Serializable, V> void select(ExoCache<K, V> cache,
+                                                 CachedObjectSelector<? super K, ? super V> selector) throws Exception {
+
+    long start = System.nanoTime();
+    try {
+      cache.select(selector);
+    }
+    finally {
+      statistics.select(System.nanoTime() - start);
+    }
 
   }
 
@@ -18,20 +18,29 @@
 package org.exoplatform.social.core.storage.cache;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 
 import org.exoplatform.services.cache.ExoCache;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.ActivityProcessor;
+import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess;
+import org.exoplatform.social.core.activity.ActivityCursor;
 import org.exoplatform.social.core.activity.filter.ActivityFilter;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.storage.ActivityStorageException;
 import org.exoplatform.social.core.storage.api.ActivityStorage;
+import org.exoplatform.social.core.storage.cache.loader.CacheLoader;
 import org.exoplatform.social.core.storage.cache.loader.ServiceContext;
 import org.exoplatform.social.core.storage.cache.model.data.ActivityData;
 import org.exoplatform.social.core.storage.cache.model.data.IntegerData;
@@ -64,24 +73,65 @@ public class CachedActivityStorage implements ActivityStorage {
   private final FutureExoCache<ActivityCountKey, IntegerData, ServiceContext<IntegerData>> activitiesCountCache;
   private final FutureExoCache<ListActivitiesKey, ListActivitiesData, ServiceContext<ListActivitiesData>> activitiesCache;
 
+  /** Default capacity of the key indexes when the cache size is not bounded */
+  private static final int DEFAULT_INDEX_CAPACITY = 10000;
+
+  /** Types of the streams which aggregate the streams of the connections and spaces of their owner */
+  private static final EnumSet<ActivityType> FEED_TYPES = EnumSet.of(
+      ActivityType.FEED, ActivityType.NEWER_FEED, ActivityType.OLDER_FEED,
+      ActivityType.CONNECTION, ActivityType.NEWER_CONNECTION, ActivityType.OLDER_CONNECTION,
+      ActivityType.SPACES, ActivityType.NEWER_SPACES, ActivityType.OLDER_SPACES);
+
+  /** identity or activity id -> cached keys which depend on it */
+  private final CacheKeyIndex<ActivityCountKey> activitiesCountIndex;
+  private final CacheKeyIndex<ListActivitiesKey> activitiesIndex;
+
+  /** identity -> identities whose streams are aggregated by its feed */
+  private final ExoCache<IdentityKey, ListIdentitiesData> exoFeedOwnersCache;
+
+  /** false when the keys loaded on other nodes are not indexed here, a write then clears the caches */
+  private final boolean targetedEviction;
+
   private final ActivityStorageImpl storage;
 
   public void clearCache() {
 
     try {
-      exoActivitiesCache.select(new ScopeCacheSelector<ListActivitiesKey, ListActivitiesData>());
-      exoActivitiesCountCache.select(new ScopeCacheSelector<ActivityCountKey, IntegerData>());
+      CacheType.ACTIVITIES.getStatistics().evict(exoActivitiesCache.getCacheSize());
+      CacheType.ACTIVITIES_COUNT.getStatistics().evict(exoActivitiesCountCache.getCacheSize());
+      CacheType.ACTIVITIES.select(exoActivitiesCache, new ScopeCacheSelector<ListActivitiesKey, ListActivitiesData>());
+      CacheType.ACTIVITIES_COUNT.select(exoActivitiesCountCache, new ScopeCacheSelector<ActivityCountKey, IntegerData>());
     }
     catch (Exception e) {
       LOG.error(e);
     }
 
+    //
+    activitiesIndex.clear();
+    activitiesCountIndex.clear();
+
+  }
+
+  /**
+   * Clears the cached lists and counts of the given identities, including the feeds which aggregate their streams.
+   * Used when the connections or the spaces of these identities have changed.
+   *
+   * @param identityIds the identity ids
+   * @since 4.1
+   */
+  public void clearIdentitiesCache(String... identityIds) {
+
+    for (String identityId : identityIds) {
+      exoFeedOwnersCache.remove(new IdentityKey(new Identity(identityId)));
+    }
+    clearCacheFor(Arrays.asList(identityIds));
+
   }
 
   void clearOwnerCache(String ownerId) {
 
     try {
-      exoActivityCache.select(new ActivityOwnerCacheSelector(ownerId));
+      CacheType.ACTIVITY.select(exoActivityCache, new ActivityOwnerCacheSelector(ownerId));
     }
     catch (Exception e) {
       LOG.error(e);
@@ -99,10 +149,140 @@ public class CachedActivityStorage implements ActivityStorage {
    */
   public void clearActivityCached(String activityId) {
     ActivityKey key = new ActivityKey(activityId);
-    exoActivityCache.remove(key);
-    clearCache();
+    ActivityData removed = exoActivityCache.remove(key);
+    if (removed != null && removed != ActivityData.NULL) {
+      clearCacheFor(removed.build());
+    }
+    else {
+      clearCache();
+    }
   }
-  
+
+  /**
+   * Evicts the cached lists and counts which contain the activity: the streams of its owner, poster, mentioners,
+   * commenters and likers, the feeds which aggregate them and its comments.
+   *
+   * @param activity the activity
+   */
+  private void clearCacheFor(ExoSocialActivity activity) {
+    clearCacheFor(getDependencies(activity));
+  }
+
+  private void clearCacheFor(Collection<String> ids) {
+
+    if (!targetedEviction) {
+      clearCache();
+      return;
+    }
+
+    //
+    for (String id : ids) {
+      for (ListActivitiesKey key : activitiesIndex.removeById(id)) {
+        activitiesCache.remove(key);
+      }
+      for (ActivityCountKey key : activitiesCountIndex.removeById(id)) {
+        activitiesCountCache.remove(key);
+      }
+    }
+
+  }
+
+  private Set<String> getDependencies(ExoSocialActivity activity) {
+
+    Set<String> ids = new HashSet<String>();
+    if (activity == null) {
+      return ids;
+    }
+
+    //
+    addIds(ids, activity.getId(), activity.getStreamId(), activity.getPosterId(), activity.getUserId());
+    addIds(ids, activity.getMentionedIds());
+    addIds(ids, activity.getCommentedIds());
+    addIds(ids, activity.getLikeIdentityIds());
+    return ids;
+
+  }
+
+  private void addIds(Set<String> ids, String... values) {
+
+    if (values == null) {
+      return;
+    }
+
+    //
+    for (String value : values) {
+      if (value != null) {
+        // mentioners and commenters are stored as identityId@count
+        int index = value.indexOf(MENTION_CHAR);
+        ids.add(index == -1 ? value : value.substring(0, index));
+      }
+    }
+
+  }
+
+  private Collection<String> getDependencies(ActivityCountKey key) {
+
+    Set<String> ids = new HashSet<String>();
+    if (key.getKey() != null) {
+      String ownerId = key.getKey().getId();
+      ids.add(ownerId);
+      if (FEED_TYPES.contains(key.getType())) {
+        ids.addAll(getFeedOwnerIds(ownerId));
+      }
+    }
+    if (key.getActivityKey() != null) {
+      ids.add(key.getActivityKey().getId());
+    }
+    if (key.getBaseId() != null) {
+      ids.add(key.getBaseId());
+    }
+    return ids;
+
+  }
+
+  private Collection<String> getDependencies(ListActivitiesKey key) {
+
+    if (key.getKey() != null) {
+      return getDependencies(key.getKey());
+    }
+
+    //
+    Set<String> ids = new HashSet<String>();
+    if (key.getIdentities() != null) {
+      for (IdentityKey identityKey : key.getIdentities().getIds()) {
+        ids.add(identityKey.getId());
+      }
+    }
+    return ids;
+
+  }
+
+  private List<String> getFeedOwnerIds(String identityId) {
+
+    IdentityKey key = new IdentityKey(new Identity(identityId));
+    ListIdentitiesData data = exoFeedOwnersCache.get(key);
+    if (data == null) {
+      List<IdentityKey> keys = new ArrayList<IdentityKey>();
+      for (String id : storage.getFeedOwnerIds(identityId)) {
+        keys.add(new IdentityKey(new Identity(id)));
+      }
+      data = new ListIdentitiesData(keys);
+      exoFeedOwnersCache.put(key, data);
+    }
+
+    //
+    List<String> ids = new ArrayList<String>(data.getIds().size());
+    for (IdentityKey owner : data.getIds()) {
+      ids.add(owner.getId());
+    }
+    return ids;
+
+  }
+
+  private static int getIndexCapacity(ExoCache<?, ?> cache) {
+    return cache.getMaxSize() > 0 ? cache.getMaxSize() : DEFAULT_INDEX_CAPACITY;
+  }
+
   /**
    * Build the activity list from the caches Ids.
    *
@@ -111,12 +291,11 @@ public class CachedActivityStorage implements ActivityStorage {
    */
   private List<ExoSocialActivity> buildActivities(ListActivitiesData data) {
 
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
+    List<String> ids = new ArrayList<String>(data.getIds().size());
     for (ActivityKey k : data.getIds()) {
-      ExoSocialActivity a = getActivity(k.getId());
-      activities.add(a);
+      ids.add(k.getId());
     }
-    return activities;
+    return getActivities(ids);
 
   }
 
@@ -149,10 +328,40 @@ public class CachedActivityStorage implements ActivityStorage {
     this.exoActivitiesCountCache = cacheService.getActivitiesCountCache();
     this.exoActivitiesCache = cacheService.getActivitiesCache();
 
+    //
+    this.activitiesCountIndex = new CacheKeyIndex<ActivityCountKey>(getIndexCapacity(exoActivitiesCountCache));
+    this.activitiesIndex = new CacheKeyIndex<ListActivitiesKey>(getIndexCapacity(exoActivitiesCache));
+    this.exoFeedOwnersCache = cacheService.getFeedOwnersCache();
+    this.targetedEviction = cacheService.isTargetedEviction();
+
     //
     this.activityCache = CacheType.ACTIVITY.createFutureCache(exoActivityCache);
-    this.activitiesCountCache = CacheType.ACTIVITIES_COUNT.createFutureCache(exoActivitiesCountCache);
-    this.activitiesCache = CacheType.ACTIVITIES.createFutureCache(exoActivitiesCache);
+    this.activitiesCountCache = new FutureExoCache<ActivityCountKey, IntegerData, ServiceContext<IntegerData>>(
+        new CacheLoader<ActivityCountKey, IntegerData>(), exoActivitiesCountCache, CacheType.ACTIVITIES_COUNT.getStatistics(),
+        CacheType.ACTIVITIES_COUNT.getSettings()) {
+      @Override
+      protected void put(ActivityCountKey key, IntegerData value) {
+        if (targetedEviction) {
+          for (ActivityCountKey evicted : activitiesCountIndex.add(key, getDependencies(key))) {
+            remove(evicted);
+          }
+        }
+        super.put(key, value);
+      }
+    };
+    this.activitiesCache = new FutureExoCache<ListActivitiesKey, ListActivitiesData, ServiceContext<ListActivitiesData>>(
+        new CacheLoader<ListActivitiesKey, ListActivitiesData>(), exoActivitiesCache, CacheType.ACTIVITIES.getStatistics(),
+        CacheType.ACTIVITIES.getSettings()) {
+      @Override
+      protected void put(ListActivitiesKey key, ListActivitiesData value) {
+        if (targetedEviction) {
+          for (ListActivitiesKey evicted : activitiesIndex.add(key, getDependencies(key))) {
+            remove(evicted);
+          }
+        }
+        super.put(key, value);
+      }
+    };
 
   }
 
@@ -187,6 +396,64 @@ public class CachedActivityStorage implements ActivityStorage {
     return activity.build();
 
   }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<ExoSocialActivity> getActivities(final List<String> activityIds) throws ActivityStorageException {
+
+    ActivityData[] found = new ActivityData[activityIds.size()];
+    List<String> missingIds = new ArrayList<String>();
+
+    //
+    for (int i = 0; i < found.length; ++i) {
+      found[i] = exoActivityCache.get(new ActivityKey(activityIds.get(i)));
+      if (found[i] != null) {
+        CacheType.ACTIVITY.getStatistics().hit();
+      }
+      else {
+        CacheType.ACTIVITY.getStatistics().miss();
+        missingIds.add(activityIds.get(i));
+      }
+    }
+
+    //
+    if (missingIds.size() == 1) {
+      // one miss goes through the future cache, so that the concurrent loads of the same activity are shared
+      int i = activityIds.indexOf(missingIds.get(0));
+      ExoSocialActivity got = getActivity(missingIds.get(0));
+      found[i] = got != null ? new ActivityData(got) : ActivityData.NULL;
+    }
+    else if (missingIds.size() > 0) {
+      Map<String, ActivityData> loaded = new HashMap<String, ActivityData>();
+      for (ExoSocialActivity got : storage.getActivities(missingIds)) {
+        ActivityData data = new ActivityData(got);
+        exoActivityCache.put(new ActivityKey(got.getId()), data);
+        loaded.put(got.getId(), data);
+      }
+      for (int i = 0; i < found.length; ++i) {
+        if (found[i] == null) {
+          String id = activityIds.get(i);
+          found[i] = loaded.get(id);
+          if (found[i] == null) {
+            found[i] = ActivityData.NULL;
+            exoActivityCache.put(new ActivityKey(id), ActivityData.NULL);
+          }
+        }
+      }
+    }
+
+    //
+    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>(found.length);
+    for (ActivityData data : found) {
+      ExoSocialActivity activity = data.build();
+      if (activity != null) {
+        activities.add(activity);
+      }
+    }
+    return activities;
+
+  }
   
   /**
    * {@inheritDoc}
@@ -233,7 +500,7 @@ public class CachedActivityStorage implements ActivityStorage {
     ActivityKey activityKey = new ActivityKey(activity.getId());
     exoActivityCache.remove(activityKey);
     exoActivityCache.put(activityKey, new ActivityData(getActivity(activity.getId())));
-    clearCache();
+    clearCacheFor(getActivity(activity.getId()));
   }
 
   /**
@@ -247,7 +514,7 @@ public class CachedActivityStorage implements ActivityStorage {
     //
     ActivityKey key = new ActivityKey(a.getId());
     exoActivityCache.put(key, new ActivityData(getActivity(a.getId())));
-    clearCache();
+    clearCacheFor(getActivity(a.getId()));
 
     //
     return a;
@@ -273,7 +540,14 @@ public class CachedActivityStorage implements ActivityStorage {
     //
     ActivityKey key = new ActivityKey(activityId);
     exoActivityCache.remove(key);
-    clearCache();
+
+    // the parent of a comment is not known here
+    if (a == null || a.isComment()) {
+      clearCache();
+    }
+    else {
+      clearCacheFor(a);
+    }
 
   }
 
@@ -283,15 +557,14 @@ public class CachedActivityStorage implements ActivityStorage {
   public void deleteComment(final String activityId, final String commentId) throws ActivityStorageException {
     
     //
+    Set<String> ids = getDependencies(getActivity(activityId));
     storage.deleteComment(activityId, commentId);
 
     //
     exoActivityCache.remove(new ActivityKey(commentId));
-    ActivityKey activityKey = new ActivityKey(activityId);
-    exoActivityCache.remove(activityKey);
-    exoActivityCache.put(activityKey, new ActivityData(getActivity(activityId)));
+    exoActivityCache.remove(new ActivityKey(activityId));
 
-    clearActivityCached(activityId);
+    clearCacheFor(ids);
   }
 
   /**
@@ -305,7 +578,7 @@ public class CachedActivityStorage implements ActivityStorage {
     for (Identity i : connectionList) {
       keyskeys.add(new IdentityKey(i));
     }
-    ListActivitiesKey listKey = new ListActivitiesKey(new ListIdentitiesData(keyskeys), 0, limit);
+    ListActivitiesKey listKey = new ListActivitiesKey(new ListIdentitiesData(keyskeys), offset, limit);
 
     //
     ListActivitiesData keys = activitiesCache.get(
@@ -330,6 +603,13 @@ public class CachedActivityStorage implements ActivityStorage {
     return storage.getActivitiesOfIdentities(connectionList, type, offset, limit);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public int getNumberOfActivitiesOfIdentities(final List<Identity> connectionList) throws ActivityStorageException {
+    return storage.getNumberOfActivitiesOfIdentities(connectionList);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -948,6 +1228,7 @@ public class CachedActivityStorage implements ActivityStorage {
   public void updateActivity(final ExoSocialActivity existingActivity) throws ActivityStorageException {
 
     //
+    Set<String> ids = getDependencies(getActivity(existingActivity.getId()));
     storage.updateActivity(existingActivity);
     
     //
@@ -955,8 +1236,15 @@ public class CachedActivityStorage implements ActivityStorage {
     exoActivityCache.remove(key);
     
     //
-    clearCache();
-    clearActivityCached(existingActivity.getId());
+    ids.addAll(getDependencies(existingActivity));
+    if (existingActivity.isComment()) {
+      // the comment may be hidden or shown, the comments of its activity change
+      ExoSocialActivity parent = storage.getParentActivity(existingActivity);
+      if (parent != null) {
+        ids.add(parent.getId());
+      }
+    }
+    clearCacheFor(ids);
   }
 
   /**
@@ -1032,7 +1320,7 @@ public class CachedActivityStorage implements ActivityStorage {
     for (Identity i : connectionList) {
       keyskeys.add(new IdentityKey(i));
     }
-    ListActivitiesKey listKey = new ListActivitiesKey(new ListIdentitiesData(keyskeys), 0, limit);
+    ListActivitiesKey listKey = new ListActivitiesKey(new ListIdentitiesData(keyskeys), offset, limit);
 
     //
     ListActivitiesData keys = activitiesCache.get(
@@ -1048,6 +1336,15 @@ public class CachedActivityStorage implements ActivityStorage {
     return buildActivities(keys);
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<ExoSocialActivity> getActivitiesAfter(ActivitiesRealtimeListAccess.ActivityType type, Identity owner,
+                                                    ActivityCursor cursor, int limit) throws ActivityStorageException {
+    // the pages are not cached, the activities are loaded from the cache by the storage
+    return storage.getActivitiesAfter(type, owner, cursor, limit);
+  }
+
   @Override
   public int getNumberOfSpaceActivities(final Identity spaceIdentity) {
     //
@@ -75,8 +75,8 @@ public class CachedIdentityStorage implements IdentityStorage {
   void clearCache() {
 
     try {
-      exoIdentitiesCache.select(new IdentityCacheSelector(OrganizationIdentityProvider.NAME));
-      exoIdentitiesCountCache.select(new IdentityCacheSelector(OrganizationIdentityProvider.NAME));
+      CacheType.IDENTITIES.select(exoIdentitiesCache, new IdentityCacheSelector(OrganizationIdentityProvider.NAME));
+      CacheType.IDENTITIES_COUNT.select(exoIdentitiesCountCache, new IdentityCacheSelector(OrganizationIdentityProvider.NAME));
     }
     catch (Exception e) {
       LOG.error(e);
@@ -154,9 +154,21 @@ public class CachedIdentityStorage implements IdentityStorage {
     //
     IdentityKey key = new IdentityKey(new Identity(identity.getId()));
     exoIdentityCache.put(key, new IdentityData(identity));
+    clearIdentityIndex(identity.getProviderId(), identity.getRemoteId());
     clearCache();
   }
 
+  /**
+   * Clears the index entry of a provider id and a remote id, including the mark left when it was found missing.
+   *
+   * @param providerId the provider id
+   * @param remoteId the remote id
+   * @since 4.1
+   */
+  void clearIdentityIndex(String providerId, String remoteId) {
+    identityIndexCache.remove(new IdentityCompositeKey(providerId, remoteId));
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -99,9 +99,9 @@ public class CachedRelationshipStorage implements RelationshipStorage {
     }
 
     try {
-      exoRelationshipsCache.select(new RelationshipCacheSelector(identities.toArray(new String[]{})));
-      exoRelationshipCountCache.select(new RelationshipCacheSelector(identities.toArray(new String[]{})));
-      exoSuggestionCache.select(new SuggestionCacheSelector(identities.toArray(new String[]{})));
+      CacheType.RELATIONSHIPS.select(exoRelationshipsCache, new RelationshipCacheSelector(identities.toArray(new String[]{})));
+      CacheType.RELATIONSHIPS_COUNT.select(exoRelationshipCountCache, new RelationshipCacheSelector(identities.toArray(new String[]{})));
+      CacheType.SUGGESTIONS.select(exoSuggestionCache, new SuggestionCacheSelector(identities.toArray(new String[]{})));
     }
     catch (Exception e) {
       LOG.error(e);
@@ -226,7 +226,7 @@ public class CachedRelationshipStorage implements RelationshipStorage {
     exoRelationshipByIdentityCache.put(identityKey1, key);
     exoRelationshipByIdentityCache.put(identityKey2, key);
     clearCacheFor(relationship);
-    getCachedActivityStorage().clearCache();
+    getCachedActivityStorage().clearIdentitiesCache(r.getSender().getId(), r.getReceiver().getId());
 
     return r;
 
@@ -249,11 +249,16 @@ public class CachedRelationshipStorage implements RelationshipStorage {
       
       identityKey = new RelationshipIdentityKey(relationship.getReceiver().getId(), relationship.getSender().getId());
       relationshipCacheIdentity.remove(identityKey);
+
+      //
+      getCachedActivityStorage().clearIdentitiesCache(relationship.getSender().getId(), relationship.getReceiver().getId());
+    }
+    else {
+      getCachedActivityStorage().clearCache();
     }
     
     //
     clearCacheFor(relationship);
-    getCachedActivityStorage().clearCache();
     
   }
 
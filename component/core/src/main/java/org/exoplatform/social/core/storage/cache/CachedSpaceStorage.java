@@ -23,10 +23,12 @@ import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
 import org.exoplatform.social.core.identity.provider.SpaceIdentityProvider;
 import org.exoplatform.social.core.space.SpaceFilter;
 import org.exoplatform.social.core.space.SpaceUtils;
 import org.exoplatform.social.core.space.model.Space;
+import org.exoplatform.social.core.space.model.SpaceMembership;
 import org.exoplatform.social.core.storage.SpaceStorageException;
 import org.exoplatform.social.core.storage.cache.model.data.IntegerData;
 import org.exoplatform.social.core.storage.cache.model.data.ListIdentitiesData;
@@ -46,7 +48,10 @@ import org.exoplatform.social.core.storage.cache.model.key.SpaceKey;
 import org.exoplatform.social.core.storage.cache.model.key.SpaceRefKey;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
@@ -199,10 +204,20 @@ public class CachedSpaceStorage implements SpaceStorage {
     exoRefSpaceCache.remove(new SpaceRefKey(null, null, null, removed.getUrl()));
   }
 
+  /**
+   * Clears the references to the current names of a space, including the marks left when they were found missing.
+   */
+  private void cleanRef(Space space) {
+    spaceRefCache.remove(new SpaceRefKey(space.getDisplayName()));
+    spaceRefCache.remove(new SpaceRefKey(null, space.getPrettyName()));
+    spaceRefCache.remove(new SpaceRefKey(null, null, space.getGroupId()));
+    spaceRefCache.remove(new SpaceRefKey(null, null, null, space.getUrl()));
+  }
+
   void clearIdentityCache() {
 
     try {
-      exoIdentitiesCache.select(new IdentityCacheSelector(SpaceIdentityProvider.NAME));
+      CacheType.IDENTITIES.select(exoIdentitiesCache, new IdentityCacheSelector(SpaceIdentityProvider.NAME));
     }
     catch (Exception e) {
       LOG.error(e);
@@ -213,8 +228,8 @@ public class CachedSpaceStorage implements SpaceStorage {
   void clearSpaceCache() {
 
     try {
-      exoSpacesCache.select(new ScopeCacheSelector<ListSpacesKey, ListSpacesData>());
-      exoSpacesCountCache.select(new ScopeCacheSelector<SpaceFilterKey, IntegerData>());
+      CacheType.SPACES.select(exoSpacesCache, new ScopeCacheSelector<ListSpacesKey, ListSpacesData>());
+      CacheType.SPACES_COUNT.select(exoSpacesCountCache, new ScopeCacheSelector<SpaceFilterKey, IntegerData>());
     }
     catch (Exception e) {
       LOG.error(e);
@@ -270,11 +285,96 @@ public class CachedSpaceStorage implements SpaceStorage {
     exoSpaceSimpleCache.remove(new SpaceKey(space.getId()));
     SpaceData removed = exoSpaceCache.remove(new SpaceKey(space.getId()));
     
+    clearSpaceCache();
+    clearIdentityCache();
+    cleanRef(space);
+    if (removed != null) {
+      cleanRef(removed);
+      clearMembersActivityCache(removed.getMembers(), space.getMembers());
+    }
+    else if (isNew) {
+      clearMembersActivityCache(null, space.getMembers());
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void addMember(final Space space, final String userId) throws SpaceStorageException {
+
+    //
+    storage.addMember(space, userId);
+
+    //
+    clearMemberCache(space, userId);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void removeMember(final Space space, final String userId) throws SpaceStorageException {
+
+    //
+    storage.removeMember(space, userId);
+
+    //
+    clearMemberCache(space, userId);
+
+  }
+
+  /**
+   * Clears the cached data which depend on the users of a space after a user joined or left it.
+   *
+   * @param space the space
+   * @param userId the user name
+   */
+  private void clearMemberCache(Space space, String userId) {
+
+    exoSpaceSimpleCache.remove(new SpaceKey(space.getId()));
+    SpaceData removed = exoSpaceCache.remove(new SpaceKey(space.getId()));
+
     clearSpaceCache();
     clearIdentityCache();
     if (removed != null) {
       cleanRef(removed);
     }
+    clearMembersActivityCache(null, new String[] {userId});
+
+  }
+
+  /**
+   * Clears the cached activity streams of the users who joined or left the space.
+   *
+   * @param previousMembers the members before the update
+   * @param members the members after the update
+   */
+  private void clearMembersActivityCache(String[] previousMembers, String[] members) {
+
+    Set<String> changed = new HashSet<String>();
+    if (previousMembers != null) {
+      changed.addAll(Arrays.asList(previousMembers));
+    }
+    if (members != null) {
+      for (String member : members) {
+        if (!changed.remove(member)) {
+          changed.add(member);
+        }
+      }
+    }
+
+    //
+    List<String> identityIds = new ArrayList<String>();
+    for (String userName : changed) {
+      Identity identity = getCachedIdentityStorage().findIdentity(OrganizationIdentityProvider.NAME, userName);
+      if (identity != null) {
+        identityIds.add(identity.getId());
+      }
+    }
+    if (!identityIds.isEmpty()) {
+      getCachedActivityStorage().clearIdentitiesCache(identityIds.toArray(new String[identityIds.size()]));
+    }
 
   }
 
@@ -298,6 +398,7 @@ public class CachedSpaceStorage implements SpaceStorage {
 
     //remove identity and profile from cache
     cachedIdentityStorage = this.getCachedIdentityStorage();
+    cachedIdentityStorage.clearIdentityIndex(SpaceIdentityProvider.NAME, space.getPrettyName());
     Identity identitySpace = cachedIdentityStorage.findIdentity(SpaceIdentityProvider.NAME,
                                                                 space.getPrettyName());
     if (identitySpace == null) {
@@ -319,6 +420,7 @@ public class CachedSpaceStorage implements SpaceStorage {
     SpaceData removed = exoSpaceCache.remove(new SpaceKey(space.getId()));
     clearSpaceCache();
     clearIdentityCache();
+    cleanRef(space);
     if (removed != null) {
       exoRefSpaceCache.remove(new SpaceRefKey(oldDisplayName));
       exoRefSpaceCache.remove(new SpaceRefKey(null, oldPrettyName));
@@ -368,6 +470,14 @@ public class CachedSpaceStorage implements SpaceStorage {
 
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<SpaceMembership> getSpaceMemberships(final String userId) throws SpaceStorageException {
+    // already served from memory by the storage index
+    return storage.getSpaceMemberships(userId);
+  }
+
   /**
    * {@inheritDoc}
    */
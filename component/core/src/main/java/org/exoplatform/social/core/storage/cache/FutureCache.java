@@ -25,11 +25,17 @@ import org.gatein.common.logging.Logger;
 import org.gatein.common.logging.LoggerFactory;
 
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -47,6 +53,10 @@ import java.util.concurrent.FutureTask;
  * <p>The {@link Loader} interface provides a source to retrieve objects to put in the cache. The goal to maintain
  * this interface is to decouple the cache from the object source.</p>
  *
+ * <p>The {@link FutureCacheSettings} can make the cache remember the keys found missing for a while, bound the time
+ * a thread waits for the load of another thread, and load the values again once they are old. The keys are then
+ * tracked in a bounded map next to the cache, a key removed with {@link #remove(Object)} is forgotten.</p>
+ *
  * @author <a href="mailto:julien.viet@exoplatform.com">Julien Viet</a>
  * @version $Revision$
  * @param <K> the key type parameter
@@ -65,10 +75,63 @@ public abstract class FutureCache<K, V, C>
    /** . */
    private final Logger log = LoggerFactory.getLogger(FutureCache.class);
 
+   /** . */
+   protected final CacheStatistics statistics;
+
+   /** . */
+   protected final FutureCacheSettings settings;
+
+   /** The recently loaded keys, null when the settings do not need them. */
+   private final Map<K, KeyState<V>> states;
+
+   /** Counts the removals, a load racing with a removal does not mark its key as missing. */
+   private final AtomicLong removals;
+
    public FutureCache(Loader<K, V, C> loader)
+   {
+      this(loader, new CacheStatistics());
+   }
+
+   public FutureCache(Loader<K, V, C> loader, CacheStatistics statistics)
+   {
+      this(loader, statistics, FutureCacheSettings.DEFAULT);
+   }
+
+   public FutureCache(Loader<K, V, C> loader, CacheStatistics statistics, FutureCacheSettings settings)
    {
       this.loader = loader;
       this.futureEntries = new ConcurrentHashMap<K, FutureTask<V>>();
+      this.statistics = statistics;
+      this.settings = settings;
+      this.removals = new AtomicLong();
+
+      //
+      if (settings.isTracking())
+      {
+         final int maxKeys = settings.getMaxKeys();
+         this.states = Collections.synchronizedMap(new LinkedHashMap<K, KeyState<V>>(16, 0.75f, true)
+         {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, KeyState<V>> eldest)
+            {
+               return size() > maxKeys;
+            }
+         });
+      }
+      else
+      {
+         this.states = null;
+      }
+   }
+
+   /**
+    * Returns the hit, miss, eviction and load counters of this cache.
+    *
+    * @return the statistics
+    */
+   public CacheStatistics getStatistics()
+   {
+      return statistics;
    }
 
    /**
@@ -88,6 +151,39 @@ public abstract class FutureCache<K, V, C>
     */
    protected abstract void put(K key, V value);
 
+   /**
+    * Removes a key from the cache. Implementations must call {@link #forget(Object)}.
+    *
+    * @param key the key
+    */
+   protected abstract void remove(K key);
+
+   /**
+    * Forgets what is known about a key, its load time, its last value and whether it is missing.
+    *
+    * @param key the key
+    */
+   protected final void forget(K key)
+   {
+      removals.incrementAndGet();
+      if (states != null)
+      {
+         states.remove(key);
+      }
+   }
+
+   /**
+    * Forgets what is known about all the keys.
+    */
+   protected final void forgetAll()
+   {
+      removals.incrementAndGet();
+      if (states != null)
+      {
+         states.clear();
+      }
+   }
+
    /**
     * Perform a cache lookup for the specified key within the specified context.
     * When the value cannot be loaded (because it does not exist or it failed or anything else that
@@ -96,88 +192,264 @@ public abstract class FutureCache<K, V, C>
     * @param context the context in which the resource is accessed
     * @param key the key identifying the resource
     * @return the value
+    * @throws UndeclaredThrowableException when the load failed, or when the load by another thread took longer than
+    *         the load timeout and no previous value is known
     */
    public final V get(final C context, final K key)
    {
       // First we try a simple cache get
       V value = get(key);
 
+      //
+      if (value != null)
+      {
+         statistics.hit();
+
+         // Load old values again, the other threads keep getting the current one meanwhile
+         if (settings.getRefreshAfter() > 0 && isDue(key))
+         {
+            value = refresh(context, key, value);
+         }
+         return value;
+      }
+
+      // The key was recently found missing
+      if (settings.getMissingLiveTime() > 0 && isMissing(key))
+      {
+         statistics.hit();
+         statistics.missingHit();
+         return null;
+      }
+
       // If it does not succeed then we go through a process that will avoid to load
       // the same resource concurrently
-      if (value == null)
+      statistics.miss();
+
+      // Create our future
+      FutureTask<V> future = createTask(context, key, false);
+
+      // This boolean means we inserted in the local
+      boolean inserted = true;
+
+      //
+      try
       {
-         // Create our future
-         FutureTask<V> future = new FutureTask<V>(new Callable<V>()
+         FutureTask<V> phantom = futureEntries.putIfAbsent(key, future);
+
+         // Use the value that could have been inserted by another thread
+         if (phantom != null)
          {
-            public V call() throws Exception
-            {
-               // Retrieve the value from the loader
-               V value = loader.retrieve(context, key);
+            future = phantom;
+            inserted = false;
+            statistics.sharedLoad();
 
-               //
-               if (value != null)
-               {
-                  // Cache it, it is made available to other threads (unless someone removes it)
-                  put(key, value);
+            // Returns the value, waiting for the other thread at most the load timeout
+            long timeout = settings.getLoadTimeout();
+            value = timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+         }
+         else
+         {
+            future.run();
 
-                  // Return value
-                  return value;
-               }
-               else
-               {
-                  return null;
-               }
-            }
-         });
+            // Returns the value
+            value = future.get();
+         }
+      }
+      catch (ExecutionException e)
+      {
+         if (e.getCause() != null)
+         {
+            throw new UndeclaredThrowableException(e.getCause());
+         }
+         else
+         {
+            log.error("Computing of resource " + key + " threw an exception", e.getCause());
+         }
+      }
+      catch (TimeoutException e)
+      {
+         statistics.loadTimeout();
+         value = getStale(key);
+         if (value == null)
+         {
+            throw new UndeclaredThrowableException(e, "Loading of resource " + key + " took more than "
+               + settings.getLoadTimeout() + "ms");
+         }
+         statistics.staleHit();
+      }
+      catch (Exception e)
+      {
+         log.error("Retrieval of resource " + key + " threw an exception", e);
+      }
+      finally
+      {
+         // Clean up the per key map but only if our insertion succeeded and with our future
+         if (inserted)
+         {
+            futureEntries.remove(key, future);
+         }
+      }
 
-         // This boolean means we inserted in the local
-         boolean inserted = true;
+      //
+      return value;
+   }
 
-         //
-         try
+   private FutureTask<V> createTask(final C context, final K key, final boolean refresh)
+   {
+      final long removalCount = removals.get();
+      return new FutureTask<V>(new Callable<V>()
+      {
+         public V call() throws Exception
          {
-            FutureTask<V> phantom = futureEntries.putIfAbsent(key, future);
-
-            // Use the value that could have been inserted by another thread
-            if (phantom != null)
+            // Retrieve the value from the loader
+            V value;
+            long start = System.nanoTime();
+            boolean failed = true;
+            try
             {
-               future = phantom;
-               inserted = false;
+               value = loader.retrieve(context, key);
+               failed = false;
             }
-            else
+            finally
             {
-               future.run();
+               statistics.load(System.nanoTime() - start, failed);
             }
 
-            // Returns the value
-            value = future.get();
-         }
-         catch (ExecutionException e)
-         {
-            if (e.getCause() != null)
+            //
+            if (value != null)
             {
-               throw new UndeclaredThrowableException(e.getCause());
+               // Cache it, it is made available to other threads (unless someone removes it)
+               put(key, value);
+               if (removals.get() == removalCount)
+               {
+                  loaded(key, value);
+               }
+
+               // Return value
+               return value;
             }
             else
             {
-               log.error("Computing of resource " + key + " threw an exception", e.getCause());
+               if (refresh)
+               {
+                  // The cached value does not exist anymore
+                  remove(key);
+               }
+               else if (removals.get() == removalCount)
+               {
+                  missing(key);
+               }
+               return null;
             }
          }
-         catch (Exception e)
+      });
+   }
+
+   /**
+    * Loads a cached value again in the current thread, unless another thread is already loading it.
+    */
+   private V refresh(C context, K key, V value)
+   {
+      FutureTask<V> future = createTask(context, key, true);
+      if (futureEntries.putIfAbsent(key, future) != null)
+      {
+         return value;
+      }
+
+      //
+      statistics.refresh();
+      try
+      {
+         future.run();
+         return future.get();
+      }
+      catch (Exception e)
+      {
+         log.error("Refresh of resource " + key + " threw an exception", e);
+         return value;
+      }
+      finally
+      {
+         futureEntries.remove(key, future);
+      }
+   }
+
+   /**
+    * Checks whether a cached value is old enough to be loaded again, and if so restarts its age so that a single
+    * thread refreshes it.
+    */
+   private boolean isDue(K key)
+   {
+      long now = System.currentTimeMillis();
+      synchronized (states)
+      {
+         KeyState<V> state = states.get(key);
+         if (state == null)
          {
-            log.error("Retrieval of resource " + key + " threw an exception", e);
+            // Put in the cache without being loaded by this cache, its age is unknown
+            states.put(key, new KeyState<V>(null, now, 0));
+            return false;
          }
-         finally
+         if (now - state.loaded < settings.getRefreshAfter())
          {
-            // Clean up the per key map but only if our insertion succeeded and with our future
-            if (inserted)
-            {
-               futureEntries.remove(key, future);
-            }
+            return false;
          }
+         state.loaded = now;
+         return true;
       }
+   }
 
-      //
-      return value;
+   private boolean isMissing(K key)
+   {
+      KeyState<V> state = states.get(key);
+      return state != null && state.missingUntil > System.currentTimeMillis();
+   }
+
+   private V getStale(K key)
+   {
+      KeyState<V> state = states.get(key);
+      return state != null ? state.value : null;
+   }
+
+   private void loaded(K key, V value)
+   {
+      if (states != null)
+      {
+         // The value is only kept when it may be served on a load timeout
+         V last = settings.getLoadTimeout() > 0 ? value : null;
+         states.put(key, new KeyState<V>(last, System.currentTimeMillis(), 0));
+      }
+   }
+
+   private void missing(K key)
+   {
+      if (states != null && settings.getMissingLiveTime() > 0)
+      {
+         long now = System.currentTimeMillis();
+         states.put(key, new KeyState<V>(null, now, now + settings.getMissingLiveTime()));
+      }
+   }
+
+   /**
+    * What is known about a recently loaded key, guarded by the map of states.
+    */
+   private static class KeyState<V>
+   {
+
+      /** . */
+      private final V value;
+
+      /** . */
+      private long loaded;
+
+      /** . */
+      private final long missingUntil;
+
+      private KeyState(V value, long loaded, long missingUntil)
+      {
+         this.value = value;
+         this.loaded = loaded;
+         this.missingUntil = missingUntil;
+      }
    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache;
+
+/**
+ * The optional behaviours of a {@link FutureCache}, all disabled by default.
+ *
+ * @since 4.1
+ */
+public final class FutureCacheSettings {
+
+  /** The default number of keys whose load time, last value or missing mark is kept. */
+  public static final int DEFAULT_MAX_KEYS = 10000;
+
+  /** No missing key caching, no load timeout and no refresh. */
+  public static final FutureCacheSettings DEFAULT = new FutureCacheSettings(0, 0, 0, DEFAULT_MAX_KEYS);
+
+  private final long missingLiveTime;
+
+  private final long loadTimeout;
+
+  private final long refreshAfter;
+
+  private final int maxKeys;
+
+  /**
+   * @param missingLiveTime the time in milliseconds a key found missing is answered as missing without loading it
+   *                        again, 0 to load it each time
+   * @param loadTimeout the time in milliseconds a thread waits for the load of a key by another thread before getting
+   *                    the last value loaded for the key, or failing when there is none, 0 to wait until the end
+   * @param refreshAfter the age in milliseconds after which a value is loaded again by the next thread getting it,
+   *                     the other threads keeping the current value meanwhile, 0 to never refresh
+   * @param maxKeys the number of recently loaded keys tracked by the settings above
+   */
+  public FutureCacheSettings(long missingLiveTime, long loadTimeout, long refreshAfter, int maxKeys) {
+    this.missingLiveTime = Math.max(0, missingLiveTime);
+    this.loadTimeout = Math.max(0, loadTimeout);
+    this.refreshAfter = Math.max(0, refreshAfter);
+    this.maxKeys = maxKeys > 0 ? maxKeys : DEFAULT_MAX_KEYS;
+  }
+
+  public long getMissingLiveTime() {
+    return missingLiveTime;
+  }
+
+  public long getLoadTimeout() {
+    return loadTimeout;
+  }
+
+  public long getRefreshAfter() {
+    return refreshAfter;
+  }
+
+  public int getMaxKeys() {
+    return maxKeys;
+  }
+
+  /**
+   * @return true if the cache needs to track the recently loaded keys
+   */
+  public boolean isTracking() {
+    return missingLiveTime > 0 || loadTimeout > 0 || refreshAfter > 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("missingLiveTime=%dms, loadTimeout=%dms, refreshAfter=%dms, maxKeys=%d", missingLiveTime,
+                         loadTimeout, refreshAfter, maxKeys);
+  }
+
+}
@@ -42,14 +42,38 @@ public class FutureExoCache<K extends Serializable, V, C> extends FutureCache<K,
       this.cache = cache;
    }
 
+   public FutureExoCache(Loader<K, V, C> loader, ExoCache<K, V> cache, CacheStatistics statistics)
+   {
+      super(loader, statistics);
+
+      //
+      this.cache = cache;
+   }
+
+   public FutureExoCache(Loader<K, V, C> loader, ExoCache<K, V> cache, CacheStatistics statistics,
+                         FutureCacheSettings settings)
+   {
+      super(loader, statistics, settings);
+
+      //
+      this.cache = cache;
+   }
+
    public void clear()
    {
+      forgetAll();
+      statistics.evict(cache.getCacheSize());
       cache.clearCache();
    }
 
+   @Override
    public void remove(K key)
    {
-      cache.remove(key);
+      forget(key);
+      if (cache.remove(key) != null)
+      {
+         statistics.evict(1);
+      }
    }
 
    @Override
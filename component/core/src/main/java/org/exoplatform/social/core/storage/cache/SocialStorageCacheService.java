@@ -17,8 +17,23 @@
 
 package org.exoplatform.social.core.storage.cache;
 
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.container.xml.PropertiesParam;
+import org.exoplatform.container.xml.ValueParam;
+import org.exoplatform.management.annotations.Managed;
+import org.exoplatform.management.annotations.ManagedDescription;
+import org.exoplatform.management.annotations.ManagedName;
+import org.exoplatform.management.jmx.annotations.NameTemplate;
+import org.exoplatform.management.jmx.annotations.Property;
 import org.exoplatform.services.cache.CacheService;
 import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.storage.cache.model.data.ActivityData;
 import org.exoplatform.social.core.storage.cache.model.data.IdentityData;
 import org.exoplatform.social.core.storage.cache.model.data.IntegerData;
@@ -32,6 +47,7 @@ import org.exoplatform.social.core.storage.cache.model.data.SpaceSimpleData;
 import org.exoplatform.social.core.storage.cache.model.data.SuggestionsData;
 import org.exoplatform.social.core.storage.cache.model.key.ActivityCountKey;
 import org.exoplatform.social.core.storage.cache.model.key.ActivityKey;
+import org.exoplatform.social.core.storage.cache.model.key.CacheKey;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityCompositeKey;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityFilterKey;
 import org.exoplatform.social.core.storage.cache.model.key.IdentityKey;
@@ -51,8 +67,34 @@ import org.exoplatform.social.core.storage.cache.model.key.SuggestionKey;
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
+@Managed
+@ManagedDescription("Social storage caches")
+@NameTemplate({
+  @Property(key = "service", value = "social"),
+  @Property(key = "view", value = "storagecache")
+})
 public class SocialStorageCacheService {
 
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(SocialStorageCacheService.class);
+
+  /** The time in seconds a key found missing is answered as missing. */
+  public static final String MISSING_LIVE_TIME_KEY = "missing-live-time";
+
+  /** The time in milliseconds a thread waits for the load of a key by another thread. */
+  public static final String LOAD_TIMEOUT_KEY = "load-timeout";
+
+  /** The age in seconds after which a cached value is loaded again. */
+  public static final String REFRESH_AFTER_KEY = "refresh-after";
+
+  /** The number of recently loaded keys tracked for the settings above. */
+  public static final String MAX_KEYS_KEY = "max-keys";
+
+  /** Whether a write evicts only the cached activity lists and counts indexed on this node. */
+  public static final String TARGETED_EVICTION_KEY = "targeted-eviction";
+
+  private final Map<CacheType, ExoCache<?, ?>> caches = new EnumMap<CacheType, ExoCache<?, ?>>(CacheType.class);
+
   // IdentityStorage
   private final ExoCache<IdentityKey, IdentityData> identityCache;
   private final ExoCache<IdentityCompositeKey, IdentityKey> identityIndexCache;
@@ -73,6 +115,8 @@ public class SocialStorageCacheService {
   private final ExoCache<ActivityKey, ActivityData> activityCache;
   private final ExoCache<ActivityCountKey, IntegerData> activitiesCountCache;
   private final ExoCache<ListActivitiesKey, ListActivitiesData> activitiesCache;
+  private final ExoCache<IdentityKey, ListIdentitiesData> feedOwnersCache;
+  private final boolean targetedEviction;
 
   // SpaceStorage
   private final ExoCache<SpaceKey, SpaceData> spaceCache;
@@ -82,31 +126,39 @@ public class SocialStorageCacheService {
   
   private final ExoCache<SpaceKey, SpaceSimpleData> spaceSimpleCache;
 
-  public SocialStorageCacheService(CacheService cacheService) {
-    
-    this.identityCache = CacheType.IDENTITY.getFromService(cacheService);
-    this.identityIndexCache = CacheType.IDENTITY_INDEX.getFromService(cacheService);
-    this.profileCache = CacheType.PROFILE.getFromService(cacheService);
-    this.countIdentitiesCache = CacheType.IDENTITIES_COUNT.getFromService(cacheService);
-    this.identitiesCache = CacheType.IDENTITIES.getFromService(cacheService);
-
-    this.relationshipCache = CacheType.RELATIONSHIP.getFromService(cacheService);
-    this.relationshipCacheByIdentity = CacheType.RELATIONSHIP_FROM_IDENTITY.getFromService(cacheService);
-    this.relationshipsCount = CacheType.RELATIONSHIPS_COUNT.getFromService(cacheService);
-    this.relationshipsCache = CacheType.RELATIONSHIPS.getFromService(cacheService);
+  public SocialStorageCacheService(InitParams params, CacheService cacheService) {
+
+    // The settings are set before the cached storages create their future caches
+    for (CacheType type : CacheType.values()) {
+      type.setSettings(getSettings(params, type));
+    }
+
+    //
+    this.identityCache = register(CacheType.IDENTITY, cacheService);
+    this.identityIndexCache = register(CacheType.IDENTITY_INDEX, cacheService);
+    this.profileCache = register(CacheType.PROFILE, cacheService);
+    this.countIdentitiesCache = register(CacheType.IDENTITIES_COUNT, cacheService);
+    this.identitiesCache = register(CacheType.IDENTITIES, cacheService);
+
+    this.relationshipCache = register(CacheType.RELATIONSHIP, cacheService);
+    this.relationshipCacheByIdentity = register(CacheType.RELATIONSHIP_FROM_IDENTITY, cacheService);
+    this.relationshipsCount = register(CacheType.RELATIONSHIPS_COUNT, cacheService);
+    this.relationshipsCache = register(CacheType.RELATIONSHIPS, cacheService);
     
-    this.suggestionCache = CacheType.SUGGESTIONS.getFromService(cacheService);
+    this.suggestionCache = register(CacheType.SUGGESTIONS, cacheService);
 
-    this.activityCache = CacheType.ACTIVITY.getFromService(cacheService);
-    this.activitiesCountCache = CacheType.ACTIVITIES_COUNT.getFromService(cacheService);
-    this.activitiesCache = CacheType.ACTIVITIES.getFromService(cacheService);
+    this.activityCache = register(CacheType.ACTIVITY, cacheService);
+    this.activitiesCountCache = register(CacheType.ACTIVITIES_COUNT, cacheService);
+    this.activitiesCache = register(CacheType.ACTIVITIES, cacheService);
+    this.feedOwnersCache = register(CacheType.FEED_OWNERS, cacheService);
+    this.targetedEviction = getBoolean(params, TARGETED_EVICTION_KEY, true);
 
-    this.spaceCache = CacheType.SPACE.getFromService(cacheService);
-    this.spaceRefCache = CacheType.SPACE_REF.getFromService(cacheService);
-    this.spacesCountCache = CacheType.SPACES_COUNT.getFromService(cacheService);
-    this.spacesCache = CacheType.SPACES.getFromService(cacheService);
+    this.spaceCache = register(CacheType.SPACE, cacheService);
+    this.spaceRefCache = register(CacheType.SPACE_REF, cacheService);
+    this.spacesCountCache = register(CacheType.SPACES_COUNT, cacheService);
+    this.spacesCache = register(CacheType.SPACES, cacheService);
     
-    this.spaceSimpleCache = CacheType.SPACE_SIMPLE.getFromService(cacheService);
+    this.spaceSimpleCache = register(CacheType.SPACE_SIMPLE, cacheService);
 
   }
 
@@ -162,6 +214,21 @@ public class SocialStorageCacheService {
     return activitiesCache;
   }
 
+  public ExoCache<IdentityKey, ListIdentitiesData> getFeedOwnersCache() {
+    return feedOwnersCache;
+  }
+
+  /**
+   * Tells whether a write evicts only the cached activity lists and counts which depend on it. The keys are indexed
+   * on the node which loaded them, so a cluster clears the whole caches instead.
+   *
+   * @return true if the eviction is targeted
+   * @since 4.1
+   */
+  public boolean isTargetedEviction() {
+    return targetedEviction;
+  }
+
   public ExoCache<SpaceKey, SpaceData> getSpaceCache() {
     return spaceCache;
   }
@@ -181,4 +248,88 @@ public class SocialStorageCacheService {
   public ExoCache<ListSpacesKey, ListSpacesData> getSpacesCache() {
     return spacesCache;
   }
+
+  /**
+   * Gets the caches by type.
+   *
+   * @return the caches
+   * @since 4.1
+   */
+  public Map<CacheType, ExoCache<?, ?>> getCaches() {
+    return Collections.unmodifiableMap(caches);
+  }
+
+  @Managed
+  @ManagedDescription("The names of the caches")
+  public String[] getCacheNames() {
+    String[] names = new String[caches.size()];
+    int i = 0;
+    for (CacheType type : caches.keySet()) {
+      names[i++] = type.getName();
+    }
+    return names;
+  }
+
+  @Managed
+  @ManagedDescription("The size and the statistics of a cache")
+  public String getStatistics(@ManagedDescription("The cache name") @ManagedName("name") String name) {
+    for (Map.Entry<CacheType, ExoCache<?, ?>> entry : caches.entrySet()) {
+      if (entry.getKey().getName().equals(name)) {
+        ExoCache<?, ?> cache = entry.getValue();
+        return String.format("size=%d, maxSize=%d, %s, %s", cache.getCacheSize(), cache.getMaxSize(),
+                             entry.getKey().getStatistics(), entry.getKey().getSettings());
+      }
+    }
+    return null;
+  }
+
+  @Managed
+  @ManagedDescription("Resets the statistics of all the caches")
+  public void resetStatistics() {
+    for (CacheType type : caches.keySet()) {
+      type.getStatistics().reset();
+    }
+  }
+
+  /**
+   * Reads the settings of the future caches of a type from the properties param named as the cache.
+   */
+  private static FutureCacheSettings getSettings(InitParams params, CacheType type) {
+    PropertiesParam param = params != null ? params.getPropertiesParam(type.getName()) : null;
+    if (param == null) {
+      return FutureCacheSettings.DEFAULT;
+    }
+    FutureCacheSettings settings = new FutureCacheSettings(getLong(param, MISSING_LIVE_TIME_KEY) * 1000,
+                                                           getLong(param, LOAD_TIMEOUT_KEY),
+                                                           getLong(param, REFRESH_AFTER_KEY) * 1000,
+                                                           (int) getLong(param, MAX_KEYS_KEY));
+    LOG.info(String.format("%s settings: %s", type.getName(), settings));
+    return settings;
+  }
+
+  private static boolean getBoolean(InitParams params, String key, boolean defaultValue) {
+    try {
+      ValueParam param = params.getValueParam(key);
+      return Boolean.valueOf(param.getValue().trim());
+    }
+    catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+  private static long getLong(PropertiesParam param, String key) {
+    try {
+      return Long.valueOf(param.getProperty(key).trim());
+    }
+    catch (Exception e) {
+      return 0;
+    }
+  }
+
+  private <K extends CacheKey, V extends Serializable> ExoCache<K, V> register(CacheType type, CacheService service) {
+    ExoCache<K, V> cache = type.getFromService(service);
+    caches.put(type, cache);
+    return cache;
+  }
+
 }
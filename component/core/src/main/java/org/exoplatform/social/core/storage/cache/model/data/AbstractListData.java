@@ -37,4 +37,27 @@ public class AbstractListData<T> implements Serializable {
   public List<T> getIds() {
     return ids;
   }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    AbstractListData<?> that = (AbstractListData<?>) o;
+
+    if (ids != null ? !ids.equals(that.ids) : that.ids != null) {
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return ids != null ? ids.hashCode() : 0;
+  }
 }
@@ -17,7 +17,8 @@
 
 package org.exoplatform.social.core.storage.cache.model.data;
 
-import java.util.Collections;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -29,78 +30,72 @@ import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
 /**
  * Immutable activity data.
  *
+ * The strings shared by many activities, the ids of the poster, of the stream and the application and type, are
+ * interned. The other fields are packed in a byte array, the strings and arrays prefixed by their length, and are only
+ * decoded when the activity is built.
+ *
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
 public class ActivityData implements CacheData<ExoSocialActivity> {
 
   public final static ActivityData NULL = new ActivityData(new ExoSocialActivityImpl());
-  
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int COMMENT = 1;
+  private static final int HIDDEN = 2;
+  private static final int LOCKED = 4;
+  private static final int POSTED = 8;
+
   private final String id;
-  private final String title;
-  private final String body;
-  private final String[] likes;
-  private final boolean isComment;
-  private final boolean isHidden;
-  private final boolean isLocked;
-  private final Long postedTime;
-  private final Long lastUpdated;
-  private final String[] replyIds;
   private final String userId;
+  private final String posterId;
   private final String appId;
-  private final String titleId;
-  private final String bodyId;
   private final String type;
-  private final Map templateParams;
-  private final String externalId;
-  private final String url;
+  private final String titleId;
   private final String streamId;
   private final String streamOwner;
-  private final String streamFaviconUrl;
-  private final String streamSourceUrl;
-  private final String streamTitle;
-  private final String streamUrl;
-  private final String[] mentioners;
-  private final String[] commenters;
   private final ActivityStream.Type streamType;
-  private final String posterId;
+
+  /** The other fields, packed. */
+  private final byte[] packed;
 
   public ActivityData(final ExoSocialActivity activity) {
 
     this.id = activity.getId();
-    this.title = activity.getTitle();
-    this.body = activity.getBody();
-    this.likes = activity.getLikeIdentityIds();
-    this.isComment = activity.isComment();
-    this.isHidden = activity.isHidden();
-    this.isLocked = activity.isLocked();
-    this.postedTime = activity.getPostedTime();
-    this.lastUpdated = activity.getUpdated().getTime();
-    this.replyIds = activity.getReplyToId();
-    this.userId = activity.getUserId();
-    this.appId = activity.getAppId();
-    this.titleId = activity.getTitleId();
-    this.bodyId = activity.getBodyId();
-    this.type = activity.getType();
-    this.externalId = activity.getExternalId();
-    this.url = activity.getUrl();
-    this.streamId = activity.getStreamId();
-    this.streamOwner = activity.getStreamOwner();
-    this.streamFaviconUrl = activity.getStreamFaviconUrl();
-    this.streamSourceUrl = activity.getStreamSourceUrl();
-    this.streamTitle = activity.getStreamTitle();
-    this.streamUrl = activity.getStreamUrl();
-    this.mentioners = activity.getMentionedIds();
-    this.commenters = activity.getCommentedIds();
+    this.userId = StringInterner.intern(activity.getUserId());
+    this.posterId = StringInterner.intern(activity.getPosterId());
+    this.appId = StringInterner.intern(activity.getAppId());
+    this.type = StringInterner.intern(activity.getType());
+    this.titleId = StringInterner.intern(activity.getTitleId());
+    this.streamId = StringInterner.intern(activity.getStreamId());
+    this.streamOwner = StringInterner.intern(activity.getStreamOwner());
     this.streamType = activity.getActivityStream().getType();
-    this.posterId = activity.getPosterId();
 
-    if (activity.getTemplateParams() != null) {
-      this.templateParams = Collections.unmodifiableMap(activity.getTemplateParams());
-    }
-    else {
-      this.templateParams = Collections.emptyMap();
+    //
+    int flags = (activity.isComment() ? COMMENT : 0) | (activity.isHidden() ? HIDDEN : 0)
+        | (activity.isLocked() ? LOCKED : 0) | (activity.getPostedTime() != null ? POSTED : 0);
+    Writer writer = new Writer();
+    writer.writeInt(flags);
+    if (activity.getPostedTime() != null) {
+      writer.writeLong(activity.getPostedTime());
     }
+    writer.writeLong(activity.getUpdated().getTime());
+    writer.writeString(activity.getTitle());
+    writer.writeString(activity.getBody());
+    writer.writeString(activity.getBodyId());
+    writer.writeString(activity.getExternalId());
+    writer.writeString(activity.getUrl());
+    writer.writeString(activity.getStreamFaviconUrl());
+    writer.writeString(activity.getStreamSourceUrl());
+    writer.writeString(activity.getStreamTitle());
+    writer.writeStrings(activity.getLikeIdentityIds());
+    writer.writeStrings(activity.getReplyToId());
+    writer.writeStrings(activity.getMentionedIds());
+    writer.writeStrings(activity.getCommentedIds());
+    writer.writeMap(activity.getTemplateParams());
+    this.packed = writer.toByteArray();
 
   }
 
@@ -110,39 +105,48 @@ public class ActivityData implements CacheData<ExoSocialActivity> {
     if (this == NULL) {
       return null;
     }
-    
+
     ExoSocialActivity activity = new ExoSocialActivityImpl();
+    Reader reader = new Reader(packed);
+
+    int flags = reader.readInt();
+    Long postedTime = (flags & POSTED) != 0 ? reader.readLong() : null;
+    long lastUpdated = reader.readLong();
 
     activity.setId(id);
-    activity.setTitle(title);
-    activity.setBody(body);
-    if (likes != null) { activity.setLikeIdentityIds(likes); }
-    activity.setReplyToId(replyIds);
-    activity.isComment(isComment);
-    activity.isHidden(isHidden);
-    activity.isLocked(isLocked);
+    activity.setTitle(reader.readString());
+    activity.setBody(reader.readString());
+    activity.isComment((flags & COMMENT) != 0);
+    activity.isHidden((flags & HIDDEN) != 0);
+    activity.isLocked((flags & LOCKED) != 0);
     activity.setPostedTime(postedTime);
     activity.setUpdated(new Date(lastUpdated));
     activity.setUserId(userId);
     activity.setAppId(appId);
     activity.setTitleId(titleId);
-    activity.setBodyId(bodyId);
+    activity.setBodyId(reader.readString());
     activity.setType(type);
-    activity.setTemplateParams(new LinkedHashMap<String, String>(templateParams));
-    activity.setExternalId(externalId);
-    activity.setUrl(url);
-    if (mentioners != null) { activity.setMentionedIds(mentioners); }
-    if (commenters != null) { activity.setCommentedIds(commenters); }
+    activity.setExternalId(reader.readString());
+    activity.setUrl(reader.readString());
     activity.setPosterId(posterId);
 
     ActivityStream activityStream = activity.getActivityStream();
     activityStream.setId(streamId);
     activityStream.setPrettyId(streamOwner);
-    activityStream.setFaviconUrl(streamFaviconUrl);
-    activityStream.setPermaLink(streamSourceUrl);
-    activityStream.setTitle(streamTitle);
+    activityStream.setFaviconUrl(reader.readString());
+    activityStream.setPermaLink(reader.readString());
+    activityStream.setTitle(reader.readString());
     activityStream.setType(streamType);
 
+    String[] likes = reader.readStrings();
+    if (likes != null) { activity.setLikeIdentityIds(likes); }
+    activity.setReplyToId(reader.readStrings());
+    String[] mentioners = reader.readStrings();
+    if (mentioners != null) { activity.setMentionedIds(mentioners); }
+    String[] commenters = reader.readStrings();
+    if (commenters != null) { activity.setCommentedIds(commenters); }
+    activity.setTemplateParams(reader.readMap());
+
     activity.setActivityStream(activityStream);
 
     return activity;
@@ -153,4 +157,132 @@ public class ActivityData implements CacheData<ExoSocialActivity> {
     return userId;
   }
 
+  /**
+   * Writes the numbers as variable length integers, and the strings, arrays and maps prefixed by their length plus one,
+   * zero standing for null.
+   */
+  private static class Writer {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+    private void writeInt(int value) {
+      while ((value & ~0x7F) != 0) {
+        out.write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.write(value);
+    }
+
+    private void writeLong(long value) {
+      while ((value & ~0x7FL) != 0) {
+        out.write((int) (value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.write((int) value);
+    }
+
+    private void writeString(String value) {
+      if (value == null) {
+        writeInt(0);
+        return;
+      }
+      byte[] bytes = value.getBytes(UTF_8);
+      writeInt(bytes.length + 1);
+      out.write(bytes, 0, bytes.length);
+    }
+
+    private void writeStrings(String[] values) {
+      if (values == null) {
+        writeInt(0);
+        return;
+      }
+      writeInt(values.length + 1);
+      for (String value : values) {
+        writeString(value);
+      }
+    }
+
+    private void writeMap(Map<String, String> values) {
+      if (values == null) {
+        writeInt(0);
+        return;
+      }
+      writeInt(values.size() + 1);
+      for (Map.Entry<String, String> entry : values.entrySet()) {
+        writeString(entry.getKey());
+        writeString(entry.getValue());
+      }
+    }
+
+    private byte[] toByteArray() {
+      return out.toByteArray();
+    }
+
+  }
+
+  private static class Reader {
+
+    private final byte[] bytes;
+
+    private int position;
+
+    private Reader(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    private int readInt() {
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = bytes[position++];
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+
+    private long readLong() {
+      long value = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = bytes[position++];
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+
+    private String readString() {
+      int length = readInt() - 1;
+      if (length < 0) {
+        return null;
+      }
+      String value = new String(bytes, position, length, UTF_8);
+      position += length;
+      return value;
+    }
+
+    private String[] readStrings() {
+      int length = readInt() - 1;
+      if (length < 0) {
+        return null;
+      }
+      String[] values = new String[length];
+      for (int i = 0; i < length; ++i) {
+        values[i] = readString();
+      }
+      return values;
+    }
+
+    private Map<String, String> readMap() {
+      int size = readInt() - 1;
+      Map<String, String> values = new LinkedHashMap<String, String>();
+      for (int i = 0; i < size; ++i) {
+        values.put(readString(), readString());
+      }
+      return values;
+    }
+
+  }
+
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache.model.data;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shares the equal strings kept by the cached data. The strings are weakly referenced, so that they are dropped with
+ * the last data using them, unlike with {@link String#intern()}.
+ *
+ * @since 4.1
+ */
+final class StringInterner {
+
+  private static final Map<String, WeakReference<String>> STRINGS = new WeakHashMap<String, WeakReference<String>>();
+
+  private StringInterner() {
+  }
+
+  /**
+   * Gets the shared string equal to a string.
+   *
+   * @param value the string, may be null
+   * @return the shared string
+   */
+  static String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    synchronized (STRINGS) {
+      WeakReference<String> ref = STRINGS.get(value);
+      String shared = ref != null ? ref.get() : null;
+      if (shared == null) {
+        STRINGS.put(value, new WeakReference<String>(value));
+        shared = value;
+      }
+      return shared;
+    }
+  }
+
+}
@@ -80,6 +80,14 @@ public class ActivityCountKey extends ScopeCacheKey {
     return activityKey;
   }
 
+  public String getBaseId() {
+    return baseId;
+  }
+
+  public ActivityType getType() {
+    return type;
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
@@ -103,11 +111,14 @@ public class ActivityCountKey extends ScopeCacheKey {
     if (activityKey != null ? !activityKey.equals(that.activityKey) : that.activityKey != null) {
       return false;
     }
+    if (viewerKey != null ? !viewerKey.equals(that.viewerKey) : that.viewerKey != null) {
+      return false;
+    }
     
     if (type != that.type) {
       return false;
     }
-    if (time != that.time) {
+    if (time != null ? !time.equals(that.time) : that.time != null) {
       return false;
     }
 
@@ -47,6 +47,10 @@ public class ListActivitiesKey extends ListCacheKey {
     return key;
   }
 
+  public ListIdentitiesData getIdentities() {
+    return identities;
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
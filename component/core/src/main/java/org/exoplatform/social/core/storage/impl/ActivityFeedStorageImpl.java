@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.container.xml.ValueParam;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+import org.exoplatform.social.core.identity.model.Identity;
+import org.exoplatform.social.core.storage.api.ActivityFeedStorage;
+
+/**
+ * In memory implementation of the {@link ActivityFeedStorage}.
+ *
+ * Only the feeds which have been read are materialized: a write is pushed to the timelines of the viewers
+ * registered on the stream owner of the activity, which is the inverted list of the stream owners used by
+ * the pull path query. The number of timelines and the size of each timeline are bounded, the oldest
+ * entries are dropped and the next deeper reads go back to the pull path.
+ *
+ * The timelines are kept in the memory of each node and the writes of the other nodes of a cluster never reach
+ * them, so the push path refuses to be enabled on a cluster and the feeds are always read from the pull path.
+ *
+ * @since 4.1
+ */
+public class ActivityFeedStorageImpl implements ActivityFeedStorage {
+
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(ActivityFeedStorageImpl.class);
+
+  private static final String ENABLED_KEY = "enabled";
+  private static final String TIMELINE_CAPACITY_KEY = "timeline-capacity";
+  private static final String MAX_VIEWERS_KEY = "max-viewers";
+  private static final String CLUSTER_KEY = "cluster";
+
+  private static final boolean DEFAULT_ENABLED = false;
+  private static final int DEFAULT_TIMELINE_CAPACITY = 500;
+  private static final int DEFAULT_MAX_VIEWERS = 10000;
+  private static final boolean DEFAULT_CLUSTER = false;
+
+  private final boolean enabled;
+  private final int timelineCapacity;
+  private final int maxViewers;
+
+  /** viewer identity id -> timeline, in access order so that the idle viewers are evicted first */
+  private final Map<String, Timeline> timelines;
+
+  /** stream owner identity id -> viewer identity ids */
+  private final ConcurrentMap<String, Set<String>> viewersBySource;
+
+  /** user name -> viewer identity id */
+  private final ConcurrentMap<String, String> viewersByRemoteId;
+
+  public ActivityFeedStorageImpl(InitParams params) {
+
+    //
+    boolean enabled = getBoolean(params, ENABLED_KEY, DEFAULT_ENABLED);
+    if (enabled && getBoolean(params, CLUSTER_KEY, DEFAULT_CLUSTER)) {
+      LOG.warn("The activity feed push path keeps the feeds of each node in memory, it cannot be enabled on a cluster");
+      enabled = false;
+    }
+    this.enabled = enabled;
+    this.timelineCapacity = getInt(params, TIMELINE_CAPACITY_KEY, DEFAULT_TIMELINE_CAPACITY);
+    this.maxViewers = getInt(params, MAX_VIEWERS_KEY, DEFAULT_MAX_VIEWERS);
+
+    //
+    this.viewersBySource = new ConcurrentHashMap<String, Set<String>>();
+    this.viewersByRemoteId = new ConcurrentHashMap<String, String>();
+    this.timelines = Collections.synchronizedMap(new LinkedHashMap<String, Timeline>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Timeline> eldest) {
+        if (size() > maxViewers) {
+          unregister(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    });
+
+    //
+    LOG.info(String.format("Activity feed push path %s (timeline capacity: %d, max viewers: %d)",
+                           enabled ? "enabled" : "disabled", timelineCapacity, maxViewers));
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public List<String> getFeed(Identity viewer, int offset, int limit) {
+
+    if (viewer == null) {
+      return null;
+    }
+
+    //
+    Timeline timeline = timelines.get(viewer.getId());
+    if (timeline == null) {
+      return null;
+    }
+    return timeline.range(offset, limit);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void prepareFeed(Identity viewer, List<Identity> sources) {
+
+    if (viewer == null) {
+      return;
+    }
+
+    //
+    List<String> sourceIds = new ArrayList<String>(sources.size());
+    for (Identity source : sources) {
+      sourceIds.add(source.getId());
+    }
+
+    //
+    Timeline timeline = new Timeline(viewer.getId(), viewer.getRemoteId(), sourceIds, timelineCapacity);
+    Timeline previous = timelines.put(viewer.getId(), timeline);
+    if (previous != null) {
+      unregister(previous);
+    }
+    register(timeline);
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void fillFeed(Identity viewer, List<ExoSocialActivity> activities, int offset, int limit) {
+
+    if (viewer == null) {
+      return;
+    }
+
+    //
+    Timeline timeline = timelines.get(viewer.getId());
+    if (timeline != null) {
+      timeline.fill(activities, offset, limit);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void pushActivity(String activityId, long postedTime, long lastUpdated, String streamOwnerId,
+                           Collection<String> viewerIds) {
+
+    for (String viewerId : audience(streamOwnerId, viewerIds)) {
+      Timeline timeline = timelines.get(viewerId);
+      if (timeline != null) {
+        timeline.push(activityId, postedTime, lastUpdated);
+      }
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void removeActivity(String activityId, String streamOwnerId, Collection<String> viewerIds) {
+
+    for (String viewerId : audience(streamOwnerId, viewerIds)) {
+      Timeline timeline = timelines.get(viewerId);
+      if (timeline != null) {
+        timeline.remove(activityId);
+      }
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void invalidateFeed(String identityId) {
+
+    if (identityId == null) {
+      return;
+    }
+
+    //
+    Timeline timeline = timelines.remove(identityId);
+    if (timeline != null) {
+      unregister(timeline);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void invalidateUserFeeds(String... remoteIds) {
+
+    if (remoteIds == null) {
+      return;
+    }
+
+    //
+    for (String remoteId : remoteIds) {
+      if (remoteId != null) {
+        invalidateFeed(viewersByRemoteId.get(remoteId));
+      }
+    }
+
+  }
+
+  /**
+   * Gets the number of materialized feeds.
+   *
+   * @return the number of feeds
+   */
+  public int getNumberOfFeeds() {
+    return timelines.size();
+  }
+
+  private Set<String> audience(String streamOwnerId, Collection<String> viewerIds) {
+
+    Set<String> audience = new HashSet<String>();
+    if (streamOwnerId != null) {
+      Set<String> viewers = viewersBySource.get(streamOwnerId);
+      if (viewers != null) {
+        audience.addAll(viewers);
+      }
+    }
+    if (viewerIds != null) {
+      audience.addAll(viewerIds);
+    }
+    return audience;
+
+  }
+
+  private void register(Timeline timeline) {
+
+    for (String sourceId : timeline.sourceIds) {
+      Set<String> viewers = viewersBySource.get(sourceId);
+      if (viewers == null) {
+        viewers = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        Set<String> phantom = viewersBySource.putIfAbsent(sourceId, viewers);
+        if (phantom != null) {
+          viewers = phantom;
+        }
+      }
+      viewers.add(timeline.viewerId);
+    }
+    if (timeline.viewerRemoteId != null) {
+      viewersByRemoteId.put(timeline.viewerRemoteId, timeline.viewerId);
+    }
+
+  }
+
+  private void unregister(Timeline timeline) {
+
+    for (String sourceId : timeline.sourceIds) {
+      Set<String> viewers = viewersBySource.get(sourceId);
+      if (viewers != null) {
+        viewers.remove(timeline.viewerId);
+        if (viewers.isEmpty()) {
+          viewersBySource.remove(sourceId, viewers);
+        }
+      }
+    }
+    if (timeline.viewerRemoteId != null) {
+      viewersByRemoteId.remove(timeline.viewerRemoteId, timeline.viewerId);
+    }
+
+  }
+
+  private static boolean getBoolean(InitParams params, String key, boolean defaultValue) {
+    try {
+      ValueParam param = params.getValueParam(key);
+      return Boolean.valueOf(param.getValue());
+    }
+    catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+  private static int getInt(InitParams params, String key, int defaultValue) {
+    try {
+      ValueParam param = params.getValueParam(key);
+      return Integer.valueOf(param.getValue());
+    }
+    catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * The feed of one viewer: a prefix of the pull path result, most recently updated first.
+   */
+  static class Timeline {
+
+    private final String viewerId;
+    private final String viewerRemoteId;
+    private final List<String> sourceIds;
+    private final int capacity;
+
+    private final TreeSet<Entry> entries = new TreeSet<Entry>();
+    private final Map<String, Entry> entriesById = new HashMap<String, Entry>();
+
+    /** false until the first page has been loaded by the pull path */
+    private boolean ready;
+
+    /** true when the timeline contains the whole feed */
+    private boolean complete;
+
+    Timeline(String viewerId, String viewerRemoteId, List<String> sourceIds, int capacity) {
+      this.viewerId = viewerId;
+      this.viewerRemoteId = viewerRemoteId;
+      this.sourceIds = sourceIds;
+      this.capacity = capacity;
+    }
+
+    synchronized List<String> range(int offset, int limit) {
+
+      if (!ready || (offset + limit > entries.size() && !complete)) {
+        return null;
+      }
+
+      //
+      List<String> ids = new ArrayList<String>(Math.max(0, Math.min(limit, entries.size() - offset)));
+      Iterator<Entry> it = entries.iterator();
+      int index = 0;
+      while (it.hasNext() && ids.size() < limit) {
+        Entry entry = it.next();
+        if (index++ >= offset) {
+          ids.add(entry.id);
+        }
+      }
+      return ids;
+
+    }
+
+    synchronized void fill(List<ExoSocialActivity> activities, int offset, int limit) {
+
+      // Only a contiguous range can be appended
+      if (ready ? offset != entries.size() : offset != 0) {
+        return;
+      }
+
+      //
+      for (ExoSocialActivity activity : activities) {
+        long postedTime = activity.getPostedTime() != null ? activity.getPostedTime() : 0;
+        long lastUpdated = activity.getUpdated() != null ? activity.getUpdated().getTime() : postedTime;
+        add(activity.getId(), postedTime, lastUpdated);
+      }
+      ready = true;
+      complete = activities.size() < limit;
+      trim();
+
+    }
+
+    synchronized void push(String activityId, long postedTime, long lastUpdated) {
+      add(activityId, postedTime, lastUpdated);
+      trim();
+    }
+
+    synchronized void remove(String activityId) {
+      Entry entry = entriesById.remove(activityId);
+      if (entry != null) {
+        entries.remove(entry);
+      }
+    }
+
+    private void add(String activityId, long postedTime, long lastUpdated) {
+      Entry existing = entriesById.get(activityId);
+      if (existing != null) {
+        if (existing.lastUpdated >= lastUpdated) {
+          return;
+        }
+        entries.remove(existing);
+      }
+      Entry entry = new Entry(activityId, postedTime, lastUpdated);
+      entries.add(entry);
+      entriesById.put(activityId, entry);
+    }
+
+    private void trim() {
+      while (entries.size() > capacity) {
+        entriesById.remove(entries.pollLast().id);
+        complete = false;
+      }
+    }
+
+  }
+
+  /**
+   * A timeline entry, ordered like the pull path query: last updated then posted time, descending.
+   */
+  static class Entry implements Comparable<Entry> {
+
+    private final String id;
+    private final long postedTime;
+    private final long lastUpdated;
+
+    Entry(String id, long postedTime, long lastUpdated) {
+      this.id = id;
+      this.postedTime = postedTime;
+      this.lastUpdated = lastUpdated;
+    }
+
+    public int compareTo(Entry o) {
+      if (lastUpdated != o.lastUpdated) {
+        return lastUpdated > o.lastUpdated ? -1 : 1;
+      }
+      if (postedTime != o.postedTime) {
+        return postedTime > o.postedTime ? -1 : 1;
+      }
+      return id.compareTo(o.id);
+    }
+
+  }
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+
+/**
+ * Bounded cache of the title, body and template params of activities as output by the activity processors.
+ * An entry is only reused while its version stamp, built from the activity update time, the processor chain
+ * and the raw content, is unchanged. Also keeps the time spent in each processor.
+ *
+ * @since 4.1
+ */
+public class ActivityRenderCache {
+
+  /**
+   * The time spent in one activity processor.
+   */
+  public static class ProcessorTiming {
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong totalTime = new AtomicLong();
+
+    private final AtomicLong maxTime = new AtomicLong();
+
+    void record(long nanos) {
+      count.incrementAndGet();
+      totalTime.addAndGet(nanos);
+      long max;
+      while (nanos > (max = maxTime.get())) {
+        if (maxTime.compareAndSet(max, nanos)) {
+          break;
+        }
+      }
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    /**
+     * Gets the average time of a run of the processor.
+     *
+     * @return the average time in microseconds
+     */
+    public long getAverageTime() {
+      long n = count.get();
+      return n == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalTime.get() / n);
+    }
+
+    /**
+     * Gets the longest run of the processor.
+     *
+     * @return the max time in microseconds
+     */
+    public long getMaxTime() {
+      return TimeUnit.NANOSECONDS.toMicros(maxTime.get());
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + getCount() + ", averageTime=" + getAverageTime() + "us, maxTime=" + getMaxTime() + "us";
+    }
+  }
+
+  private static class Rendered {
+
+    private final String stamp;
+
+    private final String title;
+
+    private final String body;
+
+    private final Map<String, String> templateParams;
+
+    private Rendered(String stamp, ExoSocialActivity activity) {
+      this.stamp = stamp;
+      this.title = activity.getTitle();
+      this.body = activity.getBody();
+      this.templateParams = copy(activity.getTemplateParams());
+    }
+  }
+
+  private final Map<String, Rendered> entries;
+
+  private final ConcurrentMap<String, ProcessorTiming> timings = new ConcurrentHashMap<String, ProcessorTiming>();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param maxSize the max number of rendered activities kept, the least recently used ones are dropped first
+   */
+  public ActivityRenderCache(final int maxSize) {
+    this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Rendered>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Rendered> eldest) {
+        return size() > maxSize;
+      }
+    });
+  }
+
+  /**
+   * Builds the version stamp of an activity not processed yet.
+   *
+   * @param activity the raw activity
+   * @param signature the signature of the processor chain and of the context it depends on
+   * @return the stamp
+   */
+  public static String stamp(ExoSocialActivity activity, String signature) {
+    long updated = activity.getUpdated() != null ? activity.getUpdated().getTime() : 0;
+    int content = 31 * (31 * hash(activity.getTitle()) + hash(activity.getBody())) + hash(activity.getTemplateParams());
+    return updated + ":" + Integer.toHexString(content) + ":" + signature;
+  }
+
+  /**
+   * Replaces the raw title, body and template params of an activity by their cached rendering.
+   *
+   * @param activity the raw activity
+   * @param stamp its version stamp
+   * @return true if the rendering was cached, false if the activity must be processed
+   */
+  public boolean apply(ExoSocialActivity activity, String stamp) {
+    Rendered rendered = entries.get(activity.getId());
+    if (rendered == null || !rendered.stamp.equals(stamp)) {
+      misses.incrementAndGet();
+      return false;
+    }
+    hits.incrementAndGet();
+    activity.setTitle(rendered.title);
+    activity.setBody(rendered.body);
+    activity.setTemplateParams(copy(rendered.templateParams));
+    return true;
+  }
+
+  /**
+   * Keeps the rendering of a processed activity.
+   *
+   * @param activity the processed activity
+   * @param stamp the version stamp of the activity before processing
+   */
+  public void put(ExoSocialActivity activity, String stamp) {
+    entries.put(activity.getId(), new Rendered(stamp, activity));
+  }
+
+  public void remove(String activityId) {
+    entries.remove(activityId);
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Records a run of an activity processor.
+   *
+   * @param processor the processor name
+   * @param nanos the time of the run in nanoseconds
+   */
+  public void record(String processor, long nanos) {
+    ProcessorTiming timing = timings.get(processor);
+    if (timing == null) {
+      timing = new ProcessorTiming();
+      ProcessorTiming previous = timings.putIfAbsent(processor, timing);
+      if (previous != null) {
+        timing = previous;
+      }
+    }
+    timing.record(nanos);
+  }
+
+  /**
+   * Gets the time spent in each activity processor.
+   *
+   * @return the timings by processor name
+   */
+  public Map<String, ProcessorTiming> getProcessorTimings() {
+    return Collections.unmodifiableMap(new TreeMap<String, ProcessorTiming>(timings));
+  }
+
+  private static Map<String, String> copy(Map<String, String> templateParams) {
+    return templateParams != null ? new LinkedHashMap<String, String>(templateParams) : null;
+  }
+
+  private static int hash(Object o) {
+    return o != null ? o.hashCode() : 0;
+  }
+
+}
@@ -23,10 +23,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.regex.Matcher;
@@ -39,10 +41,15 @@ import org.chromattic.api.query.Query;
 import org.chromattic.api.query.QueryBuilder;
 import org.chromattic.api.query.QueryResult;
 import org.exoplatform.container.PortalContainer;
+import org.exoplatform.container.component.RequestLifeCycle;
+import org.exoplatform.portal.webui.util.Util;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.ActivityProcessor;
-import org.exoplatform.social.core.activity.filter.ActivityCounter;
+import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess;
+import org.exoplatform.social.core.activity.ActivityCursor;
+import org.exoplatform.social.core.activity.ActivityNotification;
+import org.exoplatform.social.core.activity.ActivityPushService;
 import org.exoplatform.social.core.activity.filter.ActivityFilter;
 import org.exoplatform.social.core.activity.filter.ActivityIterator;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter;
@@ -59,6 +66,8 @@ import org.exoplatform.social.core.chromattic.entity.HidableEntity;
 import org.exoplatform.social.core.chromattic.entity.IdentityEntity;
 import org.exoplatform.social.core.chromattic.entity.LockableEntity;
 import org.exoplatform.social.core.chromattic.filter.JCRFilterLiteral;
+import org.exoplatform.social.core.chromattic.entity.IndexNumber;
+import org.exoplatform.social.core.chromattic.utils.ActivityCounterBuffer;
 import org.exoplatform.social.core.chromattic.utils.ActivityList;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
@@ -67,19 +76,23 @@ import org.exoplatform.social.core.relationship.model.Relationship;
 import org.exoplatform.social.core.relationship.model.Relationship.Type;
 import org.exoplatform.social.core.service.LinkProvider;
 import org.exoplatform.social.core.space.model.Space;
+import org.exoplatform.social.core.space.model.SpaceMembership;
 import org.exoplatform.social.core.storage.ActivityStorageException;
+import org.exoplatform.social.core.storage.api.ActivityFeedStorage;
 import org.exoplatform.social.core.storage.api.ActivityStorage;
 import org.exoplatform.social.core.storage.api.IdentityStorage;
 import org.exoplatform.social.core.storage.api.RelationshipStorage;
 import org.exoplatform.social.core.storage.api.SpaceStorage;
 import org.exoplatform.social.core.storage.exception.NodeNotFoundException;
+import org.exoplatform.social.core.storage.query.JCRProperties;
 import org.exoplatform.social.core.storage.query.WhereExpression;
+import org.picocontainer.Startable;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
  * @version $Revision$
  */
-public class ActivityStorageImpl extends AbstractStorage implements ActivityStorage {
+public class ActivityStorageImpl extends AbstractStorage implements ActivityStorage, Startable {
 
   /** Logger */
   private static final Log LOG = ExoLogger.getLogger(ActivityStorageImpl.class);
@@ -87,6 +100,35 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   public static final Pattern USER_NAME_VALIDATOR_REGEX = Pattern.compile("^[\\p{L}][\\p{L}._\\-\\d]+$");
   private ActivityStorage activityStorage;
 
+  private ActivityFeedStorage feedStorage;
+  private boolean feedStorageLookedUp;
+
+  private ActivityPushService pushService;
+  private boolean pushServiceLookedUp;
+
+  /** The number of buffered changes of the activity numbers after which they are written. */
+  private static final int COUNTER_BATCH_SIZE = 50;
+  /** The max time in milliseconds the changes of the activity numbers stay buffered, while activities are written. */
+  private static final long COUNTER_FLUSH_INTERVAL = 5000;
+  private final ActivityCounterBuffer counterBuffer = new ActivityCounterBuffer(COUNTER_BATCH_SIZE, COUNTER_FLUSH_INTERVAL);
+
+  /** The max number of activities whose processed title, body and template params are kept. */
+  private static final int RENDER_CACHE_SIZE = 2000;
+  private final ActivityRenderCache renderCache = new ActivityRenderCache(RENDER_CACHE_SIZE);
+
+  /** The max number of ids looked up by one query, so that its statement stays small. */
+  private static final int ID_QUERY_SIZE = 100;
+
+  /** The max number of streams whose updated activities are counted. */
+  private static final int UPDATE_COUNTERS_SIZE = 5000;
+  /** The time in milliseconds after which the updated activities of a stream are queried again. */
+  private static final long UPDATE_COUNTERS_MAX_AGE = 10 * 60 * 1000L;
+  /** The number of writes kept to be counted in the streams being queried meanwhile. */
+  private static final int UPDATE_COUNTERS_EVENTS = 1000;
+  private final ActivityUpdateCounters updateCounters = new ActivityUpdateCounters(UPDATE_COUNTERS_SIZE,
+                                                                                   UPDATE_COUNTERS_MAX_AGE,
+                                                                                   UPDATE_COUNTERS_EVENTS);
+
   private final SortedSet<ActivityProcessor> activityProcessors;
 
   private final RelationshipStorage relationshipStorage;
@@ -109,6 +151,51 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
    * Internal
    */
 
+  /**
+   * Writes the buffered changes of the day, month, year and list activity numbers in the current session.
+   */
+  private final ActivityCounterBuffer.Writer counterWriter = new ActivityCounterBuffer.Writer() {
+
+    public boolean write(String path, ActivityCounterBuffer.Change change) {
+      IndexNumber entity = getSession().findByPath(change.getType(), path, true);
+      if (entity == null) {
+        return false;
+      }
+      entity.setNumber(entity.getNumber() + change.getDelta());
+      return true;
+    }
+
+    public void save() {
+      getSession().save();
+    }
+  };
+
+  public void start() {
+  }
+
+  /**
+   * Writes the buffered changes of the activity numbers before the node stops.
+   */
+  public void stop() {
+
+    if (counterBuffer.getPendingSize() == 0) {
+      return;
+    }
+
+    //
+    RequestLifeCycle.begin(PortalContainer.getInstance());
+    try {
+      counterBuffer.save(counterWriter, true);
+    }
+    catch (Exception e) {
+      LOG.warn("Failed to write the buffered activity numbers", e);
+    }
+    finally {
+      RequestLifeCycle.end();
+    }
+
+  }
+
   protected void _createActivity(Identity owner, ExoSocialActivity activity) throws NodeNotFoundException {
 
     IdentityEntity identityEntity = _findById(IdentityEntity.class, owner.getId());
@@ -125,7 +212,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     ActivityListEntity activityListEntity = identityEntity.getActivityList();
 
     //
-    Collection<ActivityEntity> entities = new ActivityList(activityListEntity);
+    Collection<ActivityEntity> entities = new ActivityList(activityListEntity, counterBuffer);
 
     // Create activity
     long currentMillis = System.currentTimeMillis();
@@ -137,6 +224,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     activityEntity.setPostedTime(activityMillis);
     activityEntity.setLastUpdated(activityMillis);
     activityEntity.setPosterIdentity(posterIdentityEntity);
+    setVisibleComments(activityEntity, Collections.<String>emptyList());
     
 
     // Fill activity model
@@ -155,8 +243,21 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   protected void _saveActivity(ExoSocialActivity activity) throws NodeNotFoundException {
 
     ActivityEntity activityEntity = _findById(ActivityEntity.class, activity.getId());
+    boolean wasHidden = isHidden(activityEntity);
     fillActivityEntityFromActivity(activity, activityEntity);
 
+    //
+    if (Boolean.TRUE.equals(activityEntity.isComment()) && wasHidden != activity.isHidden()) {
+      ActivityEntity parentEntity = activityEntity.getParentActivity();
+      if (activity.isHidden()) {
+        removeVisibleComment(parentEntity, activityEntity.getId());
+      }
+      else {
+        // the comment goes back to its place among the others
+        rebuildVisibleComments(parentEntity);
+      }
+    }
+
   }
 
   /*
@@ -304,46 +405,66 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
 
   }
 
-  private List<Identity> getSpacesId(Identity ownerIdentity) {
+  /**
+   * Gets the ids of the identities whose streams are aggregated in the activity feed of an identity:
+   * its connections, its spaces and itself.
+   *
+   * @param identityId the identity id
+   * @return the identity ids
+   * @since 4.1
+   */
+  public List<String> getFeedOwnerIds(String identityId) {
 
-    List<Identity> identitiesId = new ArrayList<Identity>();
-    long offset = 0;
-    long limit = 30;
-    int loaded = loadIdRange(ownerIdentity, offset, offset + limit, identitiesId);
-    while (loaded == limit) {
-      loaded = loadIdRange(ownerIdentity, offset, offset + limit, identitiesId);
-      offset += limit;
+    List<String> ids = new ArrayList<String>();
+    Identity ownerIdentity = identityStorage.findIdentityById(identityId);
+    if (ownerIdentity == null) {
+      return ids;
     }
 
-    return identitiesId;
+    //
+    for (Identity identity : relationshipStorage.getConnections(ownerIdentity)) {
+      ids.add(identity.getId());
+    }
+    for (Identity identity : getSpacesId(ownerIdentity)) {
+      ids.add(identity.getId());
+    }
+    ids.add(ownerIdentity.getId());
+    return ids;
 
   }
 
-  private int loadIdRange(Identity ownerIdentity, long offset, long limit, List<Identity> result) {
-    List<Space> spaces = spaceStorage.getAccessibleSpaces(ownerIdentity.getRemoteId(), offset, limit);
-    Identity identity = null;
-    for (Space space : spaces) {
-      identity = identityStorage.findIdentity(SpaceIdentityProvider.NAME, space.getPrettyName());
-      if (identity != null) {
-        result.add(identity);
-      }
-      
+  private List<Identity> getSpacesId(Identity ownerIdentity) {
+
+    List<SpaceMembership> memberships = spaceStorage.getSpaceMemberships(ownerIdentity.getRemoteId());
+    List<Identity> identitiesId = new ArrayList<Identity>(memberships.size());
+    for (SpaceMembership membership : memberships) {
+      identitiesId.add(spaceIdentity(membership));
     }
-    return spaces.size();
+
+    return identitiesId;
+
   }
-  
+
   private Map<String, Identity> getSpacesIdOfIdentity(Identity identity) {
 
     Map<String, Identity> identitiesId = new HashMap<String, Identity>();
-    List<Space> spaces = spaceStorage.getAccessibleSpaces(identity.getRemoteId());
-    for (Space space : spaces) {
-      identitiesId.put(space.getPrettyName(), identityStorage.findIdentity(SpaceIdentityProvider.NAME, space.getPrettyName()));
+    for (SpaceMembership membership : spaceStorage.getSpaceMemberships(identity.getRemoteId())) {
+      identitiesId.put(membership.getSpacePrettyName(), spaceIdentity(membership));
     }
 
     return identitiesId;
 
   }
 
+  /**
+   * Builds the identity of a space from the membership index, only its id, provider and remote id are set.
+   */
+  private Identity spaceIdentity(SpaceMembership membership) {
+    Identity identity = new Identity(SpaceIdentityProvider.NAME, membership.getSpacePrettyName());
+    identity.setId(membership.getSpaceIdentityId());
+    return identity;
+  }
+
   private static Comparator<ActivityProcessor> processorComparator() {
     return new Comparator<ActivityProcessor>() {
 
@@ -357,14 +478,48 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   }
 
   private void processActivity(ExoSocialActivity existingActivity) {
+
+    //
+    String stamp = ActivityRenderCache.stamp(existingActivity, getProcessorsSignature());
+    if (renderCache.apply(existingActivity, stamp)) {
+      return;
+    }
+
+    //
     Iterator<ActivityProcessor> it = activityProcessors.iterator();
     while (it.hasNext()) {
+      ActivityProcessor processor = it.next();
+      long start = System.nanoTime();
       try {
-        it.next().processActivity(existingActivity);
+        processor.processActivity(existingActivity);
       } catch (Exception e) {
         LOG.warn("activity processing failed " + e.getMessage());
       }
+      renderCache.record(processor.getClass().getName(), System.nanoTime() - start);
     }
+    renderCache.put(existingActivity, stamp);
+
+  }
+
+  /**
+   * Gets the signature of the processor chain, including the portal owner the mentions links are built for.
+   */
+  private String getProcessorsSignature() {
+
+    StringBuilder signature = new StringBuilder();
+    for (ActivityProcessor processor : activityProcessors) {
+      signature.append(processor.getClass().getName()).append('@').append(processor.getPriority()).append(',');
+    }
+
+    //
+    String portalOwner;
+    try {
+      portalOwner = Util.getPortalRequestContext().getPortalOwner();
+    } catch (Exception e) {
+      portalOwner = LinkProvider.DEFAULT_PORTAL_OWNER;
+    }
+    return signature.append(portalOwner).toString();
+
   }
 
   private ActivityStorage getStorage() {
@@ -375,6 +530,133 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     return activityStorage;
   }
 
+  /**
+   * Gets the push based feed storage when it is configured and enabled in the current container.
+   *
+   * @return the feed storage or null when the feed is only built by the pull path
+   */
+  private ActivityFeedStorage getFeedStorage() {
+    if (!feedStorageLookedUp) {
+      ActivityFeedStorage got = (ActivityFeedStorage) PortalContainer.getInstance().getComponentInstanceOfType(ActivityFeedStorage.class);
+      feedStorage = (got != null && got.isEnabled() ? got : null);
+      feedStorageLookedUp = true;
+    }
+
+    return feedStorage;
+  }
+
+  /**
+   * Gets the activity push service when it is configured and enabled in the current container.
+   *
+   * @return the push service or null when the clients poll their streams
+   */
+  private ActivityPushService getPushService() {
+    if (!pushServiceLookedUp) {
+      ActivityPushService got = (ActivityPushService) PortalContainer.getInstance().getComponentInstanceOfType(ActivityPushService.class);
+      pushService = (got != null && got.isEnabled() ? got : null);
+      pushServiceLookedUp = true;
+    }
+
+    return pushService;
+  }
+
+  /**
+   * Pushes the activity to the feeds of its audience, or removes it when it is hidden, and notifies the viewers
+   * waiting for the changes of its stream.
+   *
+   * @param activityId the activity id
+   * @param type the kind of change, used when the activity is not hidden
+   */
+  private void pushToFeeds(String activityId, ActivityNotification.Type type) {
+
+    ActivityFeedStorage feedStorage = getFeedStorage();
+    ActivityPushService pushService = getPushService();
+    if (feedStorage == null && pushService == null) {
+      return;
+    }
+
+    //
+    try {
+      ActivityEntity activityEntity = _findById(ActivityEntity.class, activityId);
+      HidableEntity hidable = _getMixin(activityEntity, HidableEntity.class, false);
+      List<String> audience = getAudience(activityEntity);
+      String streamOwnerId = activityEntity.getIdentity().getId();
+      if (hidable != null && hidable.getHidden()) {
+        type = ActivityNotification.Type.REMOVED;
+        if (feedStorage != null) {
+          feedStorage.removeActivity(activityEntity.getId(), streamOwnerId, audience);
+        }
+      }
+      else if (feedStorage != null) {
+        feedStorage.pushActivity(activityEntity.getId(), activityEntity.getPostedTime(), activityEntity.getLastUpdated(),
+                                 streamOwnerId, audience);
+      }
+      if (pushService != null) {
+        pushService.publish(type, activityEntity.getId(), activityEntity.getPosterIdentity().getId(), streamOwnerId,
+                            audience);
+      }
+    }
+    catch (NodeNotFoundException e) {
+      LOG.debug(e.getMessage(), e);
+    }
+
+  }
+
+  /**
+   * Gets the identities which see the activity in their feed besides the viewers of its stream owner.
+   *
+   * @param activityEntity the activity
+   * @return the identity ids
+   */
+  private List<String> getAudience(ActivityEntity activityEntity) {
+
+    List<String> audience = new ArrayList<String>();
+    audience.add(activityEntity.getPosterIdentity().getId());
+    addAudience(audience, activityEntity.getMentioners());
+    addAudience(audience, activityEntity.getCommenters());
+    addAudience(audience, activityEntity.getLikes());
+    return audience;
+
+  }
+
+  /**
+   * Counts the activity, or the activity of the comment, as updated in the streams it belongs to.
+   *
+   * @param activityEntity the activity or the comment
+   */
+  private void countUpdated(ActivityEntity activityEntity) {
+
+    String commentPosterId = null;
+    long updated = getTime(activityEntity.getLastUpdated());
+    if (Boolean.TRUE.equals(activityEntity.isComment())) {
+      commentPosterId = activityEntity.getPosterIdentity().getId();
+      activityEntity = activityEntity.getParentActivity();
+      updated = Math.max(updated, getTime(activityEntity.getLastUpdated()));
+    }
+
+    //
+    List<String> mentioned = new ArrayList<String>();
+    addAudience(mentioned, activityEntity.getMentioners());
+    updateCounters.updated(activityEntity.getId(), updated, activityEntity.getIdentity().getId(), mentioned,
+                           commentPosterId);
+
+  }
+
+  private long getTime(Long time) {
+    return time != null ? time : 0;
+  }
+
+  private void addAudience(List<String> audience, String[] ids) {
+    if (ids == null) {
+      return;
+    }
+    for (String id : ids) {
+      // mentioners and commenters are stored as identityId@count
+      int index = id.indexOf(MENTION_CHAR);
+      audience.add(index == -1 ? id : id.substring(0, index));
+    }
+  }
+
   /*
    * Public
    */
@@ -406,6 +688,54 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<ExoSocialActivity> getActivities(List<String> activityIds) throws ActivityStorageException {
+
+    Map<String, ActivityEntity> entities = new HashMap<String, ActivityEntity>(activityIds.size());
+
+    //
+    for (int from = 0; from < activityIds.size(); from += ID_QUERY_SIZE) {
+      List<String> chunk = activityIds.subList(from, Math.min(from + ID_QUERY_SIZE, activityIds.size()));
+
+      QueryBuilder<ActivityEntity> builder = getSession().createQueryBuilder(ActivityEntity.class);
+      WhereExpression whereExpression = new WhereExpression();
+
+      whereExpression.startGroup();
+      for (int i = 0; chunk.size() > i; ++i) {
+        whereExpression.equals(JCRProperties.id, chunk.get(i));
+        if (i + 1 < chunk.size()) {
+          whereExpression.or();
+        }
+      }
+      whereExpression.endGroup();
+
+      QueryResult<ActivityEntity> result = builder.where(whereExpression.toString()).get().objects();
+      while (result.hasNext()) {
+        ActivityEntity entity = result.next();
+        entities.put(entity.getId(), entity);
+      }
+    }
+
+    //
+    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>(activityIds.size());
+    for (String activityId : activityIds) {
+      ActivityEntity entity = entities.get(activityId);
+      if (entity != null) {
+        ExoSocialActivity activity = new ExoSocialActivityImpl();
+        activity.setId(entity.getId());
+        fillActivityFromEntity(entity, activity);
+        processActivity(activity);
+        activities.add(activity);
+      }
+    }
+
+    //
+    return activities;
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -463,6 +793,9 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
       
       HidableEntity hidable = _getMixin(commentEntity, HidableEntity.class, true);
       hidable.setHidden(comment.isHidden());
+      if (!comment.isHidden()) {
+        addVisibleComment(activityEntity, commentEntity.getId());
+      }
       
       comment.setId(commentEntity.getId());
 
@@ -483,11 +816,18 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
       listIds.add(commentEntity.getId());
       activity.setReplyToId(listIds.toArray(new String[]{}));
 
+      //
+      countUpdated(commentEntity);
+
     }
     catch (NodeNotFoundException e) {
       throw new ActivityStorageException(ActivityStorageException.Type.FAILED_TO_SAVE_COMMENT, e.getMessage(), e);
     }
     getSession().save();
+
+    //
+    pushToFeeds(activity.getId(), ActivityNotification.Type.UPDATED);
+
     //
     LOG.debug(String.format(
         "Comment %s by %s (%s) created",
@@ -513,10 +853,11 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
 
     try {
 
-      if (activity.getId() == null) {
+      boolean created = activity.getId() == null;
+      if (created) {
 
         _createActivity(owner, activity);
-        
+
       }
       else {
 
@@ -525,7 +866,11 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
       }
 
       //
-      getSession().save();
+      counterBuffer.save(counterWriter, false);
+      countUpdated(_findById(ActivityEntity.class, activity.getId()));
+
+      //
+      pushToFeeds(activity.getId(), created ? ActivityNotification.Type.CREATED : ActivityNotification.Type.UPDATED);
 
       //
       LOG.debug(String.format(
@@ -568,6 +913,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
    */
   public void deleteActivity(String activityId) throws ActivityStorageException {
 
+    renderCache.remove(activityId);
+
     try {
 
       //
@@ -580,6 +927,15 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
       activity.setUserId(activityEntity.getIdentity().getId());
       activity.setId(activityEntity.getId());
 
+      // The viewers of the activity are notified once the removal is saved, a comment updates its activity
+      ActivityPushService pushService = getPushService();
+      boolean comment = Boolean.TRUE.equals(activityEntity.isComment());
+      ActivityEntity notifiedEntity = comment ? activityEntity.getParentActivity() : activityEntity;
+      String notifiedId = notifiedEntity.getId();
+      String notifiedPosterId = notifiedEntity.getPosterIdentity().getId();
+      String notifiedOwnerId = notifiedEntity.getIdentity().getId();
+      List<String> notifiedAudience = pushService != null ? getAudience(notifiedEntity) : null;
+
       // remove mentions information
       if (activityEntity.isComment()) {
         ActivityEntity activityEntityOfComment = activityEntity.getParentActivity();
@@ -587,8 +943,16 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
         
         //
         activityEntityOfComment.setCommenters(processCommenters(activityEntityOfComment.getCommenters(), activityEntity.getPosterIdentity().getId(), false));
+        removeVisibleComment(activityEntityOfComment, activityId);
       } else {
         activityEntity.setMentioners(processMentions(activityEntity.getMentioners(), activityEntity.getTitle(), false));
+        updateCounters.removed(activityId);
+
+        //
+        ActivityFeedStorage feedStorage = getFeedStorage();
+        if (feedStorage != null) {
+          feedStorage.removeActivity(activityId, activityEntity.getIdentity().getId(), getAudience(activityEntity));
+        }
       }
       
       //
@@ -596,11 +960,17 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
 
       //
       if (dayEntity != null) { // False when activity is a comment
-        dayEntity.desc();
+        counterBuffer.add(dayEntity, -1);
       }
 
       //
-      getSession().save();
+      counterBuffer.save(counterWriter, false);
+
+      //
+      if (pushService != null) {
+        pushService.publish(comment ? ActivityNotification.Type.UPDATED : ActivityNotification.Type.REMOVED, notifiedId,
+                            notifiedPosterId, notifiedOwnerId, notifiedAudience);
+      }
 
       //
       LOG.debug(String.format(
@@ -648,13 +1018,20 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
 
     QueryResult<ActivityEntity> results = getActivitiesOfIdentitiesQuery(connectionList, type).objects(offset, limit);
 
-    List<ExoSocialActivity> activities =  new ArrayList<ExoSocialActivity>();
+    return getActivitiesFromQueryResults(results);
+  }
 
-    while(results.hasNext()) {
-      activities.add(getStorage().getActivity(results.next().getId()));
+  /**
+   * {@inheritDoc}
+   */
+  public int getNumberOfActivitiesOfIdentities(List<Identity> connectionList) throws ActivityStorageException {
+
+    //
+    if (connectionList.size() == 0) {
+      return 0;
     }
 
-    return activities;
+    return getActivitiesOfIdentitiesQuery(connectionList, null).objects().size();
   }
 
   /**
@@ -800,16 +1177,37 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
    */
   public List<ExoSocialActivity> getActivityFeed(Identity ownerIdentity, int offset, int limit) {
 
+    //
+    ActivityFeedStorage feedStorage = getFeedStorage();
+    if (feedStorage != null) {
+      List<String> ids = feedStorage.getFeed(ownerIdentity, offset, limit);
+      if (ids != null) {
+        return getActivitiesFromIds(ids);
+      }
+    }
+
     //
     List<Identity> identities = new ArrayList<Identity>();
 
     identities.addAll(relationshipStorage.getConnections(ownerIdentity));
     identities.addAll(getSpacesId(ownerIdentity));
     identities.add(ownerIdentity);
+
+    //
+    if (feedStorage != null && offset == 0) {
+      feedStorage.prepareFeed(ownerIdentity, identities);
+    }
     
     ActivityFilter filter = new ActivityFilter(){};
     //
-    return getActivitiesOfIdentities(ActivityBuilderWhere.simple().poster(ownerIdentity).commenter(ownerIdentity).liker(ownerIdentity).mentioner(ownerIdentity).owners(identities), filter, offset, limit);
+    List<ExoSocialActivity> activities = getActivitiesOfIdentities(ActivityBuilderWhere.simple().poster(ownerIdentity).commenter(ownerIdentity).liker(ownerIdentity).mentioner(ownerIdentity).owners(identities), filter, offset, limit);
+
+    //
+    if (feedStorage != null) {
+      feedStorage.fillFeed(ownerIdentity, activities, offset, limit);
+    }
+
+    return activities;
   }
 
   /**
@@ -1232,66 +1630,102 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
    */
   public List<ExoSocialActivity> getComments(ExoSocialActivity existingActivity, int offset, int limit) {
 
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
-    String[] commentIds = getStorage().getActivity(existingActivity.getId()).getReplyToId();
-    
-    //
-    limit = (limit > commentIds.length ? commentIds.length : limit);
-    
-    for (int i = offset ; i < commentIds.length ; i++) {
-      if (isHidden(commentIds[i]) == false) {
-        activities.add(getStorage().getActivity(commentIds[i]));
-        
-        //
-        if (activities.size() == limit) {
-          break;
-        }
-      }
-      
-      
+    String[] commentIds;
+    try {
+      commentIds = getVisibleComments(_findById(ActivityEntity.class, existingActivity.getId()));
     }
-    return activities;
+    catch (NodeNotFoundException e) {
+      throw new ActivityStorageException(ActivityStorageException.Type.FAILED_TO_GET_ACTIVITY, e.getMessage(), e);
+    }
+
+    //
+    int from = Math.min(Math.max(offset, 0), commentIds.length);
+    int to = Math.min(from + Math.max(limit, 0), commentIds.length);
+    return getStorage().getActivities(Arrays.asList(commentIds).subList(from, to));
   }
   
   /**
-   * Checks specified comment is hidden or not
-   * @param commentId
+   * Checks specified activity or comment is hidden or not
+   * @param activityEntity
    * @return TRUE hidden comment/ FALSE otherwise
    */
-  private boolean isHidden(String commentId) {
+  private boolean isHidden(ActivityEntity activityEntity) {
+    HidableEntity hidable = _getMixin(activityEntity, HidableEntity.class, false);
+    return hidable != null && Boolean.TRUE.equals(hidable.getHidden());
+  }
 
-    try {
-      ActivityEntity activityEntity = _findById(ActivityEntity.class, commentId);
-      HidableEntity hidable = _getMixin(activityEntity, HidableEntity.class, false);
-      if (hidable != null) {
-        return hidable.getHidden();
+  /**
+   * Gets the ids of the visible comments of an activity. For the activities created before they were kept, they are
+   * computed from the comments without being stored: reads never save, the next write of a comment stores them.
+   */
+  private String[] getVisibleComments(ActivityEntity activityEntity) {
+    String[] commentIds = activityEntity.getVisibleComments();
+    if (commentIds == null) {
+      List<String> ids = computeVisibleComments(activityEntity);
+      commentIds = ids.toArray(new String[ids.size()]);
+    }
+    return commentIds;
+  }
+
+  private List<String> computeVisibleComments(ActivityEntity activityEntity) {
+    List<String> commentIds = new ArrayList<String>();
+    for (ActivityEntity commentEntity : activityEntity.getComments()) {
+      if (!isHidden(commentEntity)) {
+        commentIds.add(commentEntity.getId());
       }
-    } catch (NodeNotFoundException e) {
-      return true;
     }
+    return commentIds;
+  }
+
+  private String[] rebuildVisibleComments(ActivityEntity activityEntity) {
+    return setVisibleComments(activityEntity, computeVisibleComments(activityEntity));
+  }
+
+  /**
+   * Appends a new comment to the visible comments, the comment must already be added to the activity.
+   */
+  private void addVisibleComment(ActivityEntity activityEntity, String commentId) {
+    String[] commentIds = activityEntity.getVisibleComments();
+    if (commentIds == null) {
+      rebuildVisibleComments(activityEntity);
+      return;
+    }
+    List<String> ids = new ArrayList<String>(Arrays.asList(commentIds));
+    ids.add(commentId);
+    setVisibleComments(activityEntity, ids);
+  }
+
+  private void removeVisibleComment(ActivityEntity activityEntity, String commentId) {
+    String[] commentIds = activityEntity.getVisibleComments();
+    if (commentIds == null) {
+      commentIds = rebuildVisibleComments(activityEntity);
+    }
+    List<String> ids = new ArrayList<String>(Arrays.asList(commentIds));
+    if (ids.remove(commentId)) {
+      setVisibleComments(activityEntity, ids);
+    }
+  }
 
-    return false;
+  private String[] setVisibleComments(ActivityEntity activityEntity, List<String> commentIds) {
+    String[] ids = commentIds.toArray(new String[commentIds.size()]);
+    activityEntity.setVisibleComments(ids);
+    activityEntity.setVisibleCommentCount(ids.length);
+    return ids;
   }
 
   /**
    * {@inheritDoc}
    */
   public int getNumberOfComments(ExoSocialActivity existingActivity) {
-    //return getStorage().getActivity(existingActivity.getId()).getReplyToId().length;
-    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
 
-    //
-    List<String> commentIds = Arrays.asList(getStorage().getActivity(existingActivity.getId()).getReplyToId());
-
-    //
-    for(String commentId : commentIds) {
-      ExoSocialActivity comment = getActivity(commentId);
-      if (comment != null && comment.isHidden() == false)
-        activities.add(getStorage().getActivity(commentId));
+    try {
+      ActivityEntity activityEntity = _findById(ActivityEntity.class, existingActivity.getId());
+      Integer count = activityEntity.getVisibleCommentCount();
+      return count != null ? count : getVisibleComments(activityEntity).length;
+    }
+    catch (NodeNotFoundException e) {
+      throw new ActivityStorageException(ActivityStorageException.Type.FAILED_TO_GET_ACTIVITY, e.getMessage(), e);
     }
-
-    //
-    return activities.size();
   }
 
   /**
@@ -1312,10 +1746,9 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     }
 
     //
-    for(String commentId : commentIds.subList(0, baseIndex)) {
-      ExoSocialActivity comment = getActivity(commentId);
-      if (!comment.isHidden())
-        activities.add(getStorage().getActivity(commentId));
+    for(ExoSocialActivity comment : getStorage().getActivities(commentIds.subList(0, baseIndex))) {
+      if (comment.isHidden() == false)
+        activities.add(comment);
     }
 
     //
@@ -1338,10 +1771,9 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     }
 
     //
-    for(String commentId : commentIds.subList(0, baseIndex)) {
-      ExoSocialActivity comment = getActivity(commentId);
-      if (!comment.isHidden())
-        activities.add(getStorage().getActivity(commentId));
+    for(ExoSocialActivity comment : getStorage().getActivities(commentIds.subList(0, baseIndex))) {
+      if (comment.isHidden() == false)
+        activities.add(comment);
     }
 
     //
@@ -1366,10 +1798,9 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     int baseIndex = commentIds.indexOf(baseComment.getId());
 
     //
-    for(String commentId : commentIds.subList(baseIndex + 1, commentIds.size())) {
-      ExoSocialActivity comment = getActivity(commentId);
-      if (!comment.isHidden())
-        activities.add(getStorage().getActivity(commentId));
+    for(ExoSocialActivity comment : getStorage().getActivities(commentIds.subList(baseIndex + 1, commentIds.size()))) {
+      if (comment.isHidden() == false)
+        activities.add(comment);
     }
 
     //
@@ -1390,10 +1821,9 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     int baseIndex = commentIds.indexOf(baseComment.getId());
 
     //
-    for(String commentId : commentIds.subList(baseIndex + 1, limit)) {
-      ExoSocialActivity comment = getActivity(commentId);
-      if (!comment.isHidden())
-        activities.add(getStorage().getActivity(commentId));
+    for(ExoSocialActivity comment : getStorage().getActivities(commentIds.subList(baseIndex + 1, limit))) {
+      if (comment.isHidden() == false)
+        activities.add(comment);
     }
 
     //
@@ -1408,11 +1838,23 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     return activityProcessors;
   }
 
+  /**
+   * Gets the cache of the processed activities, with the time spent in each processor.
+   *
+   * @return the render cache
+   * @since 4.1
+   */
+  public ActivityRenderCache getRenderCache() {
+    return renderCache;
+  }
+
   /**
    * {@inheritDoc}
    */
   public void updateActivity(ExoSocialActivity changedActivity) throws ActivityStorageException {
 
+    renderCache.remove(changedActivity.getId());
+
     try {
       ActivityEntity activityEntity = _findById(ActivityEntity.class, changedActivity.getId());
 
@@ -1422,6 +1864,10 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
       _saveActivity(changedActivity);
       
       getSession().save();
+      countUpdated(activityEntity);
+
+      //
+      pushToFeeds(changedActivity.getId(), ActivityNotification.Type.UPDATED);
       
     }
     catch (NodeNotFoundException e) {
@@ -1441,13 +1887,71 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
 
     QueryResult<ActivityEntity> results = getActivitiesOfIdentitiesQuery(where, filter).objects(offset, limit);
 
-    List<ExoSocialActivity> activities =  new ArrayList<ExoSocialActivity>();
+    return getActivitiesFromQueryResults(results);
+  }
 
-    while(results.hasNext()) {
-      activities.add(getStorage().getActivity(results.next().getId()));
+  /**
+   * {@inheritDoc}
+   */
+  public List<ExoSocialActivity> getActivitiesAfter(ActivitiesRealtimeListAccess.ActivityType type, Identity owner,
+                                                    ActivityCursor cursor, int limit) throws ActivityStorageException {
+
+    //
+    ActivityBuilderWhere where;
+    ActivityFilter filter = new ActivityFilter(){};
+    switch (type) {
+      case ACTIVITY_FEED: {
+        List<Identity> identities = new ArrayList<Identity>();
+        identities.addAll(relationshipStorage.getConnections(owner));
+        identities.addAll(getSpacesId(owner));
+        identities.add(owner);
+        where = ActivityBuilderWhere.simple().poster(owner).commenter(owner).liker(owner).mentioner(owner).owners(identities);
+        break;
+      }
+      case USER_ACTIVITIES: {
+        where = ActivityBuilderWhere.simple().poster(owner).mentioner(owner).commenter(owner).liker(owner).owners(owner);
+        break;
+      }
+      case CONNECTIONS_ACTIVITIES: {
+        List<Identity> connections = relationshipStorage.getConnections(owner);
+        if (connections.size() == 0) {
+          return Collections.emptyList();
+        }
+        where = ActivityBuilderWhere.simple().owners(connections);
+        break;
+      }
+      case USER_SPACE_ACTIVITIES: {
+        List<Identity> spaceList = getSpacesId(owner);
+        if (spaceList.size() == 0) {
+          return Collections.emptyList();
+        }
+        where = ActivityBuilderWhere.simple().owners(spaceList);
+        break;
+      }
+      case SPACE_ACTIVITIES: {
+        where = ActivityBuilderWhere.space().owners(owner);
+        filter = ActivityFilter.space();
+        break;
+      }
+      case POSTER_ACTIVITIES: {
+        where = ActivityBuilderWhere.simple().owners(owner).poster(owner);
+        break;
+      }
+      default: {
+        return Collections.emptyList();
+      }
     }
 
-    return activities;
+    //
+    if (cursor == null) {
+      return getActivitiesOfIdentities(where, filter, 0, limit);
+    }
+
+    // at or before the cursor time, minus the activities already loaded at that time
+    filter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.OLDER.from(cursor.getLastUpdated() + 1));
+    List<ExoSocialActivity> fetched = getActivitiesOfIdentities(where, filter, 0, limit + cursor.getActivityIds().size());
+    return cursor.filter(fetched, limit);
+
   }
   
   /**
@@ -1769,14 +2273,18 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
       .updated().owners(owner), filter).objects((long)0, (long)limit));
   }
   
+  private List<ExoSocialActivity> getActivitiesFromIds(List<String> ids) {
+    return getStorage().getActivities(ids);
+  }
+
   private List<ExoSocialActivity> getActivitiesFromQueryResults(QueryResult<ActivityEntity> results) {
-    List<ExoSocialActivity> activities =  new ArrayList<ExoSocialActivity>();
+    List<String> ids = new ArrayList<String>();
 
     while(results.hasNext()) {
-      activities.add(getStorage().getActivity(results.next().getId()));
+      ids.add(results.next().getId());
     }
 
-    return activities;
+    return getStorage().getActivities(ids);
   }
   //
   
@@ -1798,6 +2306,13 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   
   @Override
   public int getNumberOfUpdatedOnActivityFeed(Identity owner, ActivityUpdateFilter filter) {
+    ActivityFilterType type = filter.activityFeedType();
+    String views = getViews();
+    Integer gotNumber = updateCounters.get(owner.getId(), type, views);
+    if (gotNumber != null) {
+      return refreshed(filter, type, gotNumber);
+    }
+    long sequence = updateCounters.getSequence();
     
     //
     List<Identity> identities = new ArrayList<Identity>();
@@ -1809,6 +2324,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     //identities.add(owner);
     
     if ( identities.size() == 0 ) {
+      putUpdated(owner, type, views, Collections.<String>emptySet(), Collections.<Identity>emptyList(), null,
+                 Collections.<Identity>emptyList(), sequence);
       return 0;
     }
     //
@@ -1828,7 +2345,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     filter.addExcludedActivities(excludedUserActivities);
     
     //
-    long compareTime = filter.activityFeedType().toSinceTime();
+    long compareTime = type.toSinceTime();
     
     //
     JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
@@ -1839,26 +2356,23 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
                                                                  .posters(relationships).excludedActivities(filter.excludedActivities()), jcrfilter);
     
     //calculate here
-    int gotNumber = counter(query);
-    
-    if (filter.isRefreshTab() && gotNumber == filter.activityFeedType().lastNumberOfUpdated()) {
-      gotNumber = 0;
-    }
+    Set<String> updated = getUpdatedActivityIds(query);
+    putUpdated(owner, type, views, updated, identities, owner, relationships, sequence);
     
-    return gotNumber;
+    return refreshed(filter, type, updated.size());
   }
   
   /**
-   * Counter of activies what is updated
+   * Gets the ids of the activities updated, an activity being updated by its comments.
    * @param query
    * @return
    */
-  private int counter(Query<ActivityEntity> query) {
+  private Set<String> getUpdatedActivityIds(Query<ActivityEntity> query) {
     
     QueryResult<ActivityEntity> results = query.objects();
     
     ActivityEntity entity = null;
-    ActivityCounter counter = new ActivityCounter();
+    Set<String> ids = new HashSet<String>();
     
     //
     while (results.hasNext()) {
@@ -1869,15 +2383,59 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
         entity = entity.getParentActivity();
       }
 
-      counter.add(getStorage().getActivity(entity.getId()));
+      ids.add(entity.getId());
 
     }
     
-    return counter.size();
+    return ids;
+  }
+
+  /**
+   * Keeps the activities updated in a stream, to count the activities written in it until it is viewed again.
+   */
+  private void putUpdated(Identity owner, ActivityFilterType type, String views, Set<String> updated,
+                          List<Identity> owners, Identity mentioner, List<Identity> posters, long sequence) {
+    updateCounters.put(owner.getId(), type, views, type.toSinceTime(), updated, getIds(owners),
+                       mentioner != null ? mentioner.getId() : null, getIds(posters), sequence);
+  }
+
+  private List<String> getIds(List<Identity> identities) {
+    List<String> ids = new ArrayList<String>(identities.size());
+    for (Identity identity : identities) {
+      ids.add(identity.getId());
+    }
+    return ids;
+  }
+
+  /**
+   * Gets the times the streams were last viewed, on which the number of updated activities of a stream depends: the
+   * activities viewed in the other streams are not counted.
+   */
+  private String getViews() {
+    StringBuilder sb = new StringBuilder();
+    for (ActivityFilterType type : ActivityFilterType.values()) {
+      sb.append(type.oldFromSinceTime()).append(',').append(type.fromSinceTime()).append(',')
+        .append(type.toSinceTime()).append(';');
+    }
+    return sb.toString();
+  }
+
+  private int refreshed(ActivityUpdateFilter filter, ActivityFilterType type, int gotNumber) {
+    if (filter.isRefreshTab() && gotNumber == type.lastNumberOfUpdated()) {
+      return 0;
+    }
+    return gotNumber;
   }
   
   @Override
   public int getNumberOfUpdatedOnUserActivities(Identity owner, ActivityUpdateFilter filter) {
+    ActivityFilterType type = filter.userActivitiesType();
+    String views = getViews();
+    Integer gotNumber = updateCounters.get(owner.getId(), type, views);
+    if (gotNumber != null) {
+      return refreshed(filter, type, gotNumber);
+    }
+    long sequence = updateCounters.getSequence();
     
     List<Identity> relationships = relationshipStorage.getConnections(owner);
     //
@@ -1894,7 +2452,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     
     //
     //long compareTime = filter.isRefreshTab() ? filter.userActivitiesType().fromSinceTime() : filter.userActivitiesType().toSinceTime();
-    long compareTime = filter.userActivitiesType().toSinceTime();
+    long compareTime = type.toSinceTime();
     //
     JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
     jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
@@ -1902,21 +2460,28 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     //
     Query<ActivityEntity> query = getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().mentioner(owner)
                                                                  .posters(relationships).excludedActivities(filter.excludedActivities()), jcrfilter);
-    int gotNumber = counter(query);
-    
-    if (filter.isRefreshTab() && gotNumber == filter.userActivitiesType().lastNumberOfUpdated()) {
-      gotNumber = 0;
-    }
+    Set<String> updated = getUpdatedActivityIds(query);
+    putUpdated(owner, type, views, updated, Collections.<Identity>emptyList(), owner, relationships, sequence);
     
-    return gotNumber;
+    return refreshed(filter, type, updated.size());
   }
   
   @Override
   public int getNumberOfUpdatedOnUserSpacesActivities(Identity owner, ActivityUpdateFilter filter) {
+    ActivityFilterType type = filter.userSpaceActivitiesType();
+    String views = getViews();
+    Integer gotNumber = updateCounters.get(owner.getId(), type, views);
+    if (gotNumber != null) {
+      return refreshed(filter, type, gotNumber);
+    }
+    long sequence = updateCounters.getSequence();
+    
     //
     List<Identity> spaceList = getSpacesId(owner);
     
     if (spaceList.size() == 0) {
+      putUpdated(owner, type, views, Collections.<String>emptySet(), spaceList, null,
+                 Collections.<Identity>emptyList(), sequence);
       return 0;
     }
     
@@ -1935,28 +2500,35 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     
     //
     //long compareTime = filter.isRefreshTab() ? filter.userSpaceActivitiesType().fromSinceTime() : filter.userSpaceActivitiesType().toSinceTime();
-    long compareTime = filter.userSpaceActivitiesType().toSinceTime();
+    long compareTime = type.toSinceTime();
     
     //
     JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
     jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
 
     //
-    int gotNumber = getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().owners(spaceList)
-                                          .excludedActivities(filter.excludedActivities()), jcrfilter).objects().size();
-    
-    if (filter.isRefreshTab() && gotNumber == filter.userSpaceActivitiesType().lastNumberOfUpdated()) {
-      gotNumber = 0;
-    }
+    Set<String> updated = getUpdatedActivityIds(getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().owners(spaceList)
+                                          .excludedActivities(filter.excludedActivities()), jcrfilter));
+    putUpdated(owner, type, views, updated, spaceList, null, Collections.<Identity>emptyList(), sequence);
     
-    return gotNumber;
+    return refreshed(filter, type, updated.size());
   }
   
   @Override
   public int getNumberOfUpdatedOnActivitiesOfConnections(Identity owner, ActivityUpdateFilter filter) {
+    ActivityFilterType type = filter.connectionType();
+    String views = getViews();
+    Integer gotNumber = updateCounters.get(owner.getId(), type, views);
+    if (gotNumber != null) {
+      return refreshed(filter, type, gotNumber);
+    }
+    long sequence = updateCounters.getSequence();
+    
     List<Identity> relationships = relationshipStorage.getConnections(owner);
 
     if (relationships.size() == 0) {
+      putUpdated(owner, type, views, Collections.<String>emptySet(), relationships, null,
+                 Collections.<Identity>emptyList(), sequence);
       return 0;
     }
     
@@ -1974,7 +2546,7 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     
     
     //
-    long compareTime = filter.connectionType().toSinceTime();
+    long compareTime = type.toSinceTime();
     
     //
     JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
@@ -1984,19 +2556,23 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     Query<ActivityEntity> query = getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().owners(relationships).posters(relationships)
                                                                  .excludedActivities(filter.excludedActivities()), jcrfilter);
     
-    //calculate here
-    int gotNumber = counter(query);
+    //calculate here, the posters are only matched with a mentioner
+    Set<String> updated = getUpdatedActivityIds(query);
+    putUpdated(owner, type, views, updated, relationships, null, Collections.<Identity>emptyList(), sequence);
     
-    if (filter.isRefreshTab() && gotNumber == filter.connectionType().lastNumberOfUpdated()) {
-      gotNumber = 0;
-    }
-    
-    return gotNumber;
+    return refreshed(filter, type, updated.size());
     
   }
   
   @Override
   public int getNumberOfUpdatedOnSpaceActivities(Identity owner, ActivityUpdateFilter filter) {
+    ActivityFilterType type = filter.spaceActivitiesType();
+    String views = getViews();
+    Integer gotNumber = updateCounters.get(owner.getId(), type, views);
+    if (gotNumber != null) {
+      return refreshed(filter, type, gotNumber);
+    }
+    long sequence = updateCounters.getSequence();
     
     //
     String[] excludedConnections = getNumberOfViewedOfActivities(owner, filter.connectionType());
@@ -2012,21 +2588,19 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     
     //
     //long compareTime = filter.isRefreshTab() ? filter.spaceActivitiesType().fromSinceTime() : filter.spaceActivitiesType().toSinceTime();
-    long compareTime = filter.spaceActivitiesType().toSinceTime();
+    long compareTime = type.toSinceTime();
     
     //
     JCRFilterLiteral jcrfilter = ActivityFilter.ACTIVITY_NEW_UPDATED_FILTER;
     jcrfilter.with(ActivityFilter.ACTIVITY_UPDATED_POINT_FIELD).value(TimestampType.NEWER.from(compareTime));
 
     //
-    int gotNumber = getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().owners(owner)
-                                                              .excludedActivities(filter.excludedActivities()), jcrfilter).objects().size();
+    Set<String> updated = getUpdatedActivityIds(getActivitiesOfIdentitiesQuery(ActivityBuilderWhere.updated().owners(owner)
+                                                              .excludedActivities(filter.excludedActivities()), jcrfilter));
+    putUpdated(owner, type, views, updated, Collections.singletonList(owner), null,
+               Collections.<Identity>emptyList(), sequence);
     
-    if (filter.isRefreshTab() && gotNumber == filter.spaceActivitiesType().lastNumberOfUpdated()) {
-      gotNumber = 0;
-    }
-    
-    return gotNumber;
+    return refreshed(filter, type, updated.size());
   }
   
   
@@ -2063,14 +2637,14 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
 
     //
     QueryResult<ActivityEntity> result = getActivitiesOfIdentitiesQuery(where.owners(identities), jcrfilter).objects();
-    String[] excludedActivities = new String[0];
+    List<String> excludedActivities = new ArrayList<String>();
     
     //
     while(result.hasNext()) {
-      excludedActivities = (String[]) ArrayUtils.add(excludedActivities, result.next().getId());
+      excludedActivities.add(result.next().getId());
     }
     
-    return excludedActivities;
+    return excludedActivities.toArray(new String[excludedActivities.size()]);
   }
 
   @Override
@@ -2324,8 +2898,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     
     int i = 0;
     while (i < totalSize) {
-      ExoSocialActivity comment = getActivity(commentIds[i]);
-      if (!comment.isHidden() && comment.getUpdated().getTime() > sinceTime)
+      ExoSocialActivity comment = getStorage().getActivity(commentIds[i]);
+      if (comment != null && !comment.isHidden() && comment.getUpdated().getTime() > sinceTime)
         activityIt.add(comment);
       if (activityIt.addMore() == false) {
         break;
@@ -2348,8 +2922,8 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
     
     int i = 0;
     while (i < totalSize) {
-      ExoSocialActivity comment = getActivity(commentIds[i]);
-      if (!comment.isHidden() && comment.getUpdated().getTime() < sinceTime)
+      ExoSocialActivity comment = getStorage().getActivity(commentIds[i]);
+      if (comment != null && !comment.isHidden() && comment.getUpdated().getTime() < sinceTime)
         activityIt.add(comment);
       if (activityIt.addMore() == false) {
         break;
@@ -2364,14 +2938,10 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   public int getNumberOfNewerComments(ExoSocialActivity existingActivity, Long sinceTime) {
     String[] commentIds = getStorage().getActivity(existingActivity.getId()).getReplyToId();
     int nb = 0;
-    long totalSize = commentIds.length;
     
-    int i = 0;
-    while (i < totalSize) {
-      ExoSocialActivity comment = getActivity(commentIds[i]);
+    for (ExoSocialActivity comment : getStorage().getActivities(Arrays.asList(commentIds))) {
       if (!comment.isHidden() && comment.getUpdated().getTime() > sinceTime)
         nb++;
-      i++;
     }
     
     return nb;
@@ -2381,14 +2951,10 @@ public class ActivityStorageImpl extends AbstractStorage implements ActivityStor
   public int getNumberOfOlderComments(ExoSocialActivity existingActivity, Long sinceTime) {
     String[] commentIds = getStorage().getActivity(existingActivity.getId()).getReplyToId();
     int nb = 0;
-    long totalSize = commentIds.length;
     
-    int i = 0;
-    while (i < totalSize) {
-      ExoSocialActivity comment = getActivity(commentIds[i]);
+    for (ExoSocialActivity comment : getStorage().getActivities(Arrays.asList(commentIds))) {
       if (!comment.isHidden() && comment.getUpdated().getTime() < sinceTime)
         nb++;
-      i++;
     }
     
     return nb;
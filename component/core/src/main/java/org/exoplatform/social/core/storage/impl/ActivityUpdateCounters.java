@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter.ActivityFilterType;
+
+/**
+ * Counters of the activities updated in the streams of the users since they last viewed them. The updated activities
+ * of a stream are loaded once by a query, then the activities written in the stream are added to them, until the
+ * stream is viewed again, so that polling the counter does not query the storage.
+ *
+ * A stream is described by the rules of its query: the activities of some stream owners, the activities mentioning a
+ * user and the comments of some posters on the stream of that user.
+ *
+ * @since 4.1
+ */
+public class ActivityUpdateCounters {
+
+  private final int maxSize;
+
+  private final long maxAge;
+
+  private final int maxEvents;
+
+  private final Map<String, Counter> counters;
+
+  /** The counters by the stream owners they count the activities of. */
+  private final Map<String, Set<Counter>> byOwner = new HashMap<String, Set<Counter>>();
+
+  /** The counters by the user whose mentions they count. */
+  private final Map<String, Set<Counter>> byMentioner = new HashMap<String, Set<Counter>>();
+
+  /** The last writes, replayed on the counters whose query ran meanwhile. */
+  private final LinkedList<Event> events = new LinkedList<Event>();
+
+  private long sequence;
+
+  /**
+   * @param maxSize the max number of counters, the least recently used ones are dropped first
+   * @param maxAge the time in milliseconds after which a counter is loaded again, since the connections or the spaces
+   *        of its user may have changed
+   * @param maxEvents the number of writes kept to be replayed on the counters being loaded
+   */
+  public ActivityUpdateCounters(final int maxSize, long maxAge, int maxEvents) {
+    this.maxSize = maxSize;
+    this.maxAge = maxAge;
+    this.maxEvents = maxEvents;
+    this.counters = new LinkedHashMap<String, Counter>(16, 0.75f, true);
+  }
+
+  /**
+   * Gets the number of activities updated in a stream.
+   *
+   * @param identityId the identity id of the stream owner
+   * @param type the stream type
+   * @param views the times the streams of the user were last viewed, as the activities viewed in the other streams
+   *        are not counted
+   * @return the number, or null if it must be loaded
+   */
+  public synchronized Integer get(String identityId, ActivityFilterType type, String views) {
+    Counter counter = counters.get(key(identityId, type));
+    if (counter == null || !counter.views.equals(views) || counter.created + maxAge < System.currentTimeMillis()) {
+      return null;
+    }
+    return counter.activityIds.size();
+  }
+
+  /**
+   * Gets the sequence to give back to {@link #put} after a load.
+   *
+   * @return the current sequence
+   */
+  public synchronized long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Keeps the activities loaded for a stream, with the writes done since the load started.
+   *
+   * @param identityId the identity id of the stream owner
+   * @param type the stream type
+   * @param views the times the streams of the user were last viewed
+   * @param since the time the stream was last viewed, the activities updated before are not counted
+   * @param activityIds the ids of the activities updated since
+   * @param owners the identity ids of the stream owners whose activities are counted
+   * @param mentioner the identity id of the user whose mentions are counted, or null
+   * @param commentPosters the identity ids of the posters whose comments on the stream of the mentioner are counted
+   * @param sequence the sequence read before the load
+   * @return true if the counter is kept, false if too many writes were done during the load
+   */
+  public synchronized boolean put(String identityId, ActivityFilterType type, String views, long since,
+                                  Collection<String> activityIds, Collection<String> owners, String mentioner,
+                                  Collection<String> commentPosters, long sequence) {
+    if (!events.isEmpty() && events.getFirst().sequence > sequence + 1) {
+      return false;
+    }
+
+    //
+    String key = key(identityId, type);
+    Counter previous = counters.remove(key);
+    if (previous != null) {
+      unindex(previous);
+    }
+    Counter counter = new Counter(key, views, since, activityIds, owners, mentioner, commentPosters);
+    counters.put(key, counter);
+    index(counter);
+    for (Event event : events) {
+      if (event.sequence <= sequence) {
+        continue;
+      }
+      if (event.removed) {
+        counter.activityIds.remove(event.activityId);
+      }
+      else if (counter.matches(event)) {
+        counter.activityIds.add(event.activityId);
+      }
+    }
+
+    //
+    if (counters.size() > maxSize) {
+      Counter eldest = counters.values().iterator().next();
+      counters.remove(eldest.key);
+      unindex(eldest);
+    }
+    return true;
+  }
+
+  /**
+   * Counts an activity written in the streams it belongs to.
+   *
+   * @param activityId the id of the activity, or of the activity of the comment
+   * @param updated the time the activity was updated
+   * @param ownerId the identity id of the stream owner
+   * @param mentionerIds the identity ids of the users mentioned
+   * @param commentPosterId the identity id of the poster of the comment, or null if not a comment
+   */
+  public synchronized void updated(String activityId, long updated, String ownerId, Collection<String> mentionerIds,
+                                   String commentPosterId) {
+    Event event = new Event(++sequence, activityId, updated, ownerId, mentionerIds, commentPosterId, false);
+    log(event);
+    for (Counter counter : matching(event)) {
+      if (updated > counter.since) {
+        counter.activityIds.add(activityId);
+      }
+    }
+  }
+
+  /**
+   * Stops counting a deleted activity.
+   *
+   * @param activityId the activity id
+   */
+  public synchronized void removed(String activityId) {
+    log(new Event(++sequence, activityId, 0, null, null, null, true));
+    for (Counter counter : counters.values()) {
+      counter.activityIds.remove(activityId);
+    }
+  }
+
+  public synchronized void clear() {
+    counters.clear();
+    byOwner.clear();
+    byMentioner.clear();
+    events.clear();
+  }
+
+  public synchronized int size() {
+    return counters.size();
+  }
+
+  private void log(Event event) {
+    events.add(event);
+    if (events.size() > maxEvents) {
+      events.removeFirst();
+    }
+  }
+
+  private Set<Counter> matching(Event event) {
+    Set<Counter> matching = new HashSet<Counter>();
+    addAll(matching, byOwner.get(event.ownerId));
+    for (String mentionerId : event.mentionerIds) {
+      addAll(matching, byMentioner.get(mentionerId));
+    }
+    if (event.commentPosterId != null) {
+      Set<Counter> candidates = byMentioner.get(event.ownerId);
+      if (candidates != null) {
+        for (Counter counter : candidates) {
+          if (counter.commentPosters.contains(event.commentPosterId)) {
+            matching.add(counter);
+          }
+        }
+      }
+    }
+    return matching;
+  }
+
+  private void addAll(Set<Counter> matching, Set<Counter> counters) {
+    if (counters != null) {
+      matching.addAll(counters);
+    }
+  }
+
+  private void index(Counter counter) {
+    for (String owner : counter.owners) {
+      index(byOwner, owner, counter);
+    }
+    if (counter.mentioner != null) {
+      index(byMentioner, counter.mentioner, counter);
+    }
+  }
+
+  private void index(Map<String, Set<Counter>> index, String id, Counter counter) {
+    Set<Counter> set = index.get(id);
+    if (set == null) {
+      set = new HashSet<Counter>();
+      index.put(id, set);
+    }
+    set.add(counter);
+  }
+
+  private void unindex(Counter counter) {
+    for (String owner : counter.owners) {
+      unindex(byOwner, owner, counter);
+    }
+    if (counter.mentioner != null) {
+      unindex(byMentioner, counter.mentioner, counter);
+    }
+  }
+
+  private void unindex(Map<String, Set<Counter>> index, String id, Counter counter) {
+    Set<Counter> set = index.get(id);
+    if (set != null) {
+      set.remove(counter);
+      if (set.isEmpty()) {
+        index.remove(id);
+      }
+    }
+  }
+
+  private static String key(String identityId, ActivityFilterType type) {
+    return identityId + "/" + type.name();
+  }
+
+  private static class Counter {
+
+    private final String key;
+
+    private final String views;
+
+    private final long since;
+
+    private final long created = System.currentTimeMillis();
+
+    private final Set<String> activityIds;
+
+    private final Set<String> owners;
+
+    private final String mentioner;
+
+    private final Set<String> commentPosters;
+
+    private Counter(String key, String views, long since, Collection<String> activityIds, Collection<String> owners,
+                    String mentioner, Collection<String> commentPosters) {
+      this.key = key;
+      this.views = views;
+      this.since = since;
+      this.activityIds = new HashSet<String>(activityIds);
+      this.owners = new HashSet<String>(owners);
+      this.mentioner = mentioner;
+      this.commentPosters = new HashSet<String>(commentPosters);
+    }
+
+    private boolean matches(Event event) {
+      if (event.updated <= since) {
+        return false;
+      }
+      return owners.contains(event.ownerId)
+          || (mentioner != null && event.mentionerIds.contains(mentioner))
+          || (event.commentPosterId != null && event.ownerId.equals(mentioner)
+              && commentPosters.contains(event.commentPosterId));
+    }
+
+  }
+
+  private static class Event {
+
+    private final long sequence;
+
+    private final String activityId;
+
+    private final long updated;
+
+    private final String ownerId;
+
+    private final List<String> mentionerIds;
+
+    private final String commentPosterId;
+
+    private final boolean removed;
+
+    private Event(long sequence, String activityId, long updated, String ownerId, Collection<String> mentionerIds,
+                  String commentPosterId, boolean removed) {
+      this.sequence = sequence;
+      this.activityId = activityId;
+      this.updated = updated;
+      this.ownerId = ownerId;
+      this.mentionerIds = mentionerIds != null ? new ArrayList<String>(mentionerIds) : Collections.<String>emptyList();
+      this.commentPosterId = commentPosterId;
+      this.removed = removed;
+    }
+
+  }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hashed set of the user names of the platform users group of a tenant, updated from the membership events.
+ *
+ * @since 4.1
+ */
+public class PlatformUsersIndex {
+
+  /** estimated bytes of a set entry without its string: map node, boolean reference and table slot */
+  private static final int ENTRY_OVERHEAD = 48;
+
+  /** estimated bytes of a string without its chars */
+  private static final int STRING_OVERHEAD = 40;
+
+  private final Set<String> userNames;
+
+  public PlatformUsersIndex(Collection<String> userNames) {
+    this.userNames = Collections.newSetFromMap(
+        new ConcurrentHashMap<String, Boolean>(Math.max(16, (int) (userNames.size() / 0.75f) + 1)));
+    this.userNames.addAll(userNames);
+  }
+
+  public boolean contains(String userName) {
+    return userName != null && userNames.contains(userName);
+  }
+
+  public void add(String userName) {
+    userNames.add(userName);
+  }
+
+  public void remove(String userName) {
+    userNames.remove(userName);
+  }
+
+  public int size() {
+    return userNames.size();
+  }
+
+  /**
+   * Estimates the memory used by the index.
+   *
+   * @return the estimated number of bytes
+   */
+  public long getEstimatedMemory() {
+    long bytes = 0;
+    for (String userName : userNames) {
+      bytes += ENTRY_OVERHEAD + STRING_OVERHEAD + 2L * userName.length();
+    }
+    return bytes;
+  }
+
+}
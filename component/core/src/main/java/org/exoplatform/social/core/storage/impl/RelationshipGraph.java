@@ -0,0 +1,497 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In memory adjacency of the relationships between identities, used to compute the friends of friends
+ * suggestions without scanning the whole user base.
+ *
+ * Identity ids are mapped to int indexes and the neighbours of an identity are kept in a sorted int array.
+ * The neighbours are loaded lazily through a {@link Loader} and then maintained by {@link #addEdge(String, String)}
+ * and {@link #removeEdge(String, String)}.
+ *
+ * The edges are only maintained for the relationships changed on this node: the neighbours of an identity are
+ * loaded again once older than the live time, and the graph starts over empty once it knows more identities than
+ * its max size.
+ *
+ * @since 4.1
+ */
+public class RelationshipGraph {
+
+  /**
+   * Loads the ids of the identities which have a relationship with an identity.
+   */
+  public interface Loader {
+
+    Collection<String> load(String identityId);
+
+  }
+
+  private static final int[] EMPTY = new int[0];
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** the max number of known identities before the graph starts over */
+  private final int maxSize;
+
+  /** in milliseconds, 0 when the loaded neighbours never expire */
+  private final long liveTime;
+
+  /** replaced as a whole when the graph starts over, a running computation keeps its own */
+  private volatile Nodes nodes = new Nodes();
+
+  /**
+   * Creates a graph which is neither bounded nor expired.
+   */
+  public RelationshipGraph() {
+    this(Integer.MAX_VALUE, 0);
+  }
+
+  /**
+   * Creates a graph.
+   *
+   * @param maxSize the max number of known identities before the graph starts over
+   * @param liveTime the time in milliseconds after which the loaded neighbours of an identity are loaded again,
+   *                 0 to keep them
+   */
+  public RelationshipGraph(int maxSize, long liveTime) {
+    this.maxSize = maxSize;
+    this.liveTime = liveTime;
+  }
+
+  /**
+   * Gets the identities with the most common relationships with an identity, among the relationships of its
+   * relationships.
+   *
+   * @param identityId the identity id
+   * @param offset the offset
+   * @param limit the limit
+   * @param loader the loader of the not yet known relationships
+   * @return the identity ids and the number of common relationships, best first
+   */
+  public Map<String, Integer> getSuggestions(String identityId, int offset, int limit, Loader loader) {
+
+    Map<String, Integer> suggestions = new LinkedHashMap<String, Integer>();
+    if (offset < 0 || limit <= 0) {
+      return suggestions;
+    }
+
+    //
+    Nodes nodes = getNodes();
+    int self = index(nodes, identityId);
+    int[] neighbours = getNeighbours(nodes, self, loader);
+
+    // count the common relationships of the 2 hops neighbourhood
+    IntCounter counter = new IntCounter();
+    for (int neighbour : neighbours) {
+      for (int candidate : getNeighbours(nodes, neighbour, loader)) {
+        if (candidate != self && Arrays.binarySearch(neighbours, candidate) < 0) {
+          counter.increment(candidate);
+        }
+      }
+    }
+
+    // keep the best offset + limit
+    final int k = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+    PriorityQueue<int[]> top = new PriorityQueue<int[]>(Math.min(k, 1024), WORST_FIRST);
+    for (int i = 0; i < counter.keys.length; ++i) {
+      if (counter.counts[i] > 0) {
+        int[] entry = new int[] {counter.keys[i], counter.counts[i]};
+        if (top.size() < k) {
+          top.add(entry);
+        }
+        else if (WORST_FIRST.compare(entry, top.peek()) > 0) {
+          top.poll();
+          top.add(entry);
+        }
+      }
+    }
+
+    //
+    int[][] best = top.toArray(new int[top.size()][]);
+    Arrays.sort(best, Collections.reverseOrder(WORST_FIRST));
+    lock.readLock().lock();
+    try {
+      for (int i = offset; i < best.length; ++i) {
+        suggestions.put(nodes.ids[best[i][0]], best[i][1]);
+      }
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+    return suggestions;
+
+  }
+
+  /**
+   * Records a relationship between two identities.
+   *
+   * @param identityId1 the first identity id
+   * @param identityId2 the second identity id
+   */
+  public void addEdge(String identityId1, String identityId2) {
+
+    Nodes nodes = this.nodes;
+    int i1 = index(nodes, identityId1);
+    int i2 = index(nodes, identityId2);
+
+    //
+    lock.writeLock().lock();
+    try {
+      link(nodes, i1, i2);
+      link(nodes, i2, i1);
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+
+  }
+
+  /**
+   * Forgets the relationship between two identities.
+   *
+   * @param identityId1 the first identity id
+   * @param identityId2 the second identity id
+   */
+  public void removeEdge(String identityId1, String identityId2) {
+
+    Nodes nodes = this.nodes;
+    int i1 = index(nodes, identityId1);
+    int i2 = index(nodes, identityId2);
+
+    //
+    lock.writeLock().lock();
+    try {
+      unlink(nodes, i1, i2);
+      unlink(nodes, i2, i1);
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+
+  }
+
+  /**
+   * Forgets all the loaded relationships and the known identities.
+   */
+  public void clear() {
+
+    lock.writeLock().lock();
+    try {
+      nodes = new Nodes();
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+
+  }
+
+  /**
+   * Gets the number of identities whose relationships are loaded.
+   *
+   * @return the number of loaded identities
+   */
+  public int getLoadedSize() {
+
+    lock.readLock().lock();
+    try {
+      Nodes nodes = this.nodes;
+      int loaded = 0;
+      for (int i = 0; i < nodes.size; ++i) {
+        if (nodes.adjacency[i] != null) {
+          loaded++;
+        }
+      }
+      return loaded;
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+
+  }
+
+  /**
+   * Gets the number of known identities, loaded or not.
+   *
+   * @return the number of known identities
+   */
+  public int getSize() {
+
+    lock.readLock().lock();
+    try {
+      return nodes.size;
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+
+  }
+
+  /**
+   * Gets the current time in milliseconds.
+   */
+  long now() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Gets the nodes to compute with, starting over when the graph is full.
+   */
+  private Nodes getNodes() {
+
+    Nodes current = nodes;
+    if (current.size < maxSize) {
+      return current;
+    }
+
+    //
+    clear();
+    return nodes;
+
+  }
+
+  private int[] getNeighbours(Nodes nodes, int index, Loader loader) {
+
+    String id;
+    int modCount;
+    lock.readLock().lock();
+    try {
+      if (nodes.adjacency[index] != null && !isExpired(nodes, index)) {
+        return nodes.adjacency[index];
+      }
+      id = nodes.ids[index];
+      modCount = nodes.modCounts[index];
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+
+    // load outside of the lock
+    Collection<String> loaded = loader.load(id);
+    int[] neighbours = new int[loaded.size()];
+    int n = 0;
+    for (String neighbourId : loaded) {
+      neighbours[n++] = index(nodes, neighbourId);
+    }
+    Arrays.sort(neighbours);
+    neighbours = distinct(neighbours);
+
+    //
+    lock.writeLock().lock();
+    try {
+      if (nodes.adjacency[index] != null && !isExpired(nodes, index)) {
+        return nodes.adjacency[index];
+      }
+      if (nodes.modCounts[index] == modCount) {
+        nodes.adjacency[index] = neighbours;
+        nodes.loadTimes[index] = now();
+      }
+      return neighbours;
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+
+  }
+
+  private boolean isExpired(Nodes nodes, int index) {
+    return liveTime > 0 && nodes.loadTimes[index] + liveTime < now();
+  }
+
+  private int index(Nodes nodes, String id) {
+
+    lock.readLock().lock();
+    try {
+      Integer index = nodes.indexes.get(id);
+      if (index != null) {
+        return index;
+      }
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+
+    //
+    lock.writeLock().lock();
+    try {
+      Integer index = nodes.indexes.get(id);
+      if (index != null) {
+        return index;
+      }
+      if (nodes.size == nodes.ids.length) {
+        int capacity = nodes.size * 2;
+        nodes.ids = Arrays.copyOf(nodes.ids, capacity);
+        nodes.adjacency = Arrays.copyOf(nodes.adjacency, capacity);
+        nodes.modCounts = Arrays.copyOf(nodes.modCounts, capacity);
+        nodes.loadTimes = Arrays.copyOf(nodes.loadTimes, capacity);
+      }
+      nodes.ids[nodes.size] = id;
+      nodes.indexes.put(id, nodes.size);
+      return nodes.size++;
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+
+  }
+
+  private void link(Nodes nodes, int from, int to) {
+    int[] neighbours = nodes.adjacency[from];
+    if (neighbours == null) {
+      nodes.modCounts[from]++;
+      return;
+    }
+    int position = Arrays.binarySearch(neighbours, to);
+    if (position < 0) {
+      int insert = -position - 1;
+      int[] updated = new int[neighbours.length + 1];
+      System.arraycopy(neighbours, 0, updated, 0, insert);
+      updated[insert] = to;
+      System.arraycopy(neighbours, insert, updated, insert + 1, neighbours.length - insert);
+      nodes.adjacency[from] = updated;
+    }
+  }
+
+  private void unlink(Nodes nodes, int from, int to) {
+    int[] neighbours = nodes.adjacency[from];
+    if (neighbours == null) {
+      nodes.modCounts[from]++;
+      return;
+    }
+    int position = Arrays.binarySearch(neighbours, to);
+    if (position >= 0) {
+      int[] updated = new int[neighbours.length - 1];
+      System.arraycopy(neighbours, 0, updated, 0, position);
+      System.arraycopy(neighbours, position + 1, updated, position, neighbours.length - position - 1);
+      nodes.adjacency[from] = updated;
+    }
+  }
+
+  private static int[] distinct(int[] sorted) {
+    if (sorted.length == 0) {
+      return EMPTY;
+    }
+    int n = 1;
+    for (int i = 1; i < sorted.length; ++i) {
+      if (sorted[i] != sorted[n - 1]) {
+        sorted[n++] = sorted[i];
+      }
+    }
+    return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+  }
+
+  /** Lowest count first, then the latest known identity first */
+  private static final Comparator<int[]> WORST_FIRST = new Comparator<int[]>() {
+    public int compare(int[] e1, int[] e2) {
+      if (e1[1] != e2[1]) {
+        return e1[1] < e2[1] ? -1 : 1;
+      }
+      return e1[0] == e2[0] ? 0 : (e1[0] > e2[0] ? -1 : 1);
+    }
+  };
+
+  /**
+   * The known identities and their loaded neighbours, guarded by the lock of the graph.
+   */
+  private static class Nodes {
+
+    private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+    private String[] ids = new String[16];
+
+    /** sorted neighbours per index, null when not loaded */
+    private int[][] adjacency = new int[16][];
+
+    /** incremented when an edge of a not loaded index changes, so that a concurrent load is not kept */
+    private int[] modCounts = new int[16];
+
+    /** time in milliseconds the neighbours per index were loaded */
+    private long[] loadTimes = new long[16];
+
+    private int size;
+
+  }
+
+  /**
+   * Open addressing int to int counter.
+   */
+  private static class IntCounter {
+
+    private int[] keys = new int[64];
+    private int[] counts = new int[64];
+    private int size;
+
+    IntCounter() {
+      Arrays.fill(keys, -1);
+    }
+
+    void increment(int key) {
+      int mask = keys.length - 1;
+      int slot = hash(key) & mask;
+      while (keys[slot] != -1 && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      if (keys[slot] == -1) {
+        keys[slot] = key;
+        if (++size * 2 > keys.length) {
+          counts[slot] = 1;
+          grow();
+          return;
+        }
+      }
+      counts[slot]++;
+    }
+
+    private void grow() {
+      int[] oldKeys = keys;
+      int[] oldCounts = counts;
+      keys = new int[oldKeys.length * 2];
+      counts = new int[oldKeys.length * 2];
+      Arrays.fill(keys, -1);
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldKeys.length; ++i) {
+        if (oldKeys[i] != -1) {
+          int slot = hash(oldKeys[i]) & mask;
+          while (keys[slot] != -1) {
+            slot = (slot + 1) & mask;
+          }
+          keys[slot] = oldKeys[i];
+          counts[slot] = oldCounts[i];
+        }
+      }
+    }
+
+    private static int hash(int key) {
+      int h = key * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+
+  }
+
+}
@@ -18,21 +18,13 @@
 package org.exoplatform.social.core.storage.impl;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
 
-import javax.jcr.Node;
-import javax.jcr.NodeIterator;
-
-import org.apache.commons.lang.ArrayUtils;
 import org.chromattic.api.query.Ordering;
 import org.chromattic.api.query.QueryBuilder;
 import org.chromattic.api.query.QueryResult;
@@ -40,16 +32,17 @@ import org.chromattic.core.query.QueryImpl;
 import org.exoplatform.container.PortalContainer;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
+import org.exoplatform.social.core.activity.ActivityPushService;
 import org.exoplatform.social.core.chromattic.entity.IdentityEntity;
 import org.exoplatform.social.core.chromattic.entity.ProfileEntity;
 import org.exoplatform.social.core.chromattic.entity.RelationshipEntity;
 import org.exoplatform.social.core.chromattic.entity.RelationshipListEntity;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.model.Profile;
-import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
 import org.exoplatform.social.core.profile.ProfileFilter;
 import org.exoplatform.social.core.relationship.model.Relationship;
 import org.exoplatform.social.core.storage.RelationshipStorageException;
+import org.exoplatform.social.core.storage.api.ActivityFeedStorage;
 import org.exoplatform.social.core.storage.api.ActivityStorage;
 import org.exoplatform.social.core.storage.api.IdentityStorage;
 import org.exoplatform.social.core.storage.api.RelationshipStorage;
@@ -57,7 +50,6 @@ import org.exoplatform.social.core.storage.cache.CachedActivityStorage;
 import org.exoplatform.social.core.storage.exception.NodeNotFoundException;
 import org.exoplatform.social.core.storage.query.JCRProperties;
 import org.exoplatform.social.core.storage.query.WhereExpression;
-import org.exoplatform.social.core.storage.thread.SocialExecutorService;
 
 /**
  * @author <a href="mailto:alain.defrance@exoplatform.com">Alain Defrance</a>
@@ -71,8 +63,12 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
   private final IdentityStorage identityStorage;
   private RelationshipStorage relationshipStorage;
   private CachedActivityStorage cachedActivityStorage;
-  private Object lock = new Object();
-  private SocialExecutorService<String[]> executorService = new SocialExecutorService<String[]>(10);
+
+  /** The max number of identities known by the relationship graph before it starts over. */
+  private static final int GRAPH_MAX_SIZE = 50000;
+  /** The time in milliseconds after which the relationships of an identity are loaded again in the graph. */
+  private static final long GRAPH_LIVE_TIME = 10 * 60 * 1000;
+  private final RelationshipGraph relationshipGraph = new RelationshipGraph(GRAPH_MAX_SIZE, GRAPH_LIVE_TIME);
 
   public RelationshipStorageImpl(IdentityStorage identityStorage) {
    this.identityStorage = identityStorage;
@@ -89,7 +85,35 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
     
     return this.cachedActivityStorage;
   }
+
+  private void invalidateFeeds(Relationship relationship) {
+
+    PortalContainer container = PortalContainer.getInstance();
+    ActivityFeedStorage feedStorage = (ActivityFeedStorage) container.getComponentInstanceOfType(ActivityFeedStorage.class);
+    if (feedStorage != null && feedStorage.isEnabled()) {
+      feedStorage.invalidateFeed(relationship.getSender().getId());
+      feedStorage.invalidateFeed(relationship.getReceiver().getId());
+    }
+    ActivityPushService pushService = (ActivityPushService) container.getComponentInstanceOfType(ActivityPushService.class);
+    if (pushService != null && pushService.isEnabled()) {
+      pushService.invalidateSubscription(relationship.getSender().getId());
+      pushService.invalidateSubscription(relationship.getReceiver().getId());
+    }
+  }
   
+  private void updateGraph(Relationship relationship, boolean linked) {
+
+    if (relationship.getSender() == null || relationship.getReceiver() == null) {
+      relationshipGraph.clear();
+    }
+    else if (linked) {
+      relationshipGraph.addEdge(relationship.getSender().getId(), relationship.getReceiver().getId());
+    }
+    else {
+      relationshipGraph.removeEdge(relationship.getSender().getId(), relationship.getReceiver().getId());
+    }
+  }
+
   private void putRelationshipToList(List<Relationship> relationships, RelationshipListEntity list) {
     if (list != null) {
       for (Map.Entry<String, RelationshipEntity> entry : list.getRelationships().entrySet()) {
@@ -141,6 +165,30 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
     identity.setProfile(profile);
   }
 
+  /**
+   * Gets the connections of an identity with only their id and the id of their profile, which is all the profile
+   * queries need, without loading their profiles.
+   */
+  private List<Identity> getConnectionProfileIds(Identity identity) throws RelationshipStorageException {
+
+    try {
+      IdentityEntity identityEntity = _findById(IdentityEntity.class, identity.getId());
+      Collection<RelationshipEntity> relationships = identityEntity.getRelationship().getRelationships().values();
+      List<Identity> identities = new ArrayList<Identity>(relationships.size());
+      for (RelationshipEntity relationshipEntity : relationships) {
+        IdentityEntity to = relationshipEntity.getTo();
+        Identity connection = new Identity(to.getId());
+        connection.getProfile().setId(to.getProfile().getId());
+        identities.add(connection);
+      }
+      return identities;
+    }
+    catch (NodeNotFoundException e) {
+      throw new RelationshipStorageException(RelationshipStorageException.Type.ILLEGAL_ARGUMENTS);
+    }
+
+  }
+
   private List<Identity> getIdentitiesFromRelationship(Iterator<RelationshipEntity> it, Origin origin, long offset, long limit) {
 
     //
@@ -575,6 +623,10 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
           new String[] { Relationship.class.getSimpleName() });
     }
 
+    //
+    updateGraph(relationship, true);
+    invalidateFeeds(relationship);
+
     return relationship;
   }
 
@@ -596,6 +648,8 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
       getSession().save();
       
       getCachedActivityStorage().clearCache();
+      updateGraph(relationship, false);
+      invalidateFeeds(relationship);
 
       //
       LOG.debug(String.format(
@@ -943,7 +997,7 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
       final Identity existingIdentity, final ProfileFilter profileFilter, final long offset, final long limit)
       throws RelationshipStorageException {
 
-    List<Identity> identities = getStorage().getConnections(existingIdentity);
+    List<Identity> identities = getConnectionProfileIds(existingIdentity);
     return getIdentitiesRelationsByFilter(identities, profileFilter, offset, limit);
     
   }
@@ -1000,7 +1054,11 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
   public int getConnectionsCountByFilter(
       final Identity existingIdentity, final ProfileFilter profileFilter) throws RelationshipStorageException {
 
-    List<Identity> identities = getStorage().getConnections(existingIdentity);
+    if (profileFilter.isEmpty()) {
+      return getStorage().getConnectionsCount(existingIdentity);
+    }
+
+    List<Identity> identities = getConnectionProfileIds(existingIdentity);
     return getIdentitiesRelationsByFilterCount(identities, profileFilter);
 
   }
@@ -1020,192 +1078,60 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
 
   }
   
-  private String[] getRelationships(String id) {
-    ThreadLocal<String[]> identityIdsLocal = new ThreadLocal<String[]>();
-
-    String[] relationshipIds = new String[0];
-    identityIdsLocal.set(relationshipIds);
+  /**
+   * Gets the ids of the identities which have a relationship of any status with an identity, by navigating its
+   * relationship lists.
+   *
+   * @param id the identity id
+   * @return the identity ids
+   */
+  private List<String> getRelationshipIds(String id) {
 
+    List<String> ids = new ArrayList<String>();
     try {
-
       IdentityEntity identityEntity = _findById(IdentityEntity.class, id);
-
-      StringBuffer sb = new StringBuffer().append("SELECT * FROM soc:relationshipdefinition WHERE ");
-      sb.append(JCRProperties.path.getName())
-        .append(" LIKE '")
-        .append(identityEntity.getPath() + StorageUtils.SLASH_STR + StorageUtils.PERCENT_STR)
-        .append("'");
-      //
-      sb.append(" ORDER BY ").append(RelationshipEntity.createdTime.getName()).append(" DESC ");
-
-      synchronized (lock) {
-
-        NodeIterator it = nodes(sb.toString());
-
-        while (it.hasNext()) {
-          Node node = (Node) it.next();
-
-          RelationshipEntity currentRelationshipEntity = _findById(RelationshipEntity.class,
-                                                                   node.getUUID());
-
-          IdentityEntity gotIdentityEntity;
-          if (currentRelationshipEntity.isReceiver()) {
-            gotIdentityEntity = currentRelationshipEntity.getFrom();
-          } else {
-            gotIdentityEntity = currentRelationshipEntity.getTo();
-          }
-          identityIdsLocal.set((String[]) ArrayUtils.add(identityIdsLocal.get(),
-                                                         gotIdentityEntity.getId()));
-        }
-
-      }
-    } catch (Exception e) {
-      throw new RelationshipStorageException(RelationshipStorageException.Type.FAILED_TO_GET_RELATIONSHIP,
-                                             e.getMessage());
+      putRelationshipIdsToList(ids, identityEntity.getRelationship());
+      putRelationshipIdsToList(ids, identityEntity.getSender());
+      putRelationshipIdsToList(ids, identityEntity.getReceiver());
+      putRelationshipIdsToList(ids, identityEntity.getIgnore());
+      putRelationshipIdsToList(ids, identityEntity.getIgnored());
     }
-
-    return identityIdsLocal.get();
-  }
-  
-  private String[] getSuggestion(List<String> relationshipIds) {
-    String[] suggestions = new String[0];
-    
-    try {
-      int startIndex = 0;
-      int toIndex = 100;
-      //
-      List<String> excludeIdentities = StorageUtils.subList(relationshipIds, startIndex, toIndex); 
-      while (excludeIdentities.size() > 0) {
-        
-        StringBuffer sb = new StringBuffer().append("SELECT * FROM soc:identitydefinition WHERE ");
-        sb.append(JCRProperties.path.getName()).append(" LIKE '").append(getProviderRoot().getProviders().get(OrganizationIdentityProvider.NAME).getPath() + StorageUtils.SLASH_STR + StorageUtils.PERCENT_STR).append("'");
-        
-        for(String id : excludeIdentities) {
-          sb.append(" AND NOT ").append(JCRProperties.id.getName()).append(" = '").append(id).append("'");
-        }
-        
-        NodeIterator nodeIter = nodes(sb.toString()); 
-        while(nodeIter.hasNext()) {
-          Node node = (Node)nodeIter.next();
-          String id = node.getUUID();
-          //String remoteId = node.getProperty(IdentityEntity.remoteId.getName()).getString();
-          if (relationshipIds.contains(id) == false
-              && ArrayUtils.contains(suggestions, id) == false) {
-            suggestions = (String[]) ArrayUtils.add(suggestions, id);
-          }
-        }
-        
-        //
-        startIndex = toIndex;
-        toIndex += 100;
-        
-        excludeIdentities = StorageUtils.subList(relationshipIds, startIndex, toIndex); 
-      }//end filter identities
-      
-    } catch (Exception e) {
-      throw new RelationshipStorageException(RelationshipStorageException.Type.FAILED_TO_GET_RELATIONSHIP,
-                                             e.getMessage());
-    }
-    
-    return suggestions;
-  }
-  /**
-   * Gets Suggestion list with relationship for each identity.
-   * @param suggestions
-   * @return
-   */
-  private Map<String, String[]> getSuggestionRelationships(final String[] suggestions) {
-    for (final String id : suggestions) {
-      //
-      Callable<String[]> task = new  Callable<String[]>() {
-        @Override
-        public String[] call() throws Exception {
-          return getRelationships(id);
-        }
-      };
-      executorService.submit(task, id);
+    catch (NodeNotFoundException e) {
+      LOG.debug("Could not found identity with id = " + id);
     }
-    
-    //Wait multiple threads finish work and push relationships to map
-    Map<String, String[]> suggestRelationships = new HashMap<String, String[]>();
-    copyFutureToMap(suggestRelationships, executorService.getFutureCollections());
-    
-    return suggestRelationships;
+    return ids;
+
   }
-  /**
-   * Gets result from future task
-   * @param map
-   * @param futures
-   */
-  private void copyFutureToMap(Map<String, String[]> map, Map<String, Future<String[]>> futures) {
-    try {
-      for (Entry<String, Future<String[]>> future : futures.entrySet()) {
-        map.put(future.getKey(), future.getValue().get());
+
+  private void putRelationshipIdsToList(List<String> ids, RelationshipListEntity list) {
+    if (list != null) {
+      for (RelationshipEntity relationshipEntity : list.getRelationships().values()) {
+        IdentityEntity other = relationshipEntity.isReceiver() ? relationshipEntity.getFrom() : relationshipEntity.getTo();
+        ids.add(other.getId());
       }
-    } catch (Exception e) {
-      LOG.warn("Failed to get result from Future." + e);
     }
   }
-  /**
-   * Calculate and statistic suggestion.
-   * 
-   * @param relationshipIds
-   * @param suggestRelationships
-   * @return
-   */
-  private Map<String, Integer> statisticSuggesstion(List<String> relationshipIds, Map<String, String[]> suggestRelationships) {
-    //Calculate the common users of current Identity with each suggestion.
-    Map<String, Integer> suggestionIdMap = new HashMap<String, Integer>();
-    for (Entry<String, String[]> friendOfIdentity : suggestRelationships.entrySet()) {
-      //
-      String identityId = friendOfIdentity.getKey();
-      suggestionIdMap.put(identityId, StorageUtils.getCommonItemNumber(relationshipIds, Arrays.asList(friendOfIdentity.getValue())));
-    }
-    
-    return suggestionIdMap;
-  }
-  
+
   /**
    * {@inheritDoc}
    */
   public Map<Identity, Integer> getSuggestions(Identity identity, int offset, int limit) throws RelationshipStorageException {
-    //get identities who have relationship
-    List<String> relationshipIds = new ArrayList<String>(); 
-    relationshipIds.add(identity.getId());
-    relationshipIds.addAll(Arrays.asList(getRelationships(identity.getId())));
-    
-    //store all identities who is not relationship with provided identity
-    String[] suggestions = getSuggestion(relationshipIds);
 
-    //Find relationships of the identities are filtered
-    //Wait multiple threads finish work and push relationships to map
-    Map<String, String[]> suggestRelationships = getSuggestionRelationships(suggestions);
+    Map<String, Integer> suggestionIdMap = relationshipGraph.getSuggestions(identity.getId(), offset, limit, new RelationshipGraph.Loader() {
+      public Collection<String> load(String identityId) {
+        return getRelationshipIds(identityId);
+      }
+    });
 
-    //statistic suggestion
-    Map<String, Integer> suggestionIdMap = statisticSuggesstion(relationshipIds, suggestRelationships);
     //
-    if (offset > suggestionIdMap.size()) return Collections.emptyMap();
-    return buildSuggestions(StorageUtils.sortMapByValue(suggestionIdMap, false), offset, limit);
+    return buildSuggestions(suggestionIdMap);
   }
   
-  private Map<Identity, Integer> buildSuggestions(Map<String, Integer> mapIds,
-                                                  final int offset,
-                                                  final int limit) {
+  private Map<Identity, Integer> buildSuggestions(Map<String, Integer> mapIds) {
 
     Map<Identity, Integer> suggestions = new LinkedHashMap<Identity, Integer>();
     //
-    int i = 0;
     for (Entry<String, Integer> id : mapIds.entrySet()) {
-      // skip to offset
-      if (i < offset) {
-        i++;
-        continue;
-      }
-
-      // limit the return result
-      if (i > (offset + limit))
-        break;
-
       try {
         IdentityEntity identityEntity = _findById(IdentityEntity.class, id.getKey());
         Identity _identity = new Identity(id.getKey());
@@ -1219,7 +1145,6 @@ public class RelationshipStorageImpl extends AbstractStorage implements Relation
       } catch (NodeNotFoundException e) {
         LOG.warn("Could not found identity with id = " + id.getKey());
       }
-      i++;
     }
     return suggestions;
   }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.social.core.space.model.SpaceMembership;
+
+/**
+ * Index of the spaces each user is member or manager of, kept in a cache. The memberships of a user are loaded
+ * once from the storage, and dropped when they change so that they are loaded again. When the cache is
+ * distributed, a change made on a node drops the memberships cached by the other nodes; the live time of the
+ * cache bounds how long they can be out of date otherwise.
+ *
+ * A load which overlaps a change made on this node is not kept, since it may have read the data before the change.
+ *
+ * @since 4.1
+ */
+public class SpaceMembershipIndex {
+
+  /** user name -> memberships */
+  private final ExoCache<String, ArrayList<SpaceMembership>> cache;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private long generation;
+
+  /**
+   * @param cache the cache of the memberships, its size and live time bound the index
+   */
+  public SpaceMembershipIndex(ExoCache<String, ArrayList<SpaceMembership>> cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Gets the memberships of a user.
+   *
+   * @param userId the user name
+   * @return the memberships, or null if the user is not indexed
+   */
+  public List<SpaceMembership> get(String userId) {
+    List<SpaceMembership> memberships = cache.get(userId);
+    if (memberships == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return new ArrayList<SpaceMembership>(memberships);
+  }
+
+  /**
+   * Gets the generation to give back to {@link #put(String, Collection, long)} after a load.
+   *
+   * @return the current generation
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Indexes the memberships of a user loaded from the storage.
+   *
+   * @param userId the user name
+   * @param memberships the memberships
+   * @param generation the generation read before the load
+   * @return true if the memberships were indexed, false if the index changed during the load
+   */
+  public synchronized boolean put(String userId, Collection<SpaceMembership> memberships, long generation) {
+    if (generation != this.generation) {
+      return false;
+    }
+    cache.put(userId, new ArrayList<SpaceMembership>(memberships));
+    return true;
+  }
+
+  /**
+   * Drops users whose memberships have changed, they will be loaded again.
+   *
+   * @param userIds the user names
+   */
+  public synchronized void remove(String... userIds) {
+    ++generation;
+    for (String userId : userIds) {
+      cache.remove(userId);
+    }
+  }
+
+  public synchronized void clear() {
+    ++generation;
+    cache.clearCache();
+  }
+
+  public int size() {
+    return cache.getCacheSize();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+}
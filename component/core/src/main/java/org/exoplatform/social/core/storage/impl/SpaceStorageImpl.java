@@ -21,8 +21,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -33,14 +36,18 @@ import javax.jcr.NodeIterator;
 import javax.jcr.RepositoryException;
 import javax.jcr.UnsupportedRepositoryOperationException;
 
+import org.apache.commons.lang.ArrayUtils;
 import org.chromattic.api.ChromatticSession;
 import org.chromattic.api.query.Ordering;
 import org.chromattic.api.query.Query;
 import org.chromattic.api.query.QueryBuilder;
 import org.chromattic.api.query.QueryResult;
 import org.exoplatform.container.PortalContainer;
+import org.exoplatform.services.cache.CacheService;
+import org.exoplatform.services.cache.ExoCache;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
+import org.exoplatform.social.core.activity.ActivityPushService;
 import org.exoplatform.social.core.chromattic.entity.*;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.model.Profile;
@@ -51,7 +58,9 @@ import org.exoplatform.social.core.service.LinkProvider;
 import org.exoplatform.social.core.space.SpaceFilter;
 import org.exoplatform.social.core.space.SpaceUtils;
 import org.exoplatform.social.core.space.model.Space;
+import org.exoplatform.social.core.space.model.SpaceMembership;
 import org.exoplatform.social.core.storage.SpaceStorageException;
+import org.exoplatform.social.core.storage.api.ActivityFeedStorage;
 import org.exoplatform.social.core.storage.api.SpaceStorage;
 import org.exoplatform.social.core.storage.exception.NodeNotFoundException;
 import org.exoplatform.social.core.storage.query.JCRProperties;
@@ -74,6 +83,11 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
    */
   private final IdentityStorageImpl identityStorage;
 
+  public static final String MEMBERSHIP_CACHE_NAME = "SpaceMembershipCache";
+
+  /** The spaces of the users, null to load them on each request. */
+  private SpaceMembershipIndex membershipIndex;
+
   /**
    * Constructor.
    *
@@ -83,6 +97,19 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
    this.identityStorage = identityStorage;
  }
 
+  /**
+   * Constructor indexing the spaces of the users.
+   *
+   * @param identityStorage the identity storage
+   * @param cacheService the cache service providing the {@value #MEMBERSHIP_CACHE_NAME}
+   * @since 4.1
+   */
+  public SpaceStorageImpl(IdentityStorageImpl identityStorage, CacheService cacheService) {
+    this(identityStorage);
+    ExoCache<String, ArrayList<SpaceMembership>> cache = cacheService.getCacheInstance(MEMBERSHIP_CACHE_NAME);
+    this.membershipIndex = new SpaceMembershipIndex(cache);
+  }
+
   /**
    * Fills {@link Space}'s properties to {@link SpaceEntity}'s.
    *
@@ -102,22 +129,8 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
     space.setPriority(entity.getPriority());
     space.setGroupId(entity.getGroupId());
     space.setUrl(entity.getURL());
-    space.setPendingUsers(entity.getPendingMembersId());
-    space.setInvitedUsers(entity.getInvitedMembersId());
     space.setCreatedTime(entity.getCreatedTime());
-
-    //
-    String[] members = entity.getMembersId();
-    String[] managers = entity.getManagerMembersId();
-
-    //
-    Set<String> membersList = new HashSet<String>();
-    if (members != null) membersList.addAll(Arrays.asList(members));
-    if (managers != null) membersList.addAll(Arrays.asList(managers));
-
-    //
-    space.setMembers(membersList.toArray(new String[]{}));
-    space.setManagers(entity.getManagerMembersId());
+    fillMembersFromEntity(entity, space);
 
 
     if (entity.getAvatarLastUpdated() != null) {
@@ -138,6 +151,31 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
     space.setAvatarLastUpdated(entity.getAvatarLastUpdated());
   }
   
+  /**
+   * Fills the member, manager, pending and invited users of a {@link Space} from its {@link SpaceEntity}.
+   *
+   * @param entity the space entity from chromattic
+   * @param space  the space pojo for services
+   */
+  private void fillMembersFromEntity(SpaceEntity entity, Space space) {
+
+    space.setPendingUsers(entity.getPendingMembersId());
+    space.setInvitedUsers(entity.getInvitedMembersId());
+
+    //
+    String[] members = entity.getMembersId();
+    String[] managers = entity.getManagerMembersId();
+
+    //
+    Set<String> membersList = new HashSet<String>();
+    if (members != null) membersList.addAll(Arrays.asList(members));
+    if (managers != null) membersList.addAll(Arrays.asList(managers));
+
+    //
+    space.setMembers(membersList.toArray(new String[]{}));
+    space.setManagers(entity.getManagerMembersId());
+  }
+
   /**
    * Fills {@link Space}'s properties to {@link SpaceEntity}'s.
    *
@@ -192,10 +230,18 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
     entity.setPriority(space.getPriority());
     entity.setGroupId(space.getGroupId());
     entity.setURL(space.getUrl());
-    entity.setMembersId(space.getMembers());
-    entity.setManagerMembersId(space.getManagers());
-    entity.setPendingMembersId(space.getPendingUsers());
-    entity.setInvitedMembersId(space.getInvitedUsers());
+    if (!Arrays.equals(entity.getMembersId(), space.getMembers())) {
+      entity.setMembersId(space.getMembers());
+    }
+    if (!Arrays.equals(entity.getManagerMembersId(), space.getManagers())) {
+      entity.setManagerMembersId(space.getManagers());
+    }
+    if (!Arrays.equals(entity.getPendingMembersId(), space.getPendingUsers())) {
+      entity.setPendingMembersId(space.getPendingUsers());
+    }
+    if (!Arrays.equals(entity.getInvitedMembersId(), space.getInvitedUsers())) {
+      entity.setInvitedMembersId(space.getInvitedUsers());
+    }
     entity.setAvatarLastUpdated(space.getAvatarLastUpdated());
     entity.setCreatedTime(space.getCreatedTime() != 0 ? space.getCreatedTime() : System.currentTimeMillis());
   }
@@ -318,12 +364,17 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
       return l1;
     }
 
-    List<String> l = new ArrayList(Arrays.asList(l1));
-    l.removeAll(Arrays.asList(l2));
-    return l.toArray(new String[]{});
+    Set<String> excluded = new HashSet<String>(Arrays.asList(l2));
+    List<String> l = new ArrayList<String>(l1.length);
+    for (String s : l1) {
+      if (!excluded.contains(s)) {
+        l.add(s);
+      }
+    }
+    return l.toArray(new String[l.size()]);
   }
 
-  private void createRefs(SpaceEntity spaceEntity, Space space) throws NodeNotFoundException {
+  private Map<RefType, UpdateContext> createRefs(SpaceEntity spaceEntity, Space space) throws NodeNotFoundException {
 
     String[] removedMembers = sub(spaceEntity.getMembersId(), space.getMembers());
     String[] removedManagers = sub(spaceEntity.getManagerMembersId(), space.getManagers());
@@ -335,13 +386,46 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
     String[] addedInvited = sub(space.getInvitedUsers(), spaceEntity.getInvitedMembersId());
     String[] addedPending = sub(space.getPendingUsers(), spaceEntity.getPendingMembersId());
 
-    manageRefList(new UpdateContext(addedMembers, removedMembers), spaceEntity, RefType.MEMBER);
-    manageRefList(new UpdateContext(addedManagers, removedManagers), spaceEntity, RefType.MANAGER);
-    manageRefList(new UpdateContext(addedInvited, removedInvited), spaceEntity, RefType.INVITED);
-    manageRefList(new UpdateContext(addedPending, removedPending), spaceEntity, RefType.PENDING);
+    Map<RefType, UpdateContext> contexts = new EnumMap<RefType, UpdateContext>(RefType.class);
+    contexts.put(RefType.MEMBER, new UpdateContext(addedMembers, removedMembers));
+    contexts.put(RefType.MANAGER, new UpdateContext(addedManagers, removedManagers));
+    contexts.put(RefType.INVITED, new UpdateContext(addedInvited, removedInvited));
+    contexts.put(RefType.PENDING, new UpdateContext(addedPending, removedPending));
+
+    // a user often moves between lists (pending to member...), his identity is only looked up once
+    Map<String, IdentityEntity> identities = new HashMap<String, IdentityEntity>();
+    for (Map.Entry<RefType, UpdateContext> context : contexts.entrySet()) {
+      manageRefList(context.getValue(), spaceEntity, context.getKey(), identities);
+    }
+
+    return contexts;
 
   }
 
+  /**
+   * Drops the materialized activity feeds of the given users and marks their push subscriptions as out of date,
+   * their spaces have changed.
+   *
+   * @param userNames the user names
+   */
+  private void invalidateFeeds(String[] userNames) {
+
+    if (userNames == null || userNames.length == 0) {
+      return;
+    }
+
+    //
+    PortalContainer container = PortalContainer.getInstance();
+    ActivityFeedStorage feedStorage = (ActivityFeedStorage) container.getComponentInstanceOfType(ActivityFeedStorage.class);
+    if (feedStorage != null && feedStorage.isEnabled()) {
+      feedStorage.invalidateUserFeeds(userNames);
+    }
+    ActivityPushService pushService = (ActivityPushService) container.getComponentInstanceOfType(ActivityPushService.class);
+    if (pushService != null && pushService.isEnabled()) {
+      pushService.invalidateUserSubscriptions(userNames);
+    }
+  }
+
   private void changeSpaceRef(SpaceEntity spaceEntity, Space space, RefType type) {
     String []listUserNames = null;
     
@@ -380,34 +464,100 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
     }
   }
   
-  private void manageRefList(UpdateContext context, SpaceEntity spaceEntity, RefType type) {
+  private void manageRefList(UpdateContext context, SpaceEntity spaceEntity, RefType type,
+                             Map<String, IdentityEntity> identities) {
 
-    if (context.getAdded() != null) {
-      for (String userName : context.getAdded()) {
-        try {
-          IdentityEntity identityEntity = identityStorage._findIdentityEntity(OrganizationIdentityProvider.NAME, userName);
-          SpaceListEntity listRef = type.refsOf(identityEntity);
-          SpaceRef ref = listRef.getRef(spaceEntity.getName());
-          if (!ref.getName().equals(spaceEntity.getName())) {
-            ref.setName(spaceEntity.getName());
-          }
-          ref.setSpaceRef(spaceEntity);
-        }
-        catch (NodeNotFoundException e) {
-          LOG.warn(e.getMessage(), e);
-        }
+    for (String userName : context.getAdded()) {
+      try {
+        addRef(findIdentityEntity(userName, identities), spaceEntity, type);
       }
+      catch (NodeNotFoundException e) {
+        LOG.warn(e.getMessage(), e);
+      }
+    }
 
-      for (String userName : context.getRemoved()) {
-        try {
-          IdentityEntity identityEntity = identityStorage._findIdentityEntity(OrganizationIdentityProvider.NAME, userName);
-          SpaceListEntity listRef = type.refsOf(identityEntity);
-          SpaceRef ref = listRef.getRef(spaceEntity.getName());
-          getSession().remove(ref);
-        }
-        catch (NodeNotFoundException e) {
-          LOG.warn(e.getMessage(), e);
-        }
+    for (String userName : context.getRemoved()) {
+      try {
+        removeRef(findIdentityEntity(userName, identities), spaceEntity, type);
+      }
+      catch (NodeNotFoundException e) {
+        LOG.warn(e.getMessage(), e);
+      }
+    }
+  }
+
+  private IdentityEntity findIdentityEntity(String userName, Map<String, IdentityEntity> identities)
+      throws NodeNotFoundException {
+
+    IdentityEntity identityEntity = identities.get(userName);
+    if (identityEntity == null) {
+      identityEntity = identityStorage._findIdentityEntity(OrganizationIdentityProvider.NAME, userName);
+      identities.put(userName, identityEntity);
+    }
+    return identityEntity;
+  }
+
+  private void addRef(IdentityEntity identityEntity, SpaceEntity spaceEntity, RefType type) {
+    SpaceListEntity listRef = type.refsOf(identityEntity);
+    SpaceRef ref = listRef.getRef(spaceEntity.getName());
+    if (!ref.getName().equals(spaceEntity.getName())) {
+      ref.setName(spaceEntity.getName());
+    }
+    ref.setSpaceRef(spaceEntity);
+  }
+
+  private void removeRef(IdentityEntity identityEntity, SpaceEntity spaceEntity, RefType type) {
+    SpaceRef ref = type.refsOf(identityEntity).getRefs().get(spaceEntity.getName());
+    if (ref != null) {
+      getSession().remove(ref);
+    }
+  }
+
+  private SpaceMembership spaceMembership(SpaceEntity spaceEntity, int roles) throws NodeNotFoundException {
+    IdentityEntity identityEntity = identityStorage._findIdentityEntity(SpaceIdentityProvider.NAME, spaceEntity.getPrettyName());
+    return new SpaceMembership(spaceEntity.getId(), identityEntity.getId(), spaceEntity.getPrettyName(), roles);
+  }
+
+  private void updateMembershipIndex(UpdateContext context) {
+    invalidateMemberships(context.getRemoved());
+    invalidateMemberships(context.getAdded());
+  }
+
+  /**
+   * Drops the indexed spaces of users, on this node and on the other nodes sharing the index.
+   *
+   * @param userIds the user names
+   */
+  private void invalidateMemberships(String... userIds) {
+    if (membershipIndex != null && userIds != null && userIds.length > 0) {
+      membershipIndex.remove(userIds);
+    }
+  }
+
+  private List<SpaceMembership> loadSpaceMemberships(String userId) throws NodeNotFoundException {
+    IdentityEntity identityEntity = identityStorage._findIdentityEntity(OrganizationIdentityProvider.NAME, userId);
+    Map<String, SpaceMembership> memberships = new LinkedHashMap<String, SpaceMembership>();
+    loadSpaceMemberships(identityEntity.getSpaces(), SpaceMembership.MEMBER, memberships);
+    loadSpaceMemberships(identityEntity.getManagerSpaces(), SpaceMembership.MANAGER, memberships);
+    return new ArrayList<SpaceMembership>(memberships.values());
+  }
+
+  private void loadSpaceMemberships(SpaceListEntity listRef, int role, Map<String, SpaceMembership> memberships) {
+    for (SpaceRef ref : listRef.getRefs().values()) {
+      SpaceEntity spaceEntity = ref.getSpaceRef();
+      if (spaceEntity == null) {
+        continue;
+      }
+      SpaceMembership previous = memberships.get(spaceEntity.getId());
+      if (previous != null) {
+        memberships.put(spaceEntity.getId(), previous.withRoles(previous.getRoles() | role));
+        continue;
+      }
+      try {
+        memberships.put(spaceEntity.getId(), spaceMembership(spaceEntity, role));
+      }
+      catch (NodeNotFoundException e) {
+        LOG.debug("No identity for space " + spaceEntity.getPrettyName());
       }
     }
   }
@@ -838,13 +988,27 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
       }
 
       //
-      createRefs(entity, space);
+      Map<RefType, UpdateContext> contexts = createRefs(entity, space);
+      UpdateContext members = contexts.get(RefType.MEMBER);
+      String oldPrettyName = entity.getPrettyName();
       
       fillEntityFromSpace(space, entity);
 
       //
       getSession().save();
 
+      //
+      if (oldPrettyName != null && !oldPrettyName.equals(entity.getPrettyName())) {
+        invalidateMemberships(entity.getMembersId());
+        invalidateMemberships(entity.getManagerMembersId());
+      }
+      updateMembershipIndex(members);
+      updateMembershipIndex(contexts.get(RefType.MANAGER));
+
+      //
+      invalidateFeeds(members.getAdded());
+      invalidateFeeds(members.getRemoved());
+
       //
       LOG.debug(String.format(
           "Space %s (%s) saved",
@@ -859,6 +1023,92 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
 
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public void addMember(Space space, String userId) throws SpaceStorageException {
+
+    try {
+      SpaceEntity entity = _findById(SpaceEntity.class, space.getId());
+      IdentityEntity identityEntity = identityStorage._findIdentityEntity(OrganizationIdentityProvider.NAME, userId);
+
+      //
+      String[] members = entity.getMembersId();
+      if (!ArrayUtils.contains(members, userId)) {
+        addRef(identityEntity, entity, RefType.MEMBER);
+        entity.setMembersId((String[]) ArrayUtils.add(members, userId));
+      }
+      String[] invited = entity.getInvitedMembersId();
+      if (ArrayUtils.contains(invited, userId)) {
+        removeRef(identityEntity, entity, RefType.INVITED);
+        entity.setInvitedMembersId((String[]) ArrayUtils.removeElement(invited, userId));
+      }
+      String[] pending = entity.getPendingMembersId();
+      if (ArrayUtils.contains(pending, userId)) {
+        removeRef(identityEntity, entity, RefType.PENDING);
+        entity.setPendingMembersId((String[]) ArrayUtils.removeElement(pending, userId));
+      }
+
+      //
+      getSession().save();
+      fillMembersFromEntity(entity, space);
+
+      //
+      invalidateMemberships(userId);
+      invalidateFeeds(new String[] {userId});
+
+      //
+      LOG.debug(String.format(
+          "User %s added to space %s (%s)",
+          userId,
+          space.getPrettyName(),
+          space.getId()
+      ));
+
+    }
+    catch (NodeNotFoundException e) {
+      throw new SpaceStorageException(SpaceStorageException.Type.FAILED_TO_SAVE_SPACE, e.getMessage(), e);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void removeMember(Space space, String userId) throws SpaceStorageException {
+
+    try {
+      SpaceEntity entity = _findById(SpaceEntity.class, space.getId());
+
+      //
+      String[] members = entity.getMembersId();
+      if (ArrayUtils.contains(members, userId)) {
+        IdentityEntity identityEntity = identityStorage._findIdentityEntity(OrganizationIdentityProvider.NAME, userId);
+        removeRef(identityEntity, entity, RefType.MEMBER);
+        entity.setMembersId((String[]) ArrayUtils.removeElement(members, userId));
+
+        //
+        getSession().save();
+        invalidateMemberships(userId);
+        invalidateFeeds(new String[] {userId});
+      }
+      fillMembersFromEntity(entity, space);
+
+      //
+      LOG.debug(String.format(
+          "User %s removed from space %s (%s)",
+          userId,
+          space.getPrettyName(),
+          space.getId()
+      ));
+
+    }
+    catch (NodeNotFoundException e) {
+      throw new SpaceStorageException(SpaceStorageException.Type.FAILED_TO_SAVE_SPACE, e.getMessage(), e);
+    }
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -895,6 +1145,8 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
 
       //
       getSession().save();
+      invalidateMemberships(entity.getMembersId());
+      invalidateMemberships(entity.getManagerMembersId());
 
       //change profile of space
       Identity identitySpace = identityStorage.findIdentity(SpaceIdentityProvider.NAME, oldPrettyName);
@@ -930,10 +1182,15 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
   public void deleteSpace(String id) throws SpaceStorageException {
 
     String name;
+    String[] members;
+    String[] managers;
 
     //
     try {
-      name = _findById(SpaceEntity.class, id).getPrettyName();
+      SpaceEntity entity = _findById(SpaceEntity.class, id);
+      name = entity.getPrettyName();
+      members = entity.getMembersId();
+      managers = entity.getManagerMembersId();
     }
     catch (NodeNotFoundException e) {
       throw new SpaceStorageException(SpaceStorageException.Type.FAILED_TO_DELETE_SPACE, e.getMessage());
@@ -944,6 +1201,11 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
 
     //
     getSession().save();
+    invalidateMemberships(members);
+    invalidateMemberships(managers);
+
+    //
+    invalidateFeeds(members);
 
     //
     LOG.debug(String.format(
@@ -968,6 +1230,40 @@ public class SpaceStorageImpl extends AbstractStorage implements SpaceStorage {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  public List<SpaceMembership> getSpaceMemberships(String userId) throws SpaceStorageException {
+
+    List<SpaceMembership> memberships = membershipIndex != null ? membershipIndex.get(userId) : null;
+    if (memberships != null) {
+      return memberships;
+    }
+
+    //
+    long generation = membershipIndex != null ? membershipIndex.getGeneration() : 0;
+    try {
+      memberships = loadSpaceMemberships(userId);
+    }
+    catch (NodeNotFoundException e) {
+      return Collections.emptyList();
+    }
+    if (membershipIndex != null) {
+      membershipIndex.put(userId, memberships, generation);
+    }
+    return memberships;
+
+  }
+
+  /**
+   * Gets the index of the spaces of the users.
+   *
+   * @return the index, null when the spaces are not indexed
+   */
+  public SpaceMembershipIndex getMembershipIndex() {
+    return membershipIndex;
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -3,11 +3,13 @@ package org.exoplatform.social.core.storage.impl;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import javax.jcr.RepositoryException;
@@ -50,7 +52,10 @@ public class StorageUtils {
   public static final String SOC_PREFIX = "soc:";
   
   //
-  private static Map<String, List<String>> userInPlatformGroupsMap = new HashMap<String, List<String>>();
+  private static ConcurrentMap<String, PlatformUsersIndex> userInPlatformGroupsMap = new ConcurrentHashMap<String, PlatformUsersIndex>();
+
+  /** Incremented on each change of the platform users group, so that a concurrent full load is not cached. */
+  private static final AtomicLong platformUsersGeneration = new AtomicLong();
   
   //
   private static final Log LOG = ExoLogger.getLogger(StorageUtils.class.getName());
@@ -208,13 +213,13 @@ public class StorageUtils {
       //
       PortalContainer container = (PortalContainer)(ExoContainerContext.getCurrentContainer());
       
-      RepositoryService repo = (RepositoryService) container.getComponentInstanceOfType(RepositoryService.class);
       //each tenant, there is dedicated organization's users then we need to make map to keep them.
-      String tenantName = repo.getCurrentRepository().getConfiguration().getName();
+      String tenantName = getTenantName(container);
       //
-      List<String> userInPlatformGroups = userInPlatformGroupsMap.get(tenantName);
+      PlatformUsersIndex userInPlatformGroups = userInPlatformGroupsMap.get(tenantName);
       //
       if (userInPlatformGroups == null) {
+        long generation = platformUsersGeneration.get();
         OrganizationService orgService = (OrganizationService) container.getComponentInstanceOfType(OrganizationService.class);
         
         //
@@ -225,11 +230,11 @@ public class StorageUtils {
         int limit = 100;
         int totalSize = listAccess.getSize();
 
-        userInPlatformGroups = new ArrayList<String>();
+        List<String> userNames = new ArrayList<String>(totalSize);
         limit = Math.min(limit, totalSize);
         int loaded = 0;
         
-        loaded = loadUserRange(listAccess, offset, limit, userInPlatformGroups);
+        loaded = loadUserRange(listAccess, offset, limit, userNames);
         LOG.trace("Users in Plafform Groups loading [size =" + loaded + "]");
         
         if (limit != totalSize) {
@@ -242,18 +247,23 @@ public class StorageUtils {
             }
             
             //
-            loaded = loadUserRange(listAccess, offset, limit, userInPlatformGroups);
+            loaded = loadUserRange(listAccess, offset, limit, userNames);
           }
         }
         
-        LOG.trace("Users in Plafform Groups [size = " + userInPlatformGroups.size() + "]");
-        LOG.trace("Users in Plafform Groups[" + userInPlatformGroups + "]");
+        userInPlatformGroups = new PlatformUsersIndex(userNames);
+        LOG.debug("Users in Plafform Groups of " + tenantName + " loaded [size = " + userInPlatformGroups.size()
+            + ", memory = " + userInPlatformGroups.getEstimatedMemory() / 1024 + " KB]");
+
+        // a change during the load may be missing from it, then it is not cached
+        if (generation == platformUsersGeneration.get()) {
+          PlatformUsersIndex previous = userInPlatformGroupsMap.putIfAbsent(tenantName, userInPlatformGroups);
+          if (previous != null) {
+            userInPlatformGroups = previous;
+          }
+        }
       }
       
-      LOG.trace("[The " + remoteId + " is contained in  platform/users group?" + userInPlatformGroups.contains(remoteId) + " ]");
-      
-      userInPlatformGroupsMap.put(tenantName, userInPlatformGroups);
-      
       return userInPlatformGroups.contains(remoteId);
     } catch (Exception e) {
       throw new IdentityStorageException(IdentityStorageException.Type.FAIL_TO_GET_IDENTITY_BY_PROFILE_FILTER,
@@ -286,9 +296,9 @@ public class StorageUtils {
     PortalContainer container = (PortalContainer)(ExoContainerContext.getCurrentContainer());
     String tenantName = "";
     try {
-      RepositoryService repo = (RepositoryService) container.getComponentInstanceOfType(RepositoryService.class);
       //each tenant, there is dedicated organization's users then we need to make map to keep them.
-      tenantName = repo.getCurrentRepository().getConfiguration().getName();
+      tenantName = getTenantName(container);
+      platformUsersGeneration.incrementAndGet();
       userInPlatformGroupsMap.remove(tenantName);
     } catch (RepositoryException e) {
       LOG.warn("Wrong to clear the users for reporitory" + tenantName);
@@ -296,6 +306,54 @@ public class StorageUtils {
     
     
   }
+
+  /**
+   * Adds a user to the platform users of the current tenant, when they are already loaded.
+   *
+   * @param userName the user name
+   */
+  public static void addUserToPlatformGroup(String userName) {
+    platformUsersGeneration.incrementAndGet();
+    PlatformUsersIndex index = getPlatformUsersIndex();
+    if (index != null) {
+      index.add(userName);
+    }
+  }
+
+  /**
+   * Removes a user from the platform users of the current tenant, when they are already loaded.
+   *
+   * @param userName the user name
+   */
+  public static void removeUserFromPlatformGroup(String userName) {
+    platformUsersGeneration.incrementAndGet();
+    PlatformUsersIndex index = getPlatformUsersIndex();
+    if (index != null) {
+      index.remove(userName);
+    }
+  }
+
+  /**
+   * Gets the loaded platform users of the current tenant.
+   *
+   * @return the platform users or null when they are not loaded
+   */
+  public static PlatformUsersIndex getPlatformUsersIndex() {
+    PortalContainer container = (PortalContainer)(ExoContainerContext.getCurrentContainer());
+    String tenantName = "";
+    try {
+      tenantName = getTenantName(container);
+      return userInPlatformGroupsMap.get(tenantName);
+    } catch (RepositoryException e) {
+      LOG.warn("Wrong to get the users for reporitory" + tenantName);
+      return null;
+    }
+  }
+
+  private static String getTenantName(PortalContainer container) throws RepositoryException {
+    RepositoryService repo = (RepositoryService) container.getComponentInstanceOfType(RepositoryService.class);
+    return repo.getCurrentRepository().getConfiguration().getName();
+  }
   
   /**
    * Gets common item number from two list
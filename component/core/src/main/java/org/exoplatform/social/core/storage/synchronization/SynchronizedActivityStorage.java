@@ -22,6 +22,8 @@ import java.util.Map;
 import java.util.SortedSet;
 
 import org.exoplatform.social.core.ActivityProcessor;
+import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess;
+import org.exoplatform.social.core.activity.ActivityCursor;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
@@ -62,6 +64,40 @@ public class SynchronizedActivityStorage extends ActivityStorageImpl {
 
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<ExoSocialActivity> getActivities(final List<String> activityIds) throws ActivityStorageException {
+
+    boolean created = startSynchronization();
+    try {
+      return super.getActivities(activityIds);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<ExoSocialActivity> getActivitiesAfter(final ActivitiesRealtimeListAccess.ActivityType type,
+                                                    final Identity owner, final ActivityCursor cursor,
+                                                    final int limit) throws ActivityStorageException {
+
+    boolean created = startSynchronization();
+    try {
+      return super.getActivitiesAfter(type, owner, cursor, limit);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -209,6 +245,22 @@ public class SynchronizedActivityStorage extends ActivityStorageImpl {
 
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getNumberOfActivitiesOfIdentities(final List<Identity> connectionList) throws ActivityStorageException {
+
+    boolean created = startSynchronization();
+    try {
+      return super.getNumberOfActivitiesOfIdentities(connectionList);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -19,8 +19,10 @@ package org.exoplatform.social.core.storage.synchronization;
 
 import java.util.List;
 
+import org.exoplatform.services.cache.CacheService;
 import org.exoplatform.social.core.space.SpaceFilter;
 import org.exoplatform.social.core.space.model.Space;
+import org.exoplatform.social.core.space.model.SpaceMembership;
 import org.exoplatform.social.core.storage.impl.IdentityStorageImpl;
 import org.exoplatform.social.core.storage.SpaceStorageException;
 import org.exoplatform.social.core.storage.impl.SpaceStorageImpl;
@@ -43,6 +45,17 @@ public class SynchronizedSpaceStorage extends SpaceStorageImpl {
     super(identityStorage);
   }
 
+  /**
+   * Constructor indexing the spaces of the users.
+   *
+   * @param identityStorage the identity storage
+   * @param cacheService the cache service providing the {@value SpaceStorageImpl#MEMBERSHIP_CACHE_NAME}
+   * @since 4.1
+   */
+  public SynchronizedSpaceStorage(final IdentityStorageImpl identityStorage, final CacheService cacheService) {
+    super(identityStorage, cacheService);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -75,6 +88,38 @@ public class SynchronizedSpaceStorage extends SpaceStorageImpl {
 
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void addMember(final Space space, final String userId) throws SpaceStorageException {
+
+    boolean created = startSynchronization();
+    try {
+      super.addMember(space, userId);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void removeMember(final Space space, final String userId) throws SpaceStorageException {
+
+    boolean created = startSynchronization();
+    try {
+      super.removeMember(space, userId);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -121,6 +166,22 @@ public class SynchronizedSpaceStorage extends SpaceStorageImpl {
 
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<SpaceMembership> getSpaceMemberships(final String userId) throws SpaceStorageException {
+
+    boolean created = startSynchronization();
+    try {
+      return super.getSpaceMemberships(userId);
+    }
+    finally {
+      stopSynchronization(created);
+    }
+
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.activity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
+
+public class ActivityCursorTest extends TestCase {
+
+  public void testEncodeDecode() throws Exception {
+    ActivityCursor cursor = new ActivityCursor(1400000000000L, Arrays.asList("a1", "a2"));
+    ActivityCursor decoded = ActivityCursor.decode(cursor.encode());
+    assertEquals(cursor, decoded);
+    assertEquals(1400000000000L, decoded.getLastUpdated());
+    assertEquals(Arrays.asList("a1", "a2"), new ArrayList<String>(decoded.getActivityIds()));
+  }
+
+  public void testDecodeInvalid() throws Exception {
+    for (String value : new String[] { null, "", "zz!.a1", "abc", "abc.", "abc.a1..a2" }) {
+      try {
+        ActivityCursor.decode(value);
+        fail("Cursor should be invalid: " + value);
+      }
+      catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  public void testNext() throws Exception {
+    assertNull(ActivityCursor.next(null, Collections.<ExoSocialActivity>emptyList()));
+
+    //
+    List<ExoSocialActivity> page = Arrays.asList(activity("1", 300L), activity("2", 200L), activity("3", 200L));
+    ActivityCursor cursor = ActivityCursor.next(null, page);
+    assertEquals(200L, cursor.getLastUpdated());
+    assertEquals(2, cursor.getActivityIds().size());
+    assertTrue(cursor.getActivityIds().containsAll(Arrays.asList("2", "3")));
+
+    // a page updated at the same time keeps the ids of the previous pages
+    cursor = ActivityCursor.next(cursor, Arrays.asList(activity("4", 200L)));
+    assertEquals(200L, cursor.getLastUpdated());
+    assertEquals(3, cursor.getActivityIds().size());
+
+    //
+    cursor = ActivityCursor.next(cursor, Arrays.asList(activity("5", 200L), activity("6", 100L)));
+    assertEquals(100L, cursor.getLastUpdated());
+    assertEquals(Collections.singleton("6"), cursor.getActivityIds());
+  }
+
+  public void testFilter() throws Exception {
+    ActivityCursor cursor = new ActivityCursor(200L, Arrays.asList("2", "3"));
+    List<ExoSocialActivity> fetched = Arrays.asList(activity("2", 200L), activity("3", 200L), activity("4", 200L),
+                                                    activity("5", 100L), activity("6", 50L));
+    List<ExoSocialActivity> page = cursor.filter(fetched, 2);
+    assertEquals(2, page.size());
+    assertEquals("4", page.get(0).getId());
+    assertEquals("5", page.get(1).getId());
+
+    // an activity updated since the cursor was built is not filtered out
+    page = cursor.filter(Arrays.asList(activity("2", 150L)), 10);
+    assertEquals(1, page.size());
+  }
+
+  private ExoSocialActivity activity(String id, long updated) {
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setId(id);
+    activity.setUpdated(updated);
+    return activity;
+  }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.activity;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.container.xml.ValueParam;
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.cache.concurrent.ConcurrentFIFOExoCache;
+
+public class ActivityPushServiceImplTest extends TestCase {
+
+  private ActivityPushServiceImpl pushService;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    InitParams params = new InitParams();
+    params.addParameter(valueParam("enabled", "true"));
+    params.addParameter(valueParam("channel-capacity", "2"));
+    params.addParameter(valueParam("max-connections", "1"));
+    pushService = new ActivityPushServiceImpl(params);
+
+    pushService.subscribe("demo-id", "demo", Arrays.asList("john-id", "space-id", "demo-id"));
+    pushService.subscribe("john-id", "john", Arrays.asList("demo-id", "john-id"));
+  }
+
+  public void testEnabled() throws Exception {
+    assertTrue(pushService.isEnabled());
+    assertFalse(new ActivityPushServiceImpl(null).isEnabled());
+  }
+
+  public void testAudience() throws Exception {
+    long cursor = pushService.getCursor();
+
+    // space activity, only seen by the members of the space
+    pushService.publish(ActivityNotification.Type.CREATED, "a1", "mary-id", "space-id", Arrays.asList("mary-id"));
+    List<ActivityNotification> notifications = pushService.poll("demo-id", cursor, 0);
+    assertEquals(1, notifications.size());
+    assertEquals("a1", notifications.get(0).getActivityId());
+    assertEquals(ActivityNotification.Type.CREATED, notifications.get(0).getType());
+    assertTrue(pushService.poll("john-id", cursor, 0).isEmpty());
+
+    // mentioned in the activity of a stream he does not follow
+    pushService.publish(ActivityNotification.Type.UPDATED, "a2", "mary-id", "mary-id", Arrays.asList("john-id"));
+    assertEquals("a2", pushService.poll("john-id", cursor, 0).get(0).getActivityId());
+    assertEquals(2, pushService.getDelivered());
+  }
+
+  public void testLastChangeOfAnActivity() throws Exception {
+    long cursor = pushService.getCursor();
+    pushService.publish(ActivityNotification.Type.CREATED, "a1", "john-id", "john-id", null);
+    pushService.publish(ActivityNotification.Type.UPDATED, "a1", "john-id", "john-id", null);
+
+    List<ActivityNotification> notifications = pushService.poll("demo-id", cursor, 0);
+    assertEquals(1, notifications.size());
+    assertEquals(ActivityNotification.Type.UPDATED, notifications.get(0).getType());
+
+    // nothing after the last one
+    assertTrue(pushService.poll("demo-id", notifications.get(0).getSequence(), 0).isEmpty());
+  }
+
+  public void testLostNotifications() throws Exception {
+    long cursor = pushService.getCursor();
+    pushService.publish(ActivityNotification.Type.CREATED, "a1", "john-id", "john-id", null);
+    pushService.publish(ActivityNotification.Type.CREATED, "a2", "john-id", "john-id", null);
+    pushService.publish(ActivityNotification.Type.CREATED, "a3", "john-id", "john-id", null);
+
+    // the capacity is 2, a1 has been dropped
+    assertNull(pushService.poll("demo-id", cursor, 0));
+    assertEquals(2, pushService.poll("demo-id", cursor + 1, 0).size());
+
+    // unknown viewer or cursor
+    assertNull(pushService.poll("mary-id", cursor, 0));
+    assertNull(pushService.poll("demo-id", pushService.getCursor() + 1, 0));
+  }
+
+  public void testWait() throws Exception {
+    final long cursor = pushService.getCursor();
+    Thread publisher = new Thread() {
+      @Override
+      public void run() {
+        while (pushService.getNumberOfConnections() == 0) {
+          Thread.yield();
+        }
+        pushService.publish(ActivityNotification.Type.CREATED, "a1", "john-id", "john-id", null);
+      }
+    };
+    publisher.start();
+    List<ActivityNotification> notifications = pushService.poll("demo-id", cursor, 10000);
+    publisher.join();
+    assertEquals(1, notifications.size());
+    assertEquals(1, pushService.getPeakConnections());
+    assertEquals(0, pushService.getNumberOfConnections());
+
+    // times out
+    long start = System.currentTimeMillis();
+    assertTrue(pushService.poll("demo-id", notifications.get(0).getSequence(), 20).isEmpty());
+    assertTrue(System.currentTimeMillis() - start >= 20);
+  }
+
+  public void testRejectedWait() throws Exception {
+    final long cursor = pushService.getCursor();
+    Thread waiter = new Thread() {
+      @Override
+      public void run() {
+        try {
+          pushService.poll("john-id", cursor, 10000);
+        }
+        catch (Exception e) {
+          // ends the wait
+        }
+      }
+    };
+    waiter.start();
+    while (pushService.getNumberOfConnections() == 0) {
+      Thread.yield();
+    }
+
+    // the only connection is taken, the viewer is told when to come back
+    try {
+      pushService.poll("demo-id", cursor, 10000);
+      fail();
+    }
+    catch (ActivityPushRejectedException e) {
+      assertEquals(15, e.getRetryAfter());
+    }
+    assertEquals(1, pushService.getRejectedPolls());
+
+    // no wait, no connection needed
+    assertTrue(pushService.poll("demo-id", cursor, 0).isEmpty());
+
+    //
+    pushService.publish(ActivityNotification.Type.CREATED, "a1", "john-id", "john-id", null);
+    waiter.join();
+    assertEquals(0, pushService.getNumberOfConnections());
+    assertEquals(1, pushService.poll("demo-id", cursor, 10000).size());
+  }
+
+  public void testSubscriptionUpdate() throws Exception {
+    long cursor = pushService.getCursor();
+    pushService.publish(ActivityNotification.Type.CREATED, "a1", "mary-id", "mary-id", null);
+    pushService.invalidateUserSubscriptions("demo");
+    assertFalse(pushService.isSubscribed("demo-id"));
+    assertTrue(pushService.isSubscribed("john-id"));
+
+    // connected to mary, the pending notifications are kept
+    pushService.publish(ActivityNotification.Type.CREATED, "a2", "john-id", "john-id", null);
+    pushService.subscribe("demo-id", "demo", Arrays.asList("mary-id", "demo-id"));
+    assertTrue(pushService.isSubscribed("demo-id"));
+    pushService.publish(ActivityNotification.Type.CREATED, "a3", "mary-id", "mary-id", Collections.<String>emptyList());
+    pushService.publish(ActivityNotification.Type.CREATED, "a4", "john-id", "john-id", null);
+
+    List<ActivityNotification> notifications = pushService.poll("demo-id", cursor, 0);
+    assertEquals(2, notifications.size());
+    assertEquals("a2", notifications.get(0).getActivityId());
+    assertEquals("a3", notifications.get(1).getActivityId());
+  }
+
+  public void testRelay() throws Exception {
+    ExoCache<String, ActivityPushServiceImpl.RelayedChange> relay =
+        new ConcurrentFIFOExoCache<String, ActivityPushServiceImpl.RelayedChange>(100);
+    InitParams params = new InitParams();
+    params.addParameter(valueParam("enabled", "true"));
+    ActivityPushServiceImpl node1 = new ActivityPushServiceImpl(params, relay);
+    ActivityPushServiceImpl node2 = new ActivityPushServiceImpl(params, relay);
+    node1.subscribe("demo-id", "demo", Arrays.asList("john-id", "demo-id"));
+    node2.subscribe("mary-id", "mary", Arrays.asList("john-id", "mary-id"));
+
+    // written on the second node, seen by the viewers of both
+    long cursor1 = node1.getCursor();
+    long cursor2 = node2.getCursor();
+    node2.publish(ActivityNotification.Type.CREATED, "a1", "john-id", "john-id", null);
+    assertEquals("a1", node1.poll("demo-id", cursor1, 0).get(0).getActivityId());
+    assertEquals("a1", node2.poll("mary-id", cursor2, 0).get(0).getActivityId());
+    assertEquals(1, node2.getRelayed());
+    assertEquals(1, node1.getReceived());
+    assertEquals(0, node2.getReceived());
+
+    // the subscription changes too
+    node2.invalidateUserSubscriptions("demo");
+    assertFalse(node1.isSubscribed("demo-id"));
+    node1.invalidateSubscription("mary-id");
+    assertFalse(node2.isSubscribed("mary-id"));
+
+    // not relayed when alone
+    assertEquals(0, pushService.getRelayed());
+  }
+
+  private ValueParam valueParam(String name, String value) {
+    ValueParam param = new ValueParam();
+    param.setName(name);
+    param.setValue(value);
+    return param;
+  }
+
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.chromattic.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.core.chromattic.entity.ActivityDayEntity;
+import org.exoplatform.social.core.chromattic.entity.ActivityEntity;
+import org.exoplatform.social.core.chromattic.entity.ActivityListEntity;
+import org.exoplatform.social.core.chromattic.entity.ActivityMonthEntity;
+import org.exoplatform.social.core.chromattic.entity.ActivityYearEntity;
+
+public class ActivityCounterBufferTest extends TestCase {
+
+  private static final String LIST = "/production/soc:providers/soc:organization/soc:demo/soc:activities";
+  private static final String YEAR = LIST + "/soc:2014";
+  private static final String MONTH = YEAR + "/soc:May";
+  private static final String DAY = MONTH + "/soc:12";
+
+  private ActivityDayEntity day;
+
+  @Override
+  protected void setUp() throws Exception {
+    final ActivityListEntity list = new ActivityListEntity() {
+      public String getPath() { return LIST; }
+      public Integer getNumber() { return 10; }
+      public void setNumber(Integer number) { }
+      public Map<String, ActivityYearEntity> getYears() { return null; }
+      public List<ActivityYearEntity> getYearsList() { return null; }
+      public ActivityYearEntity newYear() { return null; }
+      public ActivityEntity createActivity(String name) { return null; }
+    };
+    final ActivityYearEntity year = new ActivityYearEntity() {
+      public String getPath() { return YEAR; }
+      public String getName() { return "2014"; }
+      public String getId() { return "year"; }
+      public Integer getNumber() { return 5; }
+      public void setNumber(Integer number) { }
+      public Map<String, ActivityMonthEntity> getMonths() { return null; }
+      public List<ActivityMonthEntity> getMonthsList() { return null; }
+      public ActivityListEntity getList() { return list; }
+      public ActivityMonthEntity newMonth() { return null; }
+    };
+    final ActivityMonthEntity month = new ActivityMonthEntity() {
+      public String getPath() { return MONTH; }
+      public String getName() { return "May"; }
+      public Integer getNumber() { return 3; }
+      public void setNumber(Integer number) { }
+      public Map<String, ActivityDayEntity> getDays() { return null; }
+      public List<ActivityDayEntity> getDaysList() { return null; }
+      public ActivityYearEntity getYear() { return year; }
+      public ActivityDayEntity newDay() { return null; }
+    };
+    day = new ActivityDayEntity() {
+      public String getPath() { return DAY; }
+      public String getName() { return "12"; }
+      public Integer getNumber() { return 1; }
+      public void setNumber(Integer number) { }
+      public List<ActivityEntity> getActivities() { return null; }
+      public ActivityMonthEntity getMonth() { return month; }
+    };
+  }
+
+  public void testMergedNumbers() throws Exception {
+    ActivityCounterBuffer buffer = new ActivityCounterBuffer(10, 60000);
+    buffer.add(day, 1);
+    buffer.add(day, 1);
+    buffer.add(day, -1);
+
+    //
+    assertEquals(2, buffer.getNumber(DAY, 1));
+    assertEquals(4, buffer.getNumber(MONTH, 3));
+    assertEquals(6, buffer.getNumber(YEAR, 5));
+    assertEquals(11, buffer.getNumber(LIST, 10));
+    assertEquals(7, buffer.getNumber("/other", 7));
+    assertEquals(4, buffer.getPendingSize());
+  }
+
+  public void testFlushNeeded() throws Exception {
+    ActivityCounterBuffer buffer = new ActivityCounterBuffer(2, 60000);
+    assertFalse(buffer.isFlushNeeded());
+    buffer.add(day, 1);
+    assertFalse(buffer.isFlushNeeded());
+    buffer.add(day, 1);
+    assertTrue(buffer.isFlushNeeded());
+
+    // by time
+    buffer = new ActivityCounterBuffer(100, 0);
+    assertFalse(buffer.isFlushNeeded());
+    buffer.add(day, 1);
+    assertTrue(buffer.isFlushNeeded());
+  }
+
+  public void testDrainAndRestore() throws Exception {
+    ActivityCounterBuffer buffer = new ActivityCounterBuffer(1, 60000);
+    buffer.add(day, 1);
+    buffer.add(day, 1);
+
+    //
+    Map<String, ActivityCounterBuffer.Change> changes = buffer.drain();
+    assertEquals(4, changes.size());
+    assertEquals(2, changes.get(DAY).getDelta());
+    assertEquals(ActivityDayEntity.class, changes.get(DAY).getType());
+    assertEquals(ActivityListEntity.class, changes.get(LIST).getType());
+    assertEquals(0, buffer.getPendingSize());
+    assertFalse(buffer.isFlushNeeded());
+    assertEquals(1, buffer.getNumber(DAY, 1));
+
+    //
+    buffer.restore(changes);
+    assertEquals(3, buffer.getNumber(DAY, 1));
+    assertTrue(buffer.isFlushNeeded());
+
+    // changes which cancel each other are not flushed
+    buffer.drain();
+    buffer.add(day, 1);
+    buffer.add(day, -1);
+    assertTrue(buffer.drain().isEmpty());
+  }
+
+  public void testSave() throws Exception {
+    ActivityCounterBuffer buffer = new ActivityCounterBuffer(1, 60000);
+    buffer.add(day, 1);
+
+    // the day is not saved yet
+    final Map<String, Integer> persisted = new HashMap<String, Integer>();
+    ActivityCounterBuffer.Writer writer = new ActivityCounterBuffer.Writer() {
+      public boolean write(String path, ActivityCounterBuffer.Change change) {
+        if (DAY.equals(path)) {
+          return false;
+        }
+        persisted.put(path, change.getDelta());
+        return true;
+      }
+      public void save() { }
+    };
+    buffer.save(writer, false);
+    assertEquals(3, persisted.size());
+    assertEquals(1, buffer.getPendingSize());
+    assertEquals(2, buffer.getNumber(DAY, 1));
+    assertEquals(3, buffer.getNumber(MONTH, 3));
+
+    // nothing written until a flush is needed
+    persisted.clear();
+    buffer = new ActivityCounterBuffer(2, 60000);
+    buffer.add(day, 1);
+    buffer.save(writer, false);
+    assertTrue(persisted.isEmpty());
+    buffer.save(writer, true);
+    assertEquals(3, persisted.size());
+  }
+
+  public void testFailedSave() throws Exception {
+    ActivityCounterBuffer buffer = new ActivityCounterBuffer(1, 60000);
+    buffer.add(day, 1);
+
+    //
+    ActivityCounterBuffer.Writer writer = new ActivityCounterBuffer.Writer() {
+      public boolean write(String path, ActivityCounterBuffer.Change change) {
+        return true;
+      }
+      public void save() {
+        throw new IllegalStateException("rolled back");
+      }
+    };
+    try {
+      buffer.save(writer, false);
+      fail();
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+
+    // the changes are pending again
+    assertEquals(4, buffer.getPendingSize());
+    assertEquals(2, buffer.getNumber(DAY, 1));
+    assertEquals(11, buffer.getNumber(LIST, 10));
+    assertTrue(buffer.isFlushNeeded());
+  }
+
+}
@@ -17,7 +17,9 @@
 package org.exoplatform.social.core.manager;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.exoplatform.commons.utils.ListAccess;
@@ -391,6 +393,30 @@ public class IdentityManagerTest extends AbstractCoreTest {
     tearDownIdentityList.add(identityManager.getIdentity(gotIdentity2.getId()));
   }
 
+  /**
+   * Test {@link IdentityManager#getOrCreateIdentities(String, java.util.Collection, boolean)}
+   */
+  public void testGetOrCreateIdentities() {
+    Identity root = identityManager.getOrCreateIdentity(OrganizationIdentityProvider.NAME, "root", false);
+    tearDownIdentityList.add(root);
+
+    //
+    Map<String, Identity> identities = identityManager.getOrCreateIdentities(OrganizationIdentityProvider.NAME,
+        Arrays.asList("john", "notfound", "root", "john"), true);
+    assertEquals(Arrays.asList("john", "root"), new ArrayList<String>(identities.keySet()));
+    assertEquals(root.getId(), identities.get("root").getId());
+    assertNotNull(identities.get("john").getId());
+    assertNotNull(identities.get("john").getProfile().getId());
+    tearDownIdentityList.add(identities.get("john"));
+
+    // the same identities, known by the provider
+    identities = identityManager.getOrCreateIdentities(OrganizationIdentityProvider.NAME,
+        Arrays.asList("root", "john"), false);
+    assertEquals(2, identities.size());
+    assertEquals(root.getId(), identities.get("root").getId());
+    assertNull(identityManager.getOrCreateIdentity(OrganizationIdentityProvider.NAME, "notfound", false));
+  }
+
   /**
    * Test {@link IdentityManager#getProfile(Identity)}
    */
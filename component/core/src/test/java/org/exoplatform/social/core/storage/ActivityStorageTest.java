@@ -1586,6 +1586,48 @@ public class ActivityStorageTest extends AbstractCoreTest {
     assertEquals("number must be: 40", 40, number);
   }
 
+  /**
+   * Test {@link ActivityStorage#getComments(ExoSocialActivity, int, int)} and
+   * {@link ActivityStorage#getNumberOfComments(ExoSocialActivity)} with hidden and deleted comments.
+   * 
+   * @since 4.1
+   */
+  @MaxQueryNumber(800)
+  public void testGetVisibleComments() {
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setTitle("activity title");
+    activity.setUserId(rootIdentity.getId());
+    activityStorage.saveActivity(rootIdentity, activity);
+    tearDownActivityList.add(activity);
+
+    List<ExoSocialActivity> comments = new ArrayList<ExoSocialActivity>();
+    for (int i = 0; i < 5; i++) {
+      ExoSocialActivity comment = new ExoSocialActivityImpl();
+      comment.setTitle("Comment " + i);
+      comment.setUserId(johnIdentity.getId());
+      activityStorage.saveComment(activity, comment);
+      comments.add(comment);
+    }
+    assertEquals(5, activityStorage.getNumberOfComments(activity));
+
+    //
+    ExoSocialActivity hidden = activityStorage.getActivity(comments.get(1).getId());
+    hidden.isHidden(true);
+    activityStorage.updateActivity(hidden);
+    activityStorage.deleteComment(activity.getId(), comments.get(3).getId());
+    assertEquals(3, activityStorage.getNumberOfComments(activity));
+    List<ExoSocialActivity> page = activityStorage.getComments(activity, 1, 2);
+    assertEquals(2, page.size());
+    assertEquals("Comment 2", page.get(0).getTitle());
+    assertEquals("Comment 4", page.get(1).getTitle());
+
+    // shown again at its place
+    hidden.isHidden(false);
+    activityStorage.updateActivity(hidden);
+    assertEquals(4, activityStorage.getNumberOfComments(activity));
+    assertEquals("Comment 1", activityStorage.getComments(activity, 1, 1).get(0).getTitle());
+  }
+
   /**
    * Test {@link ActivityStorage#getNumberOfNewerComments(ExoSocialActivity, ExoSocialActivity)}
    * 
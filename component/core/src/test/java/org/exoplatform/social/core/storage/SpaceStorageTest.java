@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.lang.ArrayUtils;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.model.Profile;
 import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
@@ -30,8 +31,10 @@ import org.exoplatform.social.core.service.LinkProvider;
 import org.exoplatform.social.core.space.SpaceFilter;
 import org.exoplatform.social.core.space.impl.DefaultSpaceApplicationHandler;
 import org.exoplatform.social.core.space.model.Space;
+import org.exoplatform.social.core.space.model.SpaceMembership;
 import org.exoplatform.social.core.storage.api.IdentityStorage;
 import org.exoplatform.social.core.storage.api.SpaceStorage;
+import org.exoplatform.social.core.storage.impl.SpaceStorageImpl;
 import org.exoplatform.social.core.test.AbstractCoreTest;
 import org.exoplatform.social.core.test.MaxQueryNumber;
 import org.exoplatform.social.core.test.QueryNumberTest;
@@ -1585,6 +1588,103 @@ public class SpaceStorageTest extends AbstractCoreTest {
     assertEquals(null, got.getAvatarUrl());
   }
 
+  /**
+   * Test {@link SpaceStorage#addMember(Space, String)} and {@link SpaceStorage#removeMember(Space, String)}
+   *
+   * @throws Exception
+   * @since 4.1
+   */
+  @MaxQueryNumber(250)
+  public void testAddRemoveMember() throws Exception {
+    Space space = this.getSpaceInstance(1);
+    tearDownSpaceList.add(space);
+    spaceStorage.saveSpace(space, true);
+    assertEquals(1, spaceStorage.getPendingSpacesCount("jame"));
+    assertEquals(0, spaceStorage.getMemberSpacesCount("jame"));
+
+    // a pending user joins
+    spaceStorage.addMember(space, "jame");
+    assertTrue(ArrayUtils.contains(space.getMembers(), "jame"));
+    assertFalse(ArrayUtils.contains(space.getPendingUsers(), "jame"));
+    assertEquals(0, spaceStorage.getPendingSpacesCount("jame"));
+    assertEquals(1, spaceStorage.getMemberSpacesCount("jame"));
+
+    // an invited user joins
+    spaceStorage.addMember(space, "mary");
+    Space got = spaceStorage.getSpaceById(space.getId());
+    assertEquals(7, got.getMembers().length);
+    assertEquals(1, got.getInvitedUsers().length);
+    assertEquals(2, got.getPendingUsers().length);
+    assertEquals(0, spaceStorage.getInvitedSpacesCount("mary"));
+
+    // joining twice does nothing
+    spaceStorage.addMember(space, "mary");
+    assertEquals(7, spaceStorage.getSpaceById(space.getId()).getMembers().length);
+
+    //
+    spaceStorage.removeMember(space, "raul");
+    assertFalse(ArrayUtils.contains(space.getMembers(), "raul"));
+    assertEquals(0, spaceStorage.getMemberSpacesCount("raul"));
+    assertEquals(6, spaceStorage.getSpaceById(space.getId()).getMembers().length);
+  }
+
+  /**
+   * Test {@link SpaceStorage#getSpaceMemberships(String)}
+   *
+   * @throws Exception
+   * @since 4.1
+   */
+  @MaxQueryNumber(250)
+  public void testGetSpaceMemberships() throws Exception {
+    Space space = this.getSpaceInstance(1);
+    tearDownSpaceList.add(space);
+    spaceStorage.saveSpace(space, true);
+    Identity spaceIdentity = new Identity(SpaceIdentityProvider.NAME, space.getPrettyName());
+    identityStorage.saveIdentity(spaceIdentity);
+    tearDownIdentityList.add(spaceIdentity);
+
+    //
+    List<SpaceMembership> memberships = spaceStorage.getSpaceMemberships("demo");
+    assertEquals(1, memberships.size());
+    assertEquals(space.getId(), memberships.get(0).getSpaceId());
+    assertEquals(spaceIdentity.getId(), memberships.get(0).getSpaceIdentityId());
+    assertTrue(memberships.get(0).isManager());
+    assertTrue(spaceStorage.getSpaceMemberships("jame").isEmpty());
+
+    // kept up to date by the storage writes
+    spaceStorage.addMember(space, "jame");
+    assertEquals(1, spaceStorage.getSpaceMemberships("jame").size());
+    spaceStorage.removeMember(space, "jame");
+    assertTrue(spaceStorage.getSpaceMemberships("jame").isEmpty());
+  }
+
+  /**
+   * Test that the configured storage indexes the spaces of the users.
+   *
+   * @throws Exception
+   * @since 4.1
+   */
+  @MaxQueryNumber(250)
+  public void testMembershipIndexConfigured() throws Exception {
+    SpaceStorageImpl storage = (SpaceStorageImpl) getContainer().getComponentInstanceOfType(SpaceStorageImpl.class);
+    assertNotNull(storage.getMembershipIndex());
+
+    //
+    Space space = this.getSpaceInstance(1);
+    tearDownSpaceList.add(space);
+    spaceStorage.saveSpace(space, true);
+    Identity spaceIdentity = new Identity(SpaceIdentityProvider.NAME, space.getPrettyName());
+    identityStorage.saveIdentity(spaceIdentity);
+    tearDownIdentityList.add(spaceIdentity);
+    storage.getMembershipIndex().clear();
+
+    //
+    assertEquals(1, spaceStorage.getSpaceMemberships("demo").size());
+    long hits = storage.getMembershipIndex().getHitCount();
+    assertEquals(1, spaceStorage.getSpaceMemberships("demo").size());
+    assertEquals(hits + 1, storage.getMembershipIndex().getHitCount());
+  }
+
   /**
    * Test {@link SpaceStorage#renameSpace(Space, String)}
    *
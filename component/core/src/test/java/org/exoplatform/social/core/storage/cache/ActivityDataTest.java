@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.core.activity.model.ActivityStream;
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
+import org.exoplatform.social.core.storage.cache.model.data.ActivityData;
+
+public class ActivityDataTest extends TestCase {
+
+  public void testBuild() throws Exception {
+    ExoSocialActivity activity = activity("1");
+    ExoSocialActivity built = new ActivityData(activity).build();
+
+    //
+    assertEquals("1", built.getId());
+    assertEquals(activity.getTitle(), built.getTitle());
+    assertEquals(activity.getBody(), built.getBody());
+    assertEquals("body_id", built.getBodyId());
+    assertEquals("title_id", built.getTitleId());
+    assertEquals("exosocial:core", built.getType());
+    assertEquals("app", built.getAppId());
+    assertEquals("external", built.getExternalId());
+    assertEquals("http://url", built.getUrl());
+    assertEquals("demo", built.getUserId());
+    assertEquals("poster", built.getPosterId());
+    assertEquals(Long.valueOf(1000L), built.getPostedTime());
+    assertEquals(new Date(2000L), built.getUpdated());
+    assertTrue(built.isComment());
+    assertFalse(built.isHidden());
+    assertTrue(built.isLocked());
+    assertTrue(Arrays.equals(new String[] { "john", "mary" }, built.getLikeIdentityIds()));
+    assertTrue(Arrays.equals(new String[] { "c1" }, built.getReplyToId()));
+    assertTrue(Arrays.equals(new String[] { "john@2" }, built.getMentionedIds()));
+    assertTrue(Arrays.equals(new String[] { "mary@1" }, built.getCommentedIds()));
+    assertEquals(activity.getTemplateParams(), built.getTemplateParams());
+    assertEquals("stream", built.getActivityStream().getId());
+    assertEquals("demo", built.getActivityStream().getPrettyId());
+    assertEquals("favicon", built.getActivityStream().getFaviconUrl());
+    assertEquals("stream title", built.getActivityStream().getTitle());
+    assertEquals(ActivityStream.Type.USER, built.getActivityStream().getType());
+
+    // built again from the same data
+    assertEquals(activity.getBody(), new ActivityData(activity).build().getBody());
+  }
+
+  public void testEmptyFields() throws Exception {
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setId("1");
+    activity.setTitle("title");
+    activity.setUpdated(new Date(2000L));
+    activity.setPostedTime(null);
+    activity.setReplyToId(null);
+    activity.setTemplateParams(null);
+
+    //
+    ExoSocialActivity built = new ActivityData(activity).build();
+    assertEquals("title", built.getTitle());
+    assertNull(built.getBody());
+    assertNull(built.getPostedTime());
+    assertNull(built.getReplyToId());
+    assertEquals(0, built.getLikeIdentityIds().length);
+    assertTrue(built.getTemplateParams().isEmpty());
+    assertNull(ActivityData.NULL.build());
+  }
+
+  public void testSharedStrings() throws Exception {
+    ExoSocialActivity first = new ActivityData(activity("1")).build();
+    ExoSocialActivity second = new ActivityData(activity("2")).build();
+    assertSame(first.getUserId(), second.getUserId());
+    assertSame(first.getType(), second.getType());
+    assertSame(first.getActivityStream().getId(), second.getActivityStream().getId());
+  }
+
+  private ExoSocialActivity activity(String id) {
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setId(id);
+    activity.setTitle("title \u00e9\u4e2d " + id);
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 10000; ++i) {
+      body.append("body \u00e0 ");
+    }
+    activity.setBody(body.toString());
+    activity.setBodyId("body_id");
+    activity.setTitleId("title_id");
+    activity.setType(new String("exosocial:core"));
+    activity.setAppId("app");
+    activity.setExternalId("external");
+    activity.setUrl("http://url");
+    activity.setUserId(new String("demo"));
+    activity.setPosterId("poster");
+    activity.setPostedTime(1000L);
+    activity.setUpdated(new Date(2000L));
+    activity.isComment(true);
+    activity.isLocked(true);
+    activity.setLikeIdentityIds(new String[] { "john", "mary" });
+    activity.setReplyToId(new String[] { "c1" });
+    activity.setMentionedIds(new String[] { "john@2" });
+    activity.setCommentedIds(new String[] { "mary@1" });
+    Map<String, String> params = new LinkedHashMap<String, String>();
+    params.put("key", "value");
+    params.put("empty", "");
+    activity.setTemplateParams(params);
+    ActivityStream stream = activity.getActivityStream();
+    stream.setId(new String("stream"));
+    stream.setPrettyId("demo");
+    stream.setFaviconUrl("favicon");
+    stream.setTitle("stream title");
+    stream.setType(ActivityStream.Type.USER);
+    activity.setActivityStream(stream);
+    return activity;
+  }
+
+}
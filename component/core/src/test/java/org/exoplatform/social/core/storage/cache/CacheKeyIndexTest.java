@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class CacheKeyIndexTest extends TestCase {
+
+  public void testRemoveById() throws Exception {
+    CacheKeyIndex<String> index = new CacheKeyIndex<String>(10);
+    assertTrue(index.add("feed-demo", Arrays.asList("demo", "john", "space")).isEmpty());
+    assertTrue(index.add("stream-john", Arrays.asList("john")).isEmpty());
+    assertTrue(index.add("stream-mary", Arrays.asList("mary")).isEmpty());
+    assertEquals(3, index.size());
+
+    //
+    Set<String> removed = index.removeById("john");
+    assertEquals(2, removed.size());
+    assertTrue(removed.contains("feed-demo"));
+    assertTrue(removed.contains("stream-john"));
+    assertEquals(1, index.size());
+
+    // the feed is no longer registered under its other ids
+    assertTrue(index.removeById("space").isEmpty());
+    assertEquals(1, index.removeById("mary").size());
+    assertEquals(0, index.size());
+  }
+
+  public void testRemoveKey() throws Exception {
+    CacheKeyIndex<String> index = new CacheKeyIndex<String>(10);
+    index.add("feed-demo", Arrays.asList("demo", "john"));
+    index.remove("feed-demo");
+    assertEquals(0, index.size());
+    assertTrue(index.removeById("demo").isEmpty());
+    assertTrue(index.removeById("john").isEmpty());
+  }
+
+  public void testReplaceKey() throws Exception {
+    CacheKeyIndex<String> index = new CacheKeyIndex<String>(10);
+    index.add("feed-demo", Arrays.asList("demo", "john"));
+    index.add("feed-demo", Arrays.asList("demo", "mary"));
+    assertEquals(1, index.size());
+    assertTrue(index.removeById("john").isEmpty());
+    assertEquals(1, index.removeById("mary").size());
+  }
+
+  public void testCapacity() throws Exception {
+    CacheKeyIndex<String> index = new CacheKeyIndex<String>(2);
+    assertTrue(index.add("k1", Arrays.asList("a")).isEmpty());
+    assertTrue(index.add("k2", Arrays.asList("b")).isEmpty());
+
+    // the oldest key makes room, it is no longer registered under its ids
+    assertEquals(Arrays.asList("k1"), index.add("k3", Arrays.asList("a", "c")));
+    assertEquals(2, index.size());
+    assertEquals(1, index.removeById("a").size());
+    assertTrue(index.add("k1", Arrays.asList("a")).isEmpty());
+
+    // an updated key becomes the newest one
+    assertTrue(index.add("k2", Arrays.asList("c")).isEmpty());
+    assertEquals(Arrays.asList("k1"), index.add("k4", Arrays.asList("d")));
+    assertEquals(Arrays.asList("k2"), index.add("k5", Arrays.asList("e")));
+    assertEquals(2, index.size());
+
+    //
+    index.clear();
+    assertEquals(0, index.size());
+    assertTrue(index.add("k3", Arrays.asList("c")).isEmpty());
+  }
+
+}
@@ -181,6 +181,50 @@ public class CachedActivityStorageTestCase extends AbstractCoreTest {
 
   }
 
+  @MaxQueryNumber(200)
+  public void testTargetedInvalidation() throws Exception {
+
+    //
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setTitle("hello on 1");
+    activity.setUserId(identity.getId());
+    activityStorage.saveActivity(identity, activity);
+
+    ExoSocialActivity activity2 = new ExoSocialActivityImpl();
+    activity2.setTitle("hello on 2");
+    activity2.setUserId(identity2.getId());
+    activityStorage.saveActivity(identity2, activity2);
+
+    //
+    activityStorage.getActivityFeed(identity, 0, 20);
+    activityStorage.getActivityFeed(identity2, 0, 20);
+    assertEquals(2, cacheService.getActivitiesCache().getCacheSize());
+
+    // identity and identity2 are not connected, the feed of identity2 is kept
+    ExoSocialActivity activity3 = new ExoSocialActivityImpl();
+    activity3.setTitle("hello again on 1");
+    activity3.setUserId(identity.getId());
+    activityStorage.saveActivity(identity, activity3);
+    assertEquals(1, cacheService.getActivitiesCache().getCacheSize());
+
+    //
+    CacheStatistics statistics = CacheType.ACTIVITIES.getStatistics();
+    long hits = statistics.getHits();
+    long misses = statistics.getMisses();
+    long loads = statistics.getLoads();
+    long selections = statistics.getSelections();
+    assertEquals(1, activityStorage.getActivityFeed(identity2, 0, 20).size());
+    assertEquals(hits + 1, statistics.getHits());
+    assertEquals(2, activityStorage.getActivityFeed(identity, 0, 20).size());
+    assertEquals(misses + 1, statistics.getMisses());
+    assertEquals(loads + 1, statistics.getLoads());
+
+    //
+    activityStorage.clearCache();
+    assertEquals(selections + 1, statistics.getSelections());
+
+  }
+
   @MaxQueryNumber(90)
   public void testSaveComment() throws Exception {
 
@@ -300,4 +344,40 @@ public class CachedActivityStorageTestCase extends AbstractCoreTest {
     activityStorage.deleteActivity(activity.getId());
   }
 
+
+  @MaxQueryNumber(150)
+  public void testGetActivities() throws Exception {
+
+    //
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setTitle("hello");
+    activity.setUserId(identity.getId());
+    activityStorage.saveActivity(identity, activity);
+    ExoSocialActivity activity2 = new ExoSocialActivityImpl();
+    activity2.setTitle("hello 2");
+    activity2.setUserId(identity.getId());
+    activityStorage.saveActivity(identity, activity2);
+
+    //
+    cacheService.getActivityCache().clearCache();
+    activityStorage.getActivity(activity.getId());
+    assertEquals(1, cacheService.getActivityCache().getCacheSize());
+
+    // one hit, one loaded and one missing activity, in the order of the ids
+    List<String> ids = new ArrayList<String>();
+    ids.add(activity2.getId());
+    ids.add("unknown");
+    ids.add(activity.getId());
+    List<ExoSocialActivity> got = activityStorage.getActivities(ids);
+    assertEquals(2, got.size());
+    assertEquals("hello 2", got.get(0).getTitle());
+    assertEquals("hello", got.get(1).getTitle());
+    assertEquals(3, cacheService.getActivityCache().getCacheSize());
+
+    //
+    activityStorage.deleteActivity(activity.getId());
+    activityStorage.deleteActivity(activity2.getId());
+
+  }
+
 }
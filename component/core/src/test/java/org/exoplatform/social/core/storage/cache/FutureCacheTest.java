@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.cache;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.commons.cache.future.Loader;
+
+public class FutureCacheTest extends TestCase {
+
+  public void testMissingKeys() throws Exception {
+    MapLoader loader = new MapLoader();
+    MapFutureCache cache = new MapFutureCache(loader, new FutureCacheSettings(60000, 0, 0, 10));
+    assertNull(cache.get(null, "a"));
+    assertNull(cache.get(null, "a"));
+    assertEquals(1, loader.loads.get());
+    assertEquals(1, cache.getStatistics().getMissingHits());
+
+    // a value put in the cache wins, removing it forgets the key was missing
+    cache.values.put("a", "found");
+    assertEquals("found", cache.get(null, "a"));
+    cache.remove("a");
+    assertNull(cache.get(null, "a"));
+    assertEquals(2, loader.loads.get());
+
+    // disabled by default
+    MapLoader otherLoader = new MapLoader();
+    MapFutureCache uncached = new MapFutureCache(otherLoader, FutureCacheSettings.DEFAULT);
+    uncached.get(null, "a");
+    uncached.get(null, "a");
+    assertEquals(2, otherLoader.loads.get());
+  }
+
+  public void testRefresh() throws Exception {
+    MapLoader loader = new MapLoader();
+    MapFutureCache cache = new MapFutureCache(loader, new FutureCacheSettings(0, 0, 1, 10));
+    loader.source.put("a", "1");
+    assertEquals("1", cache.get(null, "a"));
+    Thread.sleep(5);
+    loader.source.put("a", "2");
+    assertEquals("2", cache.get(null, "a"));
+    assertEquals(1, cache.getStatistics().getRefreshes());
+
+    // deleted in the meantime
+    Thread.sleep(5);
+    loader.source.remove("a");
+    assertNull(cache.get(null, "a"));
+    assertFalse(cache.values.containsKey("a"));
+  }
+
+  public void testLoadTimeout() throws Exception {
+    MapLoader loader = new MapLoader();
+    final MapFutureCache cache = new MapFutureCache(loader, new FutureCacheSettings(0, 50, 0, 10));
+    loader.source.put("a", "1");
+    loader.source.put("b", "1");
+    assertEquals("1", cache.get(null, "a"));
+    cache.values.clear();
+
+    // slow loads, the waiters get the last value or fail when there is none
+    cache.latch = new CountDownLatch(1);
+    Thread loadingA = load(cache, "a");
+    Thread loadingB = load(cache, "b");
+    while (loader.loads.get() < 3) {
+      Thread.sleep(1);
+    }
+    assertEquals("1", cache.get(null, "a"));
+    assertEquals(1, cache.getStatistics().getStaleHits());
+    try {
+      cache.get(null, "b");
+      fail();
+    }
+    catch (UndeclaredThrowableException e) {
+      assertEquals(2, cache.getStatistics().getLoadTimeouts());
+    }
+
+    //
+    cache.latch.countDown();
+    loadingA.join();
+    loadingB.join();
+    assertEquals("1", cache.get(null, "b"));
+  }
+
+  private Thread load(final MapFutureCache cache, final String key) {
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        cache.get(null, key);
+      }
+    };
+    thread.start();
+    return thread;
+  }
+
+  private static class MapLoader implements Loader<String, String, Object> {
+
+    private final Map<String, String> source = new ConcurrentHashMap<String, String>();
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    public String retrieve(Object context, String key) throws Exception {
+      loads.incrementAndGet();
+      return source.get(key);
+    }
+
+  }
+
+  private static class MapFutureCache extends FutureCache<String, String, Object> {
+
+    private final Map<String, String> values = new ConcurrentHashMap<String, String>();
+
+    /** When set, the loaded values are put once it is released. */
+    private volatile CountDownLatch latch;
+
+    MapFutureCache(MapLoader loader, FutureCacheSettings settings) {
+      super(loader, new CacheStatistics(), settings);
+    }
+
+    @Override
+    protected String get(String key) {
+      return values.get(key);
+    }
+
+    @Override
+    protected void put(String key, String value) {
+      CountDownLatch current = latch;
+      if (current != null) {
+        try {
+          current.await();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      values.put(key, value);
+    }
+
+    @Override
+    protected void remove(String key) {
+      forget(key);
+      values.remove(key);
+    }
+
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.container.xml.ValueParam;
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
+import org.exoplatform.social.core.identity.model.Identity;
+
+public class ActivityFeedStorageImplTestCase extends TestCase {
+
+  private ActivityFeedStorageImpl feedStorage;
+
+  private Identity demo;
+  private Identity john;
+  private Identity space;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    InitParams params = new InitParams();
+    params.addParameter(valueParam("enabled", "true"));
+    params.addParameter(valueParam("timeline-capacity", "3"));
+    feedStorage = new ActivityFeedStorageImpl(params);
+
+    demo = new Identity("demo-id");
+    demo.setRemoteId("demo");
+    john = new Identity("john-id");
+    john.setRemoteId("john");
+    space = new Identity("space-id");
+  }
+
+  public void testEnabled() throws Exception {
+    assertTrue(feedStorage.isEnabled());
+    assertFalse(new ActivityFeedStorageImpl(null).isEnabled());
+  }
+
+  public void testRefusedOnCluster() throws Exception {
+    InitParams params = new InitParams();
+    params.addParameter(valueParam("enabled", "true"));
+    params.addParameter(valueParam("cluster", "true"));
+    assertFalse(new ActivityFeedStorageImpl(params).isEnabled());
+  }
+
+  public void testNotMaterialized() throws Exception {
+    assertNull(feedStorage.getFeed(demo, 0, 10));
+
+    // pending until the pull path result is filled
+    feedStorage.prepareFeed(demo, Arrays.asList(demo, john));
+    assertNull(feedStorage.getFeed(demo, 0, 10));
+  }
+
+  public void testFillAndPush() throws Exception {
+    feedStorage.prepareFeed(demo, Arrays.asList(demo, john, space));
+    feedStorage.fillFeed(demo, activities("a2", 20L, "a1", 10L), 0, 10);
+    assertEquals(Arrays.asList("a2", "a1"), feedStorage.getFeed(demo, 0, 10));
+
+    // posted in a stream followed by demo
+    feedStorage.pushActivity("a3", 30L, 30L, space.getId(), Collections.<String>emptyList());
+    assertEquals(Arrays.asList("a3", "a2"), feedStorage.getFeed(demo, 0, 2));
+
+    // commented: moves on the top
+    feedStorage.pushActivity("a1", 10L, 40L, john.getId(), Collections.<String>emptyList());
+    assertEquals(Arrays.asList("a1", "a3", "a2"), feedStorage.getFeed(demo, 0, 10));
+
+    // not followed by demo
+    feedStorage.pushActivity("b1", 50L, 50L, "other-id", Collections.<String>emptyList());
+    assertEquals("a1", feedStorage.getFeed(demo, 0, 1).get(0));
+
+    // mentioned
+    feedStorage.pushActivity("b2", 60L, 60L, "other-id", Arrays.asList(demo.getId()));
+    assertEquals("b2", feedStorage.getFeed(demo, 0, 1).get(0));
+  }
+
+  public void testWritesDuringMaterialization() throws Exception {
+    feedStorage.prepareFeed(demo, Arrays.asList(demo, john));
+    feedStorage.pushActivity("a3", 30L, 30L, john.getId(), Collections.<String>emptyList());
+    feedStorage.fillFeed(demo, activities("a2", 20L, "a1", 10L), 0, 10);
+    assertEquals(Arrays.asList("a3", "a2", "a1"), feedStorage.getFeed(demo, 0, 10));
+  }
+
+  public void testPartialFeed() throws Exception {
+    feedStorage.prepareFeed(demo, Arrays.asList(demo));
+    feedStorage.fillFeed(demo, activities("a2", 20L, "a1", 10L), 0, 2);
+
+    // the feed may have more activities
+    assertEquals(2, feedStorage.getFeed(demo, 0, 2).size());
+    assertNull(feedStorage.getFeed(demo, 1, 2));
+
+    // next page appended from the pull path
+    feedStorage.fillFeed(demo, activities("a0", 5L), 2, 2);
+    assertEquals(Arrays.asList("a1", "a0"), feedStorage.getFeed(demo, 1, 2));
+    assertEquals(Arrays.asList("a0"), feedStorage.getFeed(demo, 2, 10));
+  }
+
+  public void testCapacity() throws Exception {
+    feedStorage.prepareFeed(demo, Arrays.asList(demo));
+    feedStorage.fillFeed(demo, activities("a3", 30L, "a2", 20L, "a1", 10L), 0, 10);
+    assertEquals(3, feedStorage.getFeed(demo, 0, 10).size());
+
+    // the oldest is dropped and the feed is no longer complete
+    feedStorage.pushActivity("a4", 40L, 40L, demo.getId(), Collections.<String>emptyList());
+    assertEquals(Arrays.asList("a4", "a3", "a2"), feedStorage.getFeed(demo, 0, 3));
+    assertNull(feedStorage.getFeed(demo, 0, 10));
+  }
+
+  public void testRemoveActivity() throws Exception {
+    feedStorage.prepareFeed(demo, Arrays.asList(demo, john));
+    feedStorage.fillFeed(demo, activities("a2", 20L, "a1", 10L), 0, 10);
+
+    feedStorage.removeActivity("a2", john.getId(), Collections.<String>emptyList());
+    assertEquals(Arrays.asList("a1"), feedStorage.getFeed(demo, 0, 10));
+  }
+
+  public void testInvalidate() throws Exception {
+    feedStorage.prepareFeed(demo, Arrays.asList(demo, john));
+    feedStorage.fillFeed(demo, activities("a1", 10L), 0, 10);
+    feedStorage.prepareFeed(john, Arrays.asList(john, demo));
+    feedStorage.fillFeed(john, activities("a1", 10L), 0, 10);
+    assertEquals(2, feedStorage.getNumberOfFeeds());
+
+    feedStorage.invalidateFeed(demo.getId());
+    assertNull(feedStorage.getFeed(demo, 0, 10));
+    assertNotNull(feedStorage.getFeed(john, 0, 10));
+
+    feedStorage.invalidateUserFeeds("john");
+    assertNull(feedStorage.getFeed(john, 0, 10));
+    assertEquals(0, feedStorage.getNumberOfFeeds());
+
+    // nothing is pushed to dropped feeds
+    feedStorage.pushActivity("a2", 20L, 20L, demo.getId(), Arrays.asList(john.getId()));
+    assertEquals(0, feedStorage.getNumberOfFeeds());
+  }
+
+  private List<ExoSocialActivity> activities(Object... idAndTimes) {
+    List<ExoSocialActivity> activities = new ArrayList<ExoSocialActivity>();
+    for (int i = 0; i < idAndTimes.length; i += 2) {
+      ExoSocialActivity activity = new ExoSocialActivityImpl();
+      activity.setId((String) idAndTimes[i]);
+      activity.setPostedTime((Long) idAndTimes[i + 1]);
+      activity.setUpdated((Long) idAndTimes[i + 1]);
+      activities.add(activity);
+    }
+    return activities;
+  }
+
+  private ValueParam valueParam(String name, String value) {
+    ValueParam param = new ValueParam();
+    param.setName(name);
+    param.setValue(value);
+    return param;
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.core.activity.model.ExoSocialActivity;
+import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
+
+public class ActivityRenderCacheTestCase extends TestCase {
+
+  public void testApplyRendered() throws Exception {
+    ActivityRenderCache cache = new ActivityRenderCache(10);
+    ExoSocialActivity raw = activity("1", "hello @demo", 1000L);
+    String stamp = ActivityRenderCache.stamp(raw, "chain");
+    assertFalse(cache.apply(raw, stamp));
+
+    //
+    raw.setTitle("hello <a>demo</a>");
+    raw.getTemplateParams().put("key", "processed");
+    cache.put(raw, stamp);
+
+    //
+    ExoSocialActivity reloaded = activity("1", "hello @demo", 1000L);
+    assertTrue(cache.apply(reloaded, ActivityRenderCache.stamp(reloaded, "chain")));
+    assertEquals("hello <a>demo</a>", reloaded.getTitle());
+    assertEquals("processed", reloaded.getTemplateParams().get("key"));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    // the cached params are not shared with the returned activity
+    reloaded.getTemplateParams().put("key", "changed");
+    ExoSocialActivity again = activity("1", "hello @demo", 1000L);
+    assertTrue(cache.apply(again, ActivityRenderCache.stamp(again, "chain")));
+    assertEquals("processed", again.getTemplateParams().get("key"));
+  }
+
+  public void testStaleVersions() throws Exception {
+    ActivityRenderCache cache = new ActivityRenderCache(10);
+    ExoSocialActivity raw = activity("1", "hello", 1000L);
+    cache.put(raw, ActivityRenderCache.stamp(raw, "chain"));
+
+    // updated
+    ExoSocialActivity updated = activity("1", "hello", 2000L);
+    assertFalse(cache.apply(updated, ActivityRenderCache.stamp(updated, "chain")));
+
+    // edited without a new update time
+    ExoSocialActivity edited = activity("1", "hello world", 1000L);
+    assertFalse(cache.apply(edited, ActivityRenderCache.stamp(edited, "chain")));
+
+    // other processors or portal owner
+    ExoSocialActivity same = activity("1", "hello", 1000L);
+    assertFalse(cache.apply(same, ActivityRenderCache.stamp(same, "other")));
+    assertTrue(cache.apply(same, ActivityRenderCache.stamp(same, "chain")));
+
+    //
+    cache.remove("1");
+    assertFalse(cache.apply(same, ActivityRenderCache.stamp(same, "chain")));
+  }
+
+  public void testBounded() throws Exception {
+    ActivityRenderCache cache = new ActivityRenderCache(2);
+    for (int i = 0; i < 5; ++i) {
+      ExoSocialActivity raw = activity(String.valueOf(i), "hello", 1000L);
+      cache.put(raw, ActivityRenderCache.stamp(raw, "chain"));
+    }
+    assertEquals(2, cache.size());
+    ExoSocialActivity last = activity("4", "hello", 1000L);
+    assertTrue(cache.apply(last, ActivityRenderCache.stamp(last, "chain")));
+  }
+
+  public void testProcessorTimings() throws Exception {
+    ActivityRenderCache cache = new ActivityRenderCache(10);
+    cache.record("mentions", 3000);
+    cache.record("mentions", 1000);
+    cache.record("sanitizer", 5000);
+
+    //
+    Map<String, ActivityRenderCache.ProcessorTiming> timings = cache.getProcessorTimings();
+    assertEquals(2, timings.size());
+    assertEquals(2, timings.get("mentions").getCount());
+    assertEquals(2, timings.get("mentions").getAverageTime());
+    assertEquals(3, timings.get("mentions").getMaxTime());
+    assertEquals(1, timings.get("sanitizer").getCount());
+  }
+
+  private ExoSocialActivity activity(String id, String title, long updated) {
+    ExoSocialActivity activity = new ExoSocialActivityImpl();
+    activity.setId(id);
+    activity.setTitle(title);
+    activity.setBody("body");
+    activity.setUpdated(updated);
+    Map<String, String> params = new HashMap<String, String>();
+    params.put("key", "raw");
+    activity.setTemplateParams(params);
+    return activity;
+  }
+
+}
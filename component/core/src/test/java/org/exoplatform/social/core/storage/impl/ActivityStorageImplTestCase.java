@@ -675,6 +675,7 @@ public class ActivityStorageImplTestCase extends AbstractCoreTest {
 
     //
     assertEquals(0, activityStorage.getActivitiesOfIdentities(Arrays.asList(rootIdentity, johnIdentity), 0, 100).size());
+    assertEquals(0, activityStorage.getNumberOfActivitiesOfIdentities(Arrays.asList(rootIdentity, johnIdentity)));
 
     for (int i = 0; i < 10; ++i) {
 
@@ -694,6 +695,7 @@ public class ActivityStorageImplTestCase extends AbstractCoreTest {
     //
     List<ExoSocialActivity> activities = activityStorage.getActivitiesOfIdentities(Arrays.asList(rootIdentity, johnIdentity), 0, 100);
     assertEquals(20, activities.size());
+    assertEquals(20, activityStorage.getNumberOfActivitiesOfIdentities(Arrays.asList(rootIdentity, johnIdentity)));
 
     int i = 9;
     Iterator<ExoSocialActivity> it = activities.iterator();
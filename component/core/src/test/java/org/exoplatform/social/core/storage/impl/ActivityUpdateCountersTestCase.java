@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter.ActivityFilterType;
+
+public class ActivityUpdateCountersTestCase extends TestCase {
+
+  private static final List<String> NONE = Collections.emptyList();
+
+  public void testCountOwners() throws Exception {
+    ActivityUpdateCounters counters = new ActivityUpdateCounters(10, 60000, 10);
+    assertNull(counters.get("mary", ActivityFilterType.CONNECTIONS_ACTIVITIES, "v1"));
+
+    //
+    long sequence = counters.getSequence();
+    counters.put("mary", ActivityFilterType.CONNECTIONS_ACTIVITIES, "v1", 1000, Arrays.asList("a1"),
+                 Arrays.asList("demo", "john"), null, NONE, sequence);
+    assertEquals(Integer.valueOf(1), counters.get("mary", ActivityFilterType.CONNECTIONS_ACTIVITIES, "v1"));
+
+    //
+    counters.updated("a2", 2000, "demo", NONE, null);
+    counters.updated("a1", 2000, "john", NONE, null);
+    counters.updated("a3", 2000, "root", NONE, null);
+    counters.updated("a4", 500, "demo", NONE, null);
+    assertEquals(Integer.valueOf(2), counters.get("mary", ActivityFilterType.CONNECTIONS_ACTIVITIES, "v1"));
+
+    // viewed
+    assertNull(counters.get("mary", ActivityFilterType.CONNECTIONS_ACTIVITIES, "v2"));
+    assertNull(counters.get("mary", ActivityFilterType.USER_ACTIVITIES, "v1"));
+
+    //
+    counters.removed("a2");
+    assertEquals(Integer.valueOf(1), counters.get("mary", ActivityFilterType.CONNECTIONS_ACTIVITIES, "v1"));
+  }
+
+  public void testCountMentionsAndComments() throws Exception {
+    ActivityUpdateCounters counters = new ActivityUpdateCounters(10, 60000, 10);
+    counters.put("mary", ActivityFilterType.USER_ACTIVITIES, "v1", 1000, NONE, NONE, "mary", Arrays.asList("demo"),
+                 counters.getSequence());
+
+    //
+    counters.updated("a1", 2000, "root", Arrays.asList("mary"), null);
+    counters.updated("a2", 2000, "mary", NONE, "demo");
+    counters.updated("a3", 2000, "mary", NONE, "root");
+    counters.updated("a4", 2000, "john", NONE, "demo");
+    counters.updated("a5", 2000, "mary", NONE, null);
+    assertEquals(Integer.valueOf(2), counters.get("mary", ActivityFilterType.USER_ACTIVITIES, "v1"));
+  }
+
+  public void testReplayWritesDuringLoad() throws Exception {
+    ActivityUpdateCounters counters = new ActivityUpdateCounters(10, 60000, 2);
+    long sequence = counters.getSequence();
+    counters.updated("a1", 2000, "demo", NONE, null);
+    counters.updated("a2", 2000, "demo", NONE, null);
+    counters.removed("a0");
+    assertTrue(counters.put("mary", ActivityFilterType.CONNECTIONS_ACTIVITIES, "v1", 1000, Arrays.asList("a0", "a1"),
+                            Arrays.asList("demo"), null, NONE, sequence + 1));
+    assertEquals(Integer.valueOf(2), counters.get("mary", ActivityFilterType.CONNECTIONS_ACTIVITIES, "v1"));
+
+    // the writes done during the load are not all known anymore
+    assertFalse(counters.put("john", ActivityFilterType.CONNECTIONS_ACTIVITIES, "v1", 1000, NONE,
+                             Arrays.asList("demo"), null, NONE, sequence));
+    assertNull(counters.get("john", ActivityFilterType.CONNECTIONS_ACTIVITIES, "v1"));
+  }
+
+  public void testBoundsAndExpiry() throws Exception {
+    ActivityUpdateCounters counters = new ActivityUpdateCounters(2, 60000, 10);
+    counters.put("mary", ActivityFilterType.SPACE_ACTIVITIES, "v1", 1000, NONE, Arrays.asList("s1"), null, NONE, 0);
+    counters.put("demo", ActivityFilterType.SPACE_ACTIVITIES, "v1", 1000, NONE, Arrays.asList("s1"), null, NONE, 0);
+    assertNotNull(counters.get("mary", ActivityFilterType.SPACE_ACTIVITIES, "v1"));
+    counters.put("john", ActivityFilterType.SPACE_ACTIVITIES, "v1", 1000, NONE, Arrays.asList("s1"), null, NONE, 0);
+    assertEquals(2, counters.size());
+    assertNull(counters.get("demo", ActivityFilterType.SPACE_ACTIVITIES, "v1"));
+
+    // the dropped counter is not indexed anymore
+    counters.updated("a1", 2000, "s1", NONE, null);
+    assertEquals(Integer.valueOf(1), counters.get("mary", ActivityFilterType.SPACE_ACTIVITIES, "v1"));
+
+    //
+    ActivityUpdateCounters expiring = new ActivityUpdateCounters(2, -1, 10);
+    expiring.put("mary", ActivityFilterType.SPACE_ACTIVITIES, "v1", 1000, NONE, Arrays.asList("s1"), null, NONE, 0);
+    assertNull(expiring.get("mary", ActivityFilterType.SPACE_ACTIVITIES, "v1"));
+  }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class PlatformUsersIndexTestCase extends TestCase {
+
+  public void testMembership() throws Exception {
+    PlatformUsersIndex index = new PlatformUsersIndex(Arrays.asList("root", "john", "mary"));
+    assertEquals(3, index.size());
+    assertTrue(index.contains("john"));
+    assertFalse(index.contains("demo"));
+    assertFalse(index.contains(null));
+
+    //
+    index.add("demo");
+    assertTrue(index.contains("demo"));
+    index.remove("john");
+    assertFalse(index.contains("john"));
+    assertEquals(3, index.size());
+  }
+
+  public void testEstimatedMemory() throws Exception {
+    PlatformUsersIndex index = new PlatformUsersIndex(Arrays.<String>asList());
+    assertEquals(0, index.getEstimatedMemory());
+
+    //
+    index.add("john");
+    long one = index.getEstimatedMemory();
+    assertTrue(one > 0);
+    index.add("mary");
+    assertEquals(2 * one, index.getEstimatedMemory());
+  }
+
+}
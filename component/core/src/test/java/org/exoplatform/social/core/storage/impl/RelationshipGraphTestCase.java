@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class RelationshipGraphTestCase extends TestCase {
+
+  private Map<String, Set<String>> relationships;
+  private List<String> loaded;
+  private RelationshipGraph.Loader loader;
+  private RelationshipGraph graph;
+
+  @Override
+  protected void setUp() throws Exception {
+    relationships = new HashMap<String, Set<String>>();
+    loaded = new ArrayList<String>();
+    loader = new RelationshipGraph.Loader() {
+      public Collection<String> load(String identityId) {
+        loaded.add(identityId);
+        Set<String> ids = relationships.get(identityId);
+        return ids == null ? new HashSet<String>() : ids;
+      }
+    };
+    graph = new RelationshipGraph();
+  }
+
+  private void connect(String id1, String id2) {
+    put(id1, id2);
+    put(id2, id1);
+  }
+
+  private void put(String id1, String id2) {
+    Set<String> ids = relationships.get(id1);
+    if (ids == null) {
+      ids = new HashSet<String>();
+      relationships.put(id1, ids);
+    }
+    ids.add(id2);
+  }
+
+  public void testSuggestions() throws Exception {
+    connect("ghost", "mary");
+    connect("ghost", "john");
+    connect("demo", "mary");
+    connect("demo", "john");
+    connect("paul", "mary");
+    connect("root", "paul");
+
+    //
+    Map<String, Integer> suggestions = graph.getSuggestions("ghost", 0, 10, loader);
+    assertEquals(2, suggestions.size());
+    String[] ids = suggestions.keySet().toArray(new String[0]);
+    assertEquals("demo", ids[0]);
+    assertEquals(2, suggestions.get("demo").intValue());
+    assertEquals("paul", ids[1]);
+    assertEquals(1, suggestions.get("paul").intValue());
+
+    // root is 3 hops away and is never loaded
+    assertFalse(loaded.contains("root"));
+    assertFalse(loaded.contains("paul"));
+  }
+
+  public void testOffsetLimit() throws Exception {
+    connect("ghost", "mary");
+    connect("ghost", "john");
+    connect("demo", "mary");
+    connect("demo", "john");
+    connect("paul", "mary");
+
+    //
+    Map<String, Integer> suggestions = graph.getSuggestions("ghost", 1, 10, loader);
+    assertEquals(1, suggestions.size());
+    assertEquals(1, suggestions.get("paul").intValue());
+
+    //
+    suggestions = graph.getSuggestions("ghost", 0, 1, loader);
+    assertEquals(1, suggestions.size());
+    assertEquals(2, suggestions.get("demo").intValue());
+
+    //
+    assertTrue(graph.getSuggestions("ghost", 0, 0, loader).isEmpty());
+    assertTrue(graph.getSuggestions("ghost", 5, 10, loader).isEmpty());
+  }
+
+  public void testIncrementalUpdates() throws Exception {
+    connect("ghost", "mary");
+    connect("demo", "mary");
+    assertEquals(1, graph.getSuggestions("ghost", 0, 10, loader).size());
+    int loads = loaded.size();
+
+    // a new relationship of a loaded identity is applied without reloading it
+    graph.addEdge("paul", "mary");
+    Map<String, Integer> suggestions = graph.getSuggestions("ghost", 0, 10, loader);
+    assertEquals(2, suggestions.size());
+    assertTrue(suggestions.containsKey("paul"));
+    assertEquals(loads, loaded.size());
+
+    // a direct relationship is no longer suggested
+    graph.addEdge("ghost", "demo");
+    suggestions = graph.getSuggestions("ghost", 0, 10, loader);
+    assertFalse(suggestions.containsKey("demo"));
+
+    //
+    graph.removeEdge("ghost", "mary");
+    suggestions = graph.getSuggestions("ghost", 0, 10, loader);
+    assertEquals(1, suggestions.size());
+    assertEquals(1, suggestions.get("mary").intValue());
+  }
+
+  public void testClear() throws Exception {
+    connect("ghost", "mary");
+    connect("demo", "mary");
+    graph.getSuggestions("ghost", 0, 10, loader);
+    assertEquals(2, graph.getLoadedSize());
+
+    //
+    graph.clear();
+    assertEquals(0, graph.getLoadedSize());
+    connect("paul", "mary");
+    assertEquals(2, graph.getSuggestions("ghost", 0, 10, loader).size());
+  }
+
+  public void testExpiry() throws Exception {
+    final long[] now = new long[] {0};
+    graph = new RelationshipGraph(Integer.MAX_VALUE, 1000) {
+      @Override
+      long now() {
+        return now[0];
+      }
+    };
+    connect("ghost", "mary");
+    connect("demo", "mary");
+    assertEquals(1, graph.getSuggestions("ghost", 0, 10, loader).size());
+
+    // a relationship created on another node is seen once the loaded neighbours expire
+    connect("paul", "mary");
+    now[0] = 500;
+    assertEquals(1, graph.getSuggestions("ghost", 0, 10, loader).size());
+    now[0] = 1500;
+    loaded.clear();
+    assertEquals(2, graph.getSuggestions("ghost", 0, 10, loader).size());
+    assertTrue(loaded.contains("mary"));
+  }
+
+  public void testMaxSize() throws Exception {
+    graph = new RelationshipGraph(3, 0);
+    connect("ghost", "mary");
+    connect("demo", "mary");
+    connect("paul", "mary");
+    assertEquals(2, graph.getSuggestions("ghost", 0, 10, loader).size());
+    assertEquals(4, graph.getSize());
+
+    // full, the graph starts over with the identities of the next computation only
+    loaded.clear();
+    assertEquals(2, graph.getSuggestions("demo", 0, 10, loader).size());
+    assertEquals(4, graph.getSize());
+    assertTrue(loaded.contains("demo"));
+    assertTrue(loaded.contains("mary"));
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.core.storage.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.exoplatform.services.cache.concurrent.ConcurrentFIFOExoCache;
+import org.exoplatform.social.core.space.model.SpaceMembership;
+
+public class SpaceMembershipIndexTestCase extends TestCase {
+
+  private static final SpaceMembership SPACE_A = new SpaceMembership("a", "ia", "space_a", SpaceMembership.MEMBER);
+
+  private static final SpaceMembership SPACE_B = new SpaceMembership("b", "ib", "space_b", SpaceMembership.MEMBER);
+
+  public void testLoadAndRemove() throws Exception {
+    SpaceMembershipIndex index = newIndex(10);
+    assertNull(index.get("demo"));
+
+    //
+    assertTrue(index.put("demo", Arrays.asList(SPACE_A, SPACE_B.withRoles(SpaceMembership.MANAGER)),
+                         index.getGeneration()));
+    index.put("john", Arrays.asList(SPACE_A), index.getGeneration());
+    List<SpaceMembership> memberships = index.get("demo");
+    assertEquals(2, memberships.size());
+    assertTrue(memberships.get(0).isMember());
+    assertTrue(memberships.get(1).isManager());
+    assertEquals("ib", memberships.get(1).getSpaceIdentityId());
+
+    // the changed users are loaded again
+    index.remove("demo");
+    assertNull(index.get("demo"));
+    assertNotNull(index.get("john"));
+    assertEquals(2, index.getMissCount());
+    assertEquals(2, index.getHitCount());
+  }
+
+  public void testStaleLoad() throws Exception {
+    SpaceMembershipIndex index = newIndex(10);
+    long generation = index.getGeneration();
+    index.remove("demo");
+    assertFalse(index.put("demo", Arrays.asList(SPACE_A), generation));
+    assertNull(index.get("demo"));
+  }
+
+  public void testBounded() throws Exception {
+    SpaceMembershipIndex index = newIndex(2);
+    for (int i = 0; i < 5; ++i) {
+      index.put("user" + i, Arrays.asList(SPACE_A), index.getGeneration());
+    }
+    assertEquals(2, index.size());
+    assertNotNull(index.get("user4"));
+    assertNull(index.get("user0"));
+  }
+
+  private SpaceMembershipIndex newIndex(int maxSize) {
+    return new SpaceMembershipIndex(new ConcurrentFIFOExoCache<String, ArrayList<SpaceMembership>>(maxSize));
+  }
+
+}
@@ -16,7 +16,10 @@
  */
 package org.exoplatform.social.core.test;
 
+import org.exoplatform.social.core.activity.ActivityCursorTest;
+import org.exoplatform.social.core.activity.ActivityPushServiceImplTest;
 import org.exoplatform.social.core.activity.filter.ActivityIteratorTest;
+import org.exoplatform.social.core.chromattic.utils.ActivityCounterBufferTest;
 import org.exoplatform.social.core.feature.ActiviyBuilderWhereTest;
 import org.exoplatform.social.core.identity.IdentityResultTest;
 import org.exoplatform.social.core.identity.model.GlobalIdTest;
@@ -27,6 +30,15 @@ import org.exoplatform.social.core.processor.I18NActivityProcessorTest;
 import org.exoplatform.social.core.relationship.RelationshipTest;
 import org.exoplatform.social.core.space.SpaceUtilsTest;
 import org.exoplatform.social.core.storage.StorageUtilsTest;
+import org.exoplatform.social.core.storage.cache.ActivityDataTest;
+import org.exoplatform.social.core.storage.cache.FutureCacheTest;
+import org.exoplatform.social.core.storage.cache.CacheKeyIndexTest;
+import org.exoplatform.social.core.storage.impl.ActivityFeedStorageImplTestCase;
+import org.exoplatform.social.core.storage.impl.ActivityRenderCacheTestCase;
+import org.exoplatform.social.core.storage.impl.ActivityUpdateCountersTestCase;
+import org.exoplatform.social.core.storage.impl.PlatformUsersIndexTestCase;
+import org.exoplatform.social.core.storage.impl.RelationshipGraphTestCase;
+import org.exoplatform.social.core.storage.impl.SpaceMembershipIndexTestCase;
 import org.exoplatform.social.core.storage.query.ExpressionConstructorTestCase;
 import org.exoplatform.social.core.storage.query.WhereExpressionTypesafetyTestCase;
 import org.exoplatform.social.core.storage.query.WhereExpressionValuesTestCase;
@@ -51,7 +63,19 @@ import org.junit.runners.Suite.SuiteClasses;
   WhereExpressionValuesTestCase.class,
   ActiviyBuilderWhereTest.class,
   ActivityIteratorTest.class,
-  IdentityResultTest.class
+  IdentityResultTest.class,
+  ActivityFeedStorageImplTestCase.class,
+  CacheKeyIndexTest.class,
+  RelationshipGraphTestCase.class,
+  ActivityCounterBufferTest.class,
+  PlatformUsersIndexTestCase.class,
+  ActivityRenderCacheTestCase.class,
+  ActivityCursorTest.class,
+  SpaceMembershipIndexTestCase.class,
+  ActivityUpdateCountersTestCase.class,
+  ActivityDataTest.class,
+  FutureCacheTest.class,
+  ActivityPushServiceImplTest.class
   })
 public class NoContainerTestSuite {
   
@@ -19,7 +19,6 @@ package org.exoplatform.social.opensocial.oauth;
 
 import java.util.Date;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentMap;
 
 import net.oauth.OAuthConsumer;
 import net.oauth.OAuthServiceProvider;
@@ -38,7 +37,6 @@ import org.exoplatform.social.opensocial.service.ExoActivityService;
 import org.exoplatform.social.opensocial.service.ExoPeopleService;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.MapMaker;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
@@ -56,6 +54,7 @@ public class ExoOAuthDataStore implements OAuthDataStore {
   private final ExoActivityService activityService;
   private final OAuthServiceProvider SERVICE_PROVIDER;
   private ServiceProviderStore providerStore;
+  private OAuthTokenStore tokenStore;
 
   private static final Log LOG = ExoLogger.getExoLogger(ExoOAuthDataStore.class);
 
@@ -67,13 +66,13 @@ public class ExoOAuthDataStore implements OAuthDataStore {
     this.SERVICE_PROVIDER = new OAuthServiceProvider(baseUrl + "requestToken", baseUrl + "authorize", baseUrl + "accessToken");
   }
 
-  // All valid OAuth tokens
-  private static ConcurrentMap<String,OAuthEntry> oauthEntries = new MapMaker().makeMap();
+  // The OAuth tokens when no token store is configured in the container
+  private static OAuthTokenStore defaultTokenStore;
 
   // Get the OAuthEntry that corresponds to the oauthToken
   public OAuthEntry getEntry(String oauthToken) {
     Preconditions.checkNotNull(oauthToken);
-    return oauthEntries.get(oauthToken);
+    return getTokenStore().get(oauthToken);
   }
 
   public OAuthConsumer getConsumer(String consumerKey) {
@@ -121,7 +120,7 @@ public class ExoOAuthDataStore implements OAuthDataStore {
       entry.setCallbackUrl(signedCallbackUrl);
     }
 
-    oauthEntries.put(entry.getToken(), entry);
+    getTokenStore().put(entry);
     return entry;
   }
 
@@ -138,8 +137,8 @@ public class ExoOAuthDataStore implements OAuthDataStore {
     accessEntry.setType(OAuthEntry.Type.ACCESS);
     accessEntry.setIssueTime(new Date());
 
-    oauthEntries.remove(entry.getToken());
-    oauthEntries.put(accessEntry.getToken(), accessEntry);
+    getTokenStore().remove(entry.getToken());
+    getTokenStore().put(accessEntry);
 
     return accessEntry;
   }
@@ -152,6 +151,8 @@ public class ExoOAuthDataStore implements OAuthDataStore {
     if (entry.isCallbackUrlSigned()) {
       entry.setCallbackToken(Crypto.getRandomDigits(CALLBACK_TOKEN_LENGTH));
     }
+
+    getTokenStore().put(entry);
   }
 
   public void disableToken(OAuthEntry entry) {
@@ -161,13 +162,13 @@ public class ExoOAuthDataStore implements OAuthDataStore {
       entry.setType(OAuthEntry.Type.DISABLED);
     }
 
-    oauthEntries.put(entry.getToken(), entry);
+    getTokenStore().put(entry);
   }
 
   public void removeToken(OAuthEntry entry) {
     Preconditions.checkNotNull(entry);
 
-    oauthEntries.remove(entry.getToken());
+    getTokenStore().remove(entry.getToken());
   }
 
   // Return the proper security token for a 2 legged oauth request that has been validated
@@ -193,4 +194,27 @@ public class ExoOAuthDataStore implements OAuthDataStore {
   public void setProviderStore(ServiceProviderStore secretProvider) {
     this.providerStore = secretProvider;
   }
+
+  public OAuthTokenStore getTokenStore() {
+    if (tokenStore == null) {
+      ExoContainer container = PortalContainer.getInstance();
+      tokenStore = (OAuthTokenStore) container.getComponentInstanceOfType(OAuthTokenStore.class);
+      if (tokenStore == null) {
+        tokenStore = getDefaultTokenStore();
+      }
+    }
+    return tokenStore;
+  }
+
+  public void setTokenStore(OAuthTokenStore tokenStore) {
+    this.tokenStore = tokenStore;
+  }
+
+  private static synchronized OAuthTokenStore getDefaultTokenStore() {
+    if (defaultTokenStore == null) {
+      defaultTokenStore = new OAuthTokenStore(null, null);
+      defaultTokenStore.start();
+    }
+    return defaultTokenStore;
+  }
 }
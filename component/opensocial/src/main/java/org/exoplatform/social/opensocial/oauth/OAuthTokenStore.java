@@ -0,0 +1,363 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.opensocial.oauth;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.shindig.social.opensocial.oauth.OAuthEntry;
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.container.xml.ValueParam;
+import org.exoplatform.management.annotations.Managed;
+import org.exoplatform.management.annotations.ManagedDescription;
+import org.exoplatform.management.jmx.annotations.NameTemplate;
+import org.exoplatform.management.jmx.annotations.Property;
+import org.exoplatform.services.cache.CacheService;
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.log.ExoLogger;
+import org.exoplatform.services.log.Log;
+import org.picocontainer.Startable;
+
+/**
+ * Store of the OAuth request and access tokens.
+ *
+ * A token expires a configured time after its issue time, the request and disabled tokens much sooner than the
+ * access tokens. An expired token is never returned and is dropped by a periodic sweep. The number of tokens is
+ * bounded, the least recently used token is evicted first.
+ *
+ * The tokens are kept on the node which issued them, unless the store is shared: they are then kept in the
+ * {@link #CACHE_NAME} cache so that every node of the cluster can validate them, its capacity bounds the number
+ * of tokens. This cache evicts the oldest stored tokens first rather than the least recently used ones. The
+ * request tokens are swept within minutes, so the shared tokens are mostly access tokens, which expire in the
+ * order they were stored: the oldest ones are the closest to their expiry.
+ *
+ * @since 4.1
+ */
+@Managed
+@ManagedDescription("Social OAuth tokens")
+@NameTemplate({
+  @Property(key = "service", value = "social"),
+  @Property(key = "view", value = "oauthtokens")
+})
+public class OAuthTokenStore implements Startable {
+
+  /** Logger */
+  private static final Log LOG = ExoLogger.getLogger(OAuthTokenStore.class);
+
+  public static final String CACHE_NAME = "OAuthTokenCache";
+
+  private static final String REQUEST_TOKEN_TTL_KEY = "request-token-ttl";
+  private static final String ACCESS_TOKEN_TTL_KEY = "access-token-ttl";
+  private static final String MAX_TOKENS_KEY = "max-tokens";
+  private static final String SWEEP_INTERVAL_KEY = "sweep-interval";
+  private static final String SHARED_KEY = "shared";
+
+  /** in seconds */
+  private static final int DEFAULT_REQUEST_TOKEN_TTL = 600;
+
+  /** in seconds, one year as the tokens of Shindig */
+  private static final int DEFAULT_ACCESS_TOKEN_TTL = 31536000;
+
+  private static final int DEFAULT_MAX_TOKENS = 10000;
+
+  /** in seconds */
+  private static final int DEFAULT_SWEEP_INTERVAL = 60;
+
+  private static final boolean DEFAULT_SHARED = false;
+
+  /** in milliseconds */
+  private final long requestTokenTtl;
+
+  /** in milliseconds */
+  private final long accessTokenTtl;
+
+  private final int maxTokens;
+
+  /** in seconds */
+  private final int sweepInterval;
+
+  /** token -> entry, in access order so that the least recently used token is evicted first */
+  private final Map<String, OAuthEntry> entries;
+
+  /** the shared tokens, null when they are kept on this node */
+  private final ExoCache<String, OAuthEntry> cache;
+
+  private ScheduledExecutorService sweeper;
+
+  private final AtomicLong issued = new AtomicLong();
+  private final AtomicLong expired = new AtomicLong();
+  private final AtomicLong evicted = new AtomicLong();
+
+  public OAuthTokenStore(InitParams params, CacheService cacheService) {
+
+    //
+    this.requestTokenTtl = getInt(params, REQUEST_TOKEN_TTL_KEY, DEFAULT_REQUEST_TOKEN_TTL) * 1000L;
+    this.accessTokenTtl = getInt(params, ACCESS_TOKEN_TTL_KEY, DEFAULT_ACCESS_TOKEN_TTL) * 1000L;
+    this.maxTokens = getInt(params, MAX_TOKENS_KEY, DEFAULT_MAX_TOKENS);
+    this.sweepInterval = getInt(params, SWEEP_INTERVAL_KEY, DEFAULT_SWEEP_INTERVAL);
+
+    //
+    if (cacheService != null && getBoolean(params, SHARED_KEY, DEFAULT_SHARED)) {
+      this.cache = cacheService.getCacheInstance(CACHE_NAME);
+    }
+    else {
+      this.cache = null;
+    }
+    this.entries = Collections.synchronizedMap(new LinkedHashMap<String, OAuthEntry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, OAuthEntry> eldest) {
+        if (size() > maxTokens) {
+          if (!isExpired(eldest.getValue(), System.currentTimeMillis())) {
+            evicted.incrementAndGet();
+          }
+          else {
+            expired.incrementAndGet();
+          }
+          return true;
+        }
+        return false;
+      }
+    });
+
+    //
+    LOG.info(String.format("OAuth tokens %s (request token ttl: %ds, access token ttl: %ds, max tokens: %d)",
+                           cache != null ? "shared" : "local", requestTokenTtl / 1000, accessTokenTtl / 1000,
+                           maxTokens));
+
+  }
+
+  public void start() {
+    if (sweepInterval <= 0) {
+      return;
+    }
+    sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "social-oauth-token-sweeper");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    sweeper.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        try {
+          sweep();
+        }
+        catch (Exception e) {
+          LOG.warn("Failed to remove the expired OAuth tokens", e);
+        }
+      }
+    }, sweepInterval, sweepInterval, TimeUnit.SECONDS);
+  }
+
+  public void stop() {
+    if (sweeper != null) {
+      sweeper.shutdownNow();
+      sweeper = null;
+    }
+  }
+
+  /**
+   * Gets the entry of a token.
+   *
+   * @param token the token
+   * @return the entry, or null if the token is unknown or has expired
+   */
+  public OAuthEntry get(String token) {
+    OAuthEntry entry = cache != null ? cache.get(token) : entries.get(token);
+    if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+      if (remove(token) != null) {
+        expired.incrementAndGet();
+      }
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Stores an entry, or stores it again after a change so that the other nodes see it when the store is shared.
+   *
+   * @param entry the entry
+   */
+  public void put(OAuthEntry entry) {
+    OAuthEntry previous = cache != null ? cache.get(entry.getToken()) : entries.get(entry.getToken());
+    if (previous == null) {
+      issued.incrementAndGet();
+    }
+    if (cache != null) {
+      cache.put(entry.getToken(), entry);
+    }
+    else {
+      entries.put(entry.getToken(), entry);
+    }
+  }
+
+  /**
+   * Removes the entry of a token.
+   *
+   * @param token the token
+   * @return the removed entry, or null if there was none
+   */
+  public OAuthEntry remove(String token) {
+    return cache != null ? cache.remove(token) : entries.remove(token);
+  }
+
+  /**
+   * Removes the expired tokens.
+   *
+   * @return the number of removed tokens
+   */
+  public int sweep() {
+    long now = System.currentTimeMillis();
+    int removed = 0;
+    if (cache != null) {
+      for (OAuthEntry entry : cache.getCachedObjects()) {
+        if (isExpired(entry, now) && cache.remove(entry.getToken()) != null) {
+          ++removed;
+        }
+      }
+    }
+    else {
+      synchronized (entries) {
+        for (Iterator<OAuthEntry> it = entries.values().iterator(); it.hasNext();) {
+          if (isExpired(it.next(), now)) {
+            it.remove();
+            ++removed;
+          }
+        }
+      }
+    }
+    expired.addAndGet(removed);
+    if (removed > 0 && LOG.isDebugEnabled()) {
+      LOG.debug("Removed " + removed + " expired OAuth tokens");
+    }
+    return removed;
+  }
+
+  /**
+   * Tells whether a token has expired, from its issue time and its type.
+   *
+   * @param entry the entry of the token
+   * @param now the current time in milliseconds
+   * @return true if the token can no more be used
+   */
+  boolean isExpired(OAuthEntry entry, long now) {
+    if (entry.getIssueTime() == null) {
+      return false;
+    }
+    long ttl = entry.getType() == OAuthEntry.Type.ACCESS ? accessTokenTtl : requestTokenTtl;
+    return entry.getIssueTime().getTime() + ttl < now;
+  }
+
+  @Managed
+  @ManagedDescription("The number of stored tokens")
+  public int getNumberOfTokens() {
+    return cache != null ? cache.getCacheSize() : entries.size();
+  }
+
+  @Managed
+  @ManagedDescription("The number of stored request tokens which have not expired")
+  public int getNumberOfRequestTokens() {
+    return countLiveTokens(OAuthEntry.Type.REQUEST);
+  }
+
+  @Managed
+  @ManagedDescription("The number of stored access tokens which have not expired")
+  public int getNumberOfAccessTokens() {
+    return countLiveTokens(OAuthEntry.Type.ACCESS);
+  }
+
+  @Managed
+  @ManagedDescription("The number of stored disabled tokens which have not expired")
+  public int getNumberOfDisabledTokens() {
+    return countLiveTokens(OAuthEntry.Type.DISABLED);
+  }
+
+  @Managed
+  @ManagedDescription("The number of tokens issued since the start")
+  public long getIssued() {
+    return issued.get();
+  }
+
+  @Managed
+  @ManagedDescription("The number of tokens dropped because they expired")
+  public long getExpired() {
+    return expired.get();
+  }
+
+  @Managed
+  @ManagedDescription("The number of live tokens evicted because the store was full")
+  public long getEvicted() {
+    return evicted.get();
+  }
+
+  @Managed
+  @ManagedDescription("Whether the tokens are shared by the nodes of the cluster")
+  public boolean isShared() {
+    return cache != null;
+  }
+
+  private int countLiveTokens(OAuthEntry.Type type) {
+    long now = System.currentTimeMillis();
+    List<OAuthEntry> all;
+    if (cache != null) {
+      all = new ArrayList<OAuthEntry>(cache.getCachedObjects());
+    }
+    else {
+      synchronized (entries) {
+        all = new ArrayList<OAuthEntry>(entries.values());
+      }
+    }
+    int count = 0;
+    for (OAuthEntry entry : all) {
+      if (entry.getType() == type && !isExpired(entry, now)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  private static boolean getBoolean(InitParams params, String key, boolean defaultValue) {
+    try {
+      ValueParam param = params.getValueParam(key);
+      return Boolean.valueOf(param.getValue());
+    }
+    catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+  private static int getInt(InitParams params, String key, int defaultValue) {
+    try {
+      ValueParam param = params.getValueParam(key);
+      return Integer.valueOf(param.getValue());
+    }
+    catch (Exception e) {
+      return defaultValue;
+    }
+  }
+
+}
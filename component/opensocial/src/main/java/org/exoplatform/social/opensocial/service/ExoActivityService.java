@@ -35,7 +35,6 @@ import org.apache.shindig.social.opensocial.spi.CollectionOptions;
 import org.apache.shindig.social.opensocial.spi.GroupId;
 import org.apache.shindig.social.opensocial.spi.UserId;
 import org.exoplatform.container.PortalContainer;
-import org.exoplatform.social.common.RealtimeListAccess;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.activity.model.ExoSocialActivityImpl;
 import org.exoplatform.social.core.identity.model.Identity;
@@ -43,6 +42,7 @@ import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvide
 import org.exoplatform.social.core.identity.provider.SpaceIdentityProvider;
 import org.exoplatform.social.core.manager.ActivityManager;
 import org.exoplatform.social.core.manager.IdentityManager;
+import org.exoplatform.social.core.storage.api.ActivityStorage;
 
 /**
  * The Class ExoActivityService.
@@ -70,20 +70,31 @@ public class ExoActivityService extends ExoService implements ActivityService {
                                                            Set<String> fields,
                                                            CollectionOptions options,
                                                            SecurityToken token) throws ProtocolException {
-    List<Activity> result = Lists.newArrayList();
-
     PortalContainer pc = getPortalContainer(token);
-    ActivityManager am = (ActivityManager) pc.getComponentInstanceOfType(ActivityManager.class);
+    ActivityStorage activityStorage = (ActivityStorage) pc.getComponentInstanceOfType(ActivityStorage.class);
 
     try {
-      Set<Identity> idSet = getIdSet(userIds, groupId, token);
-      for (Identity id : idSet) {
-        // TODO filter by appID
-        RealtimeListAccess<ExoSocialActivity> activityListAccess = am.getActivitiesWithListAccess(id);
-        result.addAll(convertToOSActivities(activityListAccess.loadAsList(options.getFirst(), options.getMax()), fields));
+      // TODO filter by appID
+      List<Identity> identities = Lists.newArrayList(getIdSet(userIds, groupId, token));
+
+      // the streams are merged by one query ordered by posted time, one more is read to know if a page follows
+      int first = Math.max(options.getFirst(), 0);
+      int max = Math.max(options.getMax(), 0);
+      List<ExoSocialActivity> page = activityStorage.getActivitiesOfIdentities(identities, first, max + 1);
+      int totalResults;
+      if (page.size() > max || (page.isEmpty() && first > 0)) {
+        // the page does not tell where the streams end, they are counted
+        totalResults = activityStorage.getNumberOfActivitiesOfIdentities(identities);
+      }
+      else {
+        totalResults = first + page.size();
+      }
+      if (page.size() > max) {
+        page = page.subList(0, max);
       }
 
-      return ImmediateFuture.newInstance(new RestfulCollection<Activity>(result, 0, result.size()));
+      List<Activity> result = convertToOSActivities(page, fields);
+      return ImmediateFuture.newInstance(new RestfulCollection<Activity>(result, first, totalResults));
     } catch (Exception je) {
       throw new ProtocolException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, je.getMessage(), je);
     }
@@ -262,74 +273,74 @@ public class ExoActivityService extends ExoService implements ActivityService {
 
       for (String field : fields) {
 
-        if (field.equals(Activity.Field.APP_ID.name())) {
+        if (isField(field, Activity.Field.APP_ID)) {
           exoActivity.setAppId(activity.getAppId());
         }
 
-        if (field.equals(Activity.Field.BODY.name())) {
+        if (isField(field, Activity.Field.BODY)) {
           exoActivity.setBody(activity.getBody());
         }
 
-        if (field.equals(Activity.Field.BODY_ID.name())) {
+        if (isField(field, Activity.Field.BODY_ID)) {
           exoActivity.setBodyId(activity.getBodyId());
         }
 
-        if (field.equals(Activity.Field.EXTERNAL_ID.name())) {
+        if (isField(field, Activity.Field.EXTERNAL_ID)) {
           exoActivity.setExternalId(activity.getExternalId());
         }
 
-        if (field.equals(Activity.Field.ID.name())) {
+        if (isField(field, Activity.Field.ID)) {
           exoActivity.setId(activity.getId());
         }
 
-        if (field.equals(Activity.Field.MEDIA_ITEMS.name())) {
+        if (isField(field, Activity.Field.MEDIA_ITEMS)) {
           exoActivity.setMediaItems(activity.getMediaItems());
         }
 
-        if (field.equals(Activity.Field.POSTED_TIME.name())) {
+        if (isField(field, Activity.Field.POSTED_TIME)) {
           exoActivity.setPostedTime(activity.getPostedTime());
         }
 
-        if (field.equals(Activity.Field.LAST_UPDATED.name())) {
+        if (isField(field, Activity.Field.LAST_UPDATED)) {
           exoActivity.setUpdated(activity.getUpdated());
         }
 
-        if (field.equals(Activity.Field.PRIORITY.name())) {
+        if (isField(field, Activity.Field.PRIORITY)) {
           exoActivity.setPriority(activity.getPriority());
         }
 
-        if (field.equals(Activity.Field.STREAM_FAVICON_URL.name())) {
+        if (isField(field, Activity.Field.STREAM_FAVICON_URL)) {
           exoActivity.setStreamFaviconUrl(activity.getStreamFaviconUrl());
         }
 
-        if (field.equals(Activity.Field.STREAM_SOURCE_URL.name())) {
+        if (isField(field, Activity.Field.STREAM_SOURCE_URL)) {
           exoActivity.setStreamSourceUrl(activity.getStreamSourceUrl());
         }
 
-        if (field.equals(Activity.Field.STREAM_TITLE.name())) {
+        if (isField(field, Activity.Field.STREAM_TITLE)) {
           exoActivity.setStreamTitle(activity.getStreamTitle());
         }
 
-        if (field.equals(Activity.Field.STREAM_URL.name())) {
+        if (isField(field, Activity.Field.STREAM_URL)) {
           exoActivity.setStreamUrl(activity.getStreamUrl());
         }
 
-        if (field.equals(Activity.Field.TEMPLATE_PARAMS.name())) {
+        if (isField(field, Activity.Field.TEMPLATE_PARAMS)) {
           exoActivity.setTemplateParams(activity.getTemplateParams());
         }
 
-        if (field.equals(Activity.Field.TITLE.name())) {
+        if (isField(field, Activity.Field.TITLE)) {
           exoActivity.setTitle(activity.getTitle());
         }
 
-        if (field.equals(Activity.Field.TITLE_ID)) {
+        if (isField(field, Activity.Field.TITLE_ID)) {
           exoActivity.setTitleId(activity.getTitleId());
         }
 
-        if (field.equals(Activity.Field.URL)) {
+        if (isField(field, Activity.Field.URL)) {
           exoActivity.setUrl(activity.getUrl());
         }
-        if (field.equals(Activity.Field.USER_ID)) {
+        if (isField(field, Activity.Field.USER_ID)) {
           exoActivity.setUserId(activity.getUserId());
         }
 
@@ -379,74 +390,74 @@ public class ExoActivityService extends ExoService implements ActivityService {
 
       for (String field : fields) {
 
-        if (field.equals(Activity.Field.APP_ID.name())) {
+        if (isField(field, Activity.Field.APP_ID)) {
           activity.setAppId(exoActivity.getAppId());
         }
 
-        if (field.equals(Activity.Field.BODY.name())) {
+        if (isField(field, Activity.Field.BODY)) {
           activity.setBody(exoActivity.getBody());
         }
 
-        if (field.equals(Activity.Field.BODY_ID.name())) {
+        if (isField(field, Activity.Field.BODY_ID)) {
           activity.setBodyId(exoActivity.getBodyId());
         }
 
-        if (field.equals(Activity.Field.EXTERNAL_ID.name())) {
+        if (isField(field, Activity.Field.EXTERNAL_ID)) {
           activity.setExternalId(exoActivity.getExternalId());
         }
 
-        if (field.equals(Activity.Field.ID.name())) {
+        if (isField(field, Activity.Field.ID)) {
           activity.setId(exoActivity.getId());
         }
 
-        if (field.equals(Activity.Field.MEDIA_ITEMS.name())) {
+        if (isField(field, Activity.Field.MEDIA_ITEMS)) {
           activity.setMediaItems(exoActivity.getMediaItems());
         }
 
-        if (field.equals(Activity.Field.POSTED_TIME.name())) {
+        if (isField(field, Activity.Field.POSTED_TIME)) {
           activity.setPostedTime(exoActivity.getPostedTime());
         }
 
-        if (field.equals(Activity.Field.LAST_UPDATED.name())) {
+        if (isField(field, Activity.Field.LAST_UPDATED)) {
           activity.setUpdated(exoActivity.getUpdated());
         }
 
-        if (field.equals(Activity.Field.PRIORITY.name())) {
+        if (isField(field, Activity.Field.PRIORITY)) {
           activity.setPriority(exoActivity.getPriority());
         }
 
-        if (field.equals(Activity.Field.STREAM_FAVICON_URL.name())) {
+        if (isField(field, Activity.Field.STREAM_FAVICON_URL)) {
           activity.setStreamFaviconUrl(exoActivity.getStreamFaviconUrl());
         }
 
-        if (field.equals(Activity.Field.STREAM_SOURCE_URL.name())) {
+        if (isField(field, Activity.Field.STREAM_SOURCE_URL)) {
           activity.setStreamSourceUrl(exoActivity.getStreamSourceUrl());
         }
 
-        if (field.equals(Activity.Field.STREAM_TITLE.name())) {
+        if (isField(field, Activity.Field.STREAM_TITLE)) {
           activity.setStreamTitle(exoActivity.getStreamTitle());
         }
 
-        if (field.equals(Activity.Field.STREAM_URL.name())) {
+        if (isField(field, Activity.Field.STREAM_URL)) {
           activity.setStreamUrl(exoActivity.getStreamUrl());
         }
 
-        if (field.equals(Activity.Field.TEMPLATE_PARAMS.name())) {
+        if (isField(field, Activity.Field.TEMPLATE_PARAMS)) {
           activity.setTemplateParams(exoActivity.getTemplateParams());
         }
 
-        if (field.equals(Activity.Field.TITLE.name())) {
+        if (isField(field, Activity.Field.TITLE)) {
           activity.setTitle(exoActivity.getTitle());
         }
 
-        if (field.equals(Activity.Field.TITLE_ID)) {
+        if (isField(field, Activity.Field.TITLE_ID)) {
           activity.setTitleId(exoActivity.getTitleId());
         }
 
-        if (field.equals(Activity.Field.URL)) {
+        if (isField(field, Activity.Field.URL)) {
           activity.setUrl(exoActivity.getUrl());
         }
-        if (field.equals(Activity.Field.USER_ID)) {
+        if (isField(field, Activity.Field.USER_ID)) {
           activity.setUserId(exoActivity.getUserId());
         }
 
@@ -477,6 +488,17 @@ public class ExoActivityService extends ExoService implements ActivityService {
 
   }
 
+  /**
+   * Tells whether a requested field is the given activity field, by its enum name or by its json name.
+   *
+   * @param field the requested field
+   * @param activityField the activity field
+   * @return true if the field is requested
+   */
+  private boolean isField(String field, Activity.Field activityField) {
+    return field.equals(activityField.name()) || field.equals(activityField.toString());
+  }
+
   /**
    * Convert to os activities.
    *
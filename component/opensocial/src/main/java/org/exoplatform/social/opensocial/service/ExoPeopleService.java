@@ -18,9 +18,11 @@ package org.exoplatform.social.opensocial.service;
 
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -64,10 +66,13 @@ import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.model.Profile;
+import org.exoplatform.social.core.manager.IdentityManager;
+import org.exoplatform.social.core.profile.ProfileFilter;
 import org.exoplatform.social.core.service.LinkProvider;
 import org.exoplatform.social.core.space.SpaceException;
 import org.exoplatform.social.core.space.model.Space;
 import org.exoplatform.social.core.space.spi.SpaceService;
+import org.exoplatform.social.core.storage.api.RelationshipStorage;
 import org.exoplatform.social.opensocial.auth.ExoBlobCrypterSecurityToken;
 import org.exoplatform.social.opensocial.model.ExoPersonImpl;
 import org.exoplatform.social.opensocial.model.SpaceImpl;
@@ -101,56 +106,99 @@ public class ExoPeopleService extends ExoService implements PersonService, AppDa
     this.injector = injector;
   }
 
+  /**
+   * The person fields read from the profile, the profile of an identity is only loaded when one of them is requested.
+   */
+  private static final Set<String> PROFILE_FIELDS = new HashSet<String>(Arrays.asList(
+      Person.Field.DISPLAY_NAME.toString(), Person.Field.EMAILS.toString(), Person.Field.URLS.toString(),
+      Person.Field.IMS.toString(), Person.Field.NAME.toString(), Person.Field.GENDER.toString(),
+      Person.Field.THUMBNAIL_URL.toString()));
+
   /**
    * The Constant NAME_COMPARATOR.
    */
-  private static final Comparator<Person> NAME_COMPARATOR = new Comparator<Person>() {
-    public int compare(Person person, Person person1) {
-      String name = person.getName().getFormatted();
-      String name1 = person1.getName().getFormatted();
-      return name.compareTo(name1);
+  private static final Comparator<Identity> NAME_COMPARATOR = new Comparator<Identity>() {
+    public int compare(Identity identity, Identity identity1) {
+      String name = identity.getProfile().getFullName();
+      String name1 = identity1.getProfile().getFullName();
+      return String.CASE_INSENSITIVE_ORDER.compare(name != null ? name : "", name1 != null ? name1 : "");
     }
   };
 
 
   /**
    * {@inheritDoc}
+   *
+   * The connections of a user are paged and sorted by the relationship storage, so that only the requested page
+   * is converted to persons, with the profile loaded only when a requested field needs it.
    */
   public Future<RestfulCollection<Person>> getPeople(Set<UserId> userIds, GroupId groupId,
                                                      CollectionOptions collectionOptions, Set<String> fields,
                                                      SecurityToken token) throws ProtocolException {
     List<Person> result = Lists.newArrayList();
     try {
-      Set<Identity> idSet = getIdSet(userIds, groupId, token);
-
-      Iterator<Identity> it = idSet.iterator();
-
-      while (it.hasNext()) {
-        Identity id = it.next();
-        if (id != null) {
-          result.add(convertToPerson(id, fields, token));
-        }
-      }
+      PortalContainer container = getPortalContainer(token);
+      IdentityManager identityManager = (IdentityManager) container.getComponentInstanceOfType(IdentityManager.class);
 
       // We can pretend that by default the people are in top friends order
-      if (collectionOptions.getSortBy().equals(Person.Field.NAME.toString())) {
-        Collections.sort(result, NAME_COMPARATOR);
-      }
-
-      if (collectionOptions.getSortOrder().equals(SortOrder.descending)) {
-        Collections.reverse(result);
-      }
+      boolean byName = Person.Field.NAME.toString().equals(collectionOptions.getSortBy());
+      boolean descending = SortOrder.descending.equals(collectionOptions.getSortOrder());
+      int first = Math.max(0, collectionOptions.getFirst());
+      int max = Math.max(0, collectionOptions.getMax());
 
       // TODO: The eXocontainer doesn't  have the concept of HAS_APP so
       // we can't support any filters yet. We should fix this.
 
-      int totalSize = result.size();
-      int fromIndex = collectionOptions.getFirst();
-      int toIndex = fromIndex + collectionOptions.getMax();
-      fromIndex = fromIndex < 0 ? 0 : fromIndex;
-      toIndex = totalSize < toIndex ? totalSize : toIndex;
-      toIndex = toIndex < fromIndex ? fromIndex : toIndex;
-      result = result.subList(fromIndex, toIndex);
+      int totalSize;
+      List<Identity> page;
+      Identity owner = getConnectionsOwner(userIds, groupId, token);
+      if (owner != null) {
+        RelationshipStorage relationshipStorage =
+            (RelationshipStorage) container.getComponentInstanceOfType(RelationshipStorage.class);
+        totalSize = relationshipStorage.getConnectionsCount(owner);
+
+        // A descending page is the mirrored ascending page
+        int from = descending ? Math.max(0, totalSize - first - max) : first;
+        int limit = (descending ? totalSize - first : Math.min(totalSize, first + max)) - from;
+        if (limit <= 0) {
+          page = new ArrayList<Identity>();
+        } else if (byName) {
+          page = relationshipStorage.getConnectionsByFilter(owner, new ProfileFilter(), from, limit);
+        } else {
+          page = relationshipStorage.getConnections(owner, from, limit);
+        }
+        page = new ArrayList<Identity>(page);
+        if (descending) {
+          Collections.reverse(page);
+        }
+      } else {
+        List<Identity> identities = new ArrayList<Identity>();
+        for (Identity identity : getIdSet(userIds, groupId, token)) {
+          if (identity != null) {
+            identities.add(identity);
+          }
+        }
+        if (byName) {
+          for (Identity identity : identities) {
+            identityManager.getProfile(identity);
+          }
+          Collections.sort(identities, NAME_COMPARATOR);
+        }
+        if (descending) {
+          Collections.reverse(identities);
+        }
+        totalSize = identities.size();
+        int toIndex = Math.min(totalSize, first + max);
+        page = identities.subList(Math.min(first, toIndex), toIndex);
+      }
+
+      boolean loadProfile = !Collections.disjoint(fields, PROFILE_FIELDS);
+      for (Identity identity : page) {
+        if (loadProfile) {
+          identityManager.getProfile(identity);
+        }
+        result.add(convertToPerson(identity, fields, token));
+      }
 
       return ImmediateFuture.newInstance(new RestfulCollection<Person>(
               result, collectionOptions.getFirst(), totalSize));
@@ -159,6 +207,29 @@ public class ExoPeopleService extends ExoService implements PersonService, AppDa
     }
   }
 
+  /**
+   * Gets the user whose connections are requested, when the request is only about them.
+   *
+   * @param userIds the requested users
+   * @param groupId the requested group
+   * @param token   the token
+   * @return the identity of the user or null when the people must be resolved by {@link #getIdSet}
+   * @throws Exception
+   */
+  private Identity getConnectionsOwner(Set<UserId> userIds, GroupId groupId, SecurityToken token) throws Exception {
+    if (token instanceof AnonymousSecurityToken || userIds.size() != 1 || groupId == null) {
+      return null;
+    }
+    switch (groupId.getType()) {
+      case all:
+      case friends:
+      case groupId:
+        return getIdentity(userIds.iterator().next().getUserId(token), token);
+      default:
+        return null;
+    }
+  }
+
   /**
    * {@inheritDoc}
    */
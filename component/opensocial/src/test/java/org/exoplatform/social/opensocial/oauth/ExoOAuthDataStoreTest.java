@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.opensocial.oauth;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.shindig.social.opensocial.oauth.OAuthEntry;
+
+public class ExoOAuthDataStoreTest extends TestCase {
+
+  private List<OAuthEntry> puts;
+
+  private ExoOAuthDataStore dataStore;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    puts = new ArrayList<OAuthEntry>();
+    dataStore = new ExoOAuthDataStore(null, null, "http://localhost:8080/social/oauth/");
+    dataStore.setTokenStore(new OAuthTokenStore(null, null) {
+      @Override
+      public void put(OAuthEntry entry) {
+        puts.add(entry);
+        super.put(entry);
+      }
+    });
+  }
+
+  public void testAuthorizeToken() throws Exception {
+    OAuthEntry entry = dataStore.generateRequestToken("consumer", "1.0", null);
+    assertEquals(1, puts.size());
+
+    // stored again, so that a shared store gives the authorized entry to the other nodes
+    dataStore.authorizeToken(entry, "demo");
+    assertEquals(2, puts.size());
+    OAuthEntry authorized = dataStore.getEntry(entry.getToken());
+    assertTrue(authorized.isAuthorized());
+    assertEquals("demo", authorized.getUserId());
+  }
+
+  public void testDisableToken() throws Exception {
+    OAuthEntry entry = dataStore.generateRequestToken("consumer", "1.0", null);
+    dataStore.disableToken(entry);
+    assertEquals(2, puts.size());
+    assertEquals(OAuthEntry.Type.DISABLED, dataStore.getEntry(entry.getToken()).getType());
+  }
+
+  public void testConvertToAccessToken() throws Exception {
+    OAuthEntry entry = dataStore.generateRequestToken("consumer", "1.0", null);
+    dataStore.authorizeToken(entry, "demo");
+    OAuthEntry access = dataStore.convertToAccessToken(entry);
+
+    assertNull(dataStore.getEntry(entry.getToken()));
+    assertEquals(OAuthEntry.Type.ACCESS, dataStore.getEntry(access.getToken()).getType());
+    assertEquals(2, dataStore.getTokenStore().getIssued());
+
+    //
+    dataStore.removeToken(access);
+    assertNull(dataStore.getEntry(access.getToken()));
+  }
+
+}
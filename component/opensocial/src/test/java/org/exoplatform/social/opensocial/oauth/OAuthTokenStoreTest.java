@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.opensocial.oauth;
+
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.apache.shindig.social.opensocial.oauth.OAuthEntry;
+import org.exoplatform.container.xml.InitParams;
+import org.exoplatform.container.xml.ValueParam;
+
+public class OAuthTokenStoreTest extends TestCase {
+
+  private static final long MINUTE = 60 * 1000L;
+
+  private static final long DAY = 24 * 60 * MINUTE;
+
+  public void testExpiryByType() throws Exception {
+    OAuthTokenStore store = new OAuthTokenStore(null, null);
+    store.put(entry("request", OAuthEntry.Type.REQUEST, 11 * MINUTE));
+    store.put(entry("disabled", OAuthEntry.Type.DISABLED, 11 * MINUTE));
+    store.put(entry("access", OAuthEntry.Type.ACCESS, 11 * MINUTE));
+    store.put(entry("old-access", OAuthEntry.Type.ACCESS, 366 * DAY));
+    store.put(entry("new-request", OAuthEntry.Type.REQUEST, 0));
+    assertEquals(5, store.getIssued());
+
+    // the request tokens live 10 minutes, the access tokens one year
+    assertNull(store.get("request"));
+    assertNull(store.get("disabled"));
+    assertNotNull(store.get("access"));
+    assertNull(store.get("old-access"));
+    assertNotNull(store.get("new-request"));
+    assertEquals(3, store.getExpired());
+    assertEquals(2, store.getNumberOfTokens());
+    assertEquals(1, store.getNumberOfAccessTokens());
+    assertEquals(1, store.getNumberOfRequestTokens());
+  }
+
+  public void testConfiguredExpiry() throws Exception {
+    InitParams params = new InitParams();
+    params.addParameter(valueParam("request-token-ttl", "60"));
+    params.addParameter(valueParam("access-token-ttl", "120"));
+    OAuthTokenStore store = new OAuthTokenStore(params, null);
+    long now = System.currentTimeMillis();
+
+    assertFalse(store.isExpired(entry("request", OAuthEntry.Type.REQUEST, MINUTE / 2), now));
+    assertTrue(store.isExpired(entry("request", OAuthEntry.Type.REQUEST, 3 * MINUTE / 2), now));
+    assertFalse(store.isExpired(entry("access", OAuthEntry.Type.ACCESS, 3 * MINUTE / 2), now));
+    assertTrue(store.isExpired(entry("access", OAuthEntry.Type.ACCESS, 3 * MINUTE), now));
+  }
+
+  public void testMaxTokens() throws Exception {
+    InitParams params = new InitParams();
+    params.addParameter(valueParam("max-tokens", "2"));
+    OAuthTokenStore store = new OAuthTokenStore(params, null);
+    store.put(entry("t1", OAuthEntry.Type.ACCESS, 0));
+    store.put(entry("t2", OAuthEntry.Type.ACCESS, 0));
+
+    // the least recently used token is evicted
+    assertNotNull(store.get("t1"));
+    store.put(entry("t3", OAuthEntry.Type.ACCESS, 0));
+    assertEquals(2, store.getNumberOfTokens());
+    assertNotNull(store.get("t1"));
+    assertNull(store.get("t2"));
+    assertNotNull(store.get("t3"));
+    assertEquals(1, store.getEvicted());
+  }
+
+  public void testSweep() throws Exception {
+    OAuthTokenStore store = new OAuthTokenStore(null, null);
+    store.put(entry("request", OAuthEntry.Type.REQUEST, 11 * MINUTE));
+    store.put(entry("access", OAuthEntry.Type.ACCESS, 11 * MINUTE));
+    store.put(entry("no-time", OAuthEntry.Type.REQUEST, -1));
+
+    assertEquals(1, store.sweep());
+    assertEquals(2, store.getNumberOfTokens());
+    assertEquals(1, store.getExpired());
+    assertEquals(0, store.sweep());
+  }
+
+  public void testSweeper() throws Exception {
+    InitParams params = new InitParams();
+    params.addParameter(valueParam("sweep-interval", "1"));
+    OAuthTokenStore store = new OAuthTokenStore(params, null);
+    store.put(entry("request", OAuthEntry.Type.REQUEST, 11 * MINUTE));
+    store.start();
+    try {
+      long deadline = System.currentTimeMillis() + 10000;
+      while (store.getNumberOfTokens() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      assertEquals(0, store.getNumberOfTokens());
+      assertEquals(1, store.getExpired());
+    }
+    finally {
+      store.stop();
+    }
+  }
+
+  public void testPutAgain() throws Exception {
+    OAuthTokenStore store = new OAuthTokenStore(null, null);
+    OAuthEntry entry = entry("request", OAuthEntry.Type.REQUEST, 0);
+    store.put(entry);
+    store.put(entry);
+    assertEquals(1, store.getIssued());
+    assertEquals(1, store.getNumberOfTokens());
+    assertSame(entry, store.remove("request"));
+    assertNull(store.get("request"));
+  }
+
+  static OAuthEntry entry(String token, OAuthEntry.Type type, long age) {
+    OAuthEntry entry = new OAuthEntry();
+    entry.setToken(token);
+    entry.setType(type);
+    if (age >= 0) {
+      entry.setIssueTime(new Date(System.currentTimeMillis() - age));
+    }
+    return entry;
+  }
+
+  private ValueParam valueParam(String name, String value) {
+    ValueParam param = new ValueParam();
+    param.setName(name);
+    param.setValue(value);
+    return param;
+  }
+
+}
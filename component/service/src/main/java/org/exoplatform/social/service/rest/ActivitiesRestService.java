@@ -629,11 +629,15 @@ public class ActivitiesRestService implements ResourceContainer {
       if (commentIds == null) {
         commentList.setComments(new ArrayList<ExoSocialActivity>());
       } else {
+        List<String> ids = new ArrayList<String>(commentIds.length);
         for (String commentId: commentIds) {
           if (commentId.length() > 0) {
-            commentList.addComment(_activityManager.getActivity(commentId));
+            ids.add(commentId);
           }
         }
+        for (ExoSocialActivity comment : _activityManager.getActivities(ids)) {
+          commentList.addComment(comment);
+        }
       }
     } catch (ActivityStorageException e) {
       throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
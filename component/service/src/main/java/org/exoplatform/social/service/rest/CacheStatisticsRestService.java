@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.service.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.security.RolesAllowed;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.exoplatform.services.cache.ExoCache;
+import org.exoplatform.services.rest.resource.ResourceContainer;
+import org.exoplatform.social.core.storage.cache.CacheStatistics;
+import org.exoplatform.social.core.storage.cache.CacheType;
+import org.exoplatform.social.core.storage.cache.SocialStorageCacheService;
+
+/**
+ * Provides the sizes and the statistics of the social storage caches.
+ *
+ * @anchor CacheStatisticsRestService
+ *
+ * @since 4.1
+ */
+@Path("social/caches")
+public class CacheStatisticsRestService implements ResourceContainer {
+
+  private final SocialStorageCacheService cacheService;
+
+  public CacheStatisticsRestService(SocialStorageCacheService cacheService) {
+    this.cacheService = cacheService;
+  }
+
+  /**
+   * Gets the sizes and the statistics of the caches.
+   *
+   * @param uriInfo The requested URI information.
+   * @param format The format of the returned result, for example, JSON or XML.
+   *
+   * @anchor CacheStatisticsRestService.getStatistics
+   *
+   * @return The response contains the statistics of each cache.
+   *
+   * @throws Exception
+   *
+   * @LevelAPI Platform
+   */
+  @GET
+  @Path("statistics.{format}")
+  @RolesAllowed("administrators")
+  public Response getStatistics(@Context UriInfo uriInfo, @PathParam("format") String format) throws Exception {
+    MediaType mediaType = Util.getMediaType(format);
+    CacheList cacheList = new CacheList();
+    for (Map.Entry<CacheType, ExoCache<?, ?>> entry : cacheService.getCaches().entrySet()) {
+      cacheList.addCache(new Cache(entry.getKey().getName(), entry.getValue(), entry.getKey().getStatistics()));
+    }
+    return Util.getResponse(cacheList, uriInfo, mediaType, Response.Status.OK);
+  }
+
+  /**
+   * The size and the statistics of a cache.
+   */
+  static public class Cache {
+
+    private final String name;
+    private final int size;
+    private final int maxSize;
+    private final long hits;
+    private final long misses;
+    private final double hitRatio;
+    private final long evictions;
+    private final long loads;
+    private final long loadFailures;
+    private final double averageLoadTime;
+    private final double maxLoadTime;
+    private final long[] loadTimeHistogram;
+    private final long sharedLoads;
+    private final long missingHits;
+    private final long loadTimeouts;
+    private final long staleHits;
+    private final long refreshes;
+    private final long selections;
+    private final double selectionTime;
+
+    Cache(String name, ExoCache<?, ?> cache, CacheStatistics statistics) {
+      this.name = name;
+      this.size = cache.getCacheSize();
+      this.maxSize = cache.getMaxSize();
+      this.hits = statistics.getHits();
+      this.misses = statistics.getMisses();
+      this.hitRatio = statistics.getHitRatio();
+      this.evictions = statistics.getEvictions();
+      this.loads = statistics.getLoads();
+      this.loadFailures = statistics.getLoadFailures();
+      this.averageLoadTime = statistics.getAverageLoadTime();
+      this.maxLoadTime = statistics.getMaxLoadTime();
+      this.loadTimeHistogram = statistics.getLoadTimeHistogram();
+      this.sharedLoads = statistics.getSharedLoads();
+      this.missingHits = statistics.getMissingHits();
+      this.loadTimeouts = statistics.getLoadTimeouts();
+      this.staleHits = statistics.getStaleHits();
+      this.refreshes = statistics.getRefreshes();
+      this.selections = statistics.getSelections();
+      this.selectionTime = statistics.getSelectionTime();
+    }
+
+    public String getName() { return name; }
+    public int getSize() { return size; }
+    public int getMaxSize() { return maxSize; }
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public double getHitRatio() { return hitRatio; }
+    public long getEvictions() { return evictions; }
+    public long getLoads() { return loads; }
+    public long getLoadFailures() { return loadFailures; }
+    /** @return the mean load time in milliseconds */
+    public double getAverageLoadTime() { return averageLoadTime; }
+    /** @return the longest load time in milliseconds */
+    public double getMaxLoadTime() { return maxLoadTime; }
+    /** @return the number of loads under 1, 10, 100 and 1000 milliseconds, then the slower ones */
+    public long[] getLoadTimeHistogram() { return loadTimeHistogram; }
+    public long getSharedLoads() { return sharedLoads; }
+    public long getMissingHits() { return missingHits; }
+    public long getLoadTimeouts() { return loadTimeouts; }
+    public long getStaleHits() { return staleHits; }
+    public long getRefreshes() { return refreshes; }
+    public long getSelections() { return selections; }
+    /** @return the total time spent by the selectors in milliseconds */
+    public double getSelectionTime() { return selectionTime; }
+
+  }
+
+  /**
+   * The list of caches.
+   * This class is needed as a model for converter of the rest service.
+   */
+  @XmlRootElement
+  static public class CacheList {
+
+    private final List<Cache> caches = new ArrayList<Cache>();
+
+    public void addCache(Cache cache) {
+      caches.add(cache);
+    }
+
+    public List<Cache> getCaches() {
+      return caches;
+    }
+
+  }
+
+}
@@ -16,18 +16,21 @@
  */
 package org.exoplatform.social.service.rest;
 
-import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import org.apache.xerces.xni.Augmentations;
@@ -131,6 +134,7 @@ public class LinkShare extends DefaultFilter {
   private String imageSrc;
   private List<String> images;
   private ExoMedia mediaObject;
+  private boolean failed;
   //Collections of description with key as lang
   private HashMap<String, String> descriptions;
   //holds temporary string values from characters() method
@@ -297,6 +301,16 @@ public class LinkShare extends DefaultFilter {
   public ExoMedia getMediaObject() {
     return mediaObject;
   }
+
+  /**
+   * Tells if the page of the link could not be read, the preview then only holds the link as title.
+   *
+   * @return true if the page could not be read
+   * @since 4.1
+   */
+  public boolean isFailed() {
+    return failed;
+  }
   
   /**
    * Gets information of the provided link by using remover filter,
@@ -327,19 +341,25 @@ public class LinkShare extends DefaultFilter {
     parser.setProperty("http://cyberneko.org/html/properties/default-encoding", "UTF-8");
     parser.setProperty("http://cyberneko.org/html/properties/filters", filter);
     parser.setDocumentHandler(this);
-    XMLInputSource source = new XMLInputSource(null, link, null);
-    source.setEncoding(encoding);
+    InputStream in = null;
     try {
+      in = Util.openURLConnection(link).getInputStream();
+      XMLInputSource source = new XMLInputSource(null, link, null, in, encoding);
       parser.parse(source);
     } catch (NullPointerException ne) {
       ExoLogger.getLogger(LinkShare.class)
         .warn("Problem when parsing the link in LinkShare.getInstance(String) method");
+      this.failed = true;
     } catch (IOException e) {
       // Process as normal behavior in case the link is in the valid form
       // but have been blocked or some other same reasons.
       this.title = link;
+      this.failed = true;
     } catch (Exception e) {
       this.title = link;
+      this.failed = true;
+    } finally {
+      close(in);
     }
   }
   
@@ -366,9 +386,7 @@ public class LinkShare extends DefaultFilter {
     if (!Util.isValidURL(link))
       return null;
     
-    if (!(link.toLowerCase().startsWith(HTTP_PROTOCOL) || link.toLowerCase().startsWith(HTTPS_PROTOCOL))) {
-        link = HTTP_PROTOCOL + link;
-    }
+    link = withProtocol(link);
     
     LinkShare linkShare = new LinkShare();
     linkShare.link = link;
@@ -379,6 +397,10 @@ public class LinkShare extends DefaultFilter {
     // if there is no media object, processes link to get page metadata
     if(linkShare.mediaObject == null) {
       String mimeType = org.exoplatform.social.service.rest.Util.getMimeTypeOfURL(link);
+      if (mimeType.length() == 0) {
+        // the link could not be reached
+        return failed(link);
+      }
       if(mimeType.toLowerCase().startsWith(IMAGE_MIME_TYPE)){
         linkShare.images = new ArrayList<String>(0);
         linkShare.images.add(link);
@@ -402,7 +424,7 @@ public class LinkShare extends DefaultFilter {
       //gets desired description by lang when there are many description meta name with different lang
       HashMap<String, String> descriptions = linkShare.descriptions;
       if (descriptions != null) {
-        String description = descriptions.get(LinkShare.lang);
+        String description = descriptions.get(lang);
         if (description == null) {
          Collection<String> values = descriptions.values();
          //get the first value in the collection
@@ -424,6 +446,75 @@ public class LinkShare extends DefaultFilter {
     return linkShare;
   }
   
+  /**
+   * Adds the http protocol to a link which has none.
+   *
+   * @param link the link
+   * @return the link with a protocol
+   * @since 4.1
+   */
+  static String withProtocol(String link) {
+    if (!(link.toLowerCase().startsWith(HTTP_PROTOCOL) || link.toLowerCase().startsWith(HTTPS_PROTOCOL))) {
+      return HTTP_PROTOCOL + link;
+    }
+    return link;
+  }
+
+  /**
+   * Copies the preview of a link, to be returned for another request of the same link.
+   *
+   * @param link the link as requested
+   * @return the copy
+   * @since 4.1
+   */
+  LinkShare copy(String link) {
+    LinkShare copy = new LinkShare();
+    copy.link = link;
+    copy.title = title;
+    copy.description = description;
+    copy.images = images != null ? new ArrayList<String>(images) : null;
+    copy.mediaObject = mediaObject;
+    copy.mediumType = mediumType;
+    copy.mediaSrc = mediaSrc;
+    copy.mediaType = mediaType;
+    copy.mediaTitle = mediaTitle;
+    copy.mediaArtist = mediaArtist;
+    copy.mediaAlbum = mediaAlbum;
+    copy.mediaHeight = mediaHeight;
+    copy.mediaWidth = mediaWidth;
+    copy.failed = failed;
+    return copy;
+  }
+
+  /**
+   * Gets a preview holding only the link, returned while the page is being fetched.
+   *
+   * @param link the link
+   * @return the preview
+   * @since 4.1
+   */
+  static LinkShare placeholder(String link) {
+    LinkShare linkShare = new LinkShare();
+    linkShare.link = withProtocol(link);
+    linkShare.title = linkShare.link;
+    linkShare.description = "";
+    linkShare.images = new ArrayList<String>();
+    return linkShare;
+  }
+
+  /**
+   * Gets a preview of a link whose page could not be read.
+   *
+   * @param link the link
+   * @return the preview, marked as failed
+   * @since 4.1
+   */
+  static LinkShare failed(String link) {
+    LinkShare linkShare = placeholder(link);
+    linkShare.failed = true;
+    return linkShare;
+  }
+
   /**
    * filter method is called back when scanning meets start element tag
    */
@@ -641,17 +732,49 @@ public class LinkShare extends DefaultFilter {
     }
   }
   
+  /**
+   * Checks the size of an image, only its header is read.
+   */
   private boolean isAcceptableImg(String src) {
-    BufferedImage img = null;
+    InputStream in = null;
+    ImageInputStream imageIn = null;
     try {
-       img = ImageIO.read(new URL(src));
-       int width = img.getWidth();
-       int height = img.getHeight();
-       return (width > MIN_WIDTH && height > MIN_HEIGHT);
+      in = Util.openURLConnection(src).getInputStream();
+      imageIn = ImageIO.createImageInputStream(in);
+      Iterator<ImageReader> readers = imageIn != null ? ImageIO.getImageReaders(imageIn) : null;
+      if (readers == null || !readers.hasNext()) {
+        return false;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(imageIn, true, true);
+        return (reader.getWidth(0) > MIN_WIDTH && reader.getHeight(0) > MIN_HEIGHT);
+      } finally {
+        reader.dispose();
+      }
     } catch (MalformedURLException e) {
       return false;
     } catch (IOException e) {
       return false;
+    } finally {
+      if (imageIn != null) {
+        try {
+          imageIn.close();
+        } catch (IOException e) {
+          LOG.debug("Could not close the image stream of " + src);
+        }
+      }
+      close(in);
+    }
+  }
+
+  private static void close(InputStream in) {
+    if (in != null) {
+      try {
+        in.close();
+      } catch (IOException e) {
+        LOG.debug("Could not close the stream of a link");
+      }
     }
   }
 }
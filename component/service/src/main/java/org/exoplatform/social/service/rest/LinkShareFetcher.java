@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.service.rest;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the previews of links on a bounded pool of threads. A link requested again while it is fetched waits for
+ * the same fetch, and the previews are kept for a while keyed by their normalized url. A failed preview, whose page
+ * could not be read, is not kept. The number of fetches running against a same host is limited, so that one slow
+ * site can not hold all the threads.
+ *
+ * @since 4.1
+ */
+public class LinkShareFetcher {
+
+  /** The number of threads fetching the links. */
+  private static final int THREADS = 4;
+
+  /** The max number of fetches waiting for a thread. */
+  private static final int QUEUE_SIZE = 100;
+
+  /** The max number of fetches running or waiting against a same host. */
+  private static final int MAX_PER_HOST = 2;
+
+  /** The number of previews kept. */
+  private static final int CACHE_SIZE = 1000;
+
+  /** The time in milliseconds a preview is kept. */
+  private static final long CACHE_TTL = 30 * 60 * 1000L;
+
+  private static final LinkShareFetcher INSTANCE = new LinkShareFetcher(THREADS, QUEUE_SIZE, MAX_PER_HOST,
+                                                                        CACHE_SIZE, CACHE_TTL, new Loader() {
+    public LinkShare load(String link, String lang) throws Exception {
+      return LinkShare.getInstance(link, lang);
+    }
+  });
+
+  /**
+   * Loads the preview of a link.
+   */
+  interface Loader {
+    LinkShare load(String link, String lang) throws Exception;
+  }
+
+  private final ThreadPoolExecutor executor;
+
+  private final int maxPerHost;
+
+  private final long ttl;
+
+  private final Loader loader;
+
+  private final Map<String, CachedLinkShare> cache;
+
+  private final ConcurrentMap<String, FutureTask<LinkShare>> running = new ConcurrentHashMap<String, FutureTask<LinkShare>>();
+
+  private final Map<String, Integer> hosts = new HashMap<String, Integer>();
+
+  LinkShareFetcher(int threads, int queueSize, int maxPerHost, final int cacheSize, long ttl, Loader loader) {
+    this.maxPerHost = maxPerHost;
+    this.ttl = ttl;
+    this.loader = loader;
+    this.cache = new LinkedHashMap<String, CachedLinkShare>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedLinkShare> eldest) {
+        return size() > cacheSize;
+      }
+    };
+    this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "LinkShareFetcher-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    this.executor.allowCoreThreadTimeOut(true);
+  }
+
+  public static LinkShareFetcher getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Gets the preview of a link, from the cache or by fetching it.
+   *
+   * @param link the link
+   * @param lang the preferred language of the description
+   * @param timeout the max time in milliseconds to wait for the fetch
+   * @return the preview, or null if the link is not valid
+   * @throws TimeoutException if the fetch is not done in time, it keeps running so that the preview is cached
+   * @throws RejectedExecutionException if too many links, or too many links of the host, are being fetched
+   * @throws Exception if the fetch fails
+   */
+  public LinkShare get(String link, String lang, long timeout) throws Exception {
+    if (link == null || !Util.isValidURL(link)) {
+      return null;
+    }
+    String url = LinkShare.withProtocol(link);
+    String key = normalize(url) + " " + lang;
+
+    //
+    LinkShare cached = getCached(key);
+    if (cached != null) {
+      return cached.copy(url);
+    }
+
+    //
+    FutureTask<LinkShare> task = running.get(key);
+    if (task == null) {
+      FutureTask<LinkShare> created = newTask(key, url, lang);
+      task = running.putIfAbsent(key, created);
+      if (task == null) {
+        task = created;
+        submit(key, url, task);
+      }
+    }
+
+    //
+    LinkShare linkShare;
+    try {
+      linkShare = task.get(timeout, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+    return linkShare != null ? linkShare.copy(url) : null;
+  }
+
+  /**
+   * Gets the normalized form of an url: the scheme and host in lower case, without the default port nor the fragment.
+   *
+   * @param url the url
+   * @return the normalized url
+   */
+  static String normalize(String url) {
+    try {
+      URL u = new URL(url);
+      StringBuilder sb = new StringBuilder();
+      sb.append(u.getProtocol().toLowerCase()).append("://").append(host(u));
+      sb.append(u.getFile().length() == 0 ? "/" : u.getFile());
+      return sb.toString();
+    } catch (MalformedURLException e) {
+      return url;
+    }
+  }
+
+  int size() {
+    synchronized (cache) {
+      return cache.size();
+    }
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private static String host(URL url) {
+    String host = url.getHost().toLowerCase();
+    if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+      host += ":" + url.getPort();
+    }
+    return host;
+  }
+
+  private LinkShare getCached(String key) {
+    synchronized (cache) {
+      CachedLinkShare cached = cache.get(key);
+      if (cached == null) {
+        return null;
+      }
+      if (cached.expires < System.currentTimeMillis()) {
+        cache.remove(key);
+        return null;
+      }
+      return cached.linkShare;
+    }
+  }
+
+  private FutureTask<LinkShare> newTask(final String key, final String url, final String lang) {
+    return new FutureTask<LinkShare>(new Callable<LinkShare>() {
+      public LinkShare call() throws Exception {
+        try {
+          LinkShare linkShare = loader.load(url, lang);
+          // a failed preview is not kept, the link is fetched again on the next request
+          if (linkShare != null && !linkShare.isFailed()) {
+            synchronized (cache) {
+              cache.put(key, new CachedLinkShare(linkShare, System.currentTimeMillis() + ttl));
+            }
+          }
+          return linkShare;
+        } finally {
+          release(url);
+          running.remove(key);
+        }
+      }
+    });
+  }
+
+  private void submit(String key, String url, FutureTask<LinkShare> task) {
+    if (!acquire(url)) {
+      running.remove(key, task);
+      throw new RejectedExecutionException("Too many links being fetched from " + url);
+    }
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      release(url);
+      running.remove(key, task);
+      throw e;
+    }
+  }
+
+  private boolean acquire(String url) {
+    String host = hostOf(url);
+    synchronized (hosts) {
+      Integer count = hosts.get(host);
+      int value = count != null ? count : 0;
+      if (value >= maxPerHost) {
+        return false;
+      }
+      hosts.put(host, value + 1);
+      return true;
+    }
+  }
+
+  private void release(String url) {
+    String host = hostOf(url);
+    synchronized (hosts) {
+      Integer count = hosts.get(host);
+      if (count == null || count <= 1) {
+        hosts.remove(host);
+      }
+      else {
+        hosts.put(host, count - 1);
+      }
+    }
+  }
+
+  private static String hostOf(String url) {
+    try {
+      return host(new URL(url));
+    } catch (MalformedURLException e) {
+      return url;
+    }
+  }
+
+  private static class CachedLinkShare {
+
+    private final LinkShare linkShare;
+
+    private final long expires;
+
+    private CachedLinkShare(LinkShare linkShare, long expires) {
+      this.linkShare = linkShare;
+      this.expires = expires;
+    }
+
+  }
+
+}
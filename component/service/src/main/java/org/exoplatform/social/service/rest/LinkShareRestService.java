@@ -16,6 +16,9 @@
  */
 package org.exoplatform.social.service.rest;
 
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -35,6 +38,10 @@ import org.exoplatform.services.rest.resource.ResourceContainer;
  */
 @Path("social/linkshare")
 public class LinkShareRestService implements ResourceContainer {
+
+  /** The max time in milliseconds a request waits for the preview of a link. */
+  private static final long FETCH_TIMEOUT = 3000;
+
   /**
    * constructor
    */
@@ -51,7 +58,9 @@ public class LinkShareRestService implements ResourceContainer {
    * 
    * @anchor LinkShareRestService.getLink
    * 
-   * @return The response contains a returned result.
+   * @return The response contains a returned result. When the link takes too long to be fetched, the status is
+   * 202 and the result only holds the link, the preview is available once fetched by sending the request again.
+   * When the page of the link can not be read, the result only holds the link and is marked as failed.
    * 
    * @throws Exception
    * 
@@ -67,25 +76,21 @@ public class LinkShareRestService implements ResourceContainer {
     if (linkShareRequest == null || !linkShareRequest.verify()) {
       throw new WebApplicationException(Response.Status.BAD_REQUEST);
     }
-    LinkShare linkShare = null;
-    linkShare = getLinkShare(linkShareRequest.getLink(), linkShareRequest.getLang());
-    return Util.getResponse(linkShare, uriInfo, mediaType, Response.Status.OK);
-  }
-  
-  private LinkShare getLinkShare(String link, String lang) throws Exception {
+    String link = linkShareRequest.getLink();
     if (link == null || link.length() == 0) {
       throw new WebApplicationException(Response.Status.BAD_REQUEST);
     }
-    LinkShare ls;
+    String lang = linkShareRequest.getLang() != null ? linkShareRequest.getLang() : "en";
+    LinkShare linkShare;
     try {
-      if (lang != null) {
-        ls = LinkShare.getInstance(link, lang);
-      } else {
-        ls = LinkShare.getInstance(link);
-      }
-    } catch(Exception ex) {
-      throw new WebApplicationException(ex, Response.Status.INTERNAL_SERVER_ERROR);
+      linkShare = LinkShareFetcher.getInstance().get(link, lang, FETCH_TIMEOUT);
+    } catch (TimeoutException e) {
+      return Util.getResponse(LinkShare.placeholder(link), uriInfo, mediaType, Response.Status.ACCEPTED);
+    } catch (RejectedExecutionException e) {
+      throw new WebApplicationException(e, Response.Status.SERVICE_UNAVAILABLE);
+    } catch (Exception e) {
+      throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
     }
-    return ls;
+    return Util.getResponse(linkShare, uriInfo, mediaType, Response.Status.OK);
   }
 }
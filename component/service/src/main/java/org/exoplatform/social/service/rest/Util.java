@@ -58,6 +58,12 @@ import org.exoplatform.social.service.rest.api.models.ProfileRestOut;
  * @since  Jan 5, 2009
  */
 public final class Util {
+
+  /** The max time in milliseconds to connect to an url. */
+  private static final int URL_CONNECT_TIMEOUT = 5000;
+
+  /** The max time in milliseconds to wait for data from an url. */
+  private static final int URL_READ_TIMEOUT = 10000;
   
   private static final Pattern URL_PATTERN = Pattern
       .compile("^(?i)" +
@@ -549,8 +555,7 @@ public final class Util {
     URLConnection urlConnection = null;
     try {
       String mimeType = null;
-      URL url = new URL(urlString); 
-      urlConnection = url.openConnection();
+      urlConnection = openURLConnection(urlString);
       mimeType = urlConnection.getContentType();
       if(mimeType != null){
         return mimeType;
@@ -572,4 +577,20 @@ public final class Util {
       urlConnection = null;
     }
   }
+
+  /**
+   * Opens a connection to an url which gives up when the remote server is too slow to connect or answer.
+   *
+   * @param urlString the url
+   * @return the connection, not connected yet
+   * @throws IOException if the url is not valid
+   * @since 4.1
+   */
+  public static URLConnection openURLConnection(String urlString) throws IOException {
+    URLConnection urlConnection = new URL(urlString).openConnection();
+    urlConnection.setConnectTimeout(URL_CONNECT_TIMEOUT);
+    urlConnection.setReadTimeout(URL_READ_TIMEOUT);
+    return urlConnection;
+  }
+
 }
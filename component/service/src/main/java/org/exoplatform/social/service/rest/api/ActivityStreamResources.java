@@ -21,13 +21,22 @@ import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.services.rest.resource.ResourceContainer;
 import org.exoplatform.social.common.RealtimeListAccess;
+import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess;
+import org.exoplatform.social.core.activity.ActivityCursor;
+import org.exoplatform.social.core.activity.ActivityNotification;
+import org.exoplatform.social.core.activity.ActivityPushRejectedException;
+import org.exoplatform.social.core.activity.ActivityPushService;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.manager.ActivityManager;
+import org.exoplatform.social.core.space.model.SpaceMembership;
 import org.exoplatform.social.core.storage.ActivityStorageException;
+import org.exoplatform.social.core.storage.api.RelationshipStorage;
+import org.exoplatform.social.core.storage.api.SpaceStorage;
 import org.exoplatform.social.service.rest.RestChecker;
 import org.exoplatform.social.service.rest.SecurityManager;
 import org.exoplatform.social.service.rest.Util;
+import org.exoplatform.social.service.rest.api.models.ActivityNotificationListOut;
 import org.exoplatform.social.service.rest.api.models.ActivityRestListOut;
 
 import javax.ws.rs.*;
@@ -36,6 +45,8 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.exoplatform.social.service.rest.RestChecker.*;
@@ -73,6 +84,8 @@ public class ActivityStreamResources implements ResourceContainer {
    * @param maxId               Returns the activities having the created timestamps less than the specified *max\_id*'s
    *                            created timestamp. Note that *since\_id* and *max\_id* must not be defined in one
    *                            request, if they are, the *since\_id* query param is chosen.
+   * @param cursor              The opaque *next\_cursor* returned with the previous page, to get the next older page.
+   *                            Used when neither *since\_id* nor *max\_id* is defined. Each page costs the same as the first.
    * @param numberOfComments    Specifies the number of latest comments to be displayed along with each activity.
    *                            By default, *number\_of\_comments=0*. If *number\_of\_comments* is a positive number,
    *                            this number is considered as a limit number that must be equal or less than 100. If the
@@ -210,6 +223,7 @@ public class ActivityStreamResources implements ResourceContainer {
                                                 @QueryParam("limit") int limit,
                                                 @QueryParam("since_id") String sinceId,
                                                 @QueryParam("max_id") String maxId,
+                                                @QueryParam("cursor") String cursor,
                                                 @QueryParam("number_of_comments") int numberOfComments,
                                                 @QueryParam("number_of_likes") int numberOfLikes) {
     checkAuthenticatedRequest();
@@ -256,6 +270,7 @@ public class ActivityStreamResources implements ResourceContainer {
         throw new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR);
     }
 
+    ActivityCursor activityCursor = decodeCursor(cursor);
     RealtimeListAccess<ExoSocialActivity> rala = activityManager.getActivitiesWithListAccess(targetIdentity);
     List<ExoSocialActivity> activityList;
     if (getOlder) {
@@ -263,11 +278,14 @@ public class ActivityStreamResources implements ResourceContainer {
     } else if (sinceId != null) {
       activityList = rala.loadNewer(baseActivity, maxLimit);
     } else {
-      activityList = rala.loadAsList(0, maxLimit);
+      activityList = loadAfter(rala, activityCursor, maxLimit);
     }
 
     ActivityRestListOut arlo = new ActivityRestListOut(activityList, numberOfComments,
                                                        numberOfLikes, portalContainerName);
+    if (!getOlder && sinceId == null) {
+      setNextCursor(arlo, rala, activityCursor, activityList);
+    }
 
     return Util.getResponse(arlo, uriInfo, mediaType, Response.Status.OK);
   }
@@ -287,6 +305,8 @@ public class ActivityStreamResources implements ResourceContainer {
    * @param maxId               Returns the activities having the created timestamp less than the specified *max\_id*'s created
    *                            timestamp. Note that *since\_id* and *max\_id* must not be defined in one request,
    *                            if they are defined, the *since\_id* query param is chosen.
+   * @param cursor              The opaque *next\_cursor* returned with the previous page, to get the next older page.
+   *                            Used when neither *since\_id* nor *max\_id* is defined. Each page costs the same as the first.
    * @param numberOfComments    Specifies the latest number of comments to be displayed along with each activity.
    *                            By default, *number\_of\_comments=0*. If *number\_of\_comments* is a positive number, this number is
    *                            considered as a limit number that must be equal or less than 100. If the actual number of
@@ -423,6 +443,7 @@ public class ActivityStreamResources implements ResourceContainer {
                                                  @QueryParam("limit") int limit,
                                                  @QueryParam("since_id") String sinceId,
                                                  @QueryParam("max_id") String maxId,
+                                                 @QueryParam("cursor") String cursor,
                                                  @QueryParam("number_of_comments") int numberOfComments,
                                                  @QueryParam("number_of_likes") int numberOfLikes) {
     checkAuthenticatedRequest();
@@ -458,6 +479,7 @@ public class ActivityStreamResources implements ResourceContainer {
       }
     }
 
+    ActivityCursor activityCursor = decodeCursor(cursor);
     RealtimeListAccess<ExoSocialActivity> listAccess = null;
     List<ExoSocialActivity> activities = null;
 
@@ -468,13 +490,16 @@ public class ActivityStreamResources implements ResourceContainer {
       } else if (olderActivity != null) {
         activities = listAccess.loadOlder(olderActivity, maxLimit);
       } else {
-        activities = listAccess.loadAsList(0, maxLimit);
+        activities = loadAfter(listAccess, activityCursor, maxLimit);
       }
     } catch (Exception e) {
       throw new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR);
     }
     ActivityRestListOut activityRestListOut = new ActivityRestListOut(activities, numberOfComments,
                                                        numberOfLikes, portalContainerName);
+    if (newerActivity == null && olderActivity == null) {
+      setNextCursor(activityRestListOut, listAccess, activityCursor, activities);
+    }
     return Util.getResponse(activityRestListOut, uriInfo, mediaType, Response.Status.OK);
   }
 
@@ -493,6 +518,8 @@ public class ActivityStreamResources implements ResourceContainer {
    * @param maxId               Returns the activities having the created timestamp less than the specified *max\_id*'s created
    *                            timestamp. Note that *since\_id* and *max\_id* must not be defined in one request,
    *                            if they are defined, the *since\_id* query param is chosen.
+   * @param cursor              The opaque *next\_cursor* returned with the previous page, to get the next older page.
+   *                            Used when neither *since\_id* nor *max\_id* is defined. Each page costs the same as the first.
    * @param numberOfComments    Specifies the latest number of comments to be displayed along with each activity.
    *                            By default, *number\_of\_comments=0*. If *number\_of\_comments* is a positive number, this number is
    *                            considered as a limit number that must be equal or less than 100. If the actual number of
@@ -629,6 +656,7 @@ public class ActivityStreamResources implements ResourceContainer {
                                                    @QueryParam("limit") int limit,
                                                    @QueryParam("since_id") String sinceId,
                                                    @QueryParam("max_id") String maxId,
+                                                   @QueryParam("cursor") String cursor,
                                                    @QueryParam("number_of_comments") int numberOfComments,
                                                    @QueryParam("number_of_likes") int numberOfLikes) {
     checkAuthenticatedRequest();
@@ -666,6 +694,7 @@ public class ActivityStreamResources implements ResourceContainer {
       }
     }
 
+    ActivityCursor activityCursor = decodeCursor(cursor);
     RealtimeListAccess<ExoSocialActivity> rala = activityManager.getActivitiesOfUserSpacesWithListAccess(targetIdentity);
     List<ExoSocialActivity> activityList;
     if (getOlder) {
@@ -673,10 +702,13 @@ public class ActivityStreamResources implements ResourceContainer {
     } else if (sinceId != null) {
       activityList = rala.loadNewer(baseActivity, maxLimit);
     } else {
-      activityList = rala.loadAsList(0, maxLimit);
+      activityList = loadAfter(rala, activityCursor, maxLimit);
     }
 
    ActivityRestListOut arlo = new ActivityRestListOut(activityList, numberOfComments, numberOfLikes, portalContainerName);
+   if (!getOlder && sinceId == null) {
+     setNextCursor(arlo, rala, activityCursor, activityList);
+   }
 
    return Util.getResponse(arlo, uriInfo, mediaType, Response.Status.OK);
   }
@@ -696,6 +728,8 @@ public class ActivityStreamResources implements ResourceContainer {
    * @param maxId               Returns the activities having the created timestamp less than the specified *max\_id*'s created
    *                            timestamp. Note that *since\_id* and *max\_id* must not be defined in one request,
    *                            if they are defined, the *since\_id* query param is chosen.
+   * @param cursor              The opaque *next\_cursor* returned with the previous page, to get the next older page.
+   *                            Used when neither *since\_id* nor *max\_id* is defined. Each page costs the same as the first.
    * @param numberOfComments    Specifies the latest number of comments to be displayed along with each activity.
    *                            By default, *number\_of\_comments=0*. If *number\_of\_comments* is a positive number, this number is
    *                            considered as a limit number that must be equal or less than 100. If the actual number of
@@ -832,6 +866,7 @@ public class ActivityStreamResources implements ResourceContainer {
                                                         @QueryParam("limit") int limit,
                                                         @QueryParam("since_id") String sinceId,
                                                         @QueryParam("max_id") String maxId,
+                                                        @QueryParam("cursor") String cursor,
                                                         @QueryParam("number_of_comments") int numberOfComments,
                                                         @QueryParam("number_of_likes") int numberOfLikes) {
 
@@ -870,6 +905,7 @@ public class ActivityStreamResources implements ResourceContainer {
       }
     }
 
+    ActivityCursor activityCursor = decodeCursor(cursor);
     RealtimeListAccess<ExoSocialActivity> realtimeListAccess = null;
 
     realtimeListAccess = activityManager.getActivitiesOfConnectionsWithListAccess(targetIdentity);
@@ -882,11 +918,14 @@ public class ActivityStreamResources implements ResourceContainer {
     } else if (sinceId != null) {
       activityList = realtimeListAccess.loadNewer(baseActivity, maxLimit);
     } else {
-      activityList = realtimeListAccess.loadAsList(0, maxLimit);
+      activityList = loadAfter(realtimeListAccess, activityCursor, maxLimit);
     }
 
     ActivityRestListOut activityRestListOut = new ActivityRestListOut(activityList, numberOfComments,
             numberOfLikes, portalContainerName);
+    if (!getOlder && sinceId == null) {
+      setNextCursor(activityRestListOut, realtimeListAccess, activityCursor, activityList);
+    }
 
     return Util.getResponse(activityRestListOut, uriInfo, mediaType, Response.Status.OK);
   }
@@ -1644,4 +1683,154 @@ public class ActivityStreamResources implements ResourceContainer {
 
     return Util.getResponse(activityRestListOut, uriInfo, mediaType, Response.Status.OK);
   }
+
+  /**
+   * Waits for the changes of the activity feed of the authenticated user, instead of polling the number of its
+   * newer activities. The request returns as soon as an activity of the feed is posted, updated or removed, or
+   * after the wait time with no notification. The first request, without *since*, returns at once with the cursor
+   * to give to the next one. When *reset* is true some notifications were lost, the client reloads its stream
+   * and goes on with the returned cursor. When too many requests are waiting, the server answers 503 with a
+   * Retry-After header giving the delay in seconds before the next request. The cursor is only valid on the node
+   * serving the request, the activities written on the other nodes of a cluster are relayed to it.
+   *
+   * @param uriInfo             The URI information.
+   * @param portalContainerName The portal container name.
+   * @param format              The format of the returned result, for example, JSON.
+   * @param since               The *cursor* returned by the previous request.
+   * @param wait                The max time in seconds to wait for a notification, bounded by the server.
+   * @authentication
+   * @request
+   * GET: http://localhost:8080/rest/private/api/social/v1-alpha3/portal/activity_stream/notifications.json?since=1234&wait=25
+   * @response
+   * {
+   *   "notifications":[
+   *     {
+   *       "activityId":"1a2b3c4d5e6f7g8h9j",
+   *       "type":"CREATED",
+   *       "streamOwnerId":"123456313efghi",
+   *       "posterIdentityId":"123456313efghi",
+   *       "time":1393415225000
+   *     }
+   *   ],
+   *   "cursor":"1235",
+   *   "reset":false
+   * }
+   * @return The notifications and the next cursor.
+   * @throws Exception
+   *
+   * @LevelAPI Experimental
+   *
+   * @anchor ActivityStreamResources.getNotificationsOfAuthenticated
+   *
+   * @since 4.1
+   */
+  @GET
+  @Path("notifications.{format}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getNotificationsOfAuthenticated(@Context UriInfo uriInfo,
+                                                  @PathParam("portalContainerName") String portalContainerName,
+                                                  @PathParam("format") String format,
+                                                  @QueryParam("since") String since,
+                                                  @QueryParam("wait") int wait) {
+    checkAuthenticatedRequest();
+    checkValidPortalContainerName(portalContainerName);
+    MediaType mediaType = checkSupportedFormat(format, SUPPORTED_FORMATS);
+
+    PortalContainer container = Util.getPortalContainerByName(portalContainerName);
+    ActivityPushService pushService = (ActivityPushService) container.getComponentInstanceOfType(ActivityPushService.class);
+    if (pushService == null || !pushService.isEnabled()) {
+      throw new WebApplicationException(Response.Status.NOT_FOUND);
+    }
+
+    Identity viewer = Util.getAuthenticatedUserIdentity(portalContainerName);
+    if (!pushService.isSubscribed(viewer.getId())) {
+      pushService.subscribe(viewer.getId(), viewer.getRemoteId(), getFeedSourceIds(container, viewer));
+    }
+
+    long cursor = pushService.getCursor();
+    List<ActivityNotification> notifications = Collections.emptyList();
+    if (since != null && since.trim().length() > 0) {
+      try {
+        cursor = Long.parseLong(since.trim());
+      } catch (NumberFormatException e) {
+        throw new WebApplicationException(Response.Status.BAD_REQUEST);
+      }
+      try {
+        notifications = pushService.poll(viewer.getId(), cursor, Math.max(0, wait) * 1000L);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+      } catch (ActivityPushRejectedException e) {
+        throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                                                  .header("Retry-After", String.valueOf(e.getRetryAfter()))
+                                                  .build());
+      }
+      if (notifications == null) {
+        cursor = pushService.getCursor();
+      }
+    }
+
+    ActivityNotificationListOut notificationListOut = new ActivityNotificationListOut(notifications, cursor);
+    return Util.getResponse(notificationListOut, uriInfo, mediaType, Response.Status.OK);
+  }
+
+  /**
+   * Gets the identity ids of the stream owners of the feed of a viewer: its connections, its spaces and itself.
+   */
+  private List<String> getFeedSourceIds(PortalContainer container, Identity viewer) {
+    RelationshipStorage relationshipStorage = (RelationshipStorage) container.getComponentInstanceOfType(RelationshipStorage.class);
+    SpaceStorage spaceStorage = (SpaceStorage) container.getComponentInstanceOfType(SpaceStorage.class);
+    List<String> sourceIds = new ArrayList<String>();
+    for (Identity connection : relationshipStorage.getConnections(viewer)) {
+      sourceIds.add(connection.getId());
+    }
+    for (SpaceMembership membership : spaceStorage.getSpaceMemberships(viewer.getRemoteId())) {
+      sourceIds.add(membership.getSpaceIdentityId());
+    }
+    sourceIds.add(viewer.getId());
+    return sourceIds;
+  }
+
+  /**
+   * Decodes the cursor query param.
+   *
+   * @param cursor the cursor query param
+   * @return the cursor, null if no cursor is given
+   */
+  private ActivityCursor decodeCursor(String cursor) {
+    if (cursor == null || cursor.trim().length() == 0) {
+      return null;
+    }
+    try {
+      return ActivityCursor.decode(cursor.trim());
+    } catch (IllegalArgumentException e) {
+      throw new WebApplicationException(Response.Status.BAD_REQUEST);
+    }
+  }
+
+  /**
+   * Loads the page after a cursor, or the first page when there is no cursor.
+   */
+  private List<ExoSocialActivity> loadAfter(RealtimeListAccess<ExoSocialActivity> listAccess, ActivityCursor cursor,
+                                            int limit) {
+    if (cursor != null && listAccess instanceof ActivitiesRealtimeListAccess
+        && ((ActivitiesRealtimeListAccess) listAccess).isCursorSupported()) {
+      return ((ActivitiesRealtimeListAccess) listAccess).loadAfter(cursor, limit);
+    }
+    return listAccess.loadAsList(0, limit);
+  }
+
+  /**
+   * Sets the cursor of the page after the given one, when the stream can be loaded from a cursor.
+   */
+  private void setNextCursor(ActivityRestListOut out, RealtimeListAccess<ExoSocialActivity> listAccess,
+                             ActivityCursor cursor, List<ExoSocialActivity> activities) {
+    if (listAccess instanceof ActivitiesRealtimeListAccess
+        && ((ActivitiesRealtimeListAccess) listAccess).isCursorSupported()) {
+      ActivityCursor next = ActivityCursor.next(cursor, activities);
+      if (next != null) {
+        out.setNextCursor(next.encode());
+      }
+    }
+  }
 }
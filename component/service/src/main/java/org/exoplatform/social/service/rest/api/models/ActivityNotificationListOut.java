@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.service.rest.api.models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.exoplatform.social.core.activity.ActivityNotification;
+
+/**
+ * The activity notification list out model for Social Rest APIs.
+ *
+ * @since 4.1
+ */
+public class ActivityNotificationListOut extends HashMap<String, Object> {
+
+  /**
+   * The enum fields as json keys
+   */
+  public static enum Field {
+    NOTIFICATIONS("notifications"),
+    CURSOR("cursor"),
+    RESET("reset"),
+    ACTIVITY_ID("activityId"),
+    TYPE("type"),
+    STREAM_OWNER_ID("streamOwnerId"),
+    POSTER_ID("posterIdentityId"),
+    TIME("time");
+
+    /**
+     * field name
+     */
+    private final String fieldName;
+
+    /**
+     * Private constructor.
+     *
+     * @param str the field name
+     */
+    private Field(final String str) {
+      fieldName = str;
+    }
+
+    /**
+     * Gets the string field name.
+     *
+     * @return the field name
+     */
+    @Override
+    public String toString() {
+      return fieldName;
+    }
+  }
+
+  /**
+   * Constructor to set the notifications and the cursor to wait after.
+   *
+   * @param notifications the notifications, null when the stream must be reloaded
+   * @param cursor        the cursor given back with the next request
+   */
+  public ActivityNotificationListOut(List<ActivityNotification> notifications, long cursor) {
+    List<Map<String, Object>> items = new ArrayList<Map<String, Object>>();
+    if (notifications != null) {
+      for (ActivityNotification notification : notifications) {
+        Map<String, Object> item = new HashMap<String, Object>();
+        item.put(Field.ACTIVITY_ID.toString(), notification.getActivityId());
+        item.put(Field.TYPE.toString(), notification.getType().name());
+        item.put(Field.STREAM_OWNER_ID.toString(), notification.getStreamOwnerId());
+        item.put(Field.POSTER_ID.toString(), notification.getPosterId());
+        item.put(Field.TIME.toString(), notification.getTime());
+        items.add(item);
+        cursor = Math.max(cursor, notification.getSequence());
+      }
+    }
+    put(Field.NOTIFICATIONS.toString(), items);
+    put(Field.CURSOR.toString(), String.valueOf(cursor));
+    put(Field.RESET.toString(), notifications == null);
+  }
+
+}
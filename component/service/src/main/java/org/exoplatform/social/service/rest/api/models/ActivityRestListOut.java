@@ -38,7 +38,8 @@ public class ActivityRestListOut extends HashMap<String, Object> {
    * The enum fields as json keys
    */
   public static enum Field {
-    ACTIVITIES("activities");
+    ACTIVITIES("activities"),
+    NEXT_CURSOR("next_cursor");
 
     /**
      * field name
@@ -125,4 +126,14 @@ public class ActivityRestListOut extends HashMap<String, Object> {
     put(Field.ACTIVITIES.toString(), activityItems);
   }
 
+  /**
+   * Sets the opaque cursor to give back to get the next page.
+   *
+   * @param nextCursor the encoded cursor
+   * @since 4.1
+   */
+  public void setNextCursor(String nextCursor) {
+    put(Field.NEXT_CURSOR.toString(), nextCursor);
+  }
+
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.exoplatform.social.service.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class LinkShareFetcherTest extends TestCase {
+
+  private HttpServer server;
+
+  private String base;
+
+  private final AtomicInteger requests = new AtomicInteger();
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private final CountDownLatch slow = new CountDownLatch(1);
+
+  private LinkShareFetcher fetcher;
+
+  @Override
+  protected void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        if (exchange.getRequestURI().getPath().startsWith("/slow")) {
+          try {
+            slow.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        byte[] body = "<html><head><title>page</title></head></html>".getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      }
+    });
+    server.start();
+    base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+    // reads the page only, LinkShare.getInstance also needs the embedders of the platform
+    fetcher = new LinkShareFetcher(2, 10, 1, 10, 60000, new LinkShareFetcher.Loader() {
+      public LinkShare load(String link, String lang) throws Exception {
+        loads.incrementAndGet();
+        InputStream in;
+        try {
+          in = Util.openURLConnection(link).getInputStream();
+        } catch (IOException e) {
+          return LinkShare.failed(link);
+        }
+        try {
+          while (in.read() != -1) {
+            // reads the whole page
+          }
+        } finally {
+          in.close();
+        }
+        LinkShare linkShare = LinkShare.placeholder(link);
+        linkShare.setTitle("page");
+        return linkShare;
+      }
+    });
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    slow.countDown();
+    fetcher.shutdown();
+    server.stop(0);
+  }
+
+  public void testNormalize() throws Exception {
+    assertEquals("http://example.com/", LinkShareFetcher.normalize("HTTP://Example.COM"));
+    assertEquals("http://example.com/a?b=c", LinkShareFetcher.normalize("http://example.com:80/a?b=c#top"));
+    assertEquals("https://example.com:8443/a", LinkShareFetcher.normalize("https://example.com:8443/a"));
+  }
+
+  public void testCached() throws Exception {
+    LinkShare linkShare = fetcher.get(base + "/page", "en", 5000);
+    assertEquals("page", linkShare.getTitle());
+    assertEquals(base + "/page", linkShare.getLink());
+
+    // same page, the link as requested is kept
+    linkShare = fetcher.get(base + "/page#top", "en", 5000);
+    assertEquals(base + "/page#top", linkShare.getLink());
+    assertEquals(1, requests.get());
+    assertEquals(1, fetcher.size());
+
+    //
+    fetcher.get(base + "/page", "fr", 5000);
+    assertEquals(2, requests.get());
+    assertNull(fetcher.get("not a link", "en", 5000));
+  }
+
+  public void testTimeout() throws Exception {
+    try {
+      fetcher.get(base + "/slow", "en", 100);
+      fail();
+    } catch (TimeoutException e) {
+      // expected
+    }
+
+    // the fetch goes on, the next request waits for it
+    slow.countDown();
+    assertEquals("page", fetcher.get(base + "/slow", "en", 5000).getTitle());
+    assertEquals(1, requests.get());
+  }
+
+  public void testLimitPerHost() throws Exception {
+    try {
+      fetcher.get(base + "/slow", "en", 10);
+      fail();
+    } catch (TimeoutException e) {
+      // expected
+    }
+    try {
+      fetcher.get(base + "/page", "en", 10);
+      fail();
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+
+    //
+    slow.countDown();
+    fetcher.get(base + "/slow", "en", 5000);
+    assertEquals("page", fetcher.get(base + "/page", "en", 5000).getTitle());
+  }
+
+  public void testUnreachable() throws Exception {
+    ServerSocket socket = new ServerSocket(0);
+    String link = "http://127.0.0.1:" + socket.getLocalPort() + "/page";
+    socket.close();
+
+    LinkShare linkShare = fetcher.get(link, "en", 5000);
+    assertTrue(linkShare.isFailed());
+    assertEquals(link, linkShare.getTitle());
+    assertEquals(0, fetcher.size());
+
+    // not cached, the link is fetched again
+    assertTrue(fetcher.get(link, "en", 5000).isFailed());
+    assertEquals(2, loads.get());
+    assertFalse(fetcher.get(base + "/page", "en", 5000).isFailed());
+    assertEquals(1, fetcher.size());
+  }
+
+}
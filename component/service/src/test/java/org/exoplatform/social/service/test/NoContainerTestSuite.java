@@ -16,6 +16,7 @@
  */
 package org.exoplatform.social.service.test;
 
+import org.exoplatform.social.service.rest.LinkShareFetcherTest;
 import org.exoplatform.social.service.rest.api.models.ActivityRestInTest;
 import org.exoplatform.social.service.rest.api.models.ActivityStreamRestOutTest;
 import org.exoplatform.social.service.rest.api.models.CommentRestInTest;
@@ -30,7 +31,8 @@ import org.junit.runners.Suite.SuiteClasses;
   UtilTest.class,
   ActivityRestInTest.class,
   ActivityStreamRestOutTest.class,
-  CommentRestInTest.class
+  CommentRestInTest.class,
+  LinkShareFetcherTest.class
   })
 public class NoContainerTestSuite {
   
@@ -25,7 +25,7 @@ import org.exoplatform.portal.webui.util.Util;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.common.router.ExoRouter;
-import org.exoplatform.social.common.router.ExoRouter.Route;
+import org.exoplatform.social.common.router.ExoRouter.RouteMatch;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
 import org.exoplatform.social.core.manager.IdentityManager;
@@ -47,12 +47,12 @@ public class URLUtils {
   public static String getCurrentUser() {
     PortalRequestContext pcontext = Util.getPortalRequestContext() ;
     String requestPath = "/" + pcontext.getControllerContext().getParameter(RequestNavigationData.REQUEST_PATH);
-    Route route = ExoRouter.route(requestPath);
+    RouteMatch route = ExoRouter.match(requestPath);
     if (route == null) { 
       return null;
     }
     
-    String currentUserName = route.localArgs.get("streamOwnerId");
+    String currentUserName = route.get("streamOwnerId");
     ExoContainer container = ExoContainerContext.getCurrentContainer();
     IdentityManager idm = (IdentityManager) container.getComponentInstanceOfType(IdentityManager.class);
 
@@ -31,7 +31,7 @@ import org.exoplatform.portal.webui.util.Util;
 import org.exoplatform.portal.webui.workspace.UIPortalApplication;
 import org.exoplatform.portal.webui.workspace.UIWorkingWorkspace;
 import org.exoplatform.social.common.router.ExoRouter;
-import org.exoplatform.social.common.router.ExoRouter.Route;
+import org.exoplatform.social.common.router.ExoRouter.RouteMatch;
 import org.exoplatform.social.core.identity.model.Identity;
 import org.exoplatform.social.core.identity.provider.OrganizationIdentityProvider;
 import org.exoplatform.social.core.identity.provider.SpaceIdentityProvider;
@@ -613,7 +613,7 @@ public class Utils {
     SpaceService spaceService = (SpaceService) ExoContainerContext.getCurrentContainer().getComponentInstanceOfType(SpaceService.class);
     PortalRequestContext pcontext = Util.getPortalRequestContext();
     String requestPath = pcontext.getControllerContext().getParameter(RequestNavigationData.REQUEST_PATH);
-    Route route = ExoRouter.route(requestPath);
+    RouteMatch route = ExoRouter.match(requestPath);
     
     if (route == null) {
       String groupId = pcontext.getControllerContext().getParameter(RequestNavigationData.REQUEST_SITE_NAME);
@@ -621,7 +621,7 @@ public class Utils {
     }
 
     //
-    String spacePrettyName = route.localArgs.get("spacePrettyName");
+    String spacePrettyName = route.get("spacePrettyName");
     Space space = spaceService.getSpaceByPrettyName(spacePrettyName);
     if (space == null) {
       String groupId = String.format("%s/%s", SpaceUtils.SPACE_GROUP, spacePrettyName);
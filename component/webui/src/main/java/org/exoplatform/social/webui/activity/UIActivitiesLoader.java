@@ -25,6 +25,8 @@ import org.exoplatform.commons.utils.ListAccess;
 import org.exoplatform.portal.webui.util.Util;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
+import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess;
+import org.exoplatform.social.core.activity.ActivityCursor;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
 import org.exoplatform.social.core.space.model.Space;
 import org.exoplatform.social.webui.Utils;
@@ -67,6 +69,7 @@ public class UIActivitiesLoader extends UIContainer {
   private int loadingCapacity;
   private Space space;
   private int activitiesCounter;
+  private ActivityCursor cursor;
   
   public UIActivitiesLoader() {
     try {
@@ -154,6 +157,7 @@ public class UIActivitiesLoader extends UIContainer {
       hasMore = false;
       currentLoadIndex = 0;
       activitiesCounter = 0;
+      cursor = null;
       isExtendLoader = false;
       
       activitiesContainer.setPostContext(postContext);
@@ -200,13 +204,25 @@ public class UIActivitiesLoader extends UIContainer {
   }
 
   private List<ExoSocialActivity> loadActivities(int index, int length) throws Exception {
+    // the next pages are loaded from the cursor after the previous page rather than from an offset
+    if (index > 0 && cursor != null && activityListAccess instanceof ActivitiesRealtimeListAccess
+        && ((ActivitiesRealtimeListAccess) activityListAccess).isCursorSupported()) {
+      List<ExoSocialActivity> activities = ((ActivitiesRealtimeListAccess) activityListAccess).loadAfter(cursor, length);
+      cursor = ActivityCursor.next(cursor, activities);
+      activitiesCounter += activities.size();
+      setHasMore(cursor != null && activityListAccess.getSize() > activitiesCounter);
+
+      return new ArrayList<ExoSocialActivity>(activities);
+    }
     if (activityListAccess != null) {
       ExoSocialActivity[] activities = activityListAccess.load(index, length);
       if (activities != null) {
         activitiesCounter += activities.length;
         setHasMore(activityListAccess.getSize() > activitiesCounter);
 
-        return new ArrayList<ExoSocialActivity>(Arrays.asList(activities));
+        List<ExoSocialActivity> loaded = new ArrayList<ExoSocialActivity>(Arrays.asList(activities));
+        cursor = ActivityCursor.next(null, loaded);
+        return loaded;
       }
     }
     return null;
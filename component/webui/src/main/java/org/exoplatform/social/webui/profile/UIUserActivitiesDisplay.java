@@ -22,12 +22,14 @@ import java.util.List;
 
 import org.apache.commons.lang.Validate;
 import org.exoplatform.commons.utils.ListAccess;
+import org.exoplatform.container.PortalContainer;
 import org.exoplatform.portal.application.PortalRequestContext;
 import org.exoplatform.portal.mop.SiteType;
 import org.exoplatform.portal.webui.util.Util;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.core.activity.ActivitiesRealtimeListAccess;
+import org.exoplatform.social.core.activity.ActivityPushService;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter;
 import org.exoplatform.social.core.activity.filter.ActivityUpdateFilter.ActivityFilterType;
 import org.exoplatform.social.core.activity.model.ExoSocialActivity;
@@ -282,6 +284,19 @@ public class UIUserActivitiesDisplay extends UIContainer {
     return Calendar.getInstance().getTimeInMillis();
   }
   
+  protected boolean isActivityPushEnabled() {
+    ActivityPushService pushService = getApplicationComponent(ActivityPushService.class);
+    return pushService != null && pushService.isEnabled();
+  }
+
+  protected String getRestContextName() {
+    return PortalContainer.getCurrentRestContextName();
+  }
+
+  protected String getPortalContainerName() {
+    return PortalContainer.getCurrentPortalContainerName();
+  }
+
   protected String getSitePath() {
     PortalRequestContext portalRequestContext = Util.getPortalRequestContext();
     String siteName = portalRequestContext.getSiteName();
@@ -24,7 +24,7 @@ import org.exoplatform.portal.mop.SiteType;
 import org.exoplatform.services.log.ExoLogger;
 import org.exoplatform.services.log.Log;
 import org.exoplatform.social.common.router.ExoRouter;
-import org.exoplatform.social.common.router.ExoRouter.Route;
+import org.exoplatform.social.common.router.ExoRouter.RouteMatch;
 import org.exoplatform.social.core.space.SpaceAccessType;
 import org.exoplatform.social.core.space.model.Space;
 import org.exoplatform.social.webui.Utils;
@@ -57,12 +57,12 @@ public class SpaceAccessApplicationLifecycle implements ApplicationLifecycle<Web
     Utils.setCurrentNavigationData(siteType, siteName, requestPath);
     
     //
-    Route route = ExoRouter.route(requestPath);
+    RouteMatch route = ExoRouter.match(requestPath);
     if (route == null) { 
       return;
     }
     
-    String spacePrettyName = route.localArgs.get("spacePrettyName");
+    String spacePrettyName = route.get("spacePrettyName");
     
     if (pcontext.getSiteType().equals(SiteType.GROUP)
         && pcontext.getSiteName().startsWith("/spaces") && spacePrettyName != null
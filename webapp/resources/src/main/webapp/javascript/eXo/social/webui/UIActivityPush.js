@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2003-2014 eXo Platform SAS.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, see<http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * UIActivityPush.js
+ *
+ * Waits for the changes of the activity feed of the viewer on activity_stream/notifications.json and shows the
+ * number of new activities beside the refresh button. One request waits at a time, the next one starts when it
+ * returns. A rejected request comes back after the delay given by the server.
+ */
+(function($) {
+  var UIActivityPush = {
+    DEFAULT_REST_INFO : {
+      CONTEXT_NAME : 'rest',
+      PATH : '/private/api/social/v1-alpha3/%portalName%/activity_stream/notifications.json'
+    },
+    WAIT : 25,
+    ERROR_DELAY : 30,
+    RETRY_DELAY : 15,
+    componentId : '',
+    viewerId : '',
+    updates : '',
+    url : '',
+    cursor : null,
+    numberOfUpdates : 0,
+    running : false,
+
+    init : function(params) {
+      var push = UIActivityPush;
+      var restContextName = params.restContextName || push.DEFAULT_REST_INFO.CONTEXT_NAME;
+
+      push.componentId = params.componentId || '';
+      push.viewerId = params.viewerId || '';
+      push.updates = params.updates || '';
+      push.url = '/' + restContextName + push.DEFAULT_REST_INFO.PATH.replace('%portalName%', params.portalName || 'portal');
+
+      // the stream has just been rendered, it shows everything up to now
+      push.numberOfUpdates = 0;
+      push.cursor = null;
+      if (!push.running) {
+        push.running = true;
+        push.poll();
+      }
+    },
+
+    poll : function() {
+      var push = UIActivityPush;
+      if ($('#' + push.componentId).length === 0) {
+        // the stream is not displayed anymore
+        push.running = false;
+        return;
+      }
+
+      var data = {};
+      if (push.cursor !== null) {
+        data.since = push.cursor;
+        data.wait = push.WAIT;
+      }
+      $.ajax({
+        type : 'GET',
+        url : push.url,
+        data : data,
+        dataType : 'json',
+        cache : false,
+        timeout : (push.WAIT + 10) * 1000
+      }).done(function(result) {
+        push.receive(result);
+        push.schedule(0);
+      }).fail(function(xhr) {
+        if (xhr.status === 404) {
+          // disabled on the server
+          push.running = false;
+        } else if (xhr.status === 503) {
+          push.schedule(parseInt(xhr.getResponseHeader('Retry-After'), 10) || push.RETRY_DELAY);
+        } else {
+          push.schedule(push.ERROR_DELAY);
+        }
+      });
+    },
+
+    schedule : function(delay) {
+      window.setTimeout(UIActivityPush.poll, delay * 1000);
+    },
+
+    receive : function(result) {
+      var push = UIActivityPush;
+      var first = push.cursor === null;
+      push.cursor = result.cursor;
+      if (first) {
+        return;
+      }
+
+      //
+      if (result.reset) {
+        // some notifications were lost, the stream has at least one new activity
+        push.numberOfUpdates = Math.max(push.numberOfUpdates, 1);
+      }
+      $.each(result.notifications || [], function(i, notification) {
+        if (notification.type === 'CREATED' && notification.posterIdentityId !== push.viewerId) {
+          push.numberOfUpdates++;
+        }
+      });
+      push.show();
+    },
+
+    show : function() {
+      var push = UIActivityPush;
+      if (push.numberOfUpdates <= 0) {
+        return;
+      }
+      var component = $('#' + push.componentId);
+      var info = component.find('#ActivityPushInfo');
+      if (info.length === 0) {
+        info = $('<span id="ActivityPushInfo"></span>');
+        component.find('#RefreshButton').before(info);
+      }
+      info.html(push.updates.replace('{0}', push.numberOfUpdates));
+      component.addClass('notSeen');
+    }
+  };
+
+  return UIActivityPush;
+})($);